@@ -0,0 +1,192 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.mobsim.qsim.AgentTimeQueue;
+import org.matsim.core.mobsim.qsim.agents.BasicPlanAgentImpl;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Simulates how the activity engine uses its queue when within-day replanning reschedules many activity ends: all
+ * agents start an activity, then the activity end of randomly chosen agents is moved, and finally all agents end
+ * their activities in order.
+ *
+ * <ul>
+ * <li><code>priorityBlockingQueue</code>: the queue the activity engine used before, where an agent is removed by
+ * searching the whole queue</li>
+ * <li><code>agentTimeQueue</code>: {@link AgentTimeQueue}, which removes an agent in O(log n)</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ActivityEndQueueBenchmark {
+
+	@Param({"priorityBlockingQueue", "agentTimeQueue"})
+	public String queue;
+
+	@Param({"10000", "100000"})
+	public int agents;
+
+	@Param("20000")
+	public int reschedules;
+
+	private List<MobsimAgent> mobsimAgents;
+	private double[] endTimes;
+	private int[] rescheduledAgents;
+	private double[] rescheduledEndTimes;
+
+	@Setup
+	public void setup() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		EventsManager events = EventsUtils.createEventsManager();
+		MobsimTimer timer = new MobsimTimer();
+		Random random = new Random(4711);
+
+		this.mobsimAgents = new ArrayList<>(this.agents);
+		this.endTimes = new double[this.agents];
+		for (int i = 0; i < this.agents; i++) {
+			Person person = factory.createPerson(Id.createPersonId(i));
+			Plan plan = factory.createPlan();
+			Activity activity = factory.createActivityFromLinkId("home", Id.createLinkId(i % 100));
+			plan.addActivity(activity);
+			person.addPlan(plan);
+			this.mobsimAgents.add(new BasicPlanAgentImpl(plan, scenario, events, timer));
+			this.endTimes[i] = 6 * 3600 + random.nextInt(4 * 3600);
+		}
+		this.rescheduledAgents = new int[this.reschedules];
+		this.rescheduledEndTimes = new double[this.reschedules];
+		for (int i = 0; i < this.reschedules; i++) {
+			this.rescheduledAgents[i] = random.nextInt(this.agents);
+			this.rescheduledEndTimes[i] = 6 * 3600 + random.nextInt(4 * 3600);
+		}
+	}
+
+	@Benchmark
+	public double run() {
+		switch (this.queue) {
+			case "priorityBlockingQueue":
+				return runPriorityBlockingQueue();
+			case "agentTimeQueue":
+				return runAgentTimeQueue();
+			default:
+				throw new IllegalArgumentException("unknown queue: " + this.queue);
+		}
+	}
+
+	private double runAgentTimeQueue() {
+		AgentTimeQueue queue = new AgentTimeQueue();
+		for (int i = 0; i < this.agents; i++) {
+			queue.add(this.mobsimAgents.get(i), this.endTimes[i]);
+		}
+		for (int i = 0; i < this.reschedules; i++) {
+			MobsimAgent agent = this.mobsimAgents.get(this.rescheduledAgents[i]);
+			queue.remove(agent);
+			queue.add(agent, this.rescheduledEndTimes[i]);
+		}
+		double sum = 0;
+		AgentTimeQueue.Entry entry;
+		while ((entry = queue.poll()) != null) {
+			sum += entry.getTime();
+		}
+		return sum;
+	}
+
+	private double runPriorityBlockingQueue() {
+		Queue<AgentEntry> queue = new PriorityBlockingQueue<>(500, (e0, e1) -> {
+			int cmp = Double.compare(e0.activityEndTime, e1.activityEndTime);
+			if (cmp == 0) {
+				return e1.agent.getId().compareTo(e0.agent.getId());
+			}
+			return cmp;
+		});
+		for (int i = 0; i < this.agents; i++) {
+			queue.add(new AgentEntry(this.mobsimAgents.get(i), this.endTimes[i]));
+		}
+		for (int i = 0; i < this.reschedules; i++) {
+			MobsimAgent agent = this.mobsimAgents.get(this.rescheduledAgents[i]);
+			Iterator<AgentEntry> iterator = queue.iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().agent == agent) {
+					iterator.remove();
+					break;
+				}
+			}
+			queue.add(new AgentEntry(agent, this.rescheduledEndTimes[i]));
+		}
+		double sum = 0;
+		AgentEntry entry;
+		while ((entry = queue.poll()) != null) {
+			sum += entry.activityEndTime;
+		}
+		return sum;
+	}
+
+	private static class AgentEntry {
+		private final MobsimAgent agent;
+		private final double activityEndTime;
+
+		AgentEntry(MobsimAgent agent, double activityEndTime) {
+			this.agent = agent;
+			this.activityEndTime = activityEndTime;
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ActivityEndQueueBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,134 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.XmlUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Writes a recorded events file into a stream that discards everything, so that only the serialization is measured.
+ *
+ * <ul>
+ * <li><code>attributes</code>: the events are written like {@link EventWriterXML} did before, based on
+ * {@link Event#getAttributes()}</li>
+ * <li><code>eventWriterXML</code>: the current {@link EventWriterXML}</li>
+ * </ul>
+ *
+ * Run with <code>-prof gc</code> to see the allocation rates as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EventWriterBenchmark {
+
+	@Param({"attributes", "eventWriterXML"})
+	public String writer;
+
+	@Param("")
+	public String events;
+
+	private List<Event> recordedEvents;
+
+	@Setup
+	public void setup() {
+		URL eventsUrl = events.isEmpty() ? IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("equil"), "output_events.xml.gz") : IOUtils.resolveFileOrResource(events);
+
+		this.recordedEvents = new ArrayList<>();
+		EventsManager reader = EventsUtils.createEventsManager();
+		reader.addHandler((BasicEventHandler) this.recordedEvents::add);
+		new MatsimEventsReader(reader).readURL(eventsUrl);
+	}
+
+	@Benchmark
+	public int write() throws IOException {
+		switch (writer) {
+			case "attributes":
+				writeWithAttributes(OutputStream.nullOutputStream());
+				break;
+			case "eventWriterXML":
+				EventWriterXML eventWriter = new EventWriterXML(OutputStream.nullOutputStream());
+				for (Event event : this.recordedEvents) {
+					eventWriter.handleEvent(event);
+				}
+				eventWriter.closeFile();
+				break;
+			default:
+				throw new IllegalArgumentException("unknown writer: " + writer);
+		}
+		return this.recordedEvents.size();
+	}
+
+	private void writeWithAttributes(OutputStream stream) throws IOException {
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+			out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
+			for (Event event : this.recordedEvents) {
+				out.append("\t<event ");
+				for (Map.Entry<String, String> entry : event.getAttributes().entrySet()) {
+					out.append(entry.getKey());
+					out.append("=\"");
+					out.append(entry.getValue() == null ? null : XmlUtils.encodeAttributeValue(entry.getValue()));
+					out.append("\" ");
+				}
+				out.append(" />\n");
+			}
+			out.write("</events>");
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EventWriterBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,182 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.analysis.LegHistogram;
+import org.matsim.analysis.VolumesAnalyzer;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.ThreadConfinedEventHandler;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.scoring.EventsToActivities;
+import org.matsim.core.scoring.EventsToLegs;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Replays an events file through an events manager with the handlers a controler run typically registers (link
+ * volumes, leg histogram, travel times, legs and activities for scoring). Two more benchmarks measure the
+ * dispatch overhead alone, with a trivial handler that is synchronized on or declared thread-confined.
+ *
+ * The events are read and the handlers are added once, so only event dispatch and handling are measured. By default, the
+ * output events of the equil example are used; other runs can be replayed with
+ * <code>-p network=... -p events=...</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EventsManagerBenchmark {
+
+	@Param("")
+	public String network;
+
+	@Param("")
+	public String events;
+
+	private List<Event> recordedEvents;
+	private EventsManager eventsManager;
+	private EventsManager countingEventsManager;
+	private EventsManager threadConfinedEventsManager;
+
+	@Setup
+	public void setup() {
+		URL networkUrl = network.isEmpty() ? IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("equil"), "network.xml") : IOUtils.resolveFileOrResource(network);
+		URL eventsUrl = events.isEmpty() ? IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("equil"), "output_events.xml.gz") : IOUtils.resolveFileOrResource(events);
+
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario.getNetwork()).parse(networkUrl);
+
+		this.recordedEvents = new ArrayList<>();
+		EventsManager reader = EventsUtils.createEventsManager();
+		reader.addHandler((BasicEventHandler) this.recordedEvents::add);
+		new MatsimEventsReader(reader).readURL(eventsUrl);
+
+		this.eventsManager = EventsUtils.createEventsManager();
+		this.eventsManager.addHandler(new VolumesAnalyzer(3600, 30 * 3600, scenario.getNetwork()));
+		this.eventsManager.addHandler(new LegHistogram(300));
+		this.eventsManager.addHandler(new TravelTimeCalculator.Builder(scenario.getNetwork()).build());
+		this.eventsManager.addHandler(new EventsToLegs(scenario));
+		this.eventsManager.addHandler(new EventsToActivities());
+
+		this.countingEventsManager = EventsUtils.createEventsManager();
+		this.countingEventsManager.addHandler(new CountingHandler());
+		this.threadConfinedEventsManager = EventsUtils.createEventsManager();
+		this.threadConfinedEventsManager.addHandler(new ThreadConfinedCountingHandler());
+	}
+
+	@Benchmark
+	public int replay() {
+		this.eventsManager.resetHandlers(0);
+		this.eventsManager.initProcessing();
+		for (Event event : this.recordedEvents) {
+			this.eventsManager.processEvent(event);
+		}
+		this.eventsManager.finishProcessing();
+		return this.recordedEvents.size();
+	}
+
+	/** Measures the dispatch overhead only, using a handler that does almost no work. */
+	@Benchmark
+	public int dispatch() {
+		return replay(this.countingEventsManager);
+	}
+
+	/** Like {@link #dispatch()}, but without synchronizing on the handler. */
+	@Benchmark
+	public int dispatchThreadConfined() {
+		return replay(this.threadConfinedEventsManager);
+	}
+
+	private int replay(EventsManager eventsManager) {
+		for (Event event : this.recordedEvents) {
+			eventsManager.processEvent(event);
+		}
+		return this.recordedEvents.size();
+	}
+
+	private static class CountingHandler implements LinkEnterEventHandler, LinkLeaveEventHandler,
+			VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler {
+		private int count;
+
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			this.count++;
+		}
+
+		@Override
+		public void handleEvent(LinkLeaveEvent event) {
+			this.count++;
+		}
+
+		@Override
+		public void handleEvent(VehicleEntersTrafficEvent event) {
+			this.count++;
+		}
+
+		@Override
+		public void handleEvent(VehicleLeavesTrafficEvent event) {
+			this.count++;
+		}
+	}
+
+	private static class ThreadConfinedCountingHandler extends CountingHandler implements ThreadConfinedEventHandler {
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EventsManagerBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,157 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.analysis.LegHistogram;
+import org.matsim.analysis.VolumesAnalyzer;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.scoring.EventsToActivities;
+import org.matsim.core.scoring.EventsToLegs;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the parallel events managers that can be selected in the parallelEventHandling config group. A recorded
+ * events file is replayed like a mobsim would produce it: the events of each time step, followed by
+ * <code>afterSimStep</code>.
+ *
+ * <ul>
+ * <li><code>threads</code>: handlers distributed to <code>numberOfThreads</code> threads</li>
+ * <li><code>oneThreadPerHandler</code>: one thread per handler</li>
+ * <li><code>ringBuffer</code>: <code>useRingBuffer</code> with <code>numberOfThreads</code> threads</li>
+ * </ul>
+ *
+ * With <code>sync=true</code>, all events of a time step have to be processed before the next one starts, so the
+ * result mostly reflects the latency of handing events over to the handler threads. With <code>sync=false</code>,
+ * it reflects the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ParallelEventsManagerBenchmark {
+
+	@Param({"threads", "oneThreadPerHandler", "ringBuffer"})
+	public String manager;
+
+	@Param({"true", "false"})
+	public boolean sync;
+
+	@Param("2")
+	public int threads;
+
+	@Param("")
+	public String network;
+
+	@Param("")
+	public String events;
+
+	private List<Event> recordedEvents;
+	private EventsManager eventsManager;
+
+	@Setup
+	public void setup() {
+		URL networkUrl = network.isEmpty() ? IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("equil"), "network.xml") : IOUtils.resolveFileOrResource(network);
+		URL eventsUrl = events.isEmpty() ? IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("equil"), "output_events.xml.gz") : IOUtils.resolveFileOrResource(events);
+
+		Config config = ConfigUtils.createConfig();
+		config.parallelEventHandling().setSynchronizeOnSimSteps(sync);
+		switch (manager) {
+			case "threads":
+				config.parallelEventHandling().setNumberOfThreads(threads);
+				break;
+			case "oneThreadPerHandler":
+				config.parallelEventHandling().setOneThreadPerHandler(true);
+				break;
+			case "ringBuffer":
+				config.parallelEventHandling().setUseRingBuffer(true);
+				config.parallelEventHandling().setNumberOfThreads(threads);
+				break;
+			default:
+				throw new IllegalArgumentException("unknown events manager: " + manager);
+		}
+
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).parse(networkUrl);
+
+		this.recordedEvents = new ArrayList<>();
+		EventsManager reader = EventsUtils.createEventsManager();
+		reader.addHandler((BasicEventHandler) this.recordedEvents::add);
+		new MatsimEventsReader(reader).readURL(eventsUrl);
+
+		this.eventsManager = EventsUtils.createEventsManager(config);
+		this.eventsManager.addHandler(new VolumesAnalyzer(3600, 30 * 3600, scenario.getNetwork()));
+		this.eventsManager.addHandler(new LegHistogram(300));
+		this.eventsManager.addHandler(new TravelTimeCalculator.Builder(scenario.getNetwork()).build());
+		this.eventsManager.addHandler(new EventsToLegs(scenario));
+		this.eventsManager.addHandler(new EventsToActivities());
+	}
+
+	@Benchmark
+	public int replay() {
+		this.eventsManager.initProcessing();
+		double time = this.recordedEvents.isEmpty() ? 0 : this.recordedEvents.get(0).getTime();
+		for (Event event : this.recordedEvents) {
+			if (event.getTime() > time) {
+				this.eventsManager.afterSimStep(time);
+				time = event.getTime();
+			}
+			this.eventsManager.processEvent(event);
+		}
+		this.eventsManager.afterSimStep(time);
+		this.eventsManager.finishProcessing();
+		return this.recordedEvents.size();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ParallelEventsManagerBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,130 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.speedy.SpeedyALTFactory;
+import org.matsim.core.router.speedy.SpeedyCHFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Routes between random pairs of nodes of a network. The preprocessing of the routers is done during the setup, so
+ * only the queries are measured.
+ *
+ * <ul>
+ * <li><code>speedyALT</code>: {@link SpeedyALTFactory}</li>
+ * <li><code>speedyCH</code>: {@link SpeedyCHFactory}</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RouterBenchmark {
+
+	@Param({"speedyALT", "speedyCH"})
+	public String router;
+
+	@Param("")
+	public String network;
+
+	@Param("10000")
+	public int routes;
+
+	private LeastCostPathCalculator routerAlgo;
+	private Node[] fromNodes;
+	private Node[] toNodes;
+
+	@Setup
+	public void setup() {
+		URL networkUrl = network.isEmpty() ? IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("berlin"), "network.xml.gz") : IOUtils.resolveFileOrResource(network);
+		Network net = NetworkUtils.createNetwork();
+		new MatsimNetworkReader(net).parse(networkUrl);
+
+		LeastCostPathCalculatorFactory factory;
+		switch (router) {
+			case "speedyALT":
+				factory = new SpeedyALTFactory();
+				break;
+			case "speedyCH":
+				factory = new SpeedyCHFactory();
+				break;
+			default:
+				throw new IllegalArgumentException("unknown router: " + router);
+		}
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		this.routerAlgo = factory.createPathCalculator(net, travelTimeCostCalculator, travelTimeCostCalculator);
+
+		List<Node> nodes = new ArrayList<>(net.getNodes().values());
+		Random random = new Random(4711);
+		this.fromNodes = new Node[routes];
+		this.toNodes = new Node[routes];
+		for (int i = 0; i < routes; i++) {
+			this.fromNodes[i] = nodes.get(random.nextInt(nodes.size()));
+			this.toNodes[i] = nodes.get(random.nextInt(nodes.size()));
+		}
+	}
+
+	@Benchmark
+	public double route() {
+		double sum = 0;
+		for (int i = 0; i < this.fromNodes.length; i++) {
+			LeastCostPathCalculator.Path path = this.routerAlgo.calcLeastCostPath(this.fromNodes[i], this.toNodes[i], 8 * 3600, null, null);
+			if (path != null) {
+				sum += path.travelCost;
+			}
+		}
+		return sum;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(RouterBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,139 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.MatsimXmlParser;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.facilities.MatsimFacilitiesReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Reads the network, population, facilities and events of a scenario with the different backends of {@link MatsimXmlParser}.
+ *
+ * <ul>
+ * <li><code>sax</code>: the default SAX backend, validating like the readers do by default</li>
+ * <li><code>stax</code>: the non-validating StAX backend</li>
+ * </ul>
+ *
+ * By default, the files of the equil scenario are read. Other files can be set with <code>-p network=...</code> etc.
+ * Run with <code>-prof gc</code> to see the allocation rates as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class XmlParserBenchmark {
+
+	@Param({"sax", "stax"})
+	public String backend;
+
+	@Param("")
+	public String network;
+
+	@Param("")
+	public String population;
+
+	@Param("")
+	public String facilities;
+
+	@Param("")
+	public String events;
+
+	private URL networkUrl;
+	private URL populationUrl;
+	private URL facilitiesUrl;
+	private URL eventsUrl;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		URL equil = ExamplesUtils.getTestScenarioURL("equil");
+		this.networkUrl = network.isEmpty() ? IOUtils.extendUrl(equil, "network.xml") : IOUtils.resolveFileOrResource(network);
+		this.populationUrl = population.isEmpty() ? IOUtils.extendUrl(equil, "plans2000.xml.gz") : IOUtils.resolveFileOrResource(population);
+		this.facilitiesUrl = facilities.isEmpty() ? IOUtils.extendUrl(equil, "facilities.xml") : IOUtils.resolveFileOrResource(facilities);
+		this.eventsUrl = events.isEmpty() ? IOUtils.extendUrl(equil, "output_events.xml.gz") : IOUtils.resolveFileOrResource(events);
+		// the readers create their parsers internally, so use the system property to select the backend
+		System.setProperty(MatsimXmlParser.PARSER_BACKEND_PROPERTY, backend);
+	}
+
+	@Benchmark
+	public Scenario readNetwork() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimNetworkReader(scenario.getNetwork()).parse(this.networkUrl);
+		return scenario;
+	}
+
+	@Benchmark
+	public Scenario readPopulation() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new PopulationReader(scenario).parse(this.populationUrl);
+		return scenario;
+	}
+
+	@Benchmark
+	public Scenario readFacilities() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimFacilitiesReader(scenario).parse(this.facilitiesUrl);
+		return scenario;
+	}
+
+	@Benchmark
+	public int readEvents() {
+		int[] count = {0};
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		eventsManager.addHandler((BasicEventHandler) event -> count[0]++);
+		eventsManager.initProcessing();
+		new MatsimEventsReader(eventsManager).readURL(this.eventsUrl);
+		eventsManager.finishProcessing();
+		return count[0];
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(XmlParserBenchmark.class.getSimpleName()).build()).run();
+	}
+}
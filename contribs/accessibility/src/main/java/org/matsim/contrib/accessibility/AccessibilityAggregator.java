@@ -18,17 +18,14 @@
  * *********************************************************************** */
 package org.matsim.contrib.accessibility;
 
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
-import org.matsim.api.core.v01.Coord;
 import org.matsim.core.utils.collections.Tuple;
 import org.matsim.facilities.ActivityFacility;
 
@@ -43,11 +40,8 @@ class AccessibilityAggregator implements FacilityDataExchangeInterface {
 	@Override
 	public void setFacilityAccessibilities(ActivityFacility measurePoint, Double timeOfDay, String mode, double accessibility) {
 		Tuple<ActivityFacility, Double> key = new Tuple<>(measurePoint, timeOfDay);
-		if (!accessibilitiesMap.containsKey(key)) {
-			Map<String,Double> accessibilitiesByMode = new HashMap<>();
-			accessibilitiesMap.put(key, accessibilitiesByMode);
-		}
-		accessibilitiesMap.get(key).put(mode, accessibility);
+		// called concurrently by the threads computing the accessibilities, so the entry must be created atomically
+		accessibilitiesMap.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(mode, accessibility);
 	}
 
 	@Override
@@ -61,44 +55,13 @@ class AccessibilityAggregator implements FacilityDataExchangeInterface {
 
 	private Map<Tuple<ActivityFacility, Double>, Map<String, Double>> sortMeasurePointsByYAndXCoord() {
 		LOG.info("Start sorting measure points.");
-		Map<Double, List<Double>> coordMap = new TreeMap<>();
-		List<Double> yValues = new LinkedList<>();
-
-		for (Tuple<ActivityFacility, Double> tuple : accessibilitiesMap.keySet()) {
-			ActivityFacility activityFacility = tuple.getFirst();
-			double y = activityFacility.getCoord().getY();
-			if (!yValues.contains(y)) {
-				yValues.add(y);
-			}
-		}
-		yValues.sort(Comparator.naturalOrder());
-
-		for (double yGiven : yValues) {
-			List<Double> xValues = new LinkedList<>();
-			for (Tuple<ActivityFacility, Double> tuple : accessibilitiesMap.keySet()) {
-				ActivityFacility activityFacility = tuple.getFirst();
-				double y = activityFacility.getCoord().getY();
-				if (y == yGiven) {
-					double x = activityFacility.getCoord().getX();
-					if (!xValues.contains(x)) {
-						xValues.add(x);
-					}
-				}
-			}
-			xValues.sort(Comparator.naturalOrder());
-			coordMap.put(yGiven, xValues);
-		}
+		List<Tuple<ActivityFacility, Double>> keys = new ArrayList<>(accessibilitiesMap.keySet());
+		keys.sort(Comparator.comparingDouble((Tuple<ActivityFacility, Double> tuple) -> tuple.getFirst().getCoord().getY())
+				.thenComparingDouble(tuple -> tuple.getFirst().getCoord().getX()));
 
 		Map<Tuple<ActivityFacility, Double>, Map<String,Double>> accessibilitiesMap2 = new LinkedHashMap<>();
-		for (double y : coordMap.keySet()) {
-			for (double x : coordMap.get(y)) {
-				for (Tuple<ActivityFacility, Double> tuple : accessibilitiesMap.keySet()) {
-					Coord coord = tuple.getFirst().getCoord();
-					if (coord.getX() == x && coord.getY() == y) {
-						accessibilitiesMap2.put(tuple, accessibilitiesMap.get(tuple));
-					}
-				}
-			}
+		for (Tuple<ActivityFacility, Double> tuple : keys) {
+			accessibilitiesMap2.put(tuple, accessibilitiesMap.get(tuple));
 		}
 		LOG.info("Finish sorting measure points.");
 		return accessibilitiesMap2;
@@ -58,6 +58,9 @@ public final class AccessibilityConfigGroup extends ReflectiveConfigGroup{
 
 	private static final String USE_PARALLELIZATION = "useParallelization";
 	private boolean useParallelization = true;
+
+	private static final String TRAVEL_TIME_CUTOFF = "travelTimeCutoff";
+	private double travelTimeCutoff = Double.POSITIVE_INFINITY;
 	
 //	private static final String ACCESSIBILITY_DESTINATION_SAMPLING_RATE = "accessibilityDestinationSamplingRate";
 //	private Double accessibilityDestinationSamplingRate;
@@ -127,6 +130,9 @@ public final class AccessibilityConfigGroup extends ReflectiveConfigGroup{
 //				"(reduces accuracy -- not recommended except when necessary for computational speed reasons)");
 		
 		map.put(ACCESSIBILITY_MEASURE_TYPE, "defines type of measure for accessibility computation.");
+
+		map.put(TRAVEL_TIME_CUTOFF, "maximum travel time on the network (in seconds) for network-based modes; opportunities " +
+				"further away do not contribute to the accessibility. Default: Infinity, i.e. no cutoff.");
 		
 		map.put(USING_CUSTOM_BOUNDING_BOX, "true if custom bounding box should be used for accessibility computation (otherwise e.g. extent of network will be used)");
 		map.put(BOUNDING_BOX_BOTTOM,"custom bounding box parameters for accessibility computation (if enabled)");
@@ -236,6 +242,22 @@ public final class AccessibilityConfigGroup extends ReflectiveConfigGroup{
 	public void setUseParallelization(Boolean useParallelization) {
 		this.useParallelization = useParallelization;
 	}
+	@StringGetter(TRAVEL_TIME_CUTOFF)
+	public double getTravelTimeCutoff() {
+		return travelTimeCutoff;
+	}
+	/**
+	 * Set the maximum travel time (in seconds) on the network for network-based modes. The least-cost path trees are
+	 * not expanded beyond this travel time, and opportunities that cannot be reached within it do not contribute to
+	 * the accessibility.
+	 */
+	@StringSetter(TRAVEL_TIME_CUTOFF)
+	public void setTravelTimeCutoff(double travelTimeCutoff) {
+		if (travelTimeCutoff <= 0) {
+			throw new IllegalArgumentException("Travel time cutoff must be greater than zero.");
+		}
+		this.travelTimeCutoff = travelTimeCutoff;
+	}
     @StringGetter(WEIGHT_EXPONENT)
     public double getWeightExponent() {
     	return weightExponent;
@@ -10,16 +10,19 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.contrib.accessibility.utils.*;
 import org.matsim.contrib.roadpricing.RoadPricingScheme;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
 import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
+import org.matsim.core.router.speedy.LeastCostPathTree;
+import org.matsim.core.router.speedy.SpeedyGraph;
 import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.misc.OptionalTime;
 import org.matsim.facilities.ActivityFacilities;
 import org.matsim.facilities.ActivityFacility;
-import org.matsim.utils.leastcostpathtree.LeastCostPathTree;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -27,6 +30,13 @@ import java.util.Map;
 import java.util.Set;
 
 /**
+ * Computes the accessibility contributions of network-based modes.
+ *
+ * The least-cost path trees are calculated on a {@link SpeedyGraph} that is shared by all copies of the calculator,
+ * while every copy (i.e. every thread) re-uses its own {@link LeastCostPathTree} for all its origin nodes.
+ * If a travel time cutoff is configured in the {@link AccessibilityConfigGroup}, the trees are not expanded
+ * beyond it and opportunities further away do not contribute.
+ *
  * @author thibautd, dziemke
  */
 final class NetworkModeAccessibilityExpContributionCalculator implements AccessibilityContributionCalculator {
@@ -41,11 +51,15 @@ final class NetworkModeAccessibilityExpContributionCalculator implements Accessi
 	private final PlanCalcScoreConfigGroup planCalcScoreConfigGroup;
 
 	private Network subNetwork;
+	private SpeedyGraph speedyGraph;
+	private final double travelTimeCutoff;
+	private final LeastCostPathTree.StopCriterion stopCriterion;
 
 	private double betaWalkTT;
 	private double walkSpeed_m_s;
 
 	private Node fromNode = null;
+	private double departureTime;
 	private LeastCostPathTree lcpt;
 	//private final DijkstraTree dijkstraTree;
 	//private final MultiNodePathCalculator multiNodePathCalculator;
@@ -53,7 +67,9 @@ final class NetworkModeAccessibilityExpContributionCalculator implements Accessi
 
 	private Map<Id<? extends BasicLocation>, ArrayList<ActivityFacility>> aggregatedMeasurePoints;
 	private Map<Id<? extends BasicLocation>, AggregationObject> aggregatedOpportunities;
-
+	// the aggregated opportunities as flat arrays, so the loop over all destinations does not need to go through the map
+	private int[] opportunityNodeIndices;
+	private double[] opportunitySums;
 
 
 	public NetworkModeAccessibilityExpContributionCalculator(String mode, final TravelTime travelTime, final TravelDisutilityFactory travelDisutilityFactory, Scenario scenario) {
@@ -69,7 +85,7 @@ final class NetworkModeAccessibilityExpContributionCalculator implements Accessi
 
 		RoadPricingScheme scheme = (RoadPricingScheme) scenario.getScenarioElement( RoadPricingScheme.ELEMENT_NAME );
 //		this.lcpt = new LeastCostPathTreeExtended(travelTime, travelDisutility, scheme);
-		this.lcpt = new LeastCostPathTree(travelTime, travelDisutility);
+		// the tree is only created once the graph is available, see initialize() and duplicate()
 		//this.dijkstraTree = new DijkstraTree(network, travelDisutility, travelTime);
 		//FastMultiNodeDijkstraFactory fastMultiNodeDijkstraFactory = new FastMultiNodeDijkstraFactory(true);
 		//this.multiNodePathCalculator = (MultiNodePathCalculator) fastMultiNodeDijkstraFactory.createPathCalculator(network, travelDisutility, travelTime);
@@ -77,6 +93,10 @@ final class NetworkModeAccessibilityExpContributionCalculator implements Accessi
 		betaWalkTT = planCalcScoreConfigGroup.getModes().get(TransportMode.walk).getMarginalUtilityOfTraveling() - planCalcScoreConfigGroup.getPerforming_utils_hr();
 
 		this.walkSpeed_m_s = scenario.getConfig().plansCalcRoute().getTeleportedModeSpeeds().get(TransportMode.walk);
+
+		AccessibilityConfigGroup acg = ConfigUtils.addOrGetModule(scenario.getConfig(), AccessibilityConfigGroup.class);
+		this.travelTimeCutoff = acg.getTravelTimeCutoff();
+		this.stopCriterion = Double.isInfinite(this.travelTimeCutoff) ? null : new LeastCostPathTree.TravelTimeStopCriterion(this.travelTimeCutoff);
 	}
 
 
@@ -98,13 +118,30 @@ final class NetworkModeAccessibilityExpContributionCalculator implements Accessi
 
         this.aggregatedMeasurePoints = AccessibilityUtils.aggregateMeasurePointsWithSameNearestNode(measuringPoints, subNetwork);
 		this.aggregatedOpportunities = AccessibilityUtils.aggregateOpportunitiesWithSameNearestNode(opportunities, subNetwork, scenario.getConfig());
+
+		this.opportunityNodeIndices = new int[this.aggregatedOpportunities.size()];
+		this.opportunitySums = new double[this.aggregatedOpportunities.size()];
+		int i = 0;
+		for (AggregationObject destination : this.aggregatedOpportunities.values()) {
+			this.opportunityNodeIndices[i] = ((Node) destination.getNearestBasicLocation()).getId().index();
+			this.opportunitySums[i] = destination.getSum();
+			i++;
+		}
+
+		this.speedyGraph = new SpeedyGraph(subNetwork);
+		this.lcpt = new LeastCostPathTree(this.speedyGraph, travelTime, travelDisutility);
 	}
 
 
 	@Override
 	public void notifyNewOriginNode(Id<? extends BasicLocation> fromNodeId, Double departureTime) {
 		this.fromNode = subNetwork.getNodes().get(fromNodeId);
-		this.lcpt.calculate(subNetwork, fromNode, departureTime);
+		this.departureTime = departureTime;
+		if (this.stopCriterion == null) {
+			this.lcpt.calculate(fromNode.getId().index(), departureTime, null, null);
+		} else {
+			this.lcpt.calculate(fromNode.getId().index(), departureTime, null, null, this.stopCriterion);
+		}
 		//this.dijkstraTree.calcLeastCostPathTree(fromNode, departureTime);
 		//multiNodePathCalculator.calcLeastCostPath(fromNode, aggregatedToNodes, departureTime, null, null);
 	}
@@ -133,22 +170,40 @@ final class NetworkModeAccessibilityExpContributionCalculator implements Accessi
 		// Combine all utility components (using the identity: exp(a+b) = exp(a) * exp(b))
 		double modeSpecificConstant = AccessibilityUtils.getModeSpecificConstantForAccessibilities(mode, planCalcScoreConfigGroup);
 
-		for (final AggregationObject destination : aggregatedOpportunities.values()) {
-
-
-
-			// Remaining travel on network
-			double congestedCarUtility = -lcpt.getTree().get(((Node) destination.getNearestBasicLocation()).getId()).getCost();
-			//double congestedCarUtility = - dijkstraTree.getLeastCostPath(destination.getNearestNode()).travelCost;
-			//double congestedCarUtility = - multiNodePathCalculator.constructPath(fromNode, destination.getNearestNode(), departureTime).travelCost;
+		double originUtility = walkUtilityMeasuringPoint2Road + modeSpecificConstant + congestedCarUtilityRoad2Node;
+		double brainExpBeta = this.planCalcScoreConfigGroup.getBrainExpBeta();
+
+		if (aggregatedOpportunities == this.aggregatedOpportunities) {
+			for (int i = 0; i < this.opportunityNodeIndices.length; i++) {
+				int toNodeIndex = this.opportunityNodeIndices[i];
+				if (isReached(toNodeIndex)) {
+					// Remaining travel on network
+					double congestedCarUtility = -lcpt.getCost(toNodeIndex);
+					// Pre-computed effect of all opportunities reachable from destination network node
+					expSum += Math.exp(brainExpBeta * (originUtility + congestedCarUtility)) * this.opportunitySums[i];
+				}
+			}
+		} else {
+			for (final AggregationObject destination : aggregatedOpportunities.values()) {
+				int toNodeIndex = ((Node) destination.getNearestBasicLocation()).getId().index();
+				if (isReached(toNodeIndex)) {
+					double congestedCarUtility = -lcpt.getCost(toNodeIndex);
+					expSum += Math.exp(brainExpBeta * (originUtility + congestedCarUtility)) * destination.getSum();
+				}
+			}
+		}
+		return expSum;
+	}
 
-			// Pre-computed effect of all opportunities reachable from destination network node
-			double sumExpVjkWalk = destination.getSum();
 
-				expSum += Math.exp(this.planCalcScoreConfigGroup.getBrainExpBeta() * (walkUtilityMeasuringPoint2Road + modeSpecificConstant
-					+ congestedCarUtilityRoad2Node + congestedCarUtility)) * sumExpVjkWalk;
+	private boolean isReached(int toNodeIndex) {
+		if (this.stopCriterion == null) {
+			// nodes that cannot be reached have infinite costs, and thus do not contribute anyway
+			return true;
 		}
-		return expSum;
+		// the tree is ordered by cost, not by time, so it may contain nodes beyond the cutoff when it is stopped
+		OptionalTime arrivalTime = lcpt.getTime(toNodeIndex);
+		return arrivalTime.isDefined() && arrivalTime.seconds() - this.departureTime <= this.travelTimeCutoff;
 	}
 
 
@@ -166,6 +221,12 @@ final class NetworkModeAccessibilityExpContributionCalculator implements Accessi
 		networkModeAccessibilityExpContributionCalculator.subNetwork = this.subNetwork;
 		networkModeAccessibilityExpContributionCalculator.aggregatedMeasurePoints = this.aggregatedMeasurePoints;
 		networkModeAccessibilityExpContributionCalculator.aggregatedOpportunities = this.aggregatedOpportunities;
+		networkModeAccessibilityExpContributionCalculator.opportunityNodeIndices = this.opportunityNodeIndices;
+		networkModeAccessibilityExpContributionCalculator.opportunitySums = this.opportunitySums;
+		// share the graph, but every copy needs its own tree as it is not thread-safe
+		networkModeAccessibilityExpContributionCalculator.speedyGraph = this.speedyGraph;
+		networkModeAccessibilityExpContributionCalculator.lcpt = new LeastCostPathTree(this.speedyGraph,
+				networkModeAccessibilityExpContributionCalculator.travelTime, networkModeAccessibilityExpContributionCalculator.travelDisutility);
 		return networkModeAccessibilityExpContributionCalculator;
 	}
 
@@ -112,6 +112,58 @@ public class TinyAccessibilityTest {
 		controler.run();
 	}
 
+	@Test
+	public void testWithBoundingBox_TravelTimeCutoff() {
+		final ResultsCollector uncut = new ResultsCollector();
+		runWithBoundingBox(createTestConfig(), uncut);
+
+		// at freespeed, the opportunities are 26 to 133 seconds away from the nodes, so some are beyond the cutoff
+		final Config config = createTestConfig();
+		config.controler().setOutputDirectory(utils.getOutputDirectory() + "cutoff/");
+		ConfigUtils.addOrGetModule(config, AccessibilityConfigGroup.class).setTravelTimeCutoff(45.);
+		final ResultsCollector cut = new ResultsCollector();
+		runWithBoundingBox(config, cut);
+
+		Assert.assertFalse(uncut.accessibilities.isEmpty());
+		Assert.assertEquals(uncut.accessibilities.keySet(), cut.accessibilities.keySet());
+		int lower = 0;
+		for (Map.Entry<Coord, Map<String, Double>> entry : uncut.accessibilities.entrySet()) {
+			for (String mode : Arrays.asList("freespeed", TransportMode.car)) {
+				double uncutAccessibility = entry.getValue().get(mode);
+				double cutAccessibility = cut.accessibilities.get(entry.getKey()).get(mode);
+				Assert.assertTrue("excluding opportunities must not increase the accessibility at " + entry.getKey(),
+						cutAccessibility <= uncutAccessibility + MatsimTestUtils.EPSILON);
+				if (cutAccessibility < uncutAccessibility - MatsimTestUtils.EPSILON) {
+					lower++;
+				}
+			}
+		}
+		Assert.assertTrue("the cutoff should exclude opportunities", lower > 0);
+	}
+
+	private void runWithBoundingBox(Config config, FacilityDataExchangeInterface listener) {
+		double min = 0.; // Values for bounding box usually come from a config file
+		double max = 200.;
+
+		AccessibilityConfigGroup acg = ConfigUtils.addOrGetModule(config, AccessibilityConfigGroup.class) ;
+		acg.setAreaOfAccessibilityComputation(AreaOfAccesssibilityComputation.fromBoundingBox);
+		acg.setBoundingBoxBottom(min);
+		acg.setBoundingBoxTop(max);
+		acg.setBoundingBoxLeft(min);
+		acg.setBoundingBoxRight(max);
+		acg.setUseParallelization(false);
+
+		final Scenario sc = createTestScenario(config);
+
+		Controler controler = new Controler(sc);
+
+		final AccessibilityModule module = new AccessibilityModule();
+		module.addFacilityDataExchangeListener(listener);
+		controler.addOverridingModule(module);
+
+		controler.run();
+	}
+
 
 	private Config createTestConfig() {
 		final Config config = ConfigUtils.createConfig();
@@ -242,6 +294,19 @@ public class TinyAccessibilityTest {
 	}
 
 
+	static class ResultsCollector implements FacilityDataExchangeInterface {
+		private final Map<Coord, Map<String, Double>> accessibilities = new HashMap<>();
+
+		@Override
+		public void setFacilityAccessibilities(ActivityFacility measurePoint, Double timeOfDay, String mode, double accessibility) {
+			accessibilities.computeIfAbsent(measurePoint.getCoord(), coord -> new HashMap<>()).put(mode, accessibility);
+		}
+
+		@Override
+		public void finish() {
+		}
+	}
+
 	static class ResultsComparator implements FacilityDataExchangeInterface{
 		private Map<Tuple<ActivityFacility, Double>, Map<String,Double>> accessibilitiesMap = new HashMap<>() ;
 
@@ -19,12 +19,15 @@
 
 package org.matsim.contrib.drt.optimizer.insertion;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ForkJoinPool;
 import java.util.function.DoubleSupplier;
 import java.util.stream.Collectors;
@@ -62,6 +65,7 @@ public class DefaultUnplannedRequestInserter implements UnplannedRequestInserter
 
 	private final ForkJoinPool forkJoinPool;
 	private final DrtInsertionSearch<PathData> insertionSearch;
+	private final boolean batchInsertion;
 
 	public DefaultUnplannedRequestInserter(DrtConfigGroup drtCfg, Fleet fleet, MobsimTimer mobsimTimer,
 			EventsManager eventsManager, RequestInsertionScheduler insertionScheduler,
@@ -69,14 +73,15 @@ public class DefaultUnplannedRequestInserter implements UnplannedRequestInserter
 			ForkJoinPool forkJoinPool) {
 		this(drtCfg.getMode(), fleet, mobsimTimer::getTimeOfDay, eventsManager, insertionScheduler, vehicleEntryFactory,
 				new DrtRequestInsertionRetryQueue(drtCfg.getDrtRequestInsertionRetryParams().
-						orElse(new DrtRequestInsertionRetryParams())), forkJoinPool, insertionSearch);
+						orElse(new DrtRequestInsertionRetryParams())), forkJoinPool, insertionSearch,
+				drtCfg.isBatchRequestInsertion());
 	}
 
 	@VisibleForTesting
 	DefaultUnplannedRequestInserter(String mode, Fleet fleet, DoubleSupplier timeOfDay, EventsManager eventsManager,
 			RequestInsertionScheduler insertionScheduler, VehicleEntry.EntryFactory vehicleEntryFactory,
 			DrtRequestInsertionRetryQueue insertionRetryQueue, ForkJoinPool forkJoinPool,
-			DrtInsertionSearch<PathData> insertionSearch) {
+			DrtInsertionSearch<PathData> insertionSearch, boolean batchInsertion) {
 		this.mode = mode;
 		this.fleet = fleet;
 		this.timeOfDay = timeOfDay;
@@ -86,6 +91,7 @@ public class DefaultUnplannedRequestInserter implements UnplannedRequestInserter
 		this.insertionRetryQueue = insertionRetryQueue;
 		this.forkJoinPool = forkJoinPool;
 		this.insertionSearch = insertionSearch;
+		this.batchInsertion = batchInsertion;
 	}
 
 	@Override
@@ -104,6 +110,15 @@ public class DefaultUnplannedRequestInserter implements UnplannedRequestInserter
 				.filter(Objects::nonNull)
 				.collect(Collectors.toMap(e -> e.vehicle.getId(), e -> e))).join();
 
+		if (batchInsertion) {
+			//first old requests, then new requests (as below)
+			List<DrtRequest> requests = new ArrayList<>(requestsToRetry);
+			requests.addAll(unplannedRequests);
+			scheduleUnplannedRequestBatch(requests, vehicleEntries, now);
+			unplannedRequests.clear();
+			return;
+		}
+
 		//first retry scheduling old requests
 		requestsToRetry.forEach(req -> scheduleUnplannedRequest(req, vehicleEntries, now));
 
@@ -114,10 +129,40 @@ public class DefaultUnplannedRequestInserter implements UnplannedRequestInserter
 		}
 	}
 
+	private void scheduleUnplannedRequestBatch(List<DrtRequest> requests,
+			Map<Id<DvrpVehicle>, VehicleEntry> vehicleEntries, double now) {
+		//find the best insertions of all requests in parallel (as if none of the other requests was inserted)
+		var initialVehicleEntries = Collections.unmodifiableCollection(vehicleEntries.values());
+		var bestInsertions = forkJoinPool.submit(() -> requests.parallelStream()
+				.map(req -> insertionSearch.findBestInsertion(req, initialVehicleEntries))
+				.collect(Collectors.toList())).join();
+
+		//then schedule them in the original order; if another request has already been inserted into the vehicle,
+		//the best insertion may have become infeasible (or worse), so search again with the updated vehicle entries;
+		//likewise, a request without any insertion may have become insertable into one of the modified vehicles
+		Set<Id<DvrpVehicle>> modifiedVehicles = new HashSet<>();
+		for (int i = 0; i < requests.size(); i++) {
+			var req = requests.get(i);
+			var best = bestInsertions.get(i);
+			if (best.isEmpty() ?
+					!modifiedVehicles.isEmpty() :
+					modifiedVehicles.contains(best.get().getVehicleEntry().vehicle.getId())) {
+				best = insertionSearch.findBestInsertion(req, Collections.unmodifiableCollection(vehicleEntries.values()));
+			}
+			scheduleUnplannedRequest(req, best, vehicleEntries, now);
+			best.ifPresent(insertion -> modifiedVehicles.add(insertion.getVehicleEntry().vehicle.getId()));
+		}
+	}
+
 	private void scheduleUnplannedRequest(DrtRequest req, Map<Id<DvrpVehicle>, VehicleEntry> vehicleEntries,
 			double now) {
 		Optional<InsertionWithDetourData<PathData>> best = insertionSearch.findBestInsertion(req,
 				Collections.unmodifiableCollection(vehicleEntries.values()));
+		scheduleUnplannedRequest(req, best, vehicleEntries, now);
+	}
+
+	private void scheduleUnplannedRequest(DrtRequest req, Optional<InsertionWithDetourData<PathData>> best,
+			Map<Id<DvrpVehicle>, VehicleEntry> vehicleEntries, double now) {
 		if (best.isEmpty()) {
 			if (!insertionRetryQueue.tryAddFailedRequest(req, now)) {
 				eventsManager.processEvent(
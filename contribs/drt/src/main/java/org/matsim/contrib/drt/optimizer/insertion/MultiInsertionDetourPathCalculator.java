@@ -23,10 +23,13 @@ import static org.matsim.contrib.drt.optimizer.insertion.InsertionGenerator.Inse
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import javax.inject.Named;
@@ -55,10 +58,25 @@ import com.google.common.annotations.VisibleForTesting;
 public class MultiInsertionDetourPathCalculator implements DetourPathCalculator, MobsimBeforeCleanupListener {
 	public static final int MAX_THREADS = 4;
 
-	private final OneToManyPathSearch toPickupPathSearch;
-	private final OneToManyPathSearch fromPickupPathSearch;
-	private final OneToManyPathSearch toDropoffPathSearch;
-	private final OneToManyPathSearch fromDropoffPathSearch;
+	private static class PathSearches {
+		private final OneToManyPathSearch toPickupPathSearch;
+		private final OneToManyPathSearch fromPickupPathSearch;
+		private final OneToManyPathSearch toDropoffPathSearch;
+		private final OneToManyPathSearch fromDropoffPathSearch;
+
+		private PathSearches(OneToManyPathSearch toPickupPathSearch, OneToManyPathSearch fromPickupPathSearch,
+				OneToManyPathSearch toDropoffPathSearch, OneToManyPathSearch fromDropoffPathSearch) {
+			this.toPickupPathSearch = toPickupPathSearch;
+			this.fromPickupPathSearch = fromPickupPathSearch;
+			this.toDropoffPathSearch = toDropoffPathSearch;
+			this.fromDropoffPathSearch = fromDropoffPathSearch;
+		}
+	}
+
+	// path searches are not thread-safe; with batch request insertion, paths are calculated for several requests
+	// at the same time, each taking its own searches from the pool
+	private final Queue<PathSearches> pathSearchesPool = new ConcurrentLinkedQueue<>();
+	private final Supplier<PathSearches> pathSearchesFactory;
 
 	private final ExecutorService executorService;
 
@@ -69,20 +87,26 @@ public class MultiInsertionDetourPathCalculator implements DetourPathCalculator,
 		IdMap<Node, Node> nodeMap = new IdMap<>(Node.class);
 		nodeMap.putAll(network.getNodes());
 
-		toPickupPathSearch = OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, true);
-		fromPickupPathSearch = OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, true);
-		toDropoffPathSearch = OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, true);
-		fromDropoffPathSearch = OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, true);
-		executorService = Executors.newFixedThreadPool(Math.min(drtCfg.getNumberOfThreads(), MAX_THREADS));
+		// lazily created paths are only valid until the search is used again, which is too early for batch insertion
+		// (the searches are reused for other requests of the batch before the best insertion gets scheduled)
+		boolean lazyPathCreation = !drtCfg.isBatchRequestInsertion();
+		pathSearchesFactory = () -> new PathSearches(
+				OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, lazyPathCreation),
+				OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, lazyPathCreation),
+				OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, lazyPathCreation),
+				OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, lazyPathCreation));
+		// a single request uses up to 4 threads, a batch of requests all threads
+		executorService = Executors.newFixedThreadPool(drtCfg.isBatchRequestInsertion() ?
+				drtCfg.getNumberOfThreads() :
+				Math.min(drtCfg.getNumberOfThreads(), MAX_THREADS));
 	}
 
 	@VisibleForTesting
 	MultiInsertionDetourPathCalculator(OneToManyPathSearch toPickupPathSearch, OneToManyPathSearch fromPickupPathSearch,
 			OneToManyPathSearch toDropoffPathSearch, OneToManyPathSearch fromDropoffPathSearch, int numberOfThreads) {
-		this.toPickupPathSearch = toPickupPathSearch;
-		this.fromPickupPathSearch = fromPickupPathSearch;
-		this.toDropoffPathSearch = toDropoffPathSearch;
-		this.fromDropoffPathSearch = fromDropoffPathSearch;
+		var pathSearches = new PathSearches(toPickupPathSearch, fromPickupPathSearch, toDropoffPathSearch,
+				fromDropoffPathSearch);
+		pathSearchesFactory = () -> pathSearches;// no concurrent calls in tests
 		executorService = Executors.newFixedThreadPool(Math.min(numberOfThreads, MAX_THREADS));
 	}
 
@@ -90,20 +114,29 @@ public class MultiInsertionDetourPathCalculator implements DetourPathCalculator,
 	public DetourData<PathData> calculatePaths(DrtRequest drtRequest, List<Insertion> filteredInsertions) {
 		// with vehicle insertion filtering -- pathsToPickup is the most computationally demanding task, while
 		// pathsFromDropoff is the least demanding one
-		var pathsToPickupFuture = executorService.submit(() -> calcPathsToPickup(drtRequest, filteredInsertions));
-		var pathsFromPickupFuture = executorService.submit(() -> calcPathsFromPickup(drtRequest, filteredInsertions));
-		var pathsToDropoffFuture = executorService.submit(() -> calcPathsToDropoff(drtRequest, filteredInsertions));
-		var pathsFromDropoffFuture = executorService.submit(() -> calcPathsFromDropoff(drtRequest, filteredInsertions));
+		PathSearches pooledPathSearches = pathSearchesPool.poll();
+		PathSearches pathSearches = pooledPathSearches != null ? pooledPathSearches : pathSearchesFactory.get();
+		var pathsToPickupFuture = executorService.submit(
+				() -> calcPathsToPickup(pathSearches.toPickupPathSearch, drtRequest, filteredInsertions));
+		var pathsFromPickupFuture = executorService.submit(
+				() -> calcPathsFromPickup(pathSearches.fromPickupPathSearch, drtRequest, filteredInsertions));
+		var pathsToDropoffFuture = executorService.submit(
+				() -> calcPathsToDropoff(pathSearches.toDropoffPathSearch, drtRequest, filteredInsertions));
+		var pathsFromDropoffFuture = executorService.submit(
+				() -> calcPathsFromDropoff(pathSearches.fromDropoffPathSearch, drtRequest, filteredInsertions));
 
 		try {
 			return new DetourData<>(pathsToPickupFuture.get(), pathsFromPickupFuture.get(), pathsToDropoffFuture.get(),
 					pathsFromDropoffFuture.get(), PathData.EMPTY);
 		} catch (InterruptedException | ExecutionException e) {
 			throw new RuntimeException(e);
+		} finally {
+			pathSearchesPool.add(pathSearches);
 		}
 	}
 
-	private Map<Link, PathData> calcPathsToPickup(DrtRequest drtRequest, List<Insertion> filteredInsertions) {
+	private Map<Link, PathData> calcPathsToPickup(OneToManyPathSearch toPickupPathSearch, DrtRequest drtRequest,
+			List<Insertion> filteredInsertions) {
 		// calc backward dijkstra from pickup to ends of selected stops + starts
 		double earliestPickupTime = drtRequest.getEarliestStartTime(); // optimistic
 		Collection<Link> toLinks = getDetourLinks(filteredInsertions.stream(),
@@ -111,7 +144,8 @@ public class MultiInsertionDetourPathCalculator implements DetourPathCalculator,
 		return toPickupPathSearch.calcPathDataMap(drtRequest.getFromLink(), toLinks, earliestPickupTime, false);
 	}
 
-	private Map<Link, PathData> calcPathsFromPickup(DrtRequest drtRequest, List<Insertion> filteredInsertions) {
+	private Map<Link, PathData> calcPathsFromPickup(OneToManyPathSearch fromPickupPathSearch, DrtRequest drtRequest,
+			List<Insertion> filteredInsertions) {
 		// calc forward dijkstra from pickup to beginnings of selected stops + dropoff
 		double earliestPickupTime = drtRequest.getEarliestStartTime(); // optimistic
 		Collection<Link> toLinks = getDetourLinks(filteredInsertions.stream(),
@@ -119,7 +153,8 @@ public class MultiInsertionDetourPathCalculator implements DetourPathCalculator,
 		return fromPickupPathSearch.calcPathDataMap(drtRequest.getFromLink(), toLinks, earliestPickupTime, true);
 	}
 
-	private Map<Link, PathData> calcPathsToDropoff(DrtRequest drtRequest, List<Insertion> filteredInsertions) {
+	private Map<Link, PathData> calcPathsToDropoff(OneToManyPathSearch toDropoffPathSearch, DrtRequest drtRequest,
+			List<Insertion> filteredInsertions) {
 		// calc backward dijkstra from dropoff to ends of selected stops
 		double latestDropoffTime = drtRequest.getLatestArrivalTime(); // pessimistic
 		Collection<Link> toLinks = getDetourLinks(filteredInsertions.stream()
@@ -128,7 +163,8 @@ public class MultiInsertionDetourPathCalculator implements DetourPathCalculator,
 		return toDropoffPathSearch.calcPathDataMap(drtRequest.getToLink(), toLinks, latestDropoffTime, false);
 	}
 
-	private Map<Link, PathData> calcPathsFromDropoff(DrtRequest drtRequest, List<Insertion> filteredInsertions) {
+	private Map<Link, PathData> calcPathsFromDropoff(OneToManyPathSearch fromDropoffPathSearch, DrtRequest drtRequest,
+			List<Insertion> filteredInsertions) {
 		// calc forward dijkstra from dropoff to beginnings of selected stops
 		double latestDropoffTime = drtRequest.getLatestArrivalTime(); // pessimistic
 		Collection<Link> toLinks = getDetourLinks(filteredInsertions.stream()
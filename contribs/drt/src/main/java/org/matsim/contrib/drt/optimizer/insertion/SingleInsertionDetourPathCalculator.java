@@ -26,10 +26,13 @@ import static org.matsim.contrib.dvrp.path.VrpPaths.FIRST_LINK_TT;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import javax.inject.Named;
 
@@ -61,28 +64,42 @@ public class SingleInsertionDetourPathCalculator implements DetourPathCalculator
 
 	public static final int MAX_THREADS = 4;
 
-	private final LeastCostPathCalculator toPickupPathSearch;
-	private final LeastCostPathCalculator fromPickupPathSearch;
-	private final LeastCostPathCalculator toDropoffPathSearch;
-	private final LeastCostPathCalculator fromDropoffPathSearch;
+	private static class PathSearches {
+		private final LeastCostPathCalculator toPickupPathSearch;
+		private final LeastCostPathCalculator fromPickupPathSearch;
+		private final LeastCostPathCalculator toDropoffPathSearch;
+		private final LeastCostPathCalculator fromDropoffPathSearch;
+
+		private PathSearches(Supplier<LeastCostPathCalculator> pathCalculatorSupplier) {
+			toPickupPathSearch = pathCalculatorSupplier.get();
+			fromPickupPathSearch = pathCalculatorSupplier.get();
+			toDropoffPathSearch = pathCalculatorSupplier.get();
+			fromDropoffPathSearch = pathCalculatorSupplier.get();
+		}
+	}
+
+	// path calculators are not thread-safe; with batch request insertion, paths are calculated for several requests
+	// at the same time, each taking its own calculators from the pool
+	private final Queue<PathSearches> pathSearchesPool = new ConcurrentLinkedQueue<>();
+	private final Supplier<PathSearches> pathSearchesFactory;
 
 	private final ExecutorService executorService;
 
 	public SingleInsertionDetourPathCalculator(Network network,
 			@Named(DvrpTravelTimeModule.DVRP_ESTIMATED) TravelTime travelTime, TravelDisutility travelDisutility,
 			DrtConfigGroup drtCfg) {
-		this(network, travelTime, travelDisutility, drtCfg.getNumberOfThreads(),
+		this(network, travelTime, travelDisutility, drtCfg.getNumberOfThreads(), drtCfg.isBatchRequestInsertion(),
 				new FastAStarLandmarksFactory(drtCfg.getNumberOfThreads()));
 	}
 
 	@VisibleForTesting
 	SingleInsertionDetourPathCalculator(Network network, TravelTime travelTime, TravelDisutility travelDisutility,
-			int numberOfThreads, LeastCostPathCalculatorFactory pathCalculatorFactory) {
-		toPickupPathSearch = pathCalculatorFactory.createPathCalculator(network, travelDisutility, travelTime);
-		fromPickupPathSearch = pathCalculatorFactory.createPathCalculator(network, travelDisutility, travelTime);
-		toDropoffPathSearch = pathCalculatorFactory.createPathCalculator(network, travelDisutility, travelTime);
-		fromDropoffPathSearch = pathCalculatorFactory.createPathCalculator(network, travelDisutility, travelTime);
-		executorService = Executors.newFixedThreadPool(Math.min(numberOfThreads, MAX_THREADS));
+			int numberOfThreads, boolean batchRequestInsertion, LeastCostPathCalculatorFactory pathCalculatorFactory) {
+		pathSearchesFactory = () -> new PathSearches(
+				() -> pathCalculatorFactory.createPathCalculator(network, travelDisutility, travelTime));
+		// a single request uses up to 4 threads, a batch of requests all threads
+		executorService = Executors.newFixedThreadPool(
+				batchRequestInsertion ? numberOfThreads : Math.min(numberOfThreads, MAX_THREADS));
 	}
 
 	@Override
@@ -99,26 +116,29 @@ public class SingleInsertionDetourPathCalculator implements DetourPathCalculator
 		// TODO use times from InsertionWithDetourData<Double> as approximate departure times for Dijkstra (will require
 		//  passing it as an argument, instead of Insertion)
 
+		PathSearches pooledPathSearches = pathSearchesPool.poll();
+		PathSearches pathSearches = pooledPathSearches != null ? pooledPathSearches : pathSearchesFactory.get();
+
 		Future<Map<Link, PathData>> pathsToPickupFuture = executorService.submit(
 				() -> Map.of(insertion.pickup.previousWaypoint.getLink(),
-						calcPathData(toPickupPathSearch, insertion.pickup.previousWaypoint.getLink(), pickup,
+						calcPathData(pathSearches.toPickupPathSearch, insertion.pickup.previousWaypoint.getLink(), pickup,
 								earliestPickupTime)));
 
 		Future<Map<Link, PathData>> pathsFromPickupFuture = executorService.submit(
 				() -> Map.of(insertion.pickup.nextWaypoint.getLink(),
-						calcPathData(fromPickupPathSearch, pickup, insertion.pickup.nextWaypoint.getLink(),
+						calcPathData(pathSearches.fromPickupPathSearch, pickup, insertion.pickup.nextWaypoint.getLink(),
 								earliestPickupTime)));
 
 		Future<Map<Link, PathData>> pathsToDropoffFuture = insertion.dropoff.previousWaypoint instanceof Waypoint.Pickup ?
 				Futures.immediateFuture(ImmutableMap.of()) :
 				executorService.submit(() -> Map.of(insertion.dropoff.previousWaypoint.getLink(),
-						calcPathData(toDropoffPathSearch, insertion.dropoff.previousWaypoint.getLink(), dropoff,
+						calcPathData(pathSearches.toDropoffPathSearch, insertion.dropoff.previousWaypoint.getLink(), dropoff,
 								latestDropoffTime)));
 
 		Future<Map<Link, PathData>> pathsFromDropoffFuture = insertion.dropoff.nextWaypoint instanceof Waypoint.End ?
 				Futures.immediateFuture(ImmutableMap.of()) :
 				executorService.submit(() -> Map.of(insertion.dropoff.nextWaypoint.getLink(),
-						calcPathData(fromDropoffPathSearch, dropoff, insertion.dropoff.nextWaypoint.getLink(),
+						calcPathData(pathSearches.fromDropoffPathSearch, dropoff, insertion.dropoff.nextWaypoint.getLink(),
 								latestDropoffTime)));
 
 		try {
@@ -126,6 +146,8 @@ public class SingleInsertionDetourPathCalculator implements DetourPathCalculator
 					pathsFromDropoffFuture.get(), PathData.EMPTY);
 		} catch (InterruptedException | ExecutionException e) {
 			throw new RuntimeException(e);
+		} finally {
+			pathSearchesPool.add(pathSearches);
 		}
 	}
 
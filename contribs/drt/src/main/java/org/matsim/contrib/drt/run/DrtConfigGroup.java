@@ -142,6 +142,14 @@ public final class DrtConfigGroup extends ReflectiveConfigGroupWithConfigurableP
 					+ " Scales well up to 4, due to path data provision, the most computationally intensive part,"
 					+ " using up to 4 threads. Default value is 'min(4, no. of cores available to JVM)'";
 
+	public static final String BATCH_REQUEST_INSERTION = "batchRequestInsertion";
+	static final String BATCH_REQUEST_INSERTION_EXP =
+			"If true, the best insertions of all requests submitted in the same time step are searched for in"
+					+ " parallel (using numberOfThreads threads), and only requests whose best insertion is in a vehicle"
+					+ " that got another request of the batch in the meantime, or that have no insertion at all while"
+					+ " some vehicle got another request of the batch, are re-evaluated. Recommended for many"
+					+ " requests per time step. If false (default), requests are inserted one after another.";
+
 	@NotBlank
 	private String mode = TransportMode.drt; // travel mode (passengers'/customers' perspective)
 
@@ -188,6 +196,8 @@ public final class DrtConfigGroup extends ReflectiveConfigGroupWithConfigurableP
 	@Positive
 	private int numberOfThreads = Runtime.getRuntime().availableProcessors();
 
+	private boolean batchRequestInsertion = false;
+
 	@PositiveOrZero
 	private double advanceRequestPlanningHorizon = 0; // beta-feature; planning horizon for advance (prebooked) requests
 
@@ -318,6 +328,7 @@ public final class DrtConfigGroup extends ReflectiveConfigGroupWithConfigurableP
 		map.put(MAX_WALK_DISTANCE, MAX_WALK_DISTANCE_EXP);
 		map.put(TRANSIT_STOP_FILE, TRANSIT_STOP_FILE_EXP);
 		map.put(NUMBER_OF_THREADS, NUMBER_OF_THREADS_EXP);
+		map.put(BATCH_REQUEST_INSERTION, BATCH_REQUEST_INSERTION_EXP);
 		map.put(REJECT_REQUEST_IF_MAX_WAIT_OR_TRAVEL_TIME_VIOLATED,
 				REJECT_REQUEST_IF_MAX_WAIT_OR_TRAVEL_TIME_VIOLATED_EXP);
 		map.put(DRT_SERVICE_AREA_SHAPE_FILE, DRT_SERVICE_AREA_SHAPE_FILE_EXP);
@@ -616,6 +627,23 @@ public final class DrtConfigGroup extends ReflectiveConfigGroupWithConfigurableP
 		return this;
 	}
 
+	/**
+	 * @return -- {@value #BATCH_REQUEST_INSERTION_EXP}
+	 */
+	@StringGetter(BATCH_REQUEST_INSERTION)
+	public boolean isBatchRequestInsertion() {
+		return batchRequestInsertion;
+	}
+
+	/**
+	 * @param batchRequestInsertion -- {@value #BATCH_REQUEST_INSERTION_EXP}
+	 */
+	@StringSetter(BATCH_REQUEST_INSERTION)
+	public DrtConfigGroup setBatchRequestInsertion(boolean batchRequestInsertion) {
+		this.batchRequestInsertion = batchRequestInsertion;
+		return this;
+	}
+
 	public double getAdvanceRequestPlanningHorizon() {
 		return advanceRequestPlanningHorizon;
 	}
@@ -28,8 +28,13 @@ import static org.mockito.Mockito.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.lang3.mutable.MutableBoolean;
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.junit.Rule;
 import org.junit.Test;
@@ -60,6 +65,7 @@ public class DefaultUnplannedRequestInserterTest {
 	private static final String mode = "DRT_MODE";
 
 	private final DrtRequest request1 = request("r1", "from1", "to1");
+	private final DrtRequest request2 = request("r2", "from2", "to2");
 
 	private final EventsManager eventsManager = mock(EventsManager.class);
 
@@ -242,6 +248,150 @@ public class DefaultUnplannedRequestInserterTest {
 		assertThat(createEntryCounter.getValue()).isEqualTo(2);
 	}
 
+	@Test
+	public void batchInsertion_conflictingRequestIsReevaluated() {
+		var vehicle1 = vehicle("1");
+		var vehicle2 = vehicle("2");
+		var fleet = fleet(vehicle1, vehicle2);
+		var unplannedRequests = requests(request1, request2);
+		double now = 15;
+
+		var vehicle1Entry = new VehicleEntry(vehicle1, null, null);
+		var vehicle1UpdatedEntry = new VehicleEntry(vehicle1, null, null);
+		var vehicle2Entry = new VehicleEntry(vehicle2, null, null);
+		var vehicle1Scheduled = new MutableBoolean();
+		VehicleEntry.EntryFactory entryFactory = (vehicle, currentTime) -> vehicle == vehicle2 ?
+				vehicle2Entry :
+				vehicle1Scheduled.isTrue() ? vehicle1UpdatedEntry : vehicle1Entry;
+
+		//vehicle 1 is the best one for both requests, but only as long as it has not got any of them
+		var searchCounts = new ConcurrentHashMap<DrtRequest, AtomicInteger>();
+		DrtInsertionSearch<PathData> insertionSearch = (drtRequest, vEntries) -> {
+			searchCounts.computeIfAbsent(drtRequest, r -> new AtomicInteger()).incrementAndGet();
+			return Optional.of(insertion(vEntries.contains(vehicle1Entry) ? vehicle1Entry : vehicle2Entry));
+		};
+
+		RequestInsertionScheduler insertionScheduler = (request, insertion) -> {
+			if (insertion.getVehicleEntry().vehicle == vehicle1) {
+				vehicle1Scheduled.setTrue();
+			}
+			return pickupDropoffTaskPair(request, now);
+		};
+
+		//call insertion
+		newInserter(fleet, now, entryFactory, new DrtRequestInsertionRetryQueue(new DrtRequestInsertionRetryParams()),
+				insertionSearch, insertionScheduler, true).scheduleUnplannedRequests(unplannedRequests);
+
+		//request is removed from unplanned requests
+		assertThat(unplannedRequests).isEmpty();
+
+		//only request2 had to be searched for again
+		assertThat(searchCounts.get(request1).get()).isEqualTo(1);
+		assertThat(searchCounts.get(request2).get()).isEqualTo(2);
+
+		//ensure request scheduled events are emitted in the order of requests
+		assertThat(scheduledVehicles()).containsExactly(Map.entry(request1.getId(), vehicle1.getId()),
+				Map.entry(request2.getId(), vehicle2.getId()));
+	}
+
+	@Test
+	public void batchInsertion_requestWithoutInsertionIsReevaluated() {
+		var vehicle1 = vehicle("1");
+		var fleet = fleet(vehicle1);
+		var unplannedRequests = requests(request1, request2);
+		double now = 15;
+
+		var vehicle1Entry = new VehicleEntry(vehicle1, null, null);
+		var vehicle1UpdatedEntry = new VehicleEntry(vehicle1, null, null);
+		var vehicle1Scheduled = new MutableBoolean();
+		VehicleEntry.EntryFactory entryFactory = (vehicle, currentTime) -> vehicle1Scheduled.isTrue() ?
+				vehicle1UpdatedEntry :
+				vehicle1Entry;
+
+		//request2 can only be inserted (pooled) once vehicle 1 has got request1
+		var searchCounts = new ConcurrentHashMap<DrtRequest, AtomicInteger>();
+		DrtInsertionSearch<PathData> insertionSearch = (drtRequest, vEntries) -> {
+			searchCounts.computeIfAbsent(drtRequest, r -> new AtomicInteger()).incrementAndGet();
+			if (drtRequest == request1) {
+				return Optional.of(insertion(vehicle1Entry));
+			}
+			return vEntries.contains(vehicle1UpdatedEntry) ?
+					Optional.of(insertion(vehicle1UpdatedEntry)) :
+					Optional.empty();
+		};
+
+		RequestInsertionScheduler insertionScheduler = (request, insertion) -> {
+			vehicle1Scheduled.setTrue();
+			return pickupDropoffTaskPair(request, now);
+		};
+
+		//call insertion
+		newInserter(fleet, now, entryFactory, new DrtRequestInsertionRetryQueue(new DrtRequestInsertionRetryParams()),
+				insertionSearch, insertionScheduler, true).scheduleUnplannedRequests(unplannedRequests);
+
+		assertThat(unplannedRequests).isEmpty();
+
+		//request2 was searched for again after vehicle 1 had been modified
+		assertThat(searchCounts.get(request1).get()).isEqualTo(1);
+		assertThat(searchCounts.get(request2).get()).isEqualTo(2);
+
+		assertThat(scheduledVehicles()).containsExactly(Map.entry(request1.getId(), vehicle1.getId()),
+				Map.entry(request2.getId(), vehicle1.getId()));
+	}
+
+	@Test
+	public void batchInsertion_noConflicts() {
+		var vehicle1 = vehicle("1");
+		var vehicle2 = vehicle("2");
+		var fleet = fleet(vehicle1, vehicle2);
+		var unplannedRequests = requests(request1, request2);
+		double now = 15;
+
+		var vehicle1Entry = new VehicleEntry(vehicle1, null, null);
+		var vehicle2Entry = new VehicleEntry(vehicle2, null, null);
+		VehicleEntry.EntryFactory entryFactory = (vehicle, currentTime) -> vehicle == vehicle1 ?
+				vehicle1Entry :
+				vehicle2Entry;
+
+		var searchCount = new AtomicInteger();
+		DrtInsertionSearch<PathData> insertionSearch = (drtRequest, vEntries) -> {
+			searchCount.incrementAndGet();
+			return Optional.of(insertion(drtRequest == request1 ? vehicle1Entry : vehicle2Entry));
+		};
+
+		//call insertion
+		newInserter(fleet, now, entryFactory, new DrtRequestInsertionRetryQueue(new DrtRequestInsertionRetryParams()),
+				insertionSearch, (request, insertion) -> pickupDropoffTaskPair(request, now),
+				true).scheduleUnplannedRequests(unplannedRequests);
+
+		assertThat(unplannedRequests).isEmpty();
+		assertThat(searchCount.get()).isEqualTo(2);
+		assertThat(scheduledVehicles()).containsExactly(Map.entry(request1.getId(), vehicle1.getId()),
+				Map.entry(request2.getId(), vehicle2.getId()));
+	}
+
+	private InsertionWithDetourData<PathData> insertion(VehicleEntry vehicleEntry) {
+		return new InsertionWithDetourData<>(new InsertionGenerator.Insertion(vehicleEntry, null, null), null, null,
+				null, null);
+	}
+
+	private PickupDropoffTaskPair pickupDropoffTaskPair(DrtRequest request, double now) {
+		var pickupTask = new DrtStopTask(now + 10, now + 20, request.getFromLink());
+		pickupTask.addPickupRequest(request);
+		var dropoffTask = new DrtStopTask(now + 40, now + 50, request.getToLink());
+		dropoffTask.addDropoffRequest(request);
+		return new PickupDropoffTaskPair(pickupTask, dropoffTask);
+	}
+
+	private List<Map.Entry<Id<Request>, Id<DvrpVehicle>>> scheduledVehicles() {
+		ArgumentCaptor<PassengerRequestScheduledEvent> captor = ArgumentCaptor.forClass(
+				PassengerRequestScheduledEvent.class);
+		verify(eventsManager, atLeast(0)).processEvent(captor.capture());
+		var scheduledVehicles = new ArrayList<Map.Entry<Id<Request>, Id<DvrpVehicle>>>();
+		captor.getAllValues().forEach(e -> scheduledVehicles.add(Map.entry(e.getRequestId(), e.getVehicleId())));
+		return scheduledVehicles;
+	}
+
 	private Collection<DrtRequest> requests(DrtRequest... requests) {
 		return new ArrayList<>(Arrays.asList(requests));//returned collection needs to be modifiable
 	}
@@ -271,8 +421,16 @@ public class DefaultUnplannedRequestInserterTest {
 	private DefaultUnplannedRequestInserter newInserter(Fleet fleet, double now,
 			VehicleEntry.EntryFactory vehicleEntryFactory, DrtRequestInsertionRetryQueue insertionRetryQueue,
 			DrtInsertionSearch<PathData> insertionSearch, RequestInsertionScheduler insertionScheduler) {
+		return newInserter(fleet, now, vehicleEntryFactory, insertionRetryQueue, insertionSearch, insertionScheduler,
+				false);
+	}
+
+	private DefaultUnplannedRequestInserter newInserter(Fleet fleet, double now,
+			VehicleEntry.EntryFactory vehicleEntryFactory, DrtRequestInsertionRetryQueue insertionRetryQueue,
+			DrtInsertionSearch<PathData> insertionSearch, RequestInsertionScheduler insertionScheduler,
+			boolean batchInsertion) {
 		return new DefaultUnplannedRequestInserter(mode, fleet, () -> now, eventsManager, insertionScheduler,
-				vehicleEntryFactory, insertionRetryQueue, rule.forkJoinPool, insertionSearch);
+				vehicleEntryFactory, insertionRetryQueue, rule.forkJoinPool, insertionSearch, batchInsertion);
 	}
 
 	private Link link(String id) {
@@ -71,7 +71,7 @@ public class SingleInsertionDetourPathCalculatorTest {
 
 	private final LeastCostPathCalculator pathCalculator = mock(LeastCostPathCalculator.class);
 	private final SingleInsertionDetourPathCalculator detourPathCalculator = new SingleInsertionDetourPathCalculator(
-			null, null, null, 1, (network, travelCosts, travelTimes) -> pathCalculator);
+			null, null, null, 1, false, (network, travelCosts, travelTimes) -> pathCalculator);
 
 	@After
 	public void after() {
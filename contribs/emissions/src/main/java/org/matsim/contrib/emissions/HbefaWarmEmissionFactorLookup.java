@@ -0,0 +1,266 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * HbefaWarmEmissionFactorLookup.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.emissions;
+
+import org.matsim.contrib.emissions.utils.EmissionsConfigGroup.DetailedVsAverageLookupBehavior;
+import org.matsim.core.utils.collections.Tuple;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The warm emission factors of the average and the detailed hbefa table in flat arrays.  Road categories and pollutants are given dense
+ * integer codes, traffic situations and vehicle categories use their ordinal.  For each vehicle category and set of vehicle attributes,
+ * the emission factors are stored in one block indexed by road category, traffic situation and pollutant.
+ * <p>
+ * The fallbacks of the {@link DetailedVsAverageLookupBehavior} are resolved once per vehicle description in {@link #resolve}, so that
+ * looking up the emission factor of a link leave event is an array access without any key objects.
+ */
+final class HbefaWarmEmissionFactorLookup {
+
+	// where a resolved emission factor was found, in the order of the fallbacks:
+	static final byte MISSING = 0;
+	static final byte DETAILED = 1;
+	static final byte DETAILED_HBEFA4 = 2;
+	static final byte DETAILED_TECHNOLOGY_AVERAGE = 3;
+	static final byte AVERAGE_TABLE = 4;
+
+	private static final int N_TRAFFIC_SITUATIONS = HbefaTrafficSituation.values().length;
+
+	private final Map<String, Integer> roadCategoryCodes = new HashMap<>();
+	private final int[] pollutantCodes = new int[Pollutant.values().length];
+	private final int nPollutants;
+	private final int nCells;
+
+	private final Map<HbefaVehicleCategory, Map<HbefaVehicleAttributes, Block>> avgBlocks;
+	private final Map<HbefaVehicleCategory, Map<HbefaVehicleAttributes, Block>> detailedBlocks;
+
+	// indexed by vehicle category, road category and traffic situation; NaN if the speed is not given:
+	private final double[] trafficSpeeds;
+
+	HbefaWarmEmissionFactorLookup(Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable,
+								  Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable,
+								  Map<HbefaRoadVehicleCategoryKey, Map<HbefaTrafficSituation, Double>> hbefaRoadTrafficSpeeds) {
+		Arrays.fill(this.pollutantCodes, -1);
+		int pollutants = 0;
+		for (Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> table : Arrays.asList(avgHbefaWarmTable, detailedHbefaWarmTable)) {
+			if (table == null) {
+				continue;
+			}
+			for (HbefaWarmEmissionFactorKey key : table.keySet()) {
+				addRoadCategory(key.getRoadCategory());
+				if (this.pollutantCodes[key.getComponent().ordinal()] < 0) {
+					this.pollutantCodes[key.getComponent().ordinal()] = pollutants++;
+				}
+			}
+		}
+		if (hbefaRoadTrafficSpeeds != null) {
+			for (HbefaRoadVehicleCategoryKey key : hbefaRoadTrafficSpeeds.keySet()) {
+				addRoadCategory(key.getHbefaRoadCategory());
+			}
+		}
+		this.nPollutants = pollutants;
+		this.nCells = this.roadCategoryCodes.size() * N_TRAFFIC_SITUATIONS * this.nPollutants;
+
+		this.avgBlocks = createBlocks(avgHbefaWarmTable);
+		this.detailedBlocks = createBlocks(detailedHbefaWarmTable);
+
+		this.trafficSpeeds = new double[HbefaVehicleCategory.values().length * this.roadCategoryCodes.size() * N_TRAFFIC_SITUATIONS];
+		Arrays.fill(this.trafficSpeeds, Double.NaN);
+		if (hbefaRoadTrafficSpeeds != null) {
+			hbefaRoadTrafficSpeeds.forEach((key, speeds) -> speeds.forEach((trafficSituation, speed) ->
+					this.trafficSpeeds[getSpeedIndex(key.getHbefaVehicleCategory(), getRoadCategoryCode(key.getHbefaRoadCategory()),
+							trafficSituation)] = speed));
+		}
+	}
+
+	private void addRoadCategory(String roadCategory) {
+		if (!this.roadCategoryCodes.containsKey(roadCategory)) {
+			this.roadCategoryCodes.put(roadCategory, this.roadCategoryCodes.size());
+		}
+	}
+
+	private Map<HbefaVehicleCategory, Map<HbefaVehicleAttributes, Block>> createBlocks(
+			Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> table) {
+		Map<HbefaVehicleCategory, Map<HbefaVehicleAttributes, Block>> blocks = new EnumMap<>(HbefaVehicleCategory.class);
+		if (table == null) {
+			return blocks;
+		}
+		table.forEach((key, factor) -> {
+			Block block = blocks.computeIfAbsent(key.getVehicleCategory(), category -> new HashMap<>())
+					.computeIfAbsent(key.getVehicleAttributes(), attributes -> new Block(this.nCells));
+			int cell = getCell(getRoadCategoryCode(key.getRoadCategory()), key.getTrafficSituation(), key.getComponent());
+			block.factors[cell] = factor.getFactor();
+			block.speeds[cell] = factor.getSpeed();
+		});
+		return blocks;
+	}
+
+	/**
+	 * @return the code of the road category, or -1 if it is in none of the tables
+	 */
+	int getRoadCategoryCode(String roadCategory) {
+		Integer code = this.roadCategoryCodes.get(roadCategory);
+		return code == null ? -1 : code;
+	}
+
+	/**
+	 * @return the index of the emission factor in the arrays of {@link EmissionFactors}, or -1 if the road category or the pollutant is
+	 * in none of the tables
+	 */
+	int getCell(int roadCategory, HbefaTrafficSituation trafficSituation, Pollutant pollutant) {
+		int pollutantCode = this.pollutantCodes[pollutant.ordinal()];
+		if (roadCategory < 0 || pollutantCode < 0) {
+			return -1;
+		}
+		return (roadCategory * N_TRAFFIC_SITUATIONS + trafficSituation.ordinal()) * this.nPollutants + pollutantCode;
+	}
+
+	/**
+	 * @return the speed of the traffic situation on the road category, or NaN if it is not given
+	 */
+	double getTrafficSpeed(HbefaVehicleCategory vehicleCategory, int roadCategory, HbefaTrafficSituation trafficSituation) {
+		if (roadCategory < 0) {
+			return Double.NaN;
+		}
+		return this.trafficSpeeds[getSpeedIndex(vehicleCategory, roadCategory, trafficSituation)];
+	}
+
+	private int getSpeedIndex(HbefaVehicleCategory vehicleCategory, int roadCategory, HbefaTrafficSituation trafficSituation) {
+		return (vehicleCategory.ordinal() * this.roadCategoryCodes.size() + roadCategory) * N_TRAFFIC_SITUATIONS + trafficSituation.ordinal();
+	}
+
+	/**
+	 * Looks up the emission factors of all road categories, traffic situations and pollutants for one vehicle description, falling back
+	 * to other vehicle attributes or the average table as requested by the lookup behavior.
+	 */
+	EmissionFactors resolve(HbefaVehicleCategory vehicleCategory, HbefaVehicleAttributes vehicleAttributes,
+							DetailedVsAverageLookupBehavior lookupBehavior) {
+		HbefaVehicleAttributes attributes = copy(vehicleAttributes);
+		EmissionFactors result = new EmissionFactors(vehicleCategory, attributes, lookupBehavior, this.nCells);
+
+		Block[] fallbacks = new Block[AVERAGE_TABLE + 1];
+		if (lookupBehavior == DetailedVsAverageLookupBehavior.directlyTryAverageTable) {
+			fallbacks[AVERAGE_TABLE] = getBlock(this.avgBlocks, vehicleCategory, new HbefaVehicleAttributes());
+		} else {
+			fallbacks[DETAILED] = getBlock(this.detailedBlocks, vehicleCategory, attributes);
+			HbefaVehicleAttributes hbefa4Attributes = EmissionUtils.tryRewriteHbefa3toHbefa4(new Tuple<>(vehicleCategory, attributes));
+			fallbacks[DETAILED_HBEFA4] = getBlock(this.detailedBlocks, vehicleCategory, hbefa4Attributes);
+			if (lookupBehavior != DetailedVsAverageLookupBehavior.onlyTryDetailedElseAbort) {
+				HbefaVehicleAttributes technologyAverage = new HbefaVehicleAttributes();
+				technologyAverage.setHbefaTechnology(hbefa4Attributes.getHbefaTechnology());
+				fallbacks[DETAILED_TECHNOLOGY_AVERAGE] = getBlock(this.detailedBlocks, vehicleCategory, technologyAverage);
+			}
+			if (lookupBehavior == DetailedVsAverageLookupBehavior.tryDetailedThenTechnologyAverageThenAverageTable) {
+				fallbacks[AVERAGE_TABLE] = getBlock(this.avgBlocks, vehicleCategory, new HbefaVehicleAttributes());
+			}
+		}
+
+		for (int cell = 0; cell < this.nCells; cell++) {
+			for (byte source = DETAILED; source <= AVERAGE_TABLE; source++) {
+				Block block = fallbacks[source];
+				if (block != null && !Double.isNaN(block.factors[cell])) {
+					result.factors[cell] = block.factors[cell];
+					result.speeds[cell] = block.speeds[cell];
+					result.sources[cell] = source;
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	private static Block getBlock(Map<HbefaVehicleCategory, Map<HbefaVehicleAttributes, Block>> blocks, HbefaVehicleCategory vehicleCategory,
+								  HbefaVehicleAttributes attributes) {
+		Map<HbefaVehicleAttributes, Block> blocksOfCategory = blocks.get(vehicleCategory);
+		return blocksOfCategory == null ? null : blocksOfCategory.get(attributes);
+	}
+
+	private static HbefaVehicleAttributes copy(HbefaVehicleAttributes vehicleAttributes) {
+		HbefaVehicleAttributes attributes = new HbefaVehicleAttributes();
+		attributes.setHbefaTechnology(vehicleAttributes.getHbefaTechnology());
+		attributes.setHbefaSizeClass(vehicleAttributes.getHbefaSizeClass());
+		attributes.setHbefaEmConcept(vehicleAttributes.getHbefaEmConcept());
+		return attributes;
+	}
+
+	private static final class Block {
+		private final double[] factors;
+		private final double[] speeds;
+
+		private Block(int nCells) {
+			this.factors = new double[nCells];
+			this.speeds = new double[nCells];
+			Arrays.fill(this.factors, Double.NaN);
+		}
+	}
+
+	/**
+	 * The emission factors of one vehicle description, after resolving the fallbacks; indexed by {@link #getCell}.
+	 */
+	static final class EmissionFactors {
+		private final HbefaVehicleCategory vehicleCategory;
+		private final HbefaVehicleAttributes vehicleAttributes;
+		private final DetailedVsAverageLookupBehavior lookupBehavior;
+		private final double[] factors;
+		private final double[] speeds;
+		private final byte[] sources;
+
+		private EmissionFactors(HbefaVehicleCategory vehicleCategory, HbefaVehicleAttributes vehicleAttributes,
+								DetailedVsAverageLookupBehavior lookupBehavior, int nCells) {
+			this.vehicleCategory = vehicleCategory;
+			this.vehicleAttributes = vehicleAttributes;
+			this.lookupBehavior = lookupBehavior;
+			this.factors = new double[nCells];
+			this.speeds = new double[nCells];
+			this.sources = new byte[nCells];
+		}
+
+		HbefaVehicleCategory getVehicleCategory() {
+			return vehicleCategory;
+		}
+
+		HbefaVehicleAttributes getVehicleAttributes() {
+			return vehicleAttributes;
+		}
+
+		DetailedVsAverageLookupBehavior getLookupBehavior() {
+			return lookupBehavior;
+		}
+
+		/**
+		 * @return one of {@link #MISSING}, {@link #DETAILED}, {@link #DETAILED_HBEFA4}, {@link #DETAILED_TECHNOLOGY_AVERAGE} and
+		 * {@link #AVERAGE_TABLE}
+		 */
+		byte getSource(int cell) {
+			return cell < 0 ? MISSING : sources[cell];
+		}
+
+		double getFactor(int cell) {
+			return factors[cell];
+		}
+
+		double getSpeed(int cell) {
+			return speeds[cell];
+		}
+	}
+}
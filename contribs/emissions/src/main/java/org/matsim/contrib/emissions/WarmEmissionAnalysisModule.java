@@ -30,12 +30,15 @@ import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.utils.collections.Tuple;
+import org.matsim.vehicles.EngineInformation;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
 
 import java.util.*;
 
 import static org.matsim.contrib.emissions.HbefaTrafficSituation.*;
+import static org.matsim.contrib.emissions.HbefaWarmEmissionFactorLookup.*;
 import static org.matsim.contrib.emissions.utils.EmissionsConfigGroup.EmissionsComputationMethod.AverageSpeed;
 import static org.matsim.contrib.emissions.utils.EmissionsConfigGroup.EmissionsComputationMethod.StopAndGoFraction;
 
@@ -49,9 +52,13 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 	private static final Logger logger = Logger.getLogger(WarmEmissionAnalysisModule.class);
 
 	private final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor>  avgHbefaWarmTable;
-	private final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable;
-	private final Map<HbefaRoadVehicleCategoryKey, Map<HbefaTrafficSituation, Double>> hbefaRoadTrafficSpeeds;
-	private final Set<Pollutant> warmPollutants;
+	private final HbefaWarmEmissionFactorLookup lookup;
+	private final Pollutant[] warmPollutants;
+
+	// the emission factors after resolving the fallbacks, so that link leave events do not need to create any lookup keys:
+	private final Map<HbefaVehicleCategory, Map<HbefaVehicleAttributes, EmissionFactors>> emissionFactors =
+			new EnumMap<>(HbefaVehicleCategory.class);
+	private final Map<VehicleType, VehicleTypeEntry> vehicleTypeEntries = new IdentityHashMap<>();
 
 	private final EventsManager eventsManager;
 	private final EmissionsConfigGroup ecg;
@@ -90,9 +97,8 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 
 		Gbl.assertIf( avgHbefaWarmTable!=null || detailedHbefaWarmTable!=null );
 		this.avgHbefaWarmTable = avgHbefaWarmTable;
-		this.detailedHbefaWarmTable = detailedHbefaWarmTable;
-		this.hbefaRoadTrafficSpeeds = hbefaRoadTrafficSpeeds;
-		this.warmPollutants = warmPollutants;
+		this.lookup = new HbefaWarmEmissionFactorLookup(avgHbefaWarmTable, detailedHbefaWarmTable, hbefaRoadTrafficSpeeds);
+		this.warmPollutants = warmPollutants.toArray(new Pollutant[0]);
 
 		Gbl.assertNotNull( eventsManager );
 		this.eventsManager = eventsManager;
@@ -218,32 +224,44 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 
 	/*package-private*/ Map<Pollutant, Double> checkVehicleInfoAndCalculateWarmEmissions(VehicleType vehicleType, Id<Vehicle> vehicleId,
 																						 Link link, double travelTime) {
-		{
-			String hbefaVehicleTypeDescription = EmissionUtils.getHbefaVehicleDescription(vehicleType, this.ecg);
-			// (this will, importantly, repair the hbefa description in the vehicle type. kai/kai, jan'20)
-			Gbl.assertNotNull(hbefaVehicleTypeDescription);
-		}
-		Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple = EmissionUtils.convertVehicleDescription2VehicleInformationTuple(vehicleType);
-		Gbl.assertNotNull(vehicleInformationTuple);
+		VehicleTypeEntry entry = this.vehicleTypeEntries.get(vehicleType);
+		if (entry == null || !entry.isUpToDate(vehicleType, this.ecg)) {
+			{
+				String hbefaVehicleTypeDescription = EmissionUtils.getHbefaVehicleDescription(vehicleType, this.ecg);
+				// (this will, importantly, repair the hbefa description in the vehicle type. kai/kai, jan'20)
+				Gbl.assertNotNull(hbefaVehicleTypeDescription);
+			}
+			Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple = EmissionUtils.convertVehicleDescription2VehicleInformationTuple(vehicleType);
+			Gbl.assertNotNull(vehicleInformationTuple);
 
-		if (vehicleInformationTuple.getFirst() == null) {
-			throw new RuntimeException("Vehicle category for vehicle " + vehicleType + " is not valid. " +
-					"Please make sure that requirements for emission vehicles in " +
-					EmissionsConfigGroup.GROUP_NAME + " config group are met. Aborting...");
+			if (vehicleInformationTuple.getFirst() == null) {
+				throw new RuntimeException("Vehicle category for vehicle " + vehicleType + " is not valid. " +
+						"Please make sure that requirements for emission vehicles in " +
+						EmissionsConfigGroup.GROUP_NAME + " config group are met. Aborting...");
+			}
+			entry = new VehicleTypeEntry(vehicleType, this.ecg, vehicleInformationTuple);
+			this.vehicleTypeEntries.put(vehicleType, entry);
 		}
 
 		double freeVelocity = link.getFreespeed(); //TODO: what about time dependence
 
-		return calculateWarmEmissions(travelTime, EmissionUtils.getHbefaRoadType(link), freeVelocity, link.getLength(), vehicleInformationTuple);
+		return calculateWarmEmissions(travelTime, EmissionUtils.getHbefaRoadType(link), freeVelocity, link.getLength(), entry.vehicleCategory,
+				entry.vehicleAttributes);
 	}
 
 	Map<Pollutant, Double> calculateWarmEmissions(double travelTime_sec, String roadType, double freeVelocity_ms,
 												  double linkLength_m, Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple) {
+		return calculateWarmEmissions(travelTime_sec, roadType, freeVelocity_ms, linkLength_m, vehicleInformationTuple.getFirst(),
+				vehicleInformationTuple.getSecond());
+	}
+
+	private Map<Pollutant, Double> calculateWarmEmissions(double travelTime_sec, String roadType, double freeVelocity_ms, double linkLength_m,
+														  HbefaVehicleCategory vehicleCategory, HbefaVehicleAttributes vehicleAttributes) {
 
 		Map<Pollutant, Double> warmEmissionsOfEvent = new EnumMap<>(Pollutant.class);
 
 		// fallback vehicle types that we cannot or do not want to map onto a hbefa vehicle type:
-		if (vehicleInformationTuple.getFirst() == HbefaVehicleCategory.NON_HBEFA_VEHICLE) {
+		if (vehicleCategory == HbefaVehicleCategory.NON_HBEFA_VEHICLE) {
 			for (Pollutant warmPollutant : warmPollutants) {
 				warmEmissionsOfEvent.put(warmPollutant, 0.0);
 				// yyyyyy todo replace by something more meaningful. kai, jan'20
@@ -259,19 +277,6 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 			return warmEmissionsOfEvent;
 		}
 
-		// translate vehicle information type into factor key.  yyyy maybe combine these two? kai, jan'20
-		HbefaWarmEmissionFactorKey efkey = new HbefaWarmEmissionFactorKey();
-		efkey.setVehicleCategory(vehicleInformationTuple.getFirst());
-		efkey.setRoadCategory(roadType);
-		if (this.detailedHbefaWarmTable != null) {
-			HbefaVehicleAttributes hbefaVehicleAttributes = new HbefaVehicleAttributes();
-			hbefaVehicleAttributes.setHbefaTechnology(vehicleInformationTuple.getSecond().getHbefaTechnology());
-			hbefaVehicleAttributes.setHbefaSizeClass(vehicleInformationTuple.getSecond().getHbefaSizeClass());
-			hbefaVehicleAttributes.setHbefaEmConcept(vehicleInformationTuple.getSecond().getHbefaEmConcept());
-			efkey.setVehicleAttributes(hbefaVehicleAttributes);
-		}
-
-
 		double averageSpeed_kmh = (linkLength_m / 1000) / (travelTime_sec / 3600);
 
 		// hedge against odd average speeds:
@@ -287,11 +292,14 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 			}
 		}
 
+		// translate vehicle information into the emission factors of all road categories, traffic situations and pollutants:
+		EmissionFactors efs = getEmissionFactors(vehicleCategory, vehicleAttributes);
+		int roadCategory = this.lookup.getRoadCategoryCode(roadType);
+
 		// for the average speed method, the traffic situation is already known here:
+		HbefaTrafficSituation trafficSituation = null;
 		if (ecg.getEmissionsComputationMethod() == AverageSpeed) {
-			final HbefaTrafficSituation trafficSituation = getTrafficSituation(efkey, averageSpeed_kmh, freeVelocity_ms * 3.6);
-//			logger.warn( "trafficSituation=" + trafficSituation );
-			efkey.setTrafficSituation(trafficSituation);
+			trafficSituation = getTrafficSituation(efs, roadType, roadCategory, averageSpeed_kmh, freeVelocity_ms * 3.6);
 		}
 
 		double fractionStopGo = 0;
@@ -300,28 +308,24 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 		for ( Pollutant warmPollutant : warmPollutants) {
 			double generatedEmissions;
 
-			efkey.setComponent(warmPollutant);
-
 			double ef_gpkm;
 			if (ecg.getEmissionsComputationMethod() == StopAndGoFraction) {
 
-				// compute faction.  This cannot be done earlier since efkey.component is needed.
-				fractionStopGo = getFractionStopAndGo(freeVelocity_ms * 3.6, averageSpeed_kmh, vehicleInformationTuple, efkey);
+				// compute faction.  This cannot be done earlier since the stop-go speed depends on the pollutant.
+				fractionStopGo = getFractionStopAndGo(freeVelocity_ms * 3.6, averageSpeed_kmh, efs, roadType, roadCategory, warmPollutant);
 				logger.info("fractionStopGo is: " + fractionStopGo);
 
 				double efStopGo_gpkm = 0.;
 				if (fractionStopGo > 0) {
 					// compute emissions from stop-go fraction:
-					efkey.setTrafficSituation(STOPANDGO);
-					efStopGo_gpkm = getEf(vehicleInformationTuple, efkey).getFactor();
+					efStopGo_gpkm = efs.getFactor(getEf(efs, roadType, roadCategory, STOPANDGO, warmPollutant));
 					logger.warn("pollutant=" + warmPollutant + "; efStopGo=" + efStopGo_gpkm);
 				}
 
 				double efFreeFlow_gpkm = 0. ;
 				if ( fractionStopGo<1.) {
 					// compute emissions for free-flow fraction:
-					efkey.setTrafficSituation(FREEFLOW);
-					efFreeFlow_gpkm = getEf(vehicleInformationTuple, efkey).getFactor();
+					efFreeFlow_gpkm = efs.getFactor(getEf(efs, roadType, roadCategory, FREEFLOW, warmPollutant));
 					logger.warn("pollutant=" + warmPollutant + "; efFreeFlow=" + efFreeFlow_gpkm);
 				}
 
@@ -330,7 +334,7 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 				ef_gpkm = (fractionFreeFlow * efFreeFlow_gpkm) + (fractionStopGo * efStopGo_gpkm);
 
 			} else if (ecg.getEmissionsComputationMethod() == AverageSpeed) {
-				ef_gpkm = getEf(vehicleInformationTuple, efkey).getFactor();
+				ef_gpkm = efs.getFactor(getEf(efs, roadType, roadCategory, trafficSituation, warmPollutant));
 			} else {
 				throw new RuntimeException( Gbl.NOT_IMPLEMENTED );
 			}
@@ -345,7 +349,7 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 			incrementCountersFractional( linkLength_m / 1000, fractionStopGo );
 		}
 		else if (ecg.getEmissionsComputationMethod() == AverageSpeed) {
-			incrementCountersAverage(efkey.getTrafficSituation(), linkLength_m / 1000);
+			incrementCountersAverage(trafficSituation, linkLength_m / 1000);
 		} else {
 			throw new RuntimeException( Gbl.NOT_IMPLEMENTED );
 		}
@@ -353,12 +357,21 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 		return warmEmissionsOfEvent;
 	}
 
-	private double getFractionStopAndGo(double freeFlowSpeed_kmh, double averageSpeed_kmh,
-										Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple,
-										HbefaWarmEmissionFactorKey efkey) {
+	private EmissionFactors getEmissionFactors(HbefaVehicleCategory vehicleCategory, HbefaVehicleAttributes vehicleAttributes) {
+		Map<HbefaVehicleAttributes, EmissionFactors> factorsOfCategory = this.emissionFactors.computeIfAbsent(vehicleCategory, category -> new HashMap<>());
+		EmissionFactors factors = factorsOfCategory.get(vehicleAttributes);
+		// (the lookup behavior can be changed in the config after this module was created)
+		if (factors == null || factors.getLookupBehavior() != ecg.getDetailedVsAverageLookupBehavior()) {
+			factors = this.lookup.resolve(vehicleCategory, vehicleAttributes, ecg.getDetailedVsAverageLookupBehavior());
+			factorsOfCategory.put(factors.getVehicleAttributes(), factors);
+		}
+		return factors;
+	}
+
+	private double getFractionStopAndGo(double freeFlowSpeed_kmh, double averageSpeed_kmh, EmissionFactors efs, String roadType,
+										int roadCategory, Pollutant pollutant) {
 
-		efkey.setTrafficSituation(STOPANDGO);
-		double stopGoSpeedFromTable_kmh = getEf(vehicleInformationTuple, efkey).getSpeed();
+		double stopGoSpeedFromTable_kmh = efs.getSpeed(getEf(efs, roadType, roadCategory, STOPANDGO, pollutant));
 
 		double fractionStopGo;
 
@@ -373,140 +386,55 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 		return fractionStopGo;
 	}
 
-	private HbefaWarmEmissionFactor getEf(Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple, HbefaWarmEmissionFactorKey efkey) {
+	/**
+	 * @return the cell of the emission factor in the given emission factors.  The fallbacks were already resolved by the lookup; this only
+	 * logs which of them were needed.
+	 */
+	private int getEf(EmissionFactors efs, String roadType, int roadCategory, HbefaTrafficSituation trafficSituation, Pollutant pollutant) {
+		int cell = this.lookup.getCell(roadCategory, trafficSituation, pollutant);
+		byte source = efs.getSource(cell);
 
-		switch (ecg.getDetailedVsAverageLookupBehavior()) {
+		HbefaVehicleAttributes keyAttributes = efs.getVehicleAttributes();
+		switch (efs.getLookupBehavior()) {
 			case onlyTryDetailedElseAbort:
+			case tryDetailedThenTechnologyAverageElseAbort:
+			case tryDetailedThenTechnologyAverageThenAverageTable:
 				if (detailedReadingInfoCnt <= 1) {
 					logger.info("try reading detailed values");
 					logger.info(Gbl.ONLYONCE);
 					logger.info(Gbl.FUTURE_SUPPRESSED);
 					detailedReadingInfoCnt++;
 				}
-				if (this.detailedHbefaWarmTable.get(efkey) != null) {
-					HbefaWarmEmissionFactor ef = this.detailedHbefaWarmTable.get(efkey);
-					logger.debug("Lookup result for " + efkey + " is " + ef.toString());
-					return ef;
-				} else {
-					if (detailedTransformToHbefa4Cnt <= 1) {
-						logger.info("try to rewrite from HBEFA3 to HBEFA4 and lookup in detailed table again");
-						logger.info(Gbl.ONLYONCE);
-						logger.info(Gbl.FUTURE_SUPPRESSED);
-						detailedTransformToHbefa4Cnt++;
-					}
-					HbefaWarmEmissionFactorKey efkey2 = new HbefaWarmEmissionFactorKey(efkey);
-					HbefaVehicleAttributes attribs2 = EmissionUtils.tryRewriteHbefa3toHbefa4(vehicleInformationTuple);
-					// put this into a new key ...
-					efkey2.setVehicleAttributes(attribs2);
-					// ... and try to look up:
-					if (this.detailedHbefaWarmTable.get(efkey2) != null) {
-						HbefaWarmEmissionFactor ef2 = this.detailedHbefaWarmTable.get(efkey2);
-						logger.debug("Lookup result for " + efkey + " is " + ef2.toString());
-						return ef2;
-					}
+				if (source == DETAILED) {
+					break;
 				}
-				break;
-			case tryDetailedThenTechnologyAverageElseAbort:
-				//Look up detailed values
-				if (detailedReadingInfoCnt <= 1) {
-					logger.info("try reading detailed values");
+				if (detailedTransformToHbefa4Cnt <= 1) {
+					logger.info("try to rewrite from HBEFA3 to HBEFA4 and lookup in detailed table again");
 					logger.info(Gbl.ONLYONCE);
 					logger.info(Gbl.FUTURE_SUPPRESSED);
-					detailedReadingInfoCnt++;
+					detailedTransformToHbefa4Cnt++;
 				}
-				if (this.detailedHbefaWarmTable.get(efkey) != null) {
-					HbefaWarmEmissionFactor ef = this.detailedHbefaWarmTable.get(efkey);
-					logger.debug("Lookup result for " + efkey + " is " + ef.toString());
-					return ef;
-				} else {
-					if (detailedTransformToHbefa4Cnt <= 1) {
-						logger.info("try to rewrite from HBEFA3 to HBEFA4 and lookup in detailed table again");
-						logger.info(Gbl.ONLYONCE);
-						logger.info(Gbl.FUTURE_SUPPRESSED);
-						detailedTransformToHbefa4Cnt++;
-					}
-					HbefaWarmEmissionFactorKey efkey2 = new HbefaWarmEmissionFactorKey(efkey);
-					HbefaVehicleAttributes attribs2 = EmissionUtils.tryRewriteHbefa3toHbefa4(vehicleInformationTuple);
-					// put this into a new key ...
-					efkey2.setVehicleAttributes(attribs2);
-					// ... and try to look up:
-					if (this.detailedHbefaWarmTable.get(efkey2) != null) {
-						HbefaWarmEmissionFactor ef2 = this.detailedHbefaWarmTable.get(efkey2);
-						logger.debug("Lookup result for " + efkey + " is " + ef2.toString());
-						return ef2;
-					}
-
-					//if not possible, try "<technology>; average; average":
-					if (ecg.getDetailedVsAverageLookupBehavior() == EmissionsConfigGroup.DetailedVsAverageLookupBehavior.tryDetailedThenTechnologyAverageElseAbort || ecg.getDetailedVsAverageLookupBehavior() == EmissionsConfigGroup.DetailedVsAverageLookupBehavior.tryDetailedThenTechnologyAverageThenAverageTable) {
-						attribs2.setHbefaSizeClass("average");
-						attribs2.setHbefaEmConcept("average");
-						if (detailedFallbackTechAverageWarnCnt <= 1) {
-							logger.warn("did not find emission factor for efkey=" + efkey);
-							logger.warn(" re-written to " + efkey2);
-							logger.warn("will try it with '<technology>; average; average'");
-							logger.warn(Gbl.ONLYONCE);
-							logger.warn(Gbl.FUTURE_SUPPRESSED);
-							detailedFallbackTechAverageWarnCnt++;
-						}
-						if (this.detailedHbefaWarmTable.get(efkey2) != null) {
-							HbefaWarmEmissionFactor ef2 = this.detailedHbefaWarmTable.get(efkey2);
-							logger.debug("Lookup result for " + efkey + " is " + ef2.toString());
-							return ef2;
-						}
-						//lookups of type "<technology>; average; average" should, I think, just be entered as such. kai, feb'20
-						logger.error("That also did not worked ");
-					}
+				if (source == DETAILED_HBEFA4 || efs.getLookupBehavior() == EmissionsConfigGroup.DetailedVsAverageLookupBehavior.onlyTryDetailedElseAbort) {
+					break;
 				}
-				break;
-			case tryDetailedThenTechnologyAverageThenAverageTable:
-				//Look up detailed values
-				if (detailedReadingInfoCnt <= 1) {
-					logger.info("try reading detailed values");
-					logger.info(Gbl.ONLYONCE);
-					logger.info(Gbl.FUTURE_SUPPRESSED);
-					detailedReadingInfoCnt++;
+				//if not possible, try "<technology>; average; average":
+				if (detailedFallbackTechAverageWarnCnt <= 1) {
+					HbefaVehicleAttributes technologyAverage = new HbefaVehicleAttributes();
+					technologyAverage.setHbefaTechnology(keyAttributes.getHbefaTechnology());
+					logger.warn("did not find emission factor for efkey=" + createKey(efs, keyAttributes, roadType, trafficSituation, pollutant));
+					logger.warn(" re-written to " + createKey(efs, technologyAverage, roadType, trafficSituation, pollutant));
+					logger.warn("will try it with '<technology>; average; average'");
+					logger.warn(Gbl.ONLYONCE);
+					logger.warn(Gbl.FUTURE_SUPPRESSED);
+					detailedFallbackTechAverageWarnCnt++;
 				}
-				if (this.detailedHbefaWarmTable.get(efkey) != null) {
-					HbefaWarmEmissionFactor ef = this.detailedHbefaWarmTable.get(efkey);
-					logger.debug("Lookup result for " + efkey + " is " + ef.toString());
-					return ef;
-				} else {
-					if (detailedTransformToHbefa4Cnt <= 1) {
-						logger.info("try to rewrite from HBEFA3 to HBEFA4 and lookup in detailed table again");
-						logger.info(Gbl.ONLYONCE);
-						logger.info(Gbl.FUTURE_SUPPRESSED);
-						detailedTransformToHbefa4Cnt++;
-					}
-					HbefaWarmEmissionFactorKey efkey2 = new HbefaWarmEmissionFactorKey(efkey);
-					HbefaVehicleAttributes attribs2 = EmissionUtils.tryRewriteHbefa3toHbefa4(vehicleInformationTuple);
-					// put this into a new key ...
-					efkey2.setVehicleAttributes(attribs2);
-					// ... and try to look up:
-					if (this.detailedHbefaWarmTable.get(efkey2) != null) {
-						HbefaWarmEmissionFactor ef2 = this.detailedHbefaWarmTable.get(efkey2);
-						logger.debug("Lookup result for " + efkey + " is " + ef2.toString());
-						return ef2;
-					}
-
-					//if not possible, try "<technology>; average; average":
-					if (ecg.getDetailedVsAverageLookupBehavior() == EmissionsConfigGroup.DetailedVsAverageLookupBehavior.tryDetailedThenTechnologyAverageElseAbort || ecg.getDetailedVsAverageLookupBehavior() == EmissionsConfigGroup.DetailedVsAverageLookupBehavior.tryDetailedThenTechnologyAverageThenAverageTable) {
-						attribs2.setHbefaSizeClass("average");
-						attribs2.setHbefaEmConcept("average");
-						if (detailedFallbackTechAverageWarnCnt <= 1) {
-							logger.warn("did not find emission factor for efkey=" + efkey);
-							logger.warn(" re-written to " + efkey2);
-							logger.warn("will try it with '<technology>; average; average'");
-							logger.warn(Gbl.ONLYONCE);
-							logger.warn(Gbl.FUTURE_SUPPRESSED);
-							detailedFallbackTechAverageWarnCnt++;
-						}
-						if (this.detailedHbefaWarmTable.get(efkey2) != null) {
-							HbefaWarmEmissionFactor ef2 = this.detailedHbefaWarmTable.get(efkey2);
-							logger.debug("Lookup result for " + efkey + " is " + ef2.toString());
-							return ef2;
-						}
-						//lookups of type "<technology>; average; average" should, I think, just be entered as such. kai, feb'20
-					}
+				if (source == DETAILED_TECHNOLOGY_AVERAGE) {
+					break;
+				}
+				if (efs.getLookupBehavior() == EmissionsConfigGroup.DetailedVsAverageLookupBehavior.tryDetailedThenTechnologyAverageElseAbort) {
+					//lookups of type "<technology>; average; average" should, I think, just be entered as such. kai, feb'20
+					logger.error("That also did not worked ");
+					break;
 				}
 				if (detailedFallbackAverageTableWarnCnt <= 1) {
 					logger.warn("That also did not work.");
@@ -515,14 +443,6 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 					logger.warn(Gbl.FUTURE_SUPPRESSED);
 					detailedFallbackAverageTableWarnCnt++;
 				}
-				HbefaWarmEmissionFactorKey efkey3 = new HbefaWarmEmissionFactorKey(efkey);
-				efkey3.setVehicleAttributes(new HbefaVehicleAttributes());
-				if (this.avgHbefaWarmTable.get(efkey3) != null) {
-					HbefaWarmEmissionFactor ef = this.avgHbefaWarmTable.get(efkey3);
-					logger.debug("Lookup result for " + efkey3 + " is " + ef.toString());
-					Gbl.assertNotNull(ef);
-					return ef;
-				}
 				break;
 			case directlyTryAverageTable:
 				if (averageReadingInfoCnt <= 1) {
@@ -531,14 +451,9 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 					logger.info(Gbl.FUTURE_SUPPRESSED);
 					averageReadingInfoCnt++;
 				}
-				efkey.setVehicleAttributes(new HbefaVehicleAttributes());
-				if (this.avgHbefaWarmTable.get(efkey) != null) {
-					HbefaWarmEmissionFactor ef = this.avgHbefaWarmTable.get(efkey);
-					logger.debug("Lookup result for " + efkey + " is " + ef.toString());
-					Gbl.assertNotNull(ef);
-					return ef;
-				} else {
-					logger.warn("did not find average emission factor for efkey=" + efkey);
+				keyAttributes = new HbefaVehicleAttributes();
+				if (source == MISSING) {
+					logger.warn("did not find average emission factor for efkey=" + createKey(efs, keyAttributes, roadType, trafficSituation, pollutant));
 					List<HbefaWarmEmissionFactorKey> list = new ArrayList<>(this.avgHbefaWarmTable.keySet());
 					list.sort(Comparator.comparing(HbefaWarmEmissionFactorKey::toString));
 					for (HbefaWarmEmissionFactorKey key : list) {
@@ -547,45 +462,62 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 				}
 				break;
 			default:
-				throw new IllegalStateException("Unexpected value: " + ecg.getDetailedVsAverageLookupBehavior());
+				throw new IllegalStateException("Unexpected value: " + efs.getLookupBehavior());
 		}
 
+		if (source != MISSING) {
+			return cell;
+		}
 		throw new RuntimeException("Was not able to lookup emissions factor. Maybe you wanted to look up detailed values and did not specify this in " +
                                                            "the config OR " +
-				"you should use another fallback setting when using detailed calculation OR values ar missing in your emissions table(s) either average or detailed OR... ? efkey: " + efkey.toString());
+				"you should use another fallback setting when using detailed calculation OR values ar missing in your emissions table(s) either average or detailed OR... ? efkey: "
+				+ createKey(efs, keyAttributes, roadType, trafficSituation, pollutant));
+	}
+
+	private static HbefaWarmEmissionFactorKey createKey(EmissionFactors efs, HbefaVehicleAttributes vehicleAttributes, String roadType,
+														HbefaTrafficSituation trafficSituation, Pollutant pollutant) {
+		// only for log and error messages
+		HbefaWarmEmissionFactorKey efkey = new HbefaWarmEmissionFactorKey();
+		efkey.setVehicleCategory(efs.getVehicleCategory());
+		efkey.setVehicleAttributes(vehicleAttributes);
+		efkey.setRoadCategory(roadType);
+		efkey.setTrafficSituation(trafficSituation);
+		efkey.setComponent(pollutant);
+		return efkey;
 	}
 
 
 	//TODO: this is based on looking at the speeds in the HBEFA files, using an MFP, maybe from A.Loder would be nicer, jm  oct'18
-	private HbefaTrafficSituation getTrafficSituation(HbefaWarmEmissionFactorKey efkey, double averageSpeed_kmh, double freeFlowSpeed_kmh) {
-		//TODO: should this be generated only once much earlier?
-		HbefaRoadVehicleCategoryKey hbefaRoadVehicleCategoryKey = new HbefaRoadVehicleCategoryKey(efkey);
-		Map<HbefaTrafficSituation, Double> trafficSpeeds = this.hbefaRoadTrafficSpeeds.get(hbefaRoadVehicleCategoryKey);
+	private HbefaTrafficSituation getTrafficSituation(EmissionFactors efs, String roadType, int roadCategory, double averageSpeed_kmh,
+													  double freeFlowSpeed_kmh) {
+		HbefaVehicleCategory vehicleCategory = efs.getVehicleCategory();
+		double freeFlowSpeedFromTable_kmh = this.lookup.getTrafficSpeed(vehicleCategory, roadCategory, FREEFLOW);
 
 		//TODO: Hier die Berechunung einfügen, die die trafficSpeedTabelle entsprechend aus den Werten erstellt?
 		//Frage Laufzeit: Einmal berechnen ha
 
-		if (trafficSpeeds == null || !trafficSpeeds.containsKey(FREEFLOW)) {
+		if (Double.isNaN(freeFlowSpeedFromTable_kmh)) {
 			throw new RuntimeException("At least the FREEFLOW condition must be specified for all emission factor keys. " +
-					"It was not found for " + efkey);
+					"It was not found for " + createKey(efs, efs.getVehicleAttributes(), roadType, null, null));
 		}
 
+		// (speeds that are not specified are NaN, so that the comparisons below are false for them)
 		HbefaTrafficSituation trafficSituation  = FREEFLOW;
-		if (trafficSpeeds.containsKey(HEAVY) && averageSpeed_kmh <= trafficSpeeds.get(HEAVY)) {
+		if (averageSpeed_kmh <= this.lookup.getTrafficSpeed(vehicleCategory, roadCategory, HEAVY)) {
 			trafficSituation = HEAVY;
 		}
-		if (trafficSpeeds.containsKey(SATURATED) && averageSpeed_kmh <= trafficSpeeds.get(SATURATED)) {
+		if (averageSpeed_kmh <= this.lookup.getTrafficSpeed(vehicleCategory, roadCategory, SATURATED)) {
 			trafficSituation = SATURATED;
 		}
-		if (trafficSpeeds.containsKey(STOPANDGO) && averageSpeed_kmh <= trafficSpeeds.get(STOPANDGO)) {
-			if (averageSpeed_kmh != trafficSpeeds.get(FREEFLOW)) { //handle case testCheckVehicleInfoAndCalculateWarmEmissions_and_throwWarmEmissionEvent6
+		if (averageSpeed_kmh <= this.lookup.getTrafficSpeed(vehicleCategory, roadCategory, STOPANDGO)) {
+			if (averageSpeed_kmh != freeFlowSpeedFromTable_kmh) { //handle case testCheckVehicleInfoAndCalculateWarmEmissions_and_throwWarmEmissionEvent6
 				trafficSituation = STOPANDGO;
 			}
 		}
 		/*FIXME The following lines should be added to account for the HBEFA 4.1's additiona traffic situation,
 		   but it currently causes a test failure (jwj, Nov'20) */
-//		if (trafficSpeeds.containsKey(STOPANDGO_HEAVY) && averageSpeed_kmh <= trafficSpeeds.get(STOPANDGO_HEAVY)) {
-//			if (averageSpeed_kmh != trafficSpeeds.get(FREEFLOW)) { //handle case testCheckVehicleInfoAndCalculateWarmEmissions_and_throwWarmEmissionEvent6
+//		if (averageSpeed_kmh <= this.lookup.getTrafficSpeed(vehicleCategory, roadCategory, STOPANDGO_HEAVY)) {
+//			if (averageSpeed_kmh != freeFlowSpeedFromTable_kmh) { //handle case testCheckVehicleInfoAndCalculateWarmEmissions_and_throwWarmEmissionEvent6
 //				trafficSituation = STOPANDGO_HEAVY;
 //			}
 //		}
@@ -676,4 +608,37 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 		return ecg;
 	}
 
+	/**
+	 * The hbefa description of a vehicle type, as long as the attributes of its engine information do not change.
+	 */
+	private static final class VehicleTypeEntry {
+		private final EmissionsConfigGroup.HbefaVehicleDescriptionSource descriptionSource;
+		private final String category;
+		private final String technology;
+		private final String sizeClass;
+		private final String emConcept;
+		private final HbefaVehicleCategory vehicleCategory;
+		private final HbefaVehicleAttributes vehicleAttributes;
+
+		private VehicleTypeEntry(VehicleType vehicleType, EmissionsConfigGroup ecg, Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple) {
+			EngineInformation engineInformation = vehicleType.getEngineInformation();
+			this.descriptionSource = ecg.getHbefaVehicleDescriptionSource();
+			this.category = VehicleUtils.getHbefaVehicleCategory(engineInformation);
+			this.technology = VehicleUtils.getHbefaTechnology(engineInformation);
+			this.sizeClass = VehicleUtils.getHbefaSizeClass(engineInformation);
+			this.emConcept = VehicleUtils.getHbefaEmissionsConcept(engineInformation);
+			this.vehicleCategory = vehicleInformationTuple.getFirst();
+			this.vehicleAttributes = vehicleInformationTuple.getSecond();
+		}
+
+		private boolean isUpToDate(VehicleType vehicleType, EmissionsConfigGroup ecg) {
+			EngineInformation engineInformation = vehicleType.getEngineInformation();
+			return this.descriptionSource == ecg.getHbefaVehicleDescriptionSource()
+					&& Objects.equals(this.category, VehicleUtils.getHbefaVehicleCategory(engineInformation))
+					&& Objects.equals(this.technology, VehicleUtils.getHbefaTechnology(engineInformation))
+					&& Objects.equals(this.sizeClass, VehicleUtils.getHbefaSizeClass(engineInformation))
+					&& Objects.equals(this.emConcept, VehicleUtils.getHbefaEmissionsConcept(engineInformation));
+		}
+	}
+
 }
@@ -0,0 +1,115 @@
+/* *********************************************************************** *
+ * project: org.matsim.*                                                   *
+ * TestHbefaWarmEmissionFactorLookup.java                                  *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.emissions;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.contrib.emissions.HbefaWarmEmissionFactorLookup.EmissionFactors;
+import org.matsim.contrib.emissions.utils.EmissionsConfigGroup.DetailedVsAverageLookupBehavior;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.matsim.contrib.emissions.HbefaTrafficSituation.FREEFLOW;
+import static org.matsim.contrib.emissions.HbefaTrafficSituation.STOPANDGO;
+import static org.matsim.contrib.emissions.HbefaVehicleCategory.PASSENGER_CAR;
+import static org.matsim.contrib.emissions.Pollutant.CO2_TOTAL;
+import static org.matsim.contrib.emissions.Pollutant.NOx;
+
+public class TestHbefaWarmEmissionFactorLookup {
+
+	private static final String ROAD = "URB/Access/30";
+
+	private final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgTable = new HashMap<>();
+	private final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedTable = new HashMap<>();
+
+	@Test
+	public void testFallbacksAreResolvedPerEmissionFactor() {
+		HbefaVehicleAttributes petrol = attributes("petrol (4S)", "<1,4L", "PC-P-Euro-1");
+		HbefaVehicleAttributes petrolHbefa4 = attributes("petrol (4S)", "not specified", "PC P Euro-1");
+		HbefaVehicleAttributes petrolAverage = attributes("petrol (4S)", "average", "average");
+
+		put(detailedTable, petrol, FREEFLOW, NOx, 1.);
+		put(detailedTable, petrolHbefa4, STOPANDGO, NOx, 2.);
+		put(detailedTable, petrolAverage, FREEFLOW, CO2_TOTAL, 3.);
+		put(avgTable, new HbefaVehicleAttributes(), STOPANDGO, CO2_TOTAL, 4.);
+
+		HbefaWarmEmissionFactorLookup lookup = new HbefaWarmEmissionFactorLookup(avgTable, detailedTable, EmissionUtils.createHBEFASpeedsTable(avgTable));
+		int road = lookup.getRoadCategoryCode(ROAD);
+
+		EmissionFactors efs = lookup.resolve(PASSENGER_CAR, petrol, DetailedVsAverageLookupBehavior.tryDetailedThenTechnologyAverageThenAverageTable);
+		assertFactor(efs, lookup.getCell(road, FREEFLOW, NOx), HbefaWarmEmissionFactorLookup.DETAILED, 1.);
+		assertFactor(efs, lookup.getCell(road, STOPANDGO, NOx), HbefaWarmEmissionFactorLookup.DETAILED_HBEFA4, 2.);
+		assertFactor(efs, lookup.getCell(road, FREEFLOW, CO2_TOTAL), HbefaWarmEmissionFactorLookup.DETAILED_TECHNOLOGY_AVERAGE, 3.);
+		assertFactor(efs, lookup.getCell(road, STOPANDGO, CO2_TOTAL), HbefaWarmEmissionFactorLookup.AVERAGE_TABLE, 4.);
+
+		efs = lookup.resolve(PASSENGER_CAR, petrol, DetailedVsAverageLookupBehavior.onlyTryDetailedElseAbort);
+		assertFactor(efs, lookup.getCell(road, STOPANDGO, NOx), HbefaWarmEmissionFactorLookup.DETAILED_HBEFA4, 2.);
+		Assert.assertEquals(HbefaWarmEmissionFactorLookup.MISSING, efs.getSource(lookup.getCell(road, FREEFLOW, CO2_TOTAL)));
+		Assert.assertEquals(HbefaWarmEmissionFactorLookup.MISSING, efs.getSource(lookup.getCell(road, STOPANDGO, CO2_TOTAL)));
+
+		efs = lookup.resolve(PASSENGER_CAR, petrol, DetailedVsAverageLookupBehavior.directlyTryAverageTable);
+		Assert.assertEquals(HbefaWarmEmissionFactorLookup.MISSING, efs.getSource(lookup.getCell(road, FREEFLOW, NOx)));
+		assertFactor(efs, lookup.getCell(road, STOPANDGO, CO2_TOTAL), HbefaWarmEmissionFactorLookup.AVERAGE_TABLE, 4.);
+	}
+
+	@Test
+	public void testUnknownRoadCategory() {
+		put(avgTable, new HbefaVehicleAttributes(), FREEFLOW, NOx, 1.);
+		HbefaWarmEmissionFactorLookup lookup = new HbefaWarmEmissionFactorLookup(avgTable, null, EmissionUtils.createHBEFASpeedsTable(avgTable));
+
+		Assert.assertEquals(-1, lookup.getRoadCategoryCode("unknown"));
+		Assert.assertEquals(-1, lookup.getCell(-1, FREEFLOW, NOx));
+		Assert.assertTrue(Double.isNaN(lookup.getTrafficSpeed(PASSENGER_CAR, -1, FREEFLOW)));
+
+		int road = lookup.getRoadCategoryCode(ROAD);
+		Assert.assertEquals(50., lookup.getTrafficSpeed(PASSENGER_CAR, road, FREEFLOW), 0.);
+		Assert.assertTrue(Double.isNaN(lookup.getTrafficSpeed(PASSENGER_CAR, road, STOPANDGO)));
+
+		EmissionFactors efs = lookup.resolve(PASSENGER_CAR, new HbefaVehicleAttributes(), DetailedVsAverageLookupBehavior.directlyTryAverageTable);
+		Assert.assertEquals(HbefaWarmEmissionFactorLookup.MISSING, efs.getSource(-1));
+	}
+
+	private static void assertFactor(EmissionFactors efs, int cell, byte expectedSource, double expectedFactor) {
+		Assert.assertEquals(expectedSource, efs.getSource(cell));
+		Assert.assertEquals(expectedFactor, efs.getFactor(cell), 0.);
+		Assert.assertEquals(50., efs.getSpeed(cell), 0.);
+	}
+
+	private static HbefaVehicleAttributes attributes(String technology, String sizeClass, String emConcept) {
+		HbefaVehicleAttributes attributes = new HbefaVehicleAttributes();
+		attributes.setHbefaTechnology(technology);
+		attributes.setHbefaSizeClass(sizeClass);
+		attributes.setHbefaEmConcept(emConcept);
+		return attributes;
+	}
+
+	private static void put(Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> table, HbefaVehicleAttributes attributes,
+							HbefaTrafficSituation trafficSituation, Pollutant pollutant, double factor) {
+		HbefaWarmEmissionFactorKey key = new HbefaWarmEmissionFactorKey();
+		key.setVehicleCategory(PASSENGER_CAR);
+		key.setVehicleAttributes(attributes);
+		key.setRoadCategory(ROAD);
+		key.setTrafficSituation(trafficSituation);
+		key.setComponent(pollutant);
+		table.put(key, new HbefaWarmEmissionFactor(factor, 50.));
+	}
+}
@@ -16,26 +16,39 @@ import com.graphhopper.jsprit.core.problem.Location;
 import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
 import com.graphhopper.jsprit.core.problem.cost.VehicleRoutingTransportCosts;
 import com.graphhopper.jsprit.core.problem.driver.Driver;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.job.Shipment;
 import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
 import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.contrib.freight.carrier.CarrierVehicle;
 import org.matsim.core.router.FastDijkstraFactory;
+import org.matsim.core.router.speedy.LeastCostPathTree;
+import org.matsim.core.router.speedy.SpeedyGraph;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculator.Path;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
 import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.utils.misc.Counter;
+import org.matsim.core.utils.misc.OptionalTime;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 import org.matsim.vehicles.VehicleType;
 import org.matsim.vehicles.VehicleUtils;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This calculates transport-times, transport-costs and the distance to cover
@@ -67,13 +80,19 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * <p>
  * Keep in mind that if you have many locations, small time-bins and many
- * vehicleTypes, calculations get very time- and memory-consuming.
+ * vehicleTypes, calculations get very time- and memory-consuming. The size of
+ * the cache can be limited with {@link Builder#setMaxCacheSize(int)}, in which
+ * case the least recently used values are removed from the cache. Alternatively,
+ * all values can be calculated in advance with
+ * {@link #precomputeTransportData(VehicleRoutingProblem, int)}.
  *
  * @author stefan schröder
  *
  */
 public class NetworkBasedTransportCosts implements VehicleRoutingTransportCosts {
 
+	private static final Logger log = Logger.getLogger(NetworkBasedTransportCosts.class);
+
 	public interface InternalLeastCostPathCalculatorListener {
 
 		public void startCalculation(long routerId);
@@ -241,6 +260,73 @@ public class NetworkBasedTransportCosts implements VehicleRoutingTransportCosts
 
 	}
 
+	/**
+	 * Stores the precomputed transport-costs, transport-times and distances of all
+	 * pairs of locations for each vehicle-type and time-bin, as three float values per
+	 * pair in one flat array per vehicle-type and time-bin.
+	 */
+	static class PrecomputedTransportData {
+		static final int COSTS = 0;
+		static final int TIME = 1;
+		static final int DISTANCE = 2;
+
+		private final Map<String, Integer> locationIndices;
+		private final Map<String, float[][]> dataPerVehicleType;
+		private final int firstTimeSlice;
+
+		PrecomputedTransportData(Map<String, Integer> locationIndices, Map<String, float[][]> dataPerVehicleType, int firstTimeSlice) {
+			this.locationIndices = locationIndices;
+			this.dataPerVehicleType = dataPerVehicleType;
+			this.firstTimeSlice = firstTimeSlice;
+		}
+
+		/**
+		 * @return the precomputed value, or <code>NaN</code> if it was not precomputed
+		 */
+		double get(String from, String to, int timeSlice, String vehicleType, int field) {
+			float[][] dataPerTimeSlice = this.dataPerVehicleType.get(vehicleType);
+			if (dataPerTimeSlice == null) {
+				return Double.NaN;
+			}
+			int timeSliceIndex = timeSlice - this.firstTimeSlice;
+			if (timeSliceIndex < 0 || timeSliceIndex >= dataPerTimeSlice.length) {
+				return Double.NaN;
+			}
+			Integer fromIndex = this.locationIndices.get(from);
+			Integer toIndex = this.locationIndices.get(to);
+			if (fromIndex == null || toIndex == null) {
+				return Double.NaN;
+			}
+			return dataPerTimeSlice[timeSliceIndex][(fromIndex * this.locationIndices.size() + toIndex) * 3 + field];
+		}
+	}
+
+	/**
+	 * Cache of {@link TransportData} that only keeps the <code>maxSize</code> least
+	 * recently used values. Needs to be synchronized externally.
+	 */
+	private static class LruTransportDataCache extends LinkedHashMap<TransportDataKey, TransportData> {
+		private static final long serialVersionUID = 1L;
+
+		private final int maxSize;
+		private final LongAdder evictions;
+
+		LruTransportDataCache(int maxSize, LongAdder evictions) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+			this.evictions = evictions;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<TransportDataKey, TransportData> eldest) {
+			if (size() > this.maxSize) {
+				this.evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
 	/**
 	 * Calculates vehicle-type-dependent travelDisutility per link.
 	 *
@@ -400,6 +486,8 @@ public class NetworkBasedTransportCosts implements VehicleRoutingTransportCosts
 
 		private String defaultTypeId = UUID.randomUUID().toString();
 
+		private int maxCacheSize = Integer.MAX_VALUE;
+
 		/**
 		 * Creates the builder requiring {@link Network} and a collection of
 		 * {@link VehicleType}.
@@ -483,6 +571,24 @@ public class NetworkBasedTransportCosts implements VehicleRoutingTransportCosts
 			return this;
 		}
 
+		/**
+		 * Sets the maximum number of transport-data values (see {@link TransportData})
+		 * that are cached. If more values are calculated, the least recently used ones
+		 * are removed from the cache. By default, the size of the cache is not limited.
+		 * <p>
+		 * Use this for problems that are too big to keep all values in memory. The
+		 * number of cache hits and misses can be retrieved with
+		 * {@link NetworkBasedTransportCosts#getCacheHits()} and
+		 * {@link NetworkBasedTransportCosts#getCacheMisses()} to find a suitable size.
+		 */
+		public Builder setMaxCacheSize(int maxCacheSize) {
+			if (maxCacheSize <= 0) {
+				throw new IllegalArgumentException("maxCacheSize must be greater than zero.");
+			}
+			this.maxCacheSize = maxCacheSize;
+			return this;
+		}
+
 		public Builder setRoadPricingCalculator(VehicleTypeDependentRoadPricingCalculator calculator) {
 			withToll = true;
 			this.roadPricingCalculator = calculator;
@@ -537,9 +643,21 @@ public class NetworkBasedTransportCosts implements VehicleRoutingTransportCosts
 
 	/**
 	 * cost-cache to cache transport-costs and transport-times (see
-	 * {@link TransportData}) according to {@link TransportDataKey}
+	 * {@link TransportData}) according to {@link TransportDataKey}. Either an
+	 * unbounded {@link ConcurrentHashMap}, or a synchronized {@link LruTransportDataCache}.
+	 */
+	private final Map<TransportDataKey, TransportData> costCache;
+
+	private final LongAdder cacheHits = new LongAdder();
+
+	private final LongAdder cacheMisses = new LongAdder();
+
+	private final LongAdder cacheEvictions = new LongAdder();
+
+	/**
+	 * the precomputed transport-data, if any, see {@link #precomputeTransportData(VehicleRoutingProblem, int)}
 	 */
-	private final ConcurrentHashMap<TransportDataKey, TransportData> costCache = new ConcurrentHashMap<TransportDataKey, TransportData>();
+	private volatile PrecomputedTransportData precomputedData = null;
 
 	/**
 	 * caches leastCostPathCalculators according to
@@ -584,6 +702,11 @@ public class NetworkBasedTransportCosts implements VehicleRoutingTransportCosts
 		this.defaultTypeId = builder.defaultTypeId;
 		this.ttMemorizedCounter = new Counter("#TransportCostValues cached ");
 		this.ttRequestedCounter = new Counter("numTravelCosts requested ");
+		if (builder.maxCacheSize == Integer.MAX_VALUE) {
+			this.costCache = new ConcurrentHashMap<>();
+		} else {
+			this.costCache = Collections.synchronizedMap(new LruTransportDataCache(builder.maxCacheSize, this.cacheEvictions));
+		}
 	}
 
 	/**
@@ -591,10 +714,10 @@ public class NetworkBasedTransportCosts implements VehicleRoutingTransportCosts
 	 *
 	 * <p>
 	 * If <code>fromId.equals(toId)</code> it returns 0.0. Otherwise, it looks up in
-	 * the cache whether the transport-time has already been computed (see
-	 * {@link TransportDataKey}, {@link TransportData}). If so, it returns the
-	 * cached travel-time. If not, it computes and caches new values with the
-	 * leastCostPathCalc defined in here.
+	 * the precomputed values and in the cache whether the transport-time has
+	 * already been computed (see {@link TransportDataKey}, {@link TransportData}).
+	 * If so, it returns the cached travel-time. If not, it computes and caches new
+	 * values with the leastCostPathCalc defined in here.
 	 *
 	 * @Throws {@link IllegalStateException} if vehicle is null
 	 */
@@ -607,50 +730,11 @@ public class NetworkBasedTransportCosts implements VehicleRoutingTransportCosts
 		if (vehicle == null) {
 			vehicle = getDefaultVehicle(fromId);
 		}
-		String typeId = vehicle.getType().getTypeId();
-		int timeSlice = getTimeSlice(departureTime);
-		TransportDataKey transportDataKey = makeKey(fromId.getId(), toId.getId(), timeSlice, typeId);
-		TransportData data = costCache.get(transportDataKey);
-		double transportTime;
-
-		if (data != null) {
-			transportTime = data.transportTime;
-		} else {
-			informStartCalc();
-			Id<Link> fromLinkId = Id.create(fromId.getId(), Link.class);
-			Id<Link> toLinkId = Id.create(toId.getId(), Link.class);
-			Link fromLink = network.getLinks().get(fromLinkId);
-			Link toLink = network.getLinks().get(toLinkId);
-			// because path not includes in&out Link
-
-			org.matsim.vehicles.Vehicle matsimVehicle = getMatsimVehicle(vehicle);
-			LeastCostPathCalculator router = createLeastCostPathCalculator();
-			Path path = router.calcLeastCostPath(fromLink.getToNode(), toLink.getFromNode(), departureTime, null,
-					matsimVehicle);
-//			if(path == null) return Double.MAX_VALUE;
-			double additionalCostTo = travelDisutility.getLinkTravelDisutility(toLink, departureTime + path.travelTime,
-					null, matsimVehicle);
-			double additionalTimeTo = travelTime.getLinkTravelTime(toLink, departureTime + path.travelTime, null,
-					matsimVehicle);
-
-			double travelDistance = fromLink.getLength();
-			Iterator<Link> iter = path.links.iterator();
-			while (iter.hasNext()) {
-				Link link = iter.next();
-				travelDistance = travelDistance + link.getLength();
-			}
-			transportTime = path.travelTime;
-			TransportData newData = new TransportData(path.travelCost + additionalCostTo,
-					path.travelTime + additionalTimeTo, travelDistance);
-			TransportData existingData = costCache.putIfAbsent(transportDataKey, newData);
-			ttMemorizedCounter.incCounter();
-			if (existingData == null) {
-				existingData = newData;
-			}
-			transportTime = existingData.transportTime;
-			informEndCalc();
+		double precomputedTime = getPrecomputedValue(fromId, toId, departureTime, vehicle, PrecomputedTransportData.TIME);
+		if (!Double.isNaN(precomputedTime)) {
+			return precomputedTime;
 		}
-		return transportTime;
+		return getTransportData(fromId, toId, departureTime, vehicle).transportTime;
 	}
 
 	private VehicleImpl getDefaultVehicle(Location fromId) {
@@ -674,10 +758,10 @@ public class NetworkBasedTransportCosts implements VehicleRoutingTransportCosts
 	 *
 	 * <p>
 	 * If <code>fromId.equals(toId)</code> it returns 0.0. Otherwise, it looks up in
-	 * the cache whether the transport-costs have already been computed (see
-	 * {@link TransportDataKey}, {@link TransportData}). If so, it returns the
-	 * cached travel-cost value. If not, it computes and caches new values with the
-	 * leastCostPathCalc defined in here.
+	 * the precomputed values and in the cache whether the transport-costs have
+	 * already been computed (see {@link TransportDataKey}, {@link TransportData}).
+	 * If so, it returns the cached travel-cost value. If not, it computes and
+	 * caches new values with the leastCostPathCalc defined in here.
 	 *
 	 * @Throws {@link IllegalStateException} if vehicle is null
 	 */
@@ -693,49 +777,11 @@ public class NetworkBasedTransportCosts implements VehicleRoutingTransportCosts
 		if (vehicle == null) {
 			vehicle = getDefaultVehicle(fromId);
 		}
-		Id<Link> fromLinkId = Id.create(fromId.getId(), Link.class);
-		Id<Link> toLinkId = Id.create(toId.getId(), Link.class);
-		Link fromLink = network.getLinks().get(fromLinkId);
-		Link toLink = network.getLinks().get(toLinkId);
-		LeastCostPathCalculator router = createLeastCostPathCalculator();
-
-		int timeSlice = getTimeSlice(departureTime);
-		String typeId = vehicle.getType().getTypeId();
-		TransportDataKey transportDataKey = makeKey(fromId.getId(), toId.getId(), timeSlice, typeId);
-		TransportData data = costCache.get(transportDataKey);
-		double transportCost;
-
-		if (data != null) {
-			transportCost = data.transportCosts;
-		} else {
-			informStartCalc();
-			org.matsim.vehicles.Vehicle matsimVehicle = getMatsimVehicle(vehicle);
-			Path path = router.calcLeastCostPath(fromLink.getToNode(), toLink.getFromNode(), departureTime, null,
-					matsimVehicle);
-//			if(path == null) return Double.MAX_VALUE;
-			double additionalCostTo = travelDisutility.getLinkTravelDisutility(toLink, departureTime + path.travelTime,
-					null, matsimVehicle);
-			double additionalTimeTo = travelTime.getLinkTravelTime(toLink, departureTime + path.travelTime, null,
-					matsimVehicle);
-			double travelDistance = fromLink.getLength();
-			Iterator<Link> iter = path.links.iterator();
-			while (iter.hasNext()) {
-				Link link = iter.next();
-				travelDistance = travelDistance + link.getLength();
-			}
-
-			TransportData newData = new TransportData(path.travelCost + additionalCostTo,
-					path.travelTime + additionalTimeTo, travelDistance);
-			TransportData existingData = costCache.putIfAbsent(transportDataKey, newData);
-			ttMemorizedCounter.incCounter();
-			if (existingData == null) {
-				// succeeded
-				existingData = newData;
-			}
-			transportCost = existingData.transportCosts;
-			informEndCalc();
+		double precomputedCosts = getPrecomputedValue(fromId, toId, departureTime, vehicle, PrecomputedTransportData.COSTS);
+		if (!Double.isNaN(precomputedCosts)) {
+			return precomputedCosts;
 		}
-		return transportCost;
+		return getTransportData(fromId, toId, departureTime, vehicle).transportCosts;
 	}
 
 	/**
@@ -743,10 +789,10 @@ public class NetworkBasedTransportCosts implements VehicleRoutingTransportCosts
 	 *
 	 * <p>
 	 * If <code>fromId.equals(toId)</code> it returns 0.0. Otherwise, it looks up in
-	 * the cache whether the transport-distance has already been computed (see
-	 * {@link TransportDataKey}, {@link TransportData}). If so, it returns the
-	 * cached distance. If not, it computes and caches new values with the
-	 * leastCostPathCalc defined in here.
+	 * the precomputed values and in the cache whether the transport-distance has
+	 * already been computed (see {@link TransportDataKey}, {@link TransportData}).
+	 * If so, it returns the cached distance. If not, it computes and caches new
+	 * values with the leastCostPathCalc defined in here.
 	 *
 	 * @Throws {@link IllegalStateException} if vehicle is null
 	 */
@@ -758,45 +804,244 @@ public class NetworkBasedTransportCosts implements VehicleRoutingTransportCosts
 		if (vehicle == null) {
 			vehicle = getDefaultVehicle(fromId);
 		}
+		double precomputedDistance = getPrecomputedValue(fromId, toId, departureTime, vehicle, PrecomputedTransportData.DISTANCE);
+		if (!Double.isNaN(precomputedDistance)) {
+			return precomputedDistance;
+		}
+		return getTransportData(fromId, toId, departureTime, vehicle).transportDistance;
+	}
+
+	private double getPrecomputedValue(Location fromId, Location toId, double departureTime, Vehicle vehicle, int field) {
+		PrecomputedTransportData data = this.precomputedData;
+		if (data == null) {
+			return Double.NaN;
+		}
+		double value = data.get(fromId.getId(), toId.getId(), getTimeSlice(departureTime), vehicle.getType().getTypeId(), field);
+		if (!Double.isNaN(value)) {
+			cacheHits.increment();
+		}
+		return value;
+	}
+
+	/**
+	 * Looks up the transport-data in the cache, or computes and caches it if it is
+	 * not yet available.
+	 */
+	private TransportData getTransportData(Location fromId, Location toId, double departureTime, Vehicle vehicle) {
 		String typeId = vehicle.getType().getTypeId();
 		int timeSlice = getTimeSlice(departureTime);
 		TransportDataKey transportDataKey = makeKey(fromId.getId(), toId.getId(), timeSlice, typeId);
 		TransportData data = costCache.get(transportDataKey);
-		double travelDistance;
 		if (data != null) {
-			travelDistance = data.transportDistance;
-		} else {
-			informStartCalc();
-			Id<Link> fromLinkId = Id.create(fromId.getId(), Link.class);
-			Id<Link> toLinkId = Id.create(toId.getId(), Link.class);
-			Link fromLink = network.getLinks().get(fromLinkId);
-			Link toLink = network.getLinks().get(toLinkId);
-			travelDistance = fromLink.getLength();
-			org.matsim.vehicles.Vehicle matsimVehicle = getMatsimVehicle(vehicle);
-			LeastCostPathCalculator router = createLeastCostPathCalculator();
-			Path path = router.calcLeastCostPath(fromLink.getToNode(), toLink.getFromNode(), departureTime, null,
-					matsimVehicle);
-//			if(path == null) return Double.MAX_VALUE;
-			double additionalCostTo = travelDisutility.getLinkTravelDisutility(toLink, departureTime + path.travelTime,
-					null, matsimVehicle);
-			double additionalTimeTo = travelTime.getLinkTravelTime(toLink, departureTime + path.travelTime, null,
-					matsimVehicle);
-			Iterator<Link> iter = path.links.iterator();
-			while (iter.hasNext()) {
-				Link link = iter.next();
-				travelDistance = travelDistance + link.getLength();
+			cacheHits.increment();
+			return data;
+		}
+		cacheMisses.increment();
+		informStartCalc();
+		Id<Link> fromLinkId = Id.create(fromId.getId(), Link.class);
+		Id<Link> toLinkId = Id.create(toId.getId(), Link.class);
+		Link fromLink = network.getLinks().get(fromLinkId);
+		Link toLink = network.getLinks().get(toLinkId);
+		// because path not includes in&out Link
+
+		org.matsim.vehicles.Vehicle matsimVehicle = getMatsimVehicle(vehicle);
+		LeastCostPathCalculator router = createLeastCostPathCalculator();
+		Path path = router.calcLeastCostPath(fromLink.getToNode(), toLink.getFromNode(), departureTime, null,
+				matsimVehicle);
+//		if(path == null) return Double.MAX_VALUE;
+		double additionalCostTo = travelDisutility.getLinkTravelDisutility(toLink, departureTime + path.travelTime,
+				null, matsimVehicle);
+		double additionalTimeTo = travelTime.getLinkTravelTime(toLink, departureTime + path.travelTime, null,
+				matsimVehicle);
+
+		double travelDistance = fromLink.getLength();
+		Iterator<Link> iter = path.links.iterator();
+		while (iter.hasNext()) {
+			Link link = iter.next();
+			travelDistance = travelDistance + link.getLength();
+		}
+		TransportData newData = new TransportData(path.travelCost + additionalCostTo,
+				path.travelTime + additionalTimeTo, travelDistance);
+		TransportData existingData = costCache.putIfAbsent(transportDataKey, newData);
+		ttMemorizedCounter.incCounter();
+		if (existingData == null) {
+			// succeeded
+			existingData = newData;
+		}
+		informEndCalc();
+		return existingData;
+	}
+
+	/**
+	 * Precomputes the transport-costs, transport-times and distances between all
+	 * locations of the {@link VehicleRoutingProblem}, i.e. the locations of the
+	 * services, shipments and vehicles, for all vehicle-types and time-bins.
+	 * <p>
+	 * The time-bins range from the earliest departure to the latest arrival of the
+	 * vehicles. If the time-bins are limited with
+	 * {@link Builder#setTimeSliceWidth(int)}, the latest arrival of all vehicles
+	 * must thus be set.
+	 *
+	 * @see #precomputeTransportData(Collection, Collection, double, double, int)
+	 */
+	public void precomputeTransportData(VehicleRoutingProblem vrp, int numberOfThreads) {
+		List<Location> locations = new ArrayList<>();
+		for (Job job : vrp.getJobs().values()) {
+			if (job instanceof Service) {
+				locations.add(((Service) job).getLocation());
+			} else if (job instanceof Shipment) {
+				locations.add(((Shipment) job).getPickupLocation());
+				locations.add(((Shipment) job).getDeliveryLocation());
+			}
+		}
+		double startTime = Double.POSITIVE_INFINITY;
+		double endTime = Double.NEGATIVE_INFINITY;
+		for (Vehicle vehicle : vrp.getVehicles()) {
+			locations.add(vehicle.getStartLocation());
+			locations.add(vehicle.getEndLocation());
+			startTime = Math.min(startTime, vehicle.getEarliestDeparture());
+			endTime = Math.max(endTime, vehicle.getLatestArrival());
+		}
+		if (timeSliceWidth == Integer.MAX_VALUE) {
+			endTime = startTime;
+		} else if (endTime >= Integer.MAX_VALUE) {
+			throw new IllegalStateException("the latest arrival of the vehicles is not set, so the time-bins to precompute are unknown. "
+					+ "Use precomputeTransportData(locations, vehicles, startTime, endTime, numberOfThreads) instead.");
+		}
+		precomputeTransportData(locations, vrp.getVehicles(), startTime, endTime, numberOfThreads);
+	}
+
+	/**
+	 * Precomputes the transport-costs, transport-times and distances between all
+	 * given locations for the vehicle-types of the given vehicles and all time-bins
+	 * between <code>startTime</code> and <code>endTime</code>.
+	 * <p>
+	 * The values of each time-bin are computed for a departure at the beginning of
+	 * the time-bin (or at <code>startTime</code> for the first one) with one
+	 * least-cost path tree per location, using <code>numberOfThreads</code> threads
+	 * in parallel. They are stored as float values in flat arrays, which requires
+	 * <code>12 * locations^2</code> bytes per vehicle-type and time-bin. Requests
+	 * for values that were not precomputed are handled as without precomputation.
+	 */
+	public void precomputeTransportData(Collection<Location> locations, Collection<Vehicle> vehicles,
+			double startTime, double endTime, int numberOfThreads) {
+		Map<String, Integer> locationIndices = new LinkedHashMap<>();
+		List<Link> links = new ArrayList<>();
+		for (Location location : locations) {
+			if (location != null && !locationIndices.containsKey(location.getId())) {
+				Link link = network.getLinks().get(Id.create(location.getId(), Link.class));
+				if (link == null) {
+					throw new IllegalArgumentException("location " + location.getId() + " is not a link of the network.");
+				}
+				locationIndices.put(location.getId(), links.size());
+				links.add(link);
+			}
+		}
+		int locationCount = links.size();
+		if ((long) locationCount * locationCount * 3 > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("too many locations to precompute: " + locationCount);
+		}
+		// one representative vehicle per type, as the travel-times might depend on the vehicle's maximum velocity
+		Map<String, org.matsim.vehicles.Vehicle> vehiclesPerType = new LinkedHashMap<>();
+		for (Vehicle vehicle : vehicles) {
+			vehiclesPerType.computeIfAbsent(vehicle.getType().getTypeId(), typeId -> getMatsimVehicle(vehicle));
+		}
+		int firstTimeSlice = getTimeSlice(startTime);
+		int timeSliceCount = getTimeSlice(endTime) - firstTimeSlice + 1;
+		List<String> typeIds = new ArrayList<>(vehiclesPerType.keySet());
+
+		log.info("precomputing transport-data for " + locationCount + " locations, " + typeIds.size() + " vehicle-types and "
+				+ timeSliceCount + " time-bins with " + numberOfThreads + " threads...");
+		Map<String, float[][]> dataPerVehicleType = new HashMap<>();
+		for (String typeId : typeIds) {
+			float[][] dataPerTimeSlice = new float[timeSliceCount][];
+			for (int i = 0; i < timeSliceCount; i++) {
+				dataPerTimeSlice[i] = new float[locationCount * locationCount * 3];
 			}
-			TransportData newData = new TransportData(path.travelCost + additionalCostTo,
-					path.travelTime + additionalTimeTo, travelDistance);
-			TransportData existingData = costCache.putIfAbsent(transportDataKey, newData);
-			ttMemorizedCounter.incCounter();
-			if (existingData == null) {
-				existingData = newData;
+			dataPerVehicleType.put(typeId, dataPerTimeSlice);
+		}
+
+		SpeedyGraph graph = new SpeedyGraph(network);
+		// each task calculates one row, i.e. the data from one location to all others
+		int taskCount = typeIds.size() * timeSliceCount * locationCount;
+		AtomicInteger nextTask = new AtomicInteger(0);
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < numberOfThreads; t++) {
+			futures.add(executor.submit(() -> {
+				LeastCostPathTree tree = new LeastCostPathTree(graph, travelTime, travelDisutility);
+				int task;
+				while ((task = nextTask.getAndIncrement()) < taskCount) {
+					int fromIndex = task % locationCount;
+					int timeSliceIndex = (task / locationCount) % timeSliceCount;
+					String typeId = typeIds.get(task / locationCount / timeSliceCount);
+					double departureTime = Math.max(startTime, (firstTimeSlice + timeSliceIndex) * (double) timeSliceWidth);
+					float[] data = dataPerVehicleType.get(typeId)[timeSliceIndex];
+					calculateRow(tree, links, fromIndex, departureTime, vehiclesPerType.get(typeId), data);
+				}
+			}));
+		}
+		try {
+			for (Future<?> future : futures) {
+				future.get();
 			}
-			travelDistance = existingData.transportDistance;
-			informEndCalc();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			executor.shutdown();
 		}
-		return travelDistance;
+		this.precomputedData = new PrecomputedTransportData(locationIndices, dataPerVehicleType, firstTimeSlice);
+		log.info("precomputing transport-data done.");
+	}
+
+	private void calculateRow(LeastCostPathTree tree, List<Link> links, int fromIndex, double departureTime,
+			org.matsim.vehicles.Vehicle matsimVehicle, float[] data) {
+		int locationCount = links.size();
+		Link fromLink = links.get(fromIndex);
+		// same as with the leastCostPathCalc, the path starts at the toNode of the fromLink and ends at the fromNode of the toLink
+		tree.calculate(fromLink.getToNode().getId().index(), departureTime, null, matsimVehicle);
+		for (int toIndex = 0; toIndex < locationCount; toIndex++) {
+			int offset = (fromIndex * locationCount + toIndex) * 3;
+			if (toIndex == fromIndex) {
+				continue; // 0.0
+			}
+			Link toLink = links.get(toIndex);
+			int toNode = toLink.getFromNode().getId().index();
+			OptionalTime arrivalTime = tree.getTime(toNode);
+			if (arrivalTime.isUndefined()) {
+				data[offset + PrecomputedTransportData.COSTS] = Float.POSITIVE_INFINITY;
+				data[offset + PrecomputedTransportData.TIME] = Float.POSITIVE_INFINITY;
+				data[offset + PrecomputedTransportData.DISTANCE] = Float.POSITIVE_INFINITY;
+				continue;
+			}
+			double arrival = arrivalTime.seconds();
+			double additionalCostTo = travelDisutility.getLinkTravelDisutility(toLink, arrival, null, matsimVehicle);
+			double additionalTimeTo = travelTime.getLinkTravelTime(toLink, arrival, null, matsimVehicle);
+			data[offset + PrecomputedTransportData.COSTS] = (float) (tree.getCost(toNode) + additionalCostTo);
+			data[offset + PrecomputedTransportData.TIME] = (float) (arrival - departureTime + additionalTimeTo);
+			data[offset + PrecomputedTransportData.DISTANCE] = (float) (fromLink.getLength() + tree.getDistance(toNode));
+		}
+	}
+
+	/**
+	 * @return the number of requests that were answered with a cached or precomputed value
+	 */
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+
+	/**
+	 * @return the number of requests that required the calculation of a new value
+	 */
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+
+	/**
+	 * @return the number of values that were removed from the cache because its maximum size was reached
+	 */
+	public long getCacheEvictions() {
+		return cacheEvictions.sum();
 	}
 
 	/**
@@ -4,6 +4,8 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import com.graphhopper.jsprit.core.problem.Location;
 import com.graphhopper.jsprit.core.problem.driver.Driver;
@@ -151,4 +153,78 @@ public class NetworkBasedTransportCostsTest extends MatsimTestCase{
 		assertEquals(20000.0, networkBasedTransportCosts.getDistance(Location.newInstance("6"), Location.newInstance("21"), 0.0, vehicle2), 0.01);
 	}
 
+	@Test
+	public void test_whenPrecomputed_itMustReturnTheSameValuesAsWithoutPrecomputation(){
+		Config config = new Config();
+		config.addCoreModules();
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		String NETWORK_FILENAME = getClassInputDirectory() + "network.xml";
+		new MatsimNetworkReader(scenario.getNetwork()).readFile(NETWORK_FILENAME);
+
+		Network network = scenario.getNetwork();
+		NetworkBasedTransportCosts.Builder builder = NetworkBasedTransportCosts.Builder.newInstance(network);
+		builder.addVehicleTypeSpecificCosts("type1", 10.0, 1.0, 2.0);
+		NetworkBasedTransportCosts c = builder.build();
+
+		NetworkBasedTransportCosts.Builder precomputedBuilder = NetworkBasedTransportCosts.Builder.newInstance(network);
+		precomputedBuilder.addVehicleTypeSpecificCosts("type1", 10.0, 1.0, 2.0);
+		NetworkBasedTransportCosts precomputed = precomputedBuilder.build();
+
+		Vehicle vehicle1 = mock(Vehicle.class);
+		com.graphhopper.jsprit.core.problem.vehicle.VehicleType type1 = mock( com.graphhopper.jsprit.core.problem.vehicle.VehicleType.class );
+		when(type1.getMaxVelocity()).thenReturn(5.0);
+		when(type1.getTypeId()).thenReturn("type1");
+		when(vehicle1.getType()).thenReturn(type1);
+		when(vehicle1.getId()).thenReturn("vehicle1");
+
+		List<Location> locations = Arrays.asList(Location.newInstance("1"), Location.newInstance("6"), Location.newInstance("20"), Location.newInstance("21"));
+		precomputed.precomputeTransportData(locations, Collections.singletonList(vehicle1), 0.0, 0.0, 2);
+
+		for (Location from : locations) {
+			for (Location to : locations) {
+				assertEquals(c.getTransportCost(from, to, 0.0, mock(Driver.class), vehicle1), precomputed.getTransportCost(from, to, 0.0, mock(Driver.class), vehicle1), 0.01);
+				assertEquals(c.getTransportTime(from, to, 0.0, mock(Driver.class), vehicle1), precomputed.getTransportTime(from, to, 0.0, mock(Driver.class), vehicle1), 0.01);
+				assertEquals(c.getDistance(from, to, 0.0, vehicle1), precomputed.getDistance(from, to, 0.0, vehicle1), 0.01);
+			}
+		}
+		assertEquals(20000.0, precomputed.getDistance(Location.newInstance("6"), Location.newInstance("21"), 0.0, vehicle1), 0.01);
+		assertEquals(0, precomputed.getCacheMisses());
+		assertEquals(36, precomputed.getCacheHits());
+	}
+
+	@Test
+	public void test_whenCacheSizeIsLimited_itMustEvictValues(){
+		Config config = new Config();
+		config.addCoreModules();
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		String NETWORK_FILENAME = getClassInputDirectory() + "network.xml";
+		new MatsimNetworkReader(scenario.getNetwork()).readFile(NETWORK_FILENAME);
+
+		Network network = scenario.getNetwork();
+		NetworkBasedTransportCosts.Builder builder = NetworkBasedTransportCosts.Builder.newInstance(network);
+		builder.addVehicleTypeSpecificCosts("type1", 10.0, 0.0, 2.0);
+		builder.setMaxCacheSize(1);
+		NetworkBasedTransportCosts c = builder.build();
+
+		Vehicle vehicle1 = mock(Vehicle.class);
+		com.graphhopper.jsprit.core.problem.vehicle.VehicleType type1 = mock( com.graphhopper.jsprit.core.problem.vehicle.VehicleType.class );
+		when(type1.getMaxVelocity()).thenReturn(5.0);
+		when(type1.getTypeId()).thenReturn("type1");
+		when(vehicle1.getType()).thenReturn(type1);
+		when(vehicle1.getId()).thenReturn("vehicle1");
+
+		assertEquals(20000.0, c.getTransportCost(Location.newInstance("20"), Location.newInstance("21"), 0.0, mock(Driver.class), vehicle1), 0.01);
+		assertEquals(20000.0, c.getTransportCost(Location.newInstance("20"), Location.newInstance("21"), 0.0, mock(Driver.class), vehicle1), 0.01);
+		assertEquals(1, c.getCacheMisses());
+		assertEquals(1, c.getCacheHits());
+
+		assertEquals(20000.0, c.getDistance(Location.newInstance("6"), Location.newInstance("21"), 0.0, vehicle1), 0.01);
+		assertEquals(1, c.getCacheEvictions());
+		// evicted, so it needs to be calculated again
+		assertEquals(20000.0, c.getTransportCost(Location.newInstance("20"), Location.newInstance("21"), 0.0, mock(Driver.class), vehicle1), 0.01);
+		assertEquals(3, c.getCacheMisses());
+		assertEquals(1, c.getCacheHits());
+		assertEquals(2, c.getCacheEvictions());
+	}
+
 }
@@ -1,7 +1,6 @@
 package org.matsim.contrib.noise;
 
 import com.google.inject.Inject;
-import gnu.trove.map.TObjectDoubleMap;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
@@ -10,6 +9,7 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.vehicles.Vehicle;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 public class NoiseDamageCalculation {
@@ -40,7 +40,7 @@ public class NoiseDamageCalculation {
     @Inject
     private Set<NoiseVehicleType> vehicleTypes;
 
-    private int cWarn3 = 0;
+    private final AtomicBoolean cWarn3 = new AtomicBoolean(false);
     private int cWarn4 = 0;
 
     private List<NoiseEventCaused> noiseEventsCaused = new ArrayList<>();
@@ -60,15 +60,23 @@ public class NoiseDamageCalculation {
     }
 
 
-    void calculateDamages(NoiseReceiverPoint rp) {
+    /**
+     * Computes the damages at the given receiver point for the current time bin. May be called concurrently for
+     * different receiver points: apart from the receiver point itself, the only state written to is the damage cost
+     * of the noise links, via the synchronized adders of {@link NoiseLink}.
+     *
+     * @param noiseLinks the noise links of the current time bin, as passed to
+     *                   {@link NoiseImmission#calculateImmission(NoiseReceiverPoint, double, NoiseLink[])}
+     */
+    void calculateDamages(NoiseReceiverPoint rp, NoiseLink[] noiseLinks) {
         if (this.noiseContext.getNoiseParams().isComputePopulationUnits()) {
             calculateAffectedAgentUnits(rp);
             if (this.noiseContext.getNoiseParams().isComputeNoiseDamages()) {
                 calculateDamagePerReceiverPoint(rp);
             }
             if (this.noiseContext.getNoiseParams().isComputeCausingAgents()) {
-                computeAverageDamageCost(rp);
-                calculateMarginalDamageCost(rp);
+                computeAverageDamageCost(rp, noiseLinks);
+                calculateMarginalDamageCost(rp, noiseLinks);
             }
         }
     }
@@ -187,25 +195,25 @@ public class NoiseDamageCalculation {
     /*
      * Noise allocation approach: AverageCost
      */
-    private void computeAverageDamageCost(NoiseReceiverPoint rp) {
-        calculateCostSharesPerLinkPerTimeInterval(rp);
+    private void computeAverageDamageCost(NoiseReceiverPoint rp, NoiseLink[] noiseLinks) {
+        calculateCostSharesPerLinkPerTimeInterval(rp, noiseLinks);
 //		calculateCostsPerVehiclePerLinkPerTimeInterval();
     }
 
     /*
      * Noise allocation approach: AverageCost
      */
-    private void calculateCostSharesPerLinkPerTimeInterval(NoiseReceiverPoint rp) {
+    private void calculateCostSharesPerLinkPerTimeInterval(NoiseReceiverPoint rp, NoiseLink[] noiseLinks) {
         if (rp.getDamageCosts() != 0.) {
-            for (Id<Link> linkId : rp.getLinkId2IsolatedImmission().keySet()) {
-                double linkImmission = rp.getLinkId2IsolatedImmission().get(linkId);
-                if (!(linkImmission == 0.)) {
+            final int[] relevantLinkIndices = rp.getRelevantLinkIndices();
+            final double[] isolatedImmissions = rp.getIsolatedImmissions();
+            for (int i = 0; i < relevantLinkIndices.length; i++) {
+                NoiseLink noiseLink = noiseLinks[relevantLinkIndices[i]];
+                double linkImmission = isolatedImmissions[i];
+                if (noiseLink != null && !(linkImmission == 0.)) {
                     double costShare = NoiseEquations.calculateShareOfResultingNoiseImmission(linkImmission, rp.getCurrentImmission());
                     double costs = costShare * rp.getDamageCosts();
-                    NoiseLink noiseLink = this.noiseContext.getNoiseLinks().get(linkId);
-                    if ( noiseLink != null) {
-                        noiseLink.addDamageCost(costs);
-                    }
+                    noiseLink.addDamageCost(costs);
                 }
             }
         }
@@ -284,14 +292,20 @@ public class NoiseDamageCalculation {
     /*
      * Noise allocation approach: MarginalCost
      */
-    private void calculateMarginalDamageCost(NoiseReceiverPoint rp) {
+    private void calculateMarginalDamageCost(NoiseReceiverPoint rp, NoiseLink[] noiseLinks) {
 
         if (rp.getAffectedAgentUnits() != 0.) {
+            final int[] relevantLinkIndices = rp.getRelevantLinkIndices();
+            final double[] isolatedImmissions = rp.getIsolatedImmissions();
             for(NoiseVehicleType type: vehicleTypes) {
-                final TObjectDoubleMap<Id<Link>> link2ImmissionPlusOne = rp.getLinkId2IsolatedImmissionPlusOneVehicle().get(type);
-                for (Id<Link> thisLink : rp.getLinkId2IsolatedImmission().keySet()) {
-                    final double isolatedPlusOne = link2ImmissionPlusOne.get(thisLink);
-                    final double isolated = rp.getLinkId2IsolatedImmission().get(thisLink);
+                final double[] isolatedImmissionsPlusOne = rp.getIsolatedImmissionsPlusOneVehicle().get(type);
+                for (int i = 0; i < relevantLinkIndices.length; i++) {
+                    NoiseLink noiseLink = noiseLinks[relevantLinkIndices[i]];
+                    if (noiseLink == null) {
+                        continue;
+                    }
+                    final double isolatedPlusOne = isolatedImmissionsPlusOne[i];
+                    final double isolated = isolatedImmissions[i];
                     double noiseImmissionPlusOneVehicleThisLink = NoiseEquations.calculateResultingNoiseImmissionPlusOneVehicle(rp.getCurrentImmission(), isolated, isolatedPlusOne);
                     double damageCostsPlusOneVehicleThisLink = calculateDamageCosts(noiseImmissionPlusOneVehicleThisLink, rp.getAffectedAgentUnits(), this.noiseContext.getCurrentTimeBinEndTime(), this.noiseContext.getNoiseParams().getAnnualCostRate(), this.noiseContext.getNoiseParams().getTimeBinSizeNoiseComputation());
                     double marginalDamageCostVehicleThisLink = (damageCostsPlusOneVehicleThisLink - rp.getDamageCosts()) / this.noiseContext.getNoiseParams().getScaleFactor();
@@ -300,18 +314,16 @@ public class NoiseDamageCalculation {
                         if (Math.abs(marginalDamageCostVehicleThisLink) < 0.0000000001) {
                             marginalDamageCostVehicleThisLink = 0.;
                         } else {
-                            if (cWarn3 == 0) {
-                                log.warn("The marginal damage cost per car on link " + thisLink.toString() + " for receiver point " + rp.getId().toString() + " is " + marginalDamageCostVehicleThisLink + ".");
+                            if (cWarn3.compareAndSet(false, true)) {
+                                log.warn("The marginal damage cost per car on link " + noiseLink.getId().toString() + " for receiver point " + rp.getId().toString() + " is " + marginalDamageCostVehicleThisLink + ".");
                                 log.warn("final immission: " + rp.getCurrentImmission() + " - immission plus one car " + noiseImmissionPlusOneVehicleThisLink + " - marginal damage cost car: " + marginalDamageCostVehicleThisLink);
                                 log.warn("Setting the marginal damage cost per car to 0.");
                                 log.warn("This message is only given once.");
-                                cWarn3++;
                             }
 
                             marginalDamageCostVehicleThisLink = 0.;
                         }
                     }
-                    NoiseLink noiseLink = this.noiseContext.getNoiseLinks().get(thisLink);
                     noiseLink.addMarginalDamageCostPerVehicle(type, marginalDamageCostVehicleThisLink);
                 }
             }
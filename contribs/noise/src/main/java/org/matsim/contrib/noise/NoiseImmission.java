@@ -17,6 +17,18 @@ public interface NoiseImmission {
      */
     void calculateImmission(NoiseReceiverPoint rp, double currentTimeBinEndTime);
 
+    /**
+     * Same as {@link #calculateImmission(NoiseReceiverPoint, double)}, but reads the emissions from the given vector
+     * instead of looking up each link in the noise context, i.e. the immission is the product of the receiver point's
+     * row of correction terms with the emission vector. The vector is built once per time bin. Implementations that do
+     * not override this method ignore it.
+     * @param noiseLinks The noise links of the current time bin, indexed by {@link org.matsim.api.core.v01.Id#index()},
+     *                   see {@link NoiseLink#indexNoiseLinks}.
+     */
+    default void calculateImmission(NoiseReceiverPoint rp, double currentTimeBinEndTime, NoiseLink[] noiseLinks) {
+        calculateImmission(rp, currentTimeBinEndTime);
+    }
+
     /**
      * Returns the correction term for a given link-receiver point relation.
      * @param projectedDistance The orthogonal projected distance from receiver point to link.
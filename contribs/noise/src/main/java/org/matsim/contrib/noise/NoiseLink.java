@@ -29,9 +29,11 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.vehicles.Vehicle;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 
@@ -65,6 +67,49 @@ final class NoiseLink {
 		this.id = linkId;
 	}
 
+	/**
+	 * Arranges the noise links of one time bin as a dense vector indexed by {@link Id#index()}.
+	 * Tunnel links are left out (<code>null</code>), they do not contribute to any immission.
+	 */
+	static NoiseLink[] indexNoiseLinks(Collection<NoiseLink> noiseLinks, Set<Id<Link>> tunnelLinkIds) {
+		NoiseLink[] indexedNoiseLinks = new NoiseLink[Id.getNumberOfIds(Link.class)];
+		for (NoiseLink noiseLink : noiseLinks) {
+			if (!tunnelLinkIds.contains(noiseLink.getId())) {
+				indexedNoiseLinks[noiseLink.getId().index()] = noiseLink;
+			}
+		}
+		return indexedNoiseLinks;
+	}
+
+	/**
+	 * Picks the relevant noise links of a receiver point from the vector built by {@link #indexNoiseLinks}, in the same
+	 * order as {@link NoiseReceiverPoint#getRelevantLinkIndices()}.
+	 */
+	static NoiseLink[] getRelevantNoiseLinks(NoiseReceiverPoint rp, NoiseLink[] indexedNoiseLinks) {
+		int[] relevantLinkIndices = rp.getRelevantLinkIndices();
+		NoiseLink[] relevantNoiseLinks = new NoiseLink[relevantLinkIndices.length];
+		for (int i = 0; i < relevantLinkIndices.length; i++) {
+			relevantNoiseLinks[i] = indexedNoiseLinks[relevantLinkIndices[i]];
+		}
+		return relevantNoiseLinks;
+	}
+
+	/**
+	 * Same as {@link #getRelevantNoiseLinks(NoiseReceiverPoint, NoiseLink[])}, but looks up only the relevant links, for
+	 * callers that have no vector of the current time bin.
+	 */
+	static NoiseLink[] getRelevantNoiseLinks(NoiseReceiverPoint rp, Map<Id<Link>, NoiseLink> noiseLinks, Set<Id<Link>> tunnelLinkIds) {
+		int[] relevantLinkIndices = rp.getRelevantLinkIndices();
+		NoiseLink[] relevantNoiseLinks = new NoiseLink[relevantLinkIndices.length];
+		for (int i = 0; i < relevantLinkIndices.length; i++) {
+			Id<Link> linkId = Id.get(relevantLinkIndices[i], Link.class);
+			if (!tunnelLinkIds.contains(linkId)) {
+				relevantNoiseLinks[i] = noiseLinks.get(linkId);
+			}
+		}
+		return relevantNoiseLinks;
+	}
+
 	public Id<Link> getId() {
 		return id;
 	}
@@ -53,11 +53,21 @@ public class NoiseReceiverPoint extends ReceiverPoint {
 	private boolean initialized = false;
 
 	private TObjectDoubleMap<Id<Link>> linkId2Correction = null;
-	private TObjectDoubleMap<Id<Link>> linkId2IsolatedImmission = null;
+
+	/**
+	 * Compact copy of the correction terms, i.e. this receiver point's row of the sparse link-receiver matrix.
+	 * The links are given by their {@link Id#index()}. Built on first use and dropped whenever a correction term is changed.
+	 */
+	private int[] relevantLinkIndices = null;
+	private double[] relevantLinkCorrections = null;
 
 	// time-specific information
 	private double currentImmission = 0;
-	private Map<? extends NoiseVehicleType, TObjectDoubleMap<Id<Link>>> linkId2IsolatedImmissionPlusOneVehicle = null;
+	/**
+	 * Isolated immissions per relevant link, in the same order as {@link #getRelevantLinkIndices()}.
+	 */
+	private double[] isolatedImmissions = null;
+	private Map<? extends NoiseVehicleType, double[]> isolatedImmissionsPlusOneVehicle = null;
 
 	private double affectedAgentUnits = 0.;
 	private double damageCosts;
@@ -100,6 +110,43 @@ public class NoiseReceiverPoint extends ReceiverPoint {
 			linkId2Correction = new TObjectDoubleHashMap<>();
 		}
 		this.linkId2Correction.put(linkId, correction);
+		this.relevantLinkIndices = null;
+		this.relevantLinkCorrections = null;
+	}
+
+	/**
+	 * @return the {@link Id#index()} of the relevant links, in the same order as {@link #getRelevantLinkCorrections()}
+	 */
+	int[] getRelevantLinkIndices() {
+		compactLinkCorrections();
+		return relevantLinkIndices;
+	}
+
+	/**
+	 * @return the correction terms, in the same order as {@link #getRelevantLinkIndices()}
+	 */
+	double[] getRelevantLinkCorrections() {
+		compactLinkCorrections();
+		return relevantLinkCorrections;
+	}
+
+	private void compactLinkCorrections() {
+		if(relevantLinkIndices != null) {
+			return;
+		}
+		int size = linkId2Correction == null ? 0 : linkId2Correction.size();
+		int[] indices = new int[size];
+		double[] corrections = new double[size];
+		if(size > 0) {
+			int[] i = {0};
+			linkId2Correction.forEachEntry((linkId, correction) -> {
+				indices[i[0]] = linkId.index();
+				corrections[i[0]++] = correction;
+				return true;
+			});
+		}
+		relevantLinkCorrections = corrections;
+		relevantLinkIndices = indices;
 	}
 
 	double getLinkCorrection(Id<Link> linkId) {
@@ -187,8 +234,8 @@ public class NoiseReceiverPoint extends ReceiverPoint {
 		resetTimeInterval();
 		this.personId2actInfos = null;
 		this.currentImmission = 0;
-		this.linkId2IsolatedImmission = null;
-		this.linkId2IsolatedImmissionPlusOneVehicle = null;
+		this.isolatedImmissions = null;
+		this.isolatedImmissionsPlusOneVehicle = null;
 		aggregatedImmissionTermLden = 0;
 		aggregatedImmissionTerm69 = 0;
 		aggregatedImmissionTerm1619 = 0;
@@ -196,8 +243,8 @@ public class NoiseReceiverPoint extends ReceiverPoint {
 	
 	void resetTimeInterval() {
 		this.currentImmission = 0;
-		this.linkId2IsolatedImmission = null;
-		this.linkId2IsolatedImmissionPlusOneVehicle = null;
+		this.isolatedImmissions = null;
+		this.isolatedImmissionsPlusOneVehicle = null;
 		this.setAffectedAgentUnits(0.);
 		this.setDamageCosts(0.);
 		this.setDamageCostsPerAffectedAgentUnit(0.);
@@ -227,19 +274,19 @@ public class NoiseReceiverPoint extends ReceiverPoint {
 		return initialized;
 	}
 
-	void setLinkId2IsolatedImmissionPlusOneVehicle(Map<? extends NoiseVehicleType, TObjectDoubleMap<Id<Link>>> linkId2IsolatedImmissionPlusOneVehicle) {
-		this.linkId2IsolatedImmissionPlusOneVehicle = linkId2IsolatedImmissionPlusOneVehicle;
-	}
-
-	void setLinkId2IsolatedImmission(TObjectDoubleMap<Id<Link>> linkId2IsolatedImmission) {
-		this.linkId2IsolatedImmission = linkId2IsolatedImmission;
+	/**
+	 * Sets the isolated immissions of the current time bin, both in the same order as {@link #getRelevantLinkIndices()}.
+	 */
+	void setIsolatedImmissions(double[] isolatedImmissions, Map<? extends NoiseVehicleType, double[]> isolatedImmissionsPlusOneVehicle) {
+		this.isolatedImmissions = isolatedImmissions;
+		this.isolatedImmissionsPlusOneVehicle = isolatedImmissionsPlusOneVehicle;
 	}
 
-	Map<? extends NoiseVehicleType, TObjectDoubleMap<Id<Link>>> getLinkId2IsolatedImmissionPlusOneVehicle() {
-		return linkId2IsolatedImmissionPlusOneVehicle;
+	double[] getIsolatedImmissions() {
+		return isolatedImmissions;
 	}
 
-	TObjectDoubleMap<Id<Link>> getLinkId2IsolatedImmission() {
-		return linkId2IsolatedImmission;
+	Map<? extends NoiseVehicleType, double[]> getIsolatedImmissionsPlusOneVehicle() {
+		return isolatedImmissionsPlusOneVehicle;
 	}
 }
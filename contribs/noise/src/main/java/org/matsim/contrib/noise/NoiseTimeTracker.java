@@ -41,10 +41,13 @@ import org.matsim.core.utils.misc.Time;
 import org.matsim.utils.MemoryObserver;
 import org.matsim.vehicles.Vehicle;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
 
 /**
  * A handler which computes noise emissions, immisions, affected agent units and damages for each receiver point and time interval.
@@ -75,6 +78,12 @@ class NoiseTimeTracker implements VehicleEntersTrafficEventHandler, PersonEnters
 	private final Set<NoiseVehicleType> vehicleTypes;
 	private String networkModesToIgnore;
 
+	/**
+	 * The receiver points grouped into square tiles, so that neighbouring receiver points (which share most of their
+	 * relevant links) are processed by the same thread.
+	 */
+	private final List<List<NoiseReceiverPoint>> receiverTiles;
+
 	@Inject
 	NoiseTimeTracker(NoiseContext context, NoiseEmission emission, NoiseImmission immissionModule,
 					 NoiseDamageCalculation damageCalculation, NoiseVehicleIdentifier vehicleIdentifier,
@@ -86,42 +95,62 @@ class NoiseTimeTracker implements VehicleEntersTrafficEventHandler, PersonEnters
         this.vehicleIdentifier = vehicleIdentifier;
 		this.vehicleTypes = vehicleTypes;
 		networkModesToIgnore = this.noiseContext.getNoiseParams().getNetworkModesToIgnore();
+		this.receiverTiles = createReceiverTiles(noiseContext.getGrid().getReceiverPoints().values(), noiseContext.getNoiseParams().getRelevantRadius());
 		setRelevantLinkInfo();
 	}
 
+	/**
+	 * Computes the correction terms (including shielding and reflection) of all relevant links once. They depend on the
+	 * geometry only and are re-used for every time bin.
+	 */
 	private void setRelevantLinkInfo() {
 		MemoryObserver.start(60);
 		Counter cnt = new Counter("set relevant link-info # ");
 		final NoiseConfigGroup noiseParams = noiseContext.getNoiseParams();
-		for(NoiseReceiverPoint nrp: noiseContext.getGrid().getReceiverPoints().values()) {
-			if(!nrp.isInitialized()) {
-				// get the zone grid cell around the receiver point
-				Set<Id<Link>> potentialLinks = noiseContext.getPotentialLinks(nrp);
-				immissionModule.setCurrentRp(nrp);
+		receiverTiles.parallelStream().forEach(tile -> {
+			for (NoiseReceiverPoint nrp : tile) {
+				if (!nrp.isInitialized()) {
+					// get the zone grid cell around the receiver point
+					Set<Id<Link>> potentialLinks = noiseContext.getPotentialLinks(nrp);
+					immissionModule.setCurrentRp(nrp);
 
 					// go through these potential relevant link Ids
-				Set<Id<Link>> relevantLinkIds = ConcurrentHashMap.newKeySet();
-				potentialLinks.parallelStream().forEach(linkId -> {
-					if (!(relevantLinkIds.contains(linkId))) {
+					for (Id<Link> linkId : potentialLinks) {
 						Link candidateLink = noiseContext.getScenario().getNetwork().getLinks().get(linkId);
 						double projectedDistance = CoordUtils.distancePointLinesegment(candidateLink.getFromNode().getCoord(), candidateLink.getToNode().getCoord(), nrp.getCoord());
 						if (projectedDistance < noiseParams.getRelevantRadius()) {
-							relevantLinkIds.add(linkId);
 							double correction = immissionModule.calculateCorrection(projectedDistance, nrp, candidateLink);
 							nrp.setLinkId2Correction(linkId, correction);
 						}
 					}
-				});
-				nrp.setInitialized();
+					nrp.setInitialized();
+				}
+				cnt.incCounter();
+			}
+		});
+		for (List<NoiseReceiverPoint> tile : receiverTiles) {
+			for (NoiseReceiverPoint nrp : tile) {
+				noiseContext.getReceiverPoints().put(nrp.getId(), nrp);
 			}
-
-			noiseContext.getReceiverPoints().put(nrp.getId(), nrp);
-			cnt.incCounter();
 		}
 		cnt.printCounter();
 		MemoryObserver.stop();
 	}
 
+	/**
+	 * Groups the receiver points into square tiles with the given edge length. The order of the tiles is deterministic;
+	 * within a tile, the receiver points keep the order of the given collection.
+	 */
+	static List<List<NoiseReceiverPoint>> createReceiverTiles(Collection<NoiseReceiverPoint> receiverPoints, double tileSize) {
+		Map<Long, List<NoiseReceiverPoint>> tiles = new TreeMap<>();
+		for (NoiseReceiverPoint nrp : receiverPoints) {
+			long x = (long) Math.floor(nrp.getCoord().getX() / tileSize);
+			long y = (long) Math.floor(nrp.getCoord().getY() / tileSize);
+			tiles.computeIfAbsent((x << 32) ^ (y & 0xffffffffL), key -> new ArrayList<>()).add(nrp);
+		}
+		return new ArrayList<>(tiles.values());
+	}
+
 
 
 	@Override
@@ -251,19 +280,30 @@ class NoiseTimeTracker implements VehicleEntersTrafficEventHandler, PersonEnters
 	 * Immissions and damages
 	 */
 	private void calculateNoiseImmissionsAndDamages() {
+		NoiseLink[] noiseLinks = NoiseLink.indexNoiseLinks(this.noiseContext.getNoiseLinks().values(), this.noiseContext.getNoiseParams().getTunnelLinkIDsSet());
+		calculateNoiseImmissionsAndDamages(noiseLinks);
+		log.info("Done processing receiver points.");
+		damageCalculation.finishNoiseDamageCosts();
+	}
+
+	/**
+	 * Evaluates immissions and damages of all receiver points for the current time bin, in parallel over the receiver
+	 * tiles. Per receiver point, this is the product of its precomputed row of correction terms with the emission vector.
+	 */
+	void calculateNoiseImmissionsAndDamages(NoiseLink[] noiseLinks) {
 		Counter cnt = new Counter("process noise receiver point # ");
-		this.noiseContext.getReceiverPoints().values().parallelStream().forEach( rp -> {
-			immissionModule.calculateImmission(rp, this.noiseContext.getCurrentTimeBinEndTime());
-			damageCalculation.calculateDamages(rp);
-            cnt.incCounter();
-
-            //free up memory
-            rp.setLinkId2IsolatedImmission(null);
-            rp.setLinkId2IsolatedImmissionPlusOneVehicle(null);
+		final double currentTimeBinEndTime = this.noiseContext.getCurrentTimeBinEndTime();
+		receiverTiles.parallelStream().forEach(tile -> {
+			for (NoiseReceiverPoint rp : tile) {
+				immissionModule.calculateImmission(rp, currentTimeBinEndTime, noiseLinks);
+				damageCalculation.calculateDamages(rp, noiseLinks);
+				cnt.incCounter();
+
+				//free up memory
+				rp.setIsolatedImmissions(null, null);
+			}
 		});
 		cnt.printCounter();
-		log.info("Done processing receiver points.");
-		damageCalculation.finishNoiseDamageCosts();
 	}
 
 	void computeFinalTimeIntervals() {
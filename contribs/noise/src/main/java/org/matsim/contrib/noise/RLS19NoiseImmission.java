@@ -1,12 +1,9 @@
 package org.matsim.contrib.noise;
 
 import com.google.inject.Inject;
-import gnu.trove.map.TObjectDoubleMap;
-import gnu.trove.map.hash.TObjectDoubleHashMap;
 import org.apache.log4j.Logger;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.LineSegment;
-import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.core.utils.geometry.CoordUtils;
 
@@ -14,8 +11,6 @@ import java.util.EnumMap;
 import java.util.Map;
 import java.util.Set;
 
-import static org.matsim.contrib.noise.RLS19VehicleType.*;
-
 public class RLS19NoiseImmission implements NoiseImmission {
 
     private final static Logger log = Logger.getLogger(RLS19NoiseImmission.class);
@@ -42,54 +37,62 @@ public class RLS19NoiseImmission implements NoiseImmission {
 
     @Override
     public void calculateImmission(NoiseReceiverPoint rp, double currentTimeBinEndTime) {
+        calculateRelevantLinksImmission(rp, currentTimeBinEndTime,
+                NoiseLink.getRelevantNoiseLinks(rp, noiseContext.getNoiseLinks(), noiseParams.getTunnelLinkIDsSet()));
+    }
+
+    @Override
+    public void calculateImmission(NoiseReceiverPoint rp, double currentTimeBinEndTime, NoiseLink[] noiseLinks) {
+        calculateRelevantLinksImmission(rp, currentTimeBinEndTime, NoiseLink.getRelevantNoiseLinks(rp, noiseLinks));
+    }
+
+    /**
+     * @param relevantNoiseLinks the noise links in the same order as {@link NoiseReceiverPoint#getRelevantLinkIndices()}
+     */
+    private void calculateRelevantLinksImmission(NoiseReceiverPoint rp, double currentTimeBinEndTime, NoiseLink[] relevantNoiseLinks) {
 
         double resultingNoiseImmission = 0.;
         double sumTmp = 0.;
 
-        Map<RLS19VehicleType, TObjectDoubleMap<Id<Link>>> linkId2IsolatedImmissionPlusOneVehicle = new EnumMap<>(RLS19VehicleType.class);
-        TObjectDoubleMap<Id<Link>> linkId2IsolatedImmission = new TObjectDoubleHashMap<>(rp.getRelevantLinks().size());
-        if (!rp.getRelevantLinks().isEmpty()) {
-            for (Id<Link> linkId : rp.getRelevantLinks()) {
-                double noiseImmission = 0;
-                if (noiseParams.getTunnelLinkIDsSet().contains(linkId)) {
-                    linkId2IsolatedImmissionPlusOneVehicle.computeIfAbsent(pkw, type -> new TObjectDoubleHashMap<>()).put(linkId, 0.);
-                    linkId2IsolatedImmissionPlusOneVehicle.computeIfAbsent(lkw1, type -> new TObjectDoubleHashMap<>()).put(linkId, 0.);
-                    linkId2IsolatedImmissionPlusOneVehicle.computeIfAbsent(lkw2, type -> new TObjectDoubleHashMap<>()).put(linkId, 0.);
+        final int[] relevantLinkIndices = rp.getRelevantLinkIndices();
+        final double[] corrections = rp.getRelevantLinkCorrections();
+        final double[] isolatedImmissions = new double[relevantLinkIndices.length];
+        final Map<RLS19VehicleType, double[]> isolatedImmissionsPlusOneVehicle = new EnumMap<>(RLS19VehicleType.class);
+        for (RLS19VehicleType vehicleType : RLS19VehicleType.values()) {
+            isolatedImmissionsPlusOneVehicle.put(vehicleType, new double[relevantLinkIndices.length]);
+        }
+        for (int i = 0; i < relevantLinkIndices.length; i++) {
+            NoiseLink noiseLink = relevantNoiseLinks[i];
+            if (noiseLink != null) {
+                double noiseImmission = calculateLinkImmission(noiseLink, corrections[i]);
+                double isolatedLinkImmission;
+                if(noiseImmission > 0) {
+                    isolatedLinkImmission = 10 * Math.log10(noiseImmission);
                 } else {
-                    NoiseLink noiseLink = this.noiseContext.getNoiseLinks().get(linkId);
-                    if (noiseLink != null) {
-                        noiseImmission = calculateLinkImmission(rp, noiseLink);
-                        double isolatedLinkImmission;
-                        if(noiseImmission > 0) {
-                            isolatedLinkImmission = 10 * Math.log10(noiseImmission);
-                        } else {
-                            isolatedLinkImmission = 0;
-                        }
-                        linkId2IsolatedImmission.put(linkId, isolatedLinkImmission);
-                        for (RLS19VehicleType vehicleType : RLS19VehicleType.values()) {
-                            double immissionPlusOne = calculateIsolatedLinkImmissionPlusOneVehicle(rp, noiseLink, vehicleType);
-                            if (immissionPlusOne < 0.) {
-                                immissionPlusOne = 0.;
-                            }
-                            if (immissionPlusOne < isolatedLinkImmission) {
-                                throw new RuntimeException("noise immission: " + noiseImmission + " - noise immission plus one "
-                                        + vehicleType.getId() + immissionPlusOne + ". This should not happen. Aborting...");
-                            }
-                            linkId2IsolatedImmissionPlusOneVehicle.computeIfAbsent(vehicleType, type -> new TObjectDoubleHashMap<>(rp.getRelevantLinks().size())).put(linkId, immissionPlusOne);
-                        }
+                    isolatedLinkImmission = 0;
+                }
+                isolatedImmissions[i] = isolatedLinkImmission;
+                for (RLS19VehicleType vehicleType : RLS19VehicleType.values()) {
+                    double immissionPlusOne = calculateIsolatedLinkImmissionPlusOneVehicle(noiseLink, vehicleType, corrections[i]);
+                    if (immissionPlusOne < 0.) {
+                        immissionPlusOne = 0.;
+                    }
+                    if (immissionPlusOne < isolatedLinkImmission) {
+                        throw new RuntimeException("noise immission: " + noiseImmission + " - noise immission plus one "
+                                + vehicleType.getId() + immissionPlusOne + ". This should not happen. Aborting...");
                     }
+                    isolatedImmissionsPlusOneVehicle.get(vehicleType)[i] = immissionPlusOne;
                 }
                 if (noiseImmission > 0.) {
                     sumTmp += noiseImmission;
                 }
             }
-            if (sumTmp > 0) {
-                resultingNoiseImmission = 10 * Math.log10((sumTmp));
-            }
+        }
+        if (sumTmp > 0) {
+            resultingNoiseImmission = 10 * Math.log10((sumTmp));
         }
         rp.setCurrentImmission(resultingNoiseImmission, currentTimeBinEndTime);
-        rp.setLinkId2IsolatedImmission(linkId2IsolatedImmission);
-        rp.setLinkId2IsolatedImmissionPlusOneVehicle(linkId2IsolatedImmissionPlusOneVehicle);
+        rp.setIsolatedImmissions(isolatedImmissions, isolatedImmissionsPlusOneVehicle);
     }
 
     @Override
@@ -198,9 +201,9 @@ public class RLS19NoiseImmission implements NoiseImmission {
     }
 
 
-    private double calculateLinkImmission(NoiseReceiverPoint rp, NoiseLink noiseLink) {
+    private double calculateLinkImmission(NoiseLink noiseLink, double correction) {
         if (!(noiseLink.getEmission() == 0.)) {
-            double noiseImmission = Math.pow(10, 0.1 * noiseLink.getEmission()) * rp.getLinkCorrection(noiseLink.getId());
+            double noiseImmission = Math.pow(10, 0.1 * noiseLink.getEmission()) * correction;
             if (noiseImmission < 0.) {
                 noiseImmission = 0.;
             }
@@ -210,9 +213,9 @@ public class RLS19NoiseImmission implements NoiseImmission {
         }
     }
 
-    private double calculateIsolatedLinkImmissionPlusOneVehicle(NoiseReceiverPoint rp, NoiseLink noiseLink, NoiseVehicleType type) {
+    private double calculateIsolatedLinkImmissionPlusOneVehicle(NoiseLink noiseLink, NoiseVehicleType type, double correction) {
         if (!(noiseLink.getEmission() == 0.)) {
-            double noiseImmission = 10 * Math.log10(Math.pow(10, 0.1 * noiseLink.getEmissionPlusOneVehicle(type)) * rp.getLinkCorrection(noiseLink.getId()));
+            double noiseImmission = 10 * Math.log10(Math.pow(10, 0.1 * noiseLink.getEmissionPlusOneVehicle(type)) * correction);
 
             if (noiseImmission < 0.) {
                 noiseImmission = 0.;
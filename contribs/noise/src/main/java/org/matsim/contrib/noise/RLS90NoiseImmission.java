@@ -1,12 +1,9 @@
 package org.matsim.contrib.noise;
 
 import com.google.inject.Inject;
-import gnu.trove.map.TObjectDoubleMap;
-import gnu.trove.map.hash.TObjectDoubleHashMap;
 import org.apache.log4j.Logger;
 import org.locationtech.jts.algorithm.Angle;
 import org.matsim.api.core.v01.Coord;
-import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.core.utils.geometry.CoordUtils;
 
@@ -33,53 +30,60 @@ class RLS90NoiseImmission implements NoiseImmission {
 
     @Override
     public void calculateImmission(NoiseReceiverPoint rp, double currentTimeBinEndTime) {
+        calculateRelevantLinksImmission(rp, currentTimeBinEndTime,
+                NoiseLink.getRelevantNoiseLinks(rp, noiseContext.getNoiseLinks(), noiseParams.getTunnelLinkIDsSet()));
+    }
+
+    @Override
+    public void calculateImmission(NoiseReceiverPoint rp, double currentTimeBinEndTime, NoiseLink[] noiseLinks) {
+        calculateRelevantLinksImmission(rp, currentTimeBinEndTime, NoiseLink.getRelevantNoiseLinks(rp, noiseLinks));
+    }
+
+    /**
+     * @param relevantNoiseLinks the noise links in the same order as {@link NoiseReceiverPoint#getRelevantLinkIndices()}
+     */
+    private void calculateRelevantLinksImmission(NoiseReceiverPoint rp, double currentTimeBinEndTime, NoiseLink[] relevantNoiseLinks) {
 
         double resultingNoiseImmission = 0.;
         double sumTmp = 0.;
 
-        Map<RLS90VehicleType, TObjectDoubleMap<Id<Link>>> linkId2IsolatedImmissionPlusOneVehicle = new EnumMap<>(RLS90VehicleType.class);
-        TObjectDoubleMap<Id<Link>> linkId2IsolatedImmission = new TObjectDoubleHashMap<>(rp.getRelevantLinks().size());
-        if(!rp.getRelevantLinks().isEmpty()) {
-            for (Id<Link> linkId : rp.getRelevantLinks()) {
-                double noiseImmission = 0;
-                if (noiseParams.getTunnelLinkIDsSet().contains(linkId)) {
-                    linkId2IsolatedImmissionPlusOneVehicle.computeIfAbsent(RLS90VehicleType.car, type -> new TObjectDoubleHashMap<>()).put(linkId, 0.);
-                    linkId2IsolatedImmissionPlusOneVehicle.computeIfAbsent(RLS90VehicleType.hgv, type -> new TObjectDoubleHashMap<>()).put(linkId, 0.);
-                } else {
-                    NoiseLink noiseLink = this.noiseContext.getNoiseLinks().get(linkId);
-                    if (noiseLink != null) {
-                        noiseImmission = calculateIsolatedLinkImmission(rp, noiseLink);
-                        linkId2IsolatedImmission.put(linkId, noiseImmission);
-                        for (RLS90VehicleType vehicleType : RLS90VehicleType.values()) {
-                            double immissionPlusOne = calculateIsolatedLinkImmissionPlusOneVehicle(rp, noiseLink, vehicleType);
-                            if (immissionPlusOne < 0.) {
-                                immissionPlusOne = 0.;
-                            }
-                            if (immissionPlusOne < noiseImmission) {
-                                throw new RuntimeException("noise immission: " + noiseImmission + " - noise immission plus one "
-                                        + vehicleType.getId() + immissionPlusOne + ". This should not happen. Aborting...");
-                            }
-                            linkId2IsolatedImmissionPlusOneVehicle.computeIfAbsent(vehicleType, type -> new TObjectDoubleHashMap<>(rp.getRelevantLinks().size())).put(linkId, immissionPlusOne);
-                        }
+        final int[] relevantLinkIndices = rp.getRelevantLinkIndices();
+        final double[] corrections = rp.getRelevantLinkCorrections();
+        final double[] isolatedImmissions = new double[relevantLinkIndices.length];
+        final Map<RLS90VehicleType, double[]> isolatedImmissionsPlusOneVehicle = new EnumMap<>(RLS90VehicleType.class);
+        for (RLS90VehicleType vehicleType : RLS90VehicleType.values()) {
+            isolatedImmissionsPlusOneVehicle.put(vehicleType, new double[relevantLinkIndices.length]);
+        }
+        for (int i = 0; i < relevantLinkIndices.length; i++) {
+            NoiseLink noiseLink = relevantNoiseLinks[i];
+            if (noiseLink != null) {
+                double noiseImmission = calculateIsolatedLinkImmission(noiseLink, corrections[i]);
+                isolatedImmissions[i] = noiseImmission;
+                for (RLS90VehicleType vehicleType : RLS90VehicleType.values()) {
+                    double immissionPlusOne = calculateIsolatedLinkImmissionPlusOneVehicle(noiseLink, vehicleType, corrections[i]);
+                    if (immissionPlusOne < 0.) {
+                        immissionPlusOne = 0.;
+                    }
+                    if (immissionPlusOne < noiseImmission) {
+                        throw new RuntimeException("noise immission: " + noiseImmission + " - noise immission plus one "
+                                + vehicleType.getId() + immissionPlusOne + ". This should not happen. Aborting...");
                     }
+                    isolatedImmissionsPlusOneVehicle.get(vehicleType)[i] = immissionPlusOne;
                 }
                 if (noiseImmission > 0.) {
                     sumTmp += (Math.pow(10, (0.1 * noiseImmission)));
                 }
             }
-            if (sumTmp > 0) {
-                resultingNoiseImmission = 10 * Math.log10((sumTmp));
-            }
+        }
+        if (sumTmp > 0) {
+            resultingNoiseImmission = 10 * Math.log10((sumTmp));
         }
         rp.setCurrentImmission(resultingNoiseImmission, currentTimeBinEndTime);
-        rp.setLinkId2IsolatedImmission(linkId2IsolatedImmission);
-        rp.setLinkId2IsolatedImmissionPlusOneVehicle(linkId2IsolatedImmissionPlusOneVehicle);
+        rp.setIsolatedImmissions(isolatedImmissions, isolatedImmissionsPlusOneVehicle);
 
     }
 
-    private double calculateIsolatedLinkImmission(NoiseReceiverPoint rp, NoiseLink noiseLink) {
-
-        double correction = rp.getLinkCorrection(noiseLink.getId());
+    private double calculateIsolatedLinkImmission(NoiseLink noiseLink, double correction) {
 
         double noiseImmission = 0.;
         if (!(noiseLink.getEmission() == 0.)) {
@@ -110,10 +114,9 @@ class RLS90NoiseImmission implements NoiseImmission {
     }
 
 
-    private double calculateIsolatedLinkImmissionPlusOneVehicle(NoiseReceiverPoint rp, NoiseLink noiseLink, NoiseVehicleType type) {
+    private double calculateIsolatedLinkImmissionPlusOneVehicle(NoiseLink noiseLink, NoiseVehicleType type, double correction) {
         double plusOne = 0;
         if (!(noiseLink.getEmissionPlusOneVehicle(type) == 0.)) {
-            double correction = rp.getLinkCorrection(noiseLink.getId());
             plusOne = noiseLink.getEmissionPlusOneVehicle(type)
                     + correction;
         }
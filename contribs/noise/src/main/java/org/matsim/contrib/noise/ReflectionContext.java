@@ -20,8 +20,10 @@ public class ReflectionContext {
 
     private final static Logger logger = Logger.getLogger(org.matsim.contrib.noise.ShieldingContext.class);
 
-    private Set<LineSegment> visibleEdges;
-    private Coordinate receiver;
+    /**
+     * The receiver is set per thread, so that several receiver points can be processed in parallel.
+     */
+    private final ThreadLocal<CurrentReceiver> currentReceiver = new ThreadLocal<>();
 
     private BarrierContext barrierContext;
     private GeometryFactory geomFactory = new GeometryFactory();
@@ -37,12 +39,12 @@ public class ReflectionContext {
     }
 
     void setCurrentReceiver(NoiseReceiverPoint nrp) {
-        receiver = new Coordinate(nrp.getCoord().getX(), nrp.getCoord().getY());
+        Coordinate receiver = new Coordinate(nrp.getCoord().getX(), nrp.getCoord().getY());
 
         final Collection<NoiseBarrier> candidates =
                 barrierContext.query(new GeometryFactory().createPoint(receiver).buffer(200).getEnvelopeInternal());
 
-        visibleEdges = new HashSet<>();
+        Set<LineSegment> visibleEdges = new HashSet<>();
 
         for (NoiseBarrier noiseBarrier : candidates) {
             if (noiseBarrier.getGeometry().contains(geomFactory.createPoint(receiver))) {
@@ -56,6 +58,7 @@ public class ReflectionContext {
             }
             visibleEdges.addAll(findVisibleEdgesOfPolygon(edges, receiver));
         }
+        currentReceiver.set(new CurrentReceiver(receiver, visibleEdges));
     }
 
 
@@ -116,14 +119,16 @@ public class ReflectionContext {
     }
 
     Set<ReflectionTuple> getReflections(LineSegment originalLink) {
-        if (receiver == null) {
+        final CurrentReceiver current = currentReceiver.get();
+        if (current == null) {
             return Collections.emptySet();
         }
+        final Coordinate receiver = current.coordinate;
 
         final LineString temp = originalLink.toGeometry(geomFactory);
 
         Set<ReflectionTuple> reflections = new HashSet<>();
-        for (LineSegment facade : visibleEdges) {
+        for (LineSegment facade : current.visibleEdges) {
             if (hit(facade, originalLink)) {
                 final AffineTransformation transformation = AffineTransformation.reflectionInstance(facade.p0.x, facade.p0.y, facade.p1.x, facade.p1.y);
 
@@ -158,9 +163,6 @@ public class ReflectionContext {
     }
 
     double getMultipleReflectionCorrection(LineSegment segment) {
-        if(this.receiver.x == 1420 && this.receiver.y == 20) {
-            System.out.println("jo");
-        }
         final Coordinate coordinate = segment.midPoint();
 
         Coordinate candidateRight = getReflectionSegment(coordinate, segment, 400);
@@ -283,4 +285,14 @@ public class ReflectionContext {
             this.reflectionLink = reflectionLink;
         }
     }
+
+    private static class CurrentReceiver {
+        final Coordinate coordinate;
+        final Set<LineSegment> visibleEdges;
+
+        CurrentReceiver(Coordinate coordinate, Set<LineSegment> visibleEdges) {
+            this.coordinate = coordinate;
+            this.visibleEdges = visibleEdges;
+        }
+    }
 }
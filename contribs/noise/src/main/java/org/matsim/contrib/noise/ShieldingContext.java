@@ -12,7 +12,6 @@ import org.matsim.core.utils.geometry.GeometryUtils;
 
 import javax.inject.Inject;
 import java.util.*;
-import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * Separate from {@link NoiseContextImpl} for better testability.
@@ -133,12 +132,12 @@ final class ShieldingContext {
     /**
      * Returns an ordered map of distances and coords to all obstruction edges
      */
-    private ConcurrentSkipListMap<Double, Coordinate> getObstructionEdges(Point receiver, Point source, LineString directLineOfSight,
-                                                                          LineString fromLineOfSight, LineString toLineOfSight) {
+    private NavigableMap<Double, Coordinate> getObstructionEdges(Point receiver, Point source, LineString directLineOfSight,
+                                                                 LineString fromLineOfSight, LineString toLineOfSight) {
         final Collection<NoiseBarrier> candidates =
                 barrierContext.query(directLineOfSight.getEnvelopeInternal());
 
-        ConcurrentSkipListMap<Double, Coordinate> edgeCandidates = new ConcurrentSkipListMap<>();
+        NavigableMap<Double, Coordinate> edgeCandidates = new TreeMap<>();
         for (NoiseBarrier noiseBarrier : candidates) {
             if (isObstructing(receiver, source, fromLineOfSight, toLineOfSight, noiseBarrier.getGeometry())) {
                 //direct implementation intersects() and intersection() here is up to 15x faster than
@@ -158,11 +157,11 @@ final class ShieldingContext {
     /**
      * Returns an ordered map of distances and coords to all obstruction edges
      */
-    private ConcurrentSkipListMap<Double, Coordinate> getObstructionEdges(Coordinate receiver, Coordinate source, LineString directLineOfSight) {
+    private NavigableMap<Double, Coordinate> getObstructionEdges(Coordinate receiver, Coordinate source, LineString directLineOfSight) {
         final Collection<NoiseBarrier> candidates =
                 barrierContext.query(directLineOfSight.getEnvelopeInternal());
 
-        ConcurrentSkipListMap<Double, Coordinate> edgeCandidates = new ConcurrentSkipListMap<>();
+        NavigableMap<Double, Coordinate> edgeCandidates = new TreeMap<>();
         for (NoiseBarrier noiseBarrier : candidates) {
             if (isObstructing(receiver, source, noiseBarrier.getGeometry(), directLineOfSight)) {
                 //direct implementation intersects() and intersection() here is up to 15x faster than
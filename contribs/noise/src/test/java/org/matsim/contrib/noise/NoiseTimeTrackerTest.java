@@ -0,0 +1,241 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.noise;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Injector;
+import org.matsim.core.events.EventsManagerModule;
+import org.matsim.core.scenario.ScenarioByInstanceModule;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.util.*;
+
+/**
+ * Checks the receiver tiles and the tiled, parallel evaluation of immissions and damages in {@link NoiseTimeTracker}.
+ */
+public class NoiseTimeTrackerTest {
+
+	@Rule
+	public MatsimTestUtils testUtils = new MatsimTestUtils();
+
+	@Test
+	public void testCreateReceiverTiles() {
+		NoiseReceiverPoint a = createReceiverPoint("a", 10., 10.);
+		NoiseReceiverPoint b = createReceiverPoint("b", 99.9, 0.);
+		NoiseReceiverPoint c = createReceiverPoint("c", 100., 10.);
+		NoiseReceiverPoint d = createReceiverPoint("d", -10., 10.);
+		NoiseReceiverPoint e = createReceiverPoint("e", 50., -250.);
+		NoiseReceiverPoint f = createReceiverPoint("f", 20., 90.);
+		List<NoiseReceiverPoint> receiverPoints = Arrays.asList(a, b, c, d, e, f);
+
+		List<List<NoiseReceiverPoint>> tiles = NoiseTimeTracker.createReceiverTiles(receiverPoints, 100.);
+
+		Assert.assertEquals("wrong number of tiles", 4, tiles.size());
+		Assert.assertEquals("wrong tile", Arrays.asList(a, b, f), findTile(tiles, a));
+		Assert.assertEquals("upper tile boundary belongs to the next tile", Collections.singletonList(c), findTile(tiles, c));
+		Assert.assertEquals("negative coordinates belong to their own tile", Collections.singletonList(d), findTile(tiles, d));
+		Assert.assertEquals("wrong tile", Collections.singletonList(e), findTile(tiles, e));
+
+		int numberOfReceiverPoints = 0;
+		for (List<NoiseReceiverPoint> tile : tiles) {
+			numberOfReceiverPoints += tile.size();
+		}
+		Assert.assertEquals("every receiver point should be in exactly one tile", receiverPoints.size(), numberOfReceiverPoints);
+		Assert.assertEquals("tiles should be deterministic", tiles, NoiseTimeTracker.createReceiverTiles(receiverPoints, 100.));
+		Assert.assertTrue(NoiseTimeTracker.createReceiverTiles(Collections.emptyList(), 100.).isEmpty());
+	}
+
+	/**
+	 * Evaluates one time bin with the tiled, parallel evaluation and compares immissions and damages with a sequential
+	 * evaluation of the receiver points which looks up every link by its id.
+	 */
+	@Test
+	public void testTiledImmissionsAndDamagesMatchSequentialBaseline() {
+		Config config = ConfigUtils.loadConfig(testUtils.getPackageInputDirectory() + "NoiseTest/config1.xml", new NoiseConfigGroup());
+		config.controler().setOutputDirectory(testUtils.getOutputDirectory());
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		NoiseConfigGroup noiseParameters = ConfigUtils.addOrGetModule(config, NoiseConfigGroup.class);
+		noiseParameters.setReceiverPointGap(250.);
+		noiseParameters.setScaleFactor(1.);
+		noiseParameters.setConsideredActivitiesForDamageCalculationArray(new String[]{"home", "work"});
+		noiseParameters.setNoiseComputationMethod(NoiseConfigGroup.NoiseComputationMethod.RLS90);
+		noiseParameters.setComputePopulationUnits(true);
+		noiseParameters.setComputeNoiseDamages(true);
+		noiseParameters.setComputeCausingAgents(true);
+		Set<Id<Link>> tunnelLinkIds = new HashSet<>();
+		tunnelLinkIds.add(Id.createLinkId("link1"));
+		noiseParameters.setTunnelLinkIDsSet(tunnelLinkIds);
+
+		com.google.inject.Injector injector = Injector.createInjector(config, new AbstractModule() {
+			@Override
+			public void install() {
+				install(new NoiseModule());
+				install(new ScenarioByInstanceModule(scenario));
+				install(new EventsManagerModule());
+			}
+		});
+		NoiseContext noiseContext = injector.getInstance(NoiseContext.class);
+		NoiseTimeTracker timeTracker = injector.getInstance(NoiseTimeTracker.class);
+		NoiseImmission immission = injector.getInstance(NoiseImmission.class);
+		NoiseDamageCalculation damageCalculation = injector.getInstance(NoiseDamageCalculation.class);
+
+		int personCounter = 0;
+		for (NoiseReceiverPoint rp : noiseContext.getReceiverPoints().values()) {
+			PersonActivityInfo actInfo = new PersonActivityInfo();
+			actInfo.setActivityType("home");
+			actInfo.setStartTime(0.);
+			actInfo.setEndTime(30 * 3600.);
+			rp.addPersonActInfo(Id.createPersonId(personCounter++), actInfo);
+		}
+
+		// tiled and parallel
+		addNoiseLinks(noiseContext);
+		timeTracker.calculateNoiseImmissionsAndDamages(NoiseLink.indexNoiseLinks(noiseContext.getNoiseLinks().values(), tunnelLinkIds));
+		Map<Id<ReceiverPoint>, double[]> tiledReceiverPointResults = getReceiverPointResults(noiseContext);
+		Map<Id<Link>, double[]> tiledLinkResults = getLinkResults(noiseContext);
+
+		// sequential
+		resetTimeBin(noiseContext);
+		addNoiseLinks(noiseContext);
+		NoiseLink[] noiseLinks = NoiseLink.indexNoiseLinks(noiseContext.getNoiseLinks().values(), tunnelLinkIds);
+		for (NoiseReceiverPoint rp : noiseContext.getReceiverPoints().values()) {
+			immission.calculateImmission(rp, noiseContext.getCurrentTimeBinEndTime());
+			damageCalculation.calculateDamages(rp, noiseLinks);
+		}
+		Map<Id<ReceiverPoint>, double[]> sequentialReceiverPointResults = getReceiverPointResults(noiseContext);
+		Map<Id<Link>, double[]> sequentialLinkResults = getLinkResults(noiseContext);
+
+		double currentTimeBinEndTime = noiseContext.getCurrentTimeBinEndTime();
+		Map<Id<Link>, Double> expectedLinkDamageCosts = new HashMap<>();
+		boolean someDamage = false;
+		for (NoiseReceiverPoint rp : noiseContext.getReceiverPoints().values()) {
+			double[] tiled = tiledReceiverPointResults.get(rp.getId());
+			double[] sequential = sequentialReceiverPointResults.get(rp.getId());
+			Assert.assertEquals("wrong immission at receiver point " + rp.getId(), sequential[0], tiled[0], MatsimTestUtils.EPSILON);
+			Assert.assertEquals("wrong damage at receiver point " + rp.getId(), sequential[1], tiled[1], MatsimTestUtils.EPSILON);
+
+			// the immission is the sum of emission plus correction over the relevant links
+			Map<Id<Link>, Double> isolatedImmissions = new HashMap<>();
+			for (Id<Link> linkId : rp.getRelevantLinks()) {
+				double emission = noiseContext.getNoiseLinks().get(linkId).getEmission();
+				if (!tunnelLinkIds.contains(linkId) && emission > 0) {
+					isolatedImmissions.put(linkId, Math.max(0., emission + rp.getLinkCorrection(linkId)));
+				}
+			}
+			double expectedImmission = isolatedImmissions.isEmpty() ? 0. : RLS90NoiseImmission.calculateResultingNoiseImmission(isolatedImmissions.values());
+			Assert.assertEquals("wrong immission at receiver point " + rp.getId(), expectedImmission, tiled[0], MatsimTestUtils.EPSILON);
+
+			// one affected agent unit per receiver point
+			double expectedDamage = NoiseDamageCalculation.calculateDamageCosts(expectedImmission, 1., currentTimeBinEndTime,
+					noiseParameters.getAnnualCostRate(), noiseParameters.getTimeBinSizeNoiseComputation());
+			Assert.assertEquals("wrong damage at receiver point " + rp.getId(), expectedDamage, tiled[1], MatsimTestUtils.EPSILON);
+			someDamage |= expectedDamage > 0.;
+
+			if (expectedDamage != 0.) {
+				for (Map.Entry<Id<Link>, Double> entry : isolatedImmissions.entrySet()) {
+					if (entry.getValue() != 0.) {
+						double costShare = NoiseEquations.calculateShareOfResultingNoiseImmission(entry.getValue(), expectedImmission);
+						expectedLinkDamageCosts.merge(entry.getKey(), costShare * expectedDamage, Double::sum);
+					}
+				}
+			}
+		}
+		Assert.assertTrue("the test setup should produce some damage", someDamage);
+
+		for (Id<Link> linkId : scenario.getNetwork().getLinks().keySet()) {
+			double[] tiled = tiledLinkResults.get(linkId);
+			double[] sequential = sequentialLinkResults.get(linkId);
+			Assert.assertEquals("wrong damage cost on link " + linkId, expectedLinkDamageCosts.getOrDefault(linkId, 0.), tiled[0], MatsimTestUtils.EPSILON);
+			for (int i = 0; i < tiled.length; i++) {
+				Assert.assertEquals("wrong damage cost on link " + linkId, sequential[i], tiled[i], MatsimTestUtils.EPSILON);
+			}
+		}
+		for (double damage : tiledLinkResults.get(Id.createLinkId("link1"))) {
+			Assert.assertEquals("tunnel links should not be charged", 0., damage, 0.);
+		}
+	}
+
+	private static NoiseReceiverPoint createReceiverPoint(String id, double x, double y) {
+		return new NoiseReceiverPoint(Id.create(id, ReceiverPoint.class), new Coord(x, y));
+	}
+
+	private static List<NoiseReceiverPoint> findTile(List<List<NoiseReceiverPoint>> tiles, NoiseReceiverPoint rp) {
+		for (List<NoiseReceiverPoint> tile : tiles) {
+			if (tile.contains(rp)) {
+				return tile;
+			}
+		}
+		throw new AssertionError("receiver point " + rp.getId() + " is not in any tile");
+	}
+
+	/**
+	 * Sets some emissions; link0 stays empty so that only the plus-one-vehicle immission is non-zero.
+	 */
+	private static void addNoiseLinks(NoiseContext noiseContext) {
+		int i = 0;
+		for (Id<Link> linkId : noiseContext.getScenario().getNetwork().getLinks().keySet()) {
+			NoiseLink noiseLink = new NoiseLink(linkId);
+			double emission = linkId.toString().equals("link0") ? 0. : 60. + (i % 7) * 3.;
+			noiseLink.setEmission(emission);
+			for (RLS90VehicleType vehicleType : RLS90VehicleType.values()) {
+				noiseLink.setEmissionPlusOneVehicle(vehicleType, Math.max(emission, 50.) + 0.5 + vehicleType.ordinal());
+			}
+			noiseContext.getNoiseLinks().put(linkId, noiseLink);
+			i++;
+		}
+	}
+
+	private static void resetTimeBin(NoiseContext noiseContext) {
+		noiseContext.getNoiseLinks().clear();
+		for (NoiseReceiverPoint rp : noiseContext.getReceiverPoints().values()) {
+			rp.resetTimeInterval();
+		}
+	}
+
+	private static Map<Id<ReceiverPoint>, double[]> getReceiverPointResults(NoiseContext noiseContext) {
+		Map<Id<ReceiverPoint>, double[]> results = new HashMap<>();
+		for (NoiseReceiverPoint rp : noiseContext.getReceiverPoints().values()) {
+			results.put(rp.getId(), new double[]{rp.getCurrentImmission(), rp.getDamageCosts()});
+		}
+		return results;
+	}
+
+	private static Map<Id<Link>, double[]> getLinkResults(NoiseContext noiseContext) {
+		Map<Id<Link>, double[]> results = new HashMap<>();
+		for (NoiseLink noiseLink : noiseContext.getNoiseLinks().values()) {
+			results.put(noiseLink.getId(), new double[]{
+					noiseLink.getDamageCost(),
+					noiseLink.getMarginalDamageCostPerVehicle(RLS90VehicleType.car),
+					noiseLink.getMarginalDamageCostPerVehicle(RLS90VehicleType.hgv)});
+		}
+		return results;
+	}
+}
@@ -45,6 +45,9 @@ public class SwissRailRaptorConfigGroup extends ReflectiveConfigGroup {
     private static final String PARAM_TRANSFER_WALK_MARGIN = "transferWalkMargin";
     private static final String PARAM_TRANSFER_WALK_MARGIN_DESC = "time deducted from transfer walk leg during transfers between pt legs in order to avoid missing a vehicle by a few seconds due to delays.";
 
+    private static final String PARAM_DATA_CACHE_DIRECTORY = "dataCacheDirectory";
+    private static final String PARAM_DATA_CACHE_DIRECTORY_DESC = "If set, the transfers between route stops prepared at startup are stored in this directory and re-used in later runs, as long as the transit schedule, the network and the relevant config settings did not change. 'null' disables the cache.";
+
     private boolean useRangeQuery = false;
     private boolean useIntermodality = false;
     private IntermodalAccessEgressModeSelection intermodalAccessEgressModeSelection = IntermodalAccessEgressModeSelection.CalcLeastCostModePerStop;
@@ -56,6 +59,7 @@ public class SwissRailRaptorConfigGroup extends ReflectiveConfigGroup {
     private double transferPenaltyMaxCost = Double.POSITIVE_INFINITY;
     private double transferPenaltyHourlyCost = 0;
     private double transferWalkMargin = 5;
+    private String dataCacheDirectory = null;
 
     private ScoringParameters scoringParameters = ScoringParameters.Default;
 
@@ -117,6 +121,16 @@ public class SwissRailRaptorConfigGroup extends ReflectiveConfigGroup {
         this.transferWalkMargin = transferWalkMargin;
     }
 
+    @StringGetter(PARAM_DATA_CACHE_DIRECTORY)
+    public String getDataCacheDirectory() {
+        return this.dataCacheDirectory;
+    }
+
+    @StringSetter(PARAM_DATA_CACHE_DIRECTORY)
+    public void setDataCacheDirectory(String dataCacheDirectory) {
+        this.dataCacheDirectory = dataCacheDirectory;
+    }
+
     @StringGetter(PARAM_USE_MODE_MAPPING)
     public boolean isUseModeMappingForPassengers() {
         return this.useModeMapping;
@@ -611,6 +625,7 @@ public class SwissRailRaptorConfigGroup extends ReflectiveConfigGroup {
         comments.put(PARAM_INTERMODAL_ACCESS_EGRESS_MODE_SELECTION, PARAM_INTERMODAL_ACCESS_EGRESS_MODE_SELECTION_DESC);
         comments.put(PARAM_USE_CAPACITY_CONSTRAINTS, PARAM_USE_CAPACITY_CONSTRAINTS_DESC);
         comments.put(PARAM_TRANSFER_WALK_MARGIN, PARAM_TRANSFER_WALK_MARGIN_DESC);
+        comments.put(PARAM_DATA_CACHE_DIRECTORY, PARAM_DATA_CACHE_DIRECTORY_DESC);
         return comments;
     }
 
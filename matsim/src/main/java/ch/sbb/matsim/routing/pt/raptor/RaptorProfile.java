@@ -0,0 +1,125 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package ch.sbb.matsim.routing.pt.raptor;
+
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.Arrays;
+
+/**
+ * The result of a least-cost profile query: for each departure time out of a regular series
+ * of departure times and for each stop facility, the least-cost way to reach the stop.
+ *
+ * The data is stored in compact arrays indexed by departure slot and stop index, instead of one
+ * map of {@link SwissRailRaptorCore.TravelInfo} objects per departure time. Use {@link #getStopIndex(TransitStopFacility)}
+ * and {@link #getStop(int)} to translate between stop facilities and stop indices.
+ */
+public final class RaptorProfile {
+
+    public static final int TIME_UNDEFINED = Integer.MIN_VALUE;
+
+    private final SwissRailRaptorData data;
+    private final int firstDepartureTime;
+    private final int timeStep;
+    private final int countDepartureTimes;
+    private final int countStops;
+
+    private final int[] arrivalTimes;
+    private final int[] ptDepartureTimes;
+    private final double[] travelCosts;
+    private final int[] transferCounts;
+
+    RaptorProfile(SwissRailRaptorData data, int firstDepartureTime, int timeStep, int countDepartureTimes) {
+        this.data = data;
+        this.firstDepartureTime = firstDepartureTime;
+        this.timeStep = timeStep;
+        this.countDepartureTimes = countDepartureTimes;
+        this.countStops = data.countStops;
+        int size = countDepartureTimes * this.countStops;
+        this.arrivalTimes = new int[size];
+        this.ptDepartureTimes = new int[size];
+        this.travelCosts = new double[size];
+        this.transferCounts = new int[size];
+        Arrays.fill(this.arrivalTimes, TIME_UNDEFINED);
+        Arrays.fill(this.ptDepartureTimes, TIME_UNDEFINED);
+        Arrays.fill(this.travelCosts, Double.POSITIVE_INFINITY);
+    }
+
+    void set(int departureSlot, int stopIndex, int ptDepartureTime, int arrivalTime, double travelCost, int transferCount) {
+        int index = departureSlot * this.countStops + stopIndex;
+        this.ptDepartureTimes[index] = ptDepartureTime;
+        this.arrivalTimes[index] = arrivalTime;
+        this.travelCosts[index] = travelCost;
+        this.transferCounts[index] = transferCount;
+    }
+
+    public int getDepartureTimeCount() {
+        return this.countDepartureTimes;
+    }
+
+    /** @return the departure time at the origin for the given departure slot */
+    public int getDepartureTime(int departureSlot) {
+        return this.firstDepartureTime + departureSlot * this.timeStep;
+    }
+
+    public int getStopCount() {
+        return this.countStops;
+    }
+
+    /** @return the index of the stop in this profile, or -1 if the stop is not served by any transit route */
+    public int getStopIndex(TransitStopFacility stop) {
+        Integer index = this.data.stopFacilityIndices.get(stop);
+        return index == null ? -1 : index;
+    }
+
+    public TransitStopFacility getStop(int stopIndex) {
+        return this.data.stopFacilities[stopIndex];
+    }
+
+    public boolean isReached(int departureSlot, int stopIndex) {
+        return this.arrivalTimes[departureSlot * this.countStops + stopIndex] != TIME_UNDEFINED;
+    }
+
+    /** @return the arrival time at the stop, or {@link #TIME_UNDEFINED} if the stop cannot be reached */
+    public int getArrivalTime(int departureSlot, int stopIndex) {
+        return this.arrivalTimes[departureSlot * this.countStops + stopIndex];
+    }
+
+    /**
+     * @return the departure time of the first pt vehicle at the first stop, or the arrival time if the stop
+     * is reached without using any pt vehicle. {@link #TIME_UNDEFINED} if the stop cannot be reached.
+     */
+    public int getPtDepartureTime(int departureSlot, int stopIndex) {
+        return this.ptDepartureTimes[departureSlot * this.countStops + stopIndex];
+    }
+
+    /**
+     * @return the total cost to reach the stop when leaving the origin at the slot's departure time, including
+     * access cost, the cost of waiting at the first stop and transfer costs. <code>Infinity</code> if the stop cannot be reached.
+     */
+    public double getTravelCost(int departureSlot, int stopIndex) {
+        return this.travelCosts[departureSlot * this.countStops + stopIndex];
+    }
+
+    public int getTransferCount(int departureSlot, int stopIndex) {
+        return this.transferCounts[departureSlot * this.countStops + stopIndex];
+    }
+}
@@ -47,6 +47,12 @@ public class RaptorStaticConfig {
 
     private RaptorOptimization optimization = RaptorOptimization.OneToOneRouting;
 
+    /**
+     * If set, the prepared transfers are stored in and read from this directory, see {@link SwissRailRaptorDataCache}.
+     * This setting itself has no influence on the prepared data.
+     */
+    private String dataCacheDirectory = null;
+
     public double getBeelineWalkConnectionDistance() {
         return this.beelineWalkConnectionDistance;
     }
@@ -118,4 +124,12 @@ public class RaptorStaticConfig {
     public void setOptimization(RaptorOptimization optimization) {
         this.optimization = optimization;
     }
+
+    public String getDataCacheDirectory() {
+        return this.dataCacheDirectory;
+    }
+
+    public void setDataCacheDirectory(String dataCacheDirectory) {
+        this.dataCacheDirectory = dataCacheDirectory;
+    }
 }
@@ -24,6 +24,8 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Provides public transport route search capabilities using an implementation of the
@@ -40,6 +42,8 @@ public class SwissRailRaptor implements TransitRouter {
     private final RaptorParametersForPerson parametersForPerson;
     private final RaptorRouteSelector defaultRouteSelector;
     private final RaptorStopFinder stopFinder;
+    private final RaptorInVehicleCostCalculator inVehicleCostCalculator;
+    private final RaptorTransferCostCalculator transferCostCalculator;
 
     private boolean treeWarningShown = false;
 
@@ -54,6 +58,8 @@ public class SwissRailRaptor implements TransitRouter {
         this.parametersForPerson = parametersForPerson;
         this.defaultRouteSelector = routeSelector;
         this.stopFinder = stopFinder;
+        this.inVehicleCostCalculator = inVehicleCostCalculator;
+        this.transferCostCalculator = transferCostCalculator;
     }
 
     @Override
@@ -235,6 +241,81 @@ public class SwissRailRaptor implements TransitRouter {
         return this.raptor.calcLeastCostTree(departureTime, accessStops, parameters, person);
     }
 
+    /**
+     * Calculates least-cost profiles for many origins, each for the departure times from <code>earliestDepartureTime</code>
+     * to <code>latestDepartureTime</code> in steps of <code>timeStep</code> seconds. The origins are distributed to
+     * <code>numberOfThreads</code> threads, each using its own copy of the mutable routing state while sharing the
+     * immutable {@link SwissRailRaptorData}.
+     *
+     * @return the profiles, in the same order as <code>fromFacilities</code>
+     */
+    public RaptorProfile[] calcProfiles(List<? extends Facility> fromFacilities, double earliestDepartureTime, double latestDepartureTime, int timeStep, Person person, int numberOfThreads) {
+        RaptorParameters parameters = this.parametersForPerson.getRaptorParameters(person);
+        List<List<InitialStop>> accessStopsPerOrigin = new ArrayList<>(fromFacilities.size());
+        for (Facility fromFacility : fromFacilities) {
+            // the stop finder is not necessarily thread-safe, so search the access stops up front
+            accessStopsPerOrigin.add(findAccessStops(fromFacility, fromFacility, person, earliestDepartureTime, parameters));
+        }
+        return this.calcLeastCostProfiles(accessStopsPerOrigin, earliestDepartureTime, latestDepartureTime, timeStep, parameters, person, numberOfThreads);
+    }
+
+    /**
+     * Same as {@link #calcProfiles(List, double, double, int, Person, int)}, but starting directly at the given stops
+     * without any access costs, similar to {@link #calcTree(TransitStopFacility, double, RaptorParameters, Person)}.
+     */
+    public RaptorProfile[] calcProfilesFromStops(List<TransitStopFacility> fromStops, double earliestDepartureTime, double latestDepartureTime, int timeStep, RaptorParameters parameters, Person person, int numberOfThreads) {
+        if (this.data.config.getOptimization() != RaptorStaticConfig.RaptorOptimization.OneToAllRouting && !this.treeWarningShown) {
+            log.warn("SwissRailRaptorData was not initialized with full support for tree calculations and may result in unexpected results. Use `RaptorStaticConfig.setOptimization(RaptorOptimization.OneToAllRouting)` to fix this issue.");
+            this.treeWarningShown = true;
+        }
+        List<List<InitialStop>> accessStopsPerOrigin = new ArrayList<>(fromStops.size());
+        for (TransitStopFacility stop : fromStops) {
+            accessStopsPerOrigin.add(Collections.singletonList(new InitialStop(stop, 0, 0, 0, null)));
+        }
+        return this.calcLeastCostProfiles(accessStopsPerOrigin, earliestDepartureTime, latestDepartureTime, timeStep, parameters, person, numberOfThreads);
+    }
+
+    private RaptorProfile[] calcLeastCostProfiles(List<List<InitialStop>> accessStopsPerOrigin, double earliestDepartureTime, double latestDepartureTime, int timeStep, RaptorParameters parameters, Person person, int numberOfThreads) {
+        RaptorProfile[] profiles = new RaptorProfile[accessStopsPerOrigin.size()];
+        if (numberOfThreads <= 1) {
+            for (int i = 0; i < profiles.length; i++) {
+                profiles[i] = this.raptor.calcLeastCostProfile(earliestDepartureTime, latestDepartureTime, timeStep, accessStopsPerOrigin.get(i), parameters, person);
+            }
+            return profiles;
+        }
+
+        AtomicInteger nextOrigin = new AtomicInteger(0);
+        AtomicReference<RuntimeException> exception = new AtomicReference<>();
+        Thread[] threads = new Thread[numberOfThreads];
+        for (int t = 0; t < numberOfThreads; t++) {
+            SwissRailRaptorCore core = new SwissRailRaptorCore(this.data, this.inVehicleCostCalculator, this.transferCostCalculator);
+            threads[t] = new Thread(() -> {
+                int i;
+                while (exception.get() == null && (i = nextOrigin.getAndIncrement()) < profiles.length) {
+                    try {
+                        profiles[i] = core.calcLeastCostProfile(earliestDepartureTime, latestDepartureTime, timeStep, accessStopsPerOrigin.get(i), parameters, person);
+                    } catch (RuntimeException e) {
+                        exception.compareAndSet(null, e);
+                    }
+                }
+            }, "SwissRailRaptor-Profile-" + t);
+            threads[t].start();
+        }
+
+        // wait until all threads have finished
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (exception.get() != null) {
+            throw new RuntimeException("Exception while calculating least cost profiles.", exception.get());
+        }
+        return profiles;
+    }
+
     public SwissRailRaptorData getUnderlyingData() {
         return this.data;
     }
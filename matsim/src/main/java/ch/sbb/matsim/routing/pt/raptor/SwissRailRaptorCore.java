@@ -534,13 +534,116 @@ public class SwissRailRaptorCore {
         return result;
     }
 
-    private TravelInfo getTravelInfo(PathElement destination, RaptorParameters parameters) {
-        PathElement firstStage = destination;
+    /**
+     * Calculates the least cost trees for a series of departure times, starting at <code>latestDepTime</code>
+     * and going backwards in steps of <code>timeStep</code> seconds down to <code>earliestDepTime</code>.
+     *
+     * Similar to rRAPTOR, the labels are not reset between two departure times but re-used as upper bounds
+     * for the next, earlier departure time. As the algorithm operates with cost and not with time, the same
+     * trick as in {@link #calcRoutes} is applied: each departure time gets a cost offset corresponding to the
+     * waiting time since <code>earliestDepTime</code>. This way, a label found for a later departure
+     * is equivalent to waiting at the origin for an earlier departure, and only connections that
+     * are actually better need to be explored again.
+     */
+    public RaptorProfile calcLeastCostProfile(double earliestDepTime, double latestDepTime, int timeStep, Collection<InitialStop> startStops, RaptorParameters parameters, Person person) {
+        reset();
+
+        int firstDepTime = (int) earliestDepTime;
+        int countDepartureTimes = (int) ((latestDepTime - earliestDepTime) / timeStep) + 1;
+        RaptorProfile profile = new RaptorProfile(this.data, firstDepTime, timeStep, countDepartureTimes);
+        double waitingCostPerSecond = -parameters.getMarginalUtilityOfWaitingPt_utl_s();
+
+        for (int slot = countDepartureTimes - 1; slot >= 0; slot--) {
+            int depTime = firstDepTime + slot * timeStep;
+            double costOffset = (depTime - firstDepTime) * waitingCostPerSecond;
+            this.improvedStops.clear();
+            this.improvedRouteStopIndices.clear();
+
+            BitSet initialRouteStopIndices = new BitSet();
+            BitSet initialStopIndices = new BitSet();
+            for (InitialStop stop : startStops) {
+                int[] routeStopIndices = this.data.routeStopsPerStopFacility.get(stop.stop);
+                if (routeStopIndices == null) {
+                    continue;
+                }
+                for (int routeStopIndex : routeStopIndices) {
+                    int arrivalTime = (int) (depTime + stop.accessTime);
+                    double arrivalCost = stop.accessCost + costOffset;
+                    if (arrivalCost >= this.leastArrivalCostAtRouteStop[routeStopIndex]) {
+                        continue; // the labels of a later departure are at least as good
+                    }
+                    RRouteStop toRouteStop = this.data.routeStops[routeStopIndex];
+                    PathElement pe = new PathElement(null, toRouteStop, TIME_UNDEFINED, TIME_UNDEFINED, arrivalTime, arrivalCost, 0, stop.distance, 0, true, null, stop);
+                    this.arrivalPathPerRouteStop[routeStopIndex] = pe;
+                    this.leastArrivalCostAtRouteStop[routeStopIndex] = arrivalCost;
+                    if (arrivalCost < this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex]) {
+                        this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
+                        this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = arrivalCost;
+                    }
+                    this.improvedRouteStopIndices.set(routeStopIndex);
+                    // this is special: make sure we can transfer even at the start stop
+                    initialRouteStopIndices.set(routeStopIndex);
+                    initialStopIndices.set(toRouteStop.stopFacilityIndex);
+                }
+            }
+
+            // the main loop, same as in calcLeastCostTree
+            while (true) {
+                exploreRoutes(parameters, person);
+
+                if (this.improvedStops.isEmpty()) {
+                    break;
+                }
+
+                if (initialRouteStopIndices != null) {
+                    this.improvedRouteStopIndices.or(initialRouteStopIndices);
+                    this.improvedStops.or(initialStopIndices);
+                    initialRouteStopIndices = null;
+                    initialStopIndices = null;
+                }
+
+                handleTransfers(true, parameters);
+
+                if (this.improvedRouteStopIndices.isEmpty()) {
+                    break;
+                }
+            }
+
+            // collect the information for this departure time
+            for (int stopIndex = 0; stopIndex < this.data.countStops; stopIndex++) {
+                PathElement destination = this.arrivalPathPerStop[stopIndex];
+                if (destination != null) {
+                    int ptDepartureTime = destination.firstDepartureTime == TIME_UNDEFINED ? destination.arrivalTime : destination.firstDepartureTime;
+                    double travelCost = destination.arrivalTravelCost + destination.arrivalTransferCost - costOffset;
+                    profile.set(slot, stopIndex, ptDepartureTime, destination.arrivalTime, travelCost, getTransferCount(destination));
+                }
+            }
+        }
+        return profile;
+    }
+
+    private static int getTransferCount(PathElement destination) {
         PathElement secondStage = null;
+        PathElement firstStage = destination;
         while (firstStage.comingFrom != null) {
             secondStage = firstStage;
             firstStage = firstStage.comingFrom;
         }
+        int transferCount = destination.transferCount;
+        if (destination.isTransfer && transferCount > 0) {
+            transferCount--; // do not count this as transfer, as the router would merge it with the egress walk
+        }
+        if (secondStage != null && secondStage.isTransfer && transferCount > 0) {
+            transferCount--; // the first "leg" is a transfer, do not count it as such as the router would merge it with the access walk
+        }
+        return transferCount;
+    }
+
+    private TravelInfo getTravelInfo(PathElement destination, RaptorParameters parameters) {
+        PathElement firstStage = destination;
+        while (firstStage.comingFrom != null) {
+            firstStage = firstStage.comingFrom;
+        }
         int arrivalTimeAtLastStop = destination.arrivalTime;
         int departureTimeAtFirstStop = destination.firstDepartureTime;
         if (departureTimeAtFirstStop == TIME_UNDEFINED) {
@@ -554,13 +657,7 @@ public class SwissRailRaptorCore {
         double waitingCost = waitingTime * -parameters.getMarginalUtilityOfWaitingPt_utl_s();
 
         double travelCost = destination.arrivalTravelCost - firstStage.arrivalTravelCost - waitingCost;
-        int transferCount = destination.transferCount;
-        if (destination.isTransfer && transferCount > 0) {
-            transferCount--; // do not count this as transfer, as the router would merge it with the egress walk
-        }
-        if (secondStage != null && secondStage.isTransfer && transferCount > 0) {
-            transferCount--; // the first "leg" is a transfer, do not count it as such as the router would merge it with the access walk
-        }
+        int transferCount = getTransferCount(destination);
         Id<TransitStopFacility> departureStopId = firstStage.toRouteStop.routeStop.getStopFacility().getId();
         return new TravelInfo(departureStopId, departureTimeAtFirstStop, arrivalTimeAtLastStop, travelCost, accessTime, accessCost, transferCount, waitingTime, waitingCost, destination);
     }
@@ -25,6 +25,7 @@ import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.Vehicles;
 
 import javax.annotation.Nullable;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -54,6 +55,7 @@ public class SwissRailRaptorData {
     final RRouteStop[] routeStops; // list of all route stops
     final RTransfer[] transfers;
     final Map<TransitStopFacility, Integer> stopFacilityIndices;
+    final TransitStopFacility[] stopFacilities; // reverse lookup of stopFacilityIndices
     final Map<TransitStopFacility, int[]> routeStopsPerStopFacility;
     final QuadTree<TransitStopFacility> stopsQT;
     final Map<String, Map<String, QuadTree<TransitStopFacility>>> stopFilterAttribute2Value2StopsQT;
@@ -74,6 +76,10 @@ public class SwissRailRaptorData {
         this.routeStops = routeStops;
         this.transfers = transfers;
         this.stopFacilityIndices = stopFacilityIndices;
+        this.stopFacilities = new TransitStopFacility[countStops];
+        for (Map.Entry<TransitStopFacility, Integer> e : stopFacilityIndices.entrySet()) {
+            this.stopFacilities[e.getValue()] = e.getKey();
+        }
         this.routeStopsPerStopFacility = routeStopsPerStopFacility;
         this.stopsQT = stopsQT;
         this.stopFilterAttribute2Value2StopsQT = new HashMap<>();
@@ -183,26 +189,31 @@ public class SwissRailRaptorData {
         QuadTree<TransitStopFacility> stopsQT = TransitScheduleUtils.createQuadTreeOfTransitStopFacilities(stops);
         int countStopFacilities = stops.size();
 
-        Map<Integer, RTransfer[]> allTransfers = calculateRouteStopTransfers(schedule, stopsQT, routeStopsPerStopFacility, routeStops, staticConfig);
-        long countTransfers = 0;
-        for (RTransfer[] transfers : allTransfers.values()) {
-            countTransfers += transfers.length;
+        RTransfer[] transfers = null;
+        File cacheFile = null;
+        String cacheKey = null;
+        if (staticConfig.getDataCacheDirectory() != null) {
+            cacheKey = SwissRailRaptorDataCache.calcCacheKey(schedule, network, staticConfig);
+            cacheFile = SwissRailRaptorDataCache.getCacheFile(staticConfig.getDataCacheDirectory(), cacheKey);
+            transfers = SwissRailRaptorDataCache.readTransfers(cacheFile, cacheKey, routeStops.length);
+            if (transfers != null) {
+                log.info("Read transfers from SwissRailRaptor data cache " + cacheFile);
+            }
         }
-        if (countTransfers > Integer.MAX_VALUE) {
-            throw new RuntimeException("TransitSchedule has too many Transfers: " + countTransfers);
+        if (transfers == null) {
+            Map<Integer, RTransfer[]> allTransfers = calculateRouteStopTransfers(schedule, stopsQT, routeStopsPerStopFacility, routeStops, staticConfig);
+            transfers = flattenTransfers(allTransfers, routeStops.length);
+            if (cacheFile != null) {
+                SwissRailRaptorDataCache.writeTransfers(cacheFile, cacheKey, routeStops.length, transfers);
+            }
         }
-        RTransfer[] transfers = new RTransfer[(int) countTransfers];
-        int indexTransfer = 0;
-        for (int routeStopIndex = 0; routeStopIndex < routeStops.length; routeStopIndex++) {
-            RTransfer[] stopTransfers = allTransfers.get(routeStopIndex);
-            int transferCount = stopTransfers == null ? 0 : stopTransfers.length;
-            if (transferCount > 0) {
-                RRouteStop routeStop = routeStops[routeStopIndex];
+        // the transfers are ordered by their fromRouteStop, so each route stop references a consecutive range
+        for (int indexTransfer = 0; indexTransfer < transfers.length; indexTransfer++) {
+            RRouteStop routeStop = routeStops[transfers[indexTransfer].fromRouteStop];
+            if (routeStop.countTransfers == 0) {
                 routeStop.indexFirstTransfer = indexTransfer;
-                routeStop.countTransfers = transferCount;
-                System.arraycopy(stopTransfers, 0, transfers, indexTransfer, transferCount);
-                indexTransfer += transferCount;
             }
+            routeStop.countTransfers++;
         }
 
         SwissRailRaptorData data = new SwissRailRaptorData(staticConfig, countStopFacilities, routes, departures, departureVehicles, departureIds, routeStops, transfers, stopFacilityIndices, routeStopsPerStopFacility, stopsQT, occupancyData);
@@ -217,6 +228,27 @@ public class SwissRailRaptorData {
         return data;
     }
 
+    private static RTransfer[] flattenTransfers(Map<Integer, RTransfer[]> allTransfers, int countRouteStops) {
+        long countTransfers = 0;
+        for (RTransfer[] transfers : allTransfers.values()) {
+            countTransfers += transfers.length;
+        }
+        if (countTransfers > Integer.MAX_VALUE) {
+            throw new RuntimeException("TransitSchedule has too many Transfers: " + countTransfers);
+        }
+        RTransfer[] transfers = new RTransfer[(int) countTransfers];
+        int indexTransfer = 0;
+        for (int routeStopIndex = 0; routeStopIndex < countRouteStops; routeStopIndex++) {
+            RTransfer[] stopTransfers = allTransfers.get(routeStopIndex);
+            int transferCount = stopTransfers == null ? 0 : stopTransfers.length;
+            if (transferCount > 0) {
+                System.arraycopy(stopTransfers, 0, transfers, indexTransfer, transferCount);
+                indexTransfer += transferCount;
+            }
+        }
+        return transfers;
+    }
+
     // calculate possible transfers between TransitRouteStops
     private static Map<Integer, RTransfer[]> calculateRouteStopTransfers(TransitSchedule schedule, QuadTree<TransitStopFacility> stopsQT, Map<TransitStopFacility, int[]> routeStopsPerStopFacility, RRouteStop[] routeStops, RaptorStaticConfig config) {
         Map<Integer, RTransfer[]> transfers = new HashMap<>(stopsQT.size() * 5);
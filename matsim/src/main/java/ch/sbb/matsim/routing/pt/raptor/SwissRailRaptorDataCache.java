@@ -0,0 +1,238 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package ch.sbb.matsim.routing.pt.raptor;
+
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData.RTransfer;
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.MinimalTransferTimes;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stores the transfers between route stops, which are by far the most expensive part to calculate
+ * when preparing {@link SwissRailRaptorData}, in a binary file that is memory-mapped when reading it back.
+ *
+ * The remaining parts of the data (routes, route stops, departures) reference the objects of the transit
+ * schedule and are cheap to build, so they are still built from the schedule on every start. The cache
+ * file is identified by a hash over the transit schedule, the network and the {@link RaptorStaticConfig}.
+ * If any of them changes, a different cache file is looked up and the transfers are calculated again.
+ */
+final class SwissRailRaptorDataCache {
+
+    private static final Logger log = Logger.getLogger(SwissRailRaptorDataCache.class);
+
+    private static final int MAGIC = 0x52505452; // "RPTR"
+    private static final int VERSION = 1;
+
+    private SwissRailRaptorDataCache() {
+    }
+
+    static File getCacheFile(String cacheDirectory, String cacheKey) {
+        return new File(cacheDirectory, "swissRailRaptorData." + cacheKey + ".bin");
+    }
+
+    /**
+     * Calculates a hash over all input data that has an influence on the prepared data, i.e. the transit schedule
+     * with its stops, routes, departures and minimal transfer times, the network and the static configuration.
+     */
+    static String calcCacheKey(TransitSchedule schedule, Network network, RaptorStaticConfig config) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+            out.writeInt(VERSION);
+
+            out.writeDouble(config.getBeelineWalkConnectionDistance());
+            out.writeDouble(config.getBeelineWalkSpeed());
+            out.writeDouble(config.getBeelineWalkDistanceFactor());
+            out.writeDouble(config.getMinimalTransferTime());
+            out.writeDouble(config.getTransferWalkMargin());
+            out.writeBoolean(config.isUseModeMappingForPassengers());
+            out.writeBoolean(config.isUseCapacityConstraints());
+            out.writeUTF(config.getOptimization().name());
+
+            for (TransitLine line : schedule.getTransitLines().values()) {
+                out.writeUTF(line.getId().toString());
+                for (TransitRoute route : line.getRoutes().values()) {
+                    out.writeUTF(route.getId().toString());
+                    out.writeUTF(String.valueOf(route.getTransportMode()));
+                    if (config.isUseModeMappingForPassengers()) {
+                        out.writeUTF(String.valueOf(config.getPassengerMode(route.getTransportMode())));
+                    }
+                    for (TransitRouteStop routeStop : route.getStops()) {
+                        TransitStopFacility stop = routeStop.getStopFacility();
+                        out.writeUTF(stop.getId().toString());
+                        out.writeUTF(String.valueOf(stop.getLinkId()));
+                        out.writeDouble(stop.getCoord().getX());
+                        out.writeDouble(stop.getCoord().getY());
+                        out.writeDouble(routeStop.getArrivalOffset().or(routeStop::getDepartureOffset).seconds());
+                        out.writeDouble(routeStop.getDepartureOffset().or(routeStop::getArrivalOffset).seconds());
+                    }
+                    for (Departure departure : route.getDepartures().values()) {
+                        out.writeUTF(departure.getId().toString());
+                        out.writeDouble(departure.getDepartureTime());
+                    }
+                }
+            }
+
+            // the iteration order of the minimal transfer times is not guaranteed, so sort them first
+            List<String> minimalTransferTimes = new ArrayList<>();
+            MinimalTransferTimes.MinimalTransferTimesIterator iter = schedule.getMinimalTransferTimes().iterator();
+            while (iter.hasNext()) {
+                iter.next();
+                minimalTransferTimes.add(iter.getFromStopId() + "\t" + iter.getToStopId() + "\t" + iter.getSeconds());
+            }
+            Collections.sort(minimalTransferTimes);
+            for (String minimalTransferTime : minimalTransferTimes) {
+                out.writeUTF(minimalTransferTime);
+            }
+
+            if (network != null) {
+                for (Link link : network.getLinks().values()) {
+                    out.writeUTF(link.getId().toString());
+                    out.writeDouble(link.getLength());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the cached transfers, or <code>null</code> if the file does not exist or does not match the expected data.
+     */
+    static RTransfer[] readTransfers(File file, String cacheKey, int countRouteStops) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                log.warn("SwissRailRaptor data cache " + file + " is too large to be memory-mapped, rebuilding the data.");
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("SwissRailRaptor data cache " + file + " has an unknown format, rebuilding the data.");
+                return null;
+            }
+            int keyLength = buffer.getInt();
+            byte[] keyBytes = new byte[keyLength == cacheKey.length() ? keyLength : 0];
+            buffer.get(keyBytes);
+            if (!cacheKey.equals(new String(keyBytes, StandardCharsets.US_ASCII)) || buffer.getInt() != countRouteStops) {
+                log.warn("SwissRailRaptor data cache " + file + " does not match the current input data, rebuilding the data.");
+                return null;
+            }
+            int countTransfers = buffer.getInt();
+            IntBuffer ints = buffer.asIntBuffer();
+            RTransfer[] transfers = new RTransfer[countTransfers];
+            for (int i = 0; i < countTransfers; i++) {
+                int fromRouteStop = ints.get();
+                int toRouteStop = ints.get();
+                int transferTime = ints.get();
+                int transferDistance = ints.get();
+                if (fromRouteStop < 0 || fromRouteStop >= countRouteStops || toRouteStop < 0 || toRouteStop >= countRouteStops) {
+                    log.warn("SwissRailRaptor data cache " + file + " contains invalid route stop indices, rebuilding the data.");
+                    return null;
+                }
+                transfers[i] = new RTransfer(fromRouteStop, toRouteStop, transferTime, transferDistance);
+            }
+            return transfers;
+        } catch (IOException | BufferUnderflowException e) {
+            log.warn("Could not read SwissRailRaptor data cache " + file + ", rebuilding the data.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the transfers to a temporary file first and then moves it in place, so that concurrently
+     * starting runs never see a partially written cache file.
+     */
+    static void writeTransfers(File file, String cacheKey, int countRouteStops, RTransfer[] transfers) {
+        Path target = file.toPath();
+        Path tmp = null;
+        try {
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            tmp = Files.createTempFile(target.toAbsolutePath().getParent(), file.getName(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                byte[] keyBytes = cacheKey.getBytes(StandardCharsets.US_ASCII);
+                out.writeInt(keyBytes.length);
+                out.write(keyBytes);
+                out.writeInt(countRouteStops);
+                out.writeInt(transfers.length);
+                for (RTransfer transfer : transfers) {
+                    out.writeInt(transfer.fromRouteStop);
+                    out.writeInt(transfer.toRouteStop);
+                    out.writeInt(transfer.transferTime);
+                    out.writeInt(transfer.transferDistance);
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote SwissRailRaptor data cache to " + file);
+        } catch (IOException e) {
+            log.warn("Could not write SwissRailRaptor data cache " + file, e);
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -45,6 +45,14 @@ public interface EventsManager {
 	
 	public void removeHandler(final EventHandler handler);
 
+	/**
+	 * Tells whether events of the given class would currently be passed to at least one handler. Readers can use
+	 * this to skip events that nobody listens to. Implementations that cannot tell must return <code>true</code>.
+	 */
+	default boolean hasHandlersFor(final Class<? extends Event> eventClass) {
+		return true;
+	}
+
 	public void resetHandlers(int iteration);
 	
 	/**
@@ -48,6 +48,7 @@ public final class ConfigConsistencyCheckerImpl implements ConfigConsistencyChec
 		checkScenarioFeaturesEnabled(config);
 		checkEventsFormatLanesSignals(config);
 		checkTravelTimeCalculationRoutingConfiguration(config);
+		checkRoutingAlgorithm(config);
 		checkLaneDefinitionRoutingConfiguration(config);
 		checkPlanCalcScore(config);
 		checkTransit(config);
@@ -161,6 +162,16 @@ public final class ConfigConsistencyCheckerImpl implements ConfigConsistencyChec
 	}
 
 
+	/*package because of test */ static void checkRoutingAlgorithm(final Config config) {
+		if (config.controler().getRoutingAlgorithmType() == RoutingAlgorithmType.SpeedyCH &&
+				config.plansCalcRoute().getRoutingRandomness() != 0.) {
+			throw new IllegalStateException("SpeedyCH customizes its weights without a person and thus cannot be used" +
+					" with routing randomness. Set the routingRandomness in the plansCalcRoute config group to 0, or use" +
+					" another routing algorithm, e.g. SpeedyALT.");
+		}
+	}
+
+
 	private static void checkLaneDefinitionRoutingConfiguration(final Config config) {
 		if ((config.qsim().isUseLanes()) &&
 		    !config.controler().isLinkToLinkRoutingEnabled()){
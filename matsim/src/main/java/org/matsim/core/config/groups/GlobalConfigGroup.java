@@ -38,6 +38,7 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 	@Override public Map<String, String> getComments() {
 		Map<String,String> map = super.getComments();
 		map.put(NUMBER_OF_THREADS, NUMBER_OF_THREADS_CMT ) ;
+		map.put(REPLANNING_SCHEDULING, REPLANNING_SCHEDULING_CMT ) ;
 		return map ;
 	}
 
@@ -93,6 +94,29 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		this.numberOfThreads = numberOfThreads;
 	}
 	// ---
+	public enum ReplanningScheduling { roundRobin, workStealing }
+	private ReplanningScheduling replanningScheduling = ReplanningScheduling.roundRobin;
+	private static final String REPLANNING_SCHEDULING = "replanningScheduling";
+	private static final String REPLANNING_SCHEDULING_CMT = "How multi-threaded replanning modules distribute the plans to the "
+			+ NUMBER_OF_THREADS + " threads. "
+			+ ReplanningScheduling.roundRobin + ": in turn, to threads created per iteration. Reproducible. "
+			+ ReplanningScheduling.workStealing + ": in chunks, to a shared fork/join pool, so that threads with cheap plans help the ones "
+			+ "with expensive plans. Faster, but the results depend on the thread scheduling and are not reproducible.";
+	/**
+	 * @return {@link #REPLANNING_SCHEDULING_CMT}
+	 */
+	@StringGetter( REPLANNING_SCHEDULING )
+	public ReplanningScheduling getReplanningScheduling() {
+		return this.replanningScheduling;
+	}
+	/**
+	 * @param replanningScheduling -- {@link #REPLANNING_SCHEDULING_CMT}
+	 */
+	@StringSetter( REPLANNING_SCHEDULING )
+	public void setReplanningScheduling(final ReplanningScheduling replanningScheduling) {
+		this.replanningScheduling = replanningScheduling;
+	}
+	// ---
 	private String coordinateSystem = "Atlantis" ;
 	// see https://matsim.atlassian.net/browse/MATSIM-898
 	private static final String COORDINATE_SYSTEM = "coordinateSystem";
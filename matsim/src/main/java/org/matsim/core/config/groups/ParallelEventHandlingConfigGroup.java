@@ -49,6 +49,12 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 	private final static String EVENTS_QUEUE_SIZE_COMMENT = "Size of the events Queue. Increase for very large scenarios";
 	private int eventsQueueSize = 65536 * 2 ;
 
+	private final static String USE_RING_BUFFER = "useRingBuffer";
+	private Boolean useRingBuffer = false;
+
+	private final static String NUMBER_OF_SCORING_THREADS = "numberOfScoringThreads";
+	private int numberOfScoringThreads = 0;
+
 
 
 	private boolean locked = false;
@@ -67,6 +73,12 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 		comments.put(ONE_THREAD_PER_HANDLER, "If enabled, each event handler is assigned to its own thread. Note that enabling this feature disabled the " + NUMBER_OF_THREADS + " option! "
 				+ "This feature is still experimental!");
 		comments.put(EVENTS_QUEUE_SIZE,EVENTS_QUEUE_SIZE_COMMENT);
+		comments.put(USE_RING_BUFFER, "If enabled, events are passed to the handler threads through a preallocated ring buffer of " + EVENTS_QUEUE_SIZE + " events "
+				+ "instead of blocking queues. Uses " + NUMBER_OF_THREADS + ", " + ONE_THREAD_PER_HANDLER + " and " + SYNCHRONIZE_ON_SIMSTEPS + ". "
+				+ "This feature is still experimental!");
+		comments.put(NUMBER_OF_SCORING_THREADS, "Number of threads that score the persons during event handling. The persons are split among the threads by their id, "
+				+ "and each thread builds the legs and activities of its persons itself, so that no lock is needed. "
+				+ "0 scores all persons in the thread that handles the events.");
 		return comments;
 	}
 
@@ -144,6 +156,34 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 		}
 	}
 	
+	@StringGetter( USE_RING_BUFFER )
+	public Boolean getUseRingBuffer() {
+		return this.useRingBuffer;
+	}
+
+	@StringSetter( USE_RING_BUFFER )
+	public void setUseRingBuffer(Boolean useRingBuffer) {
+		if ( !this.locked ) {
+			this.useRingBuffer = useRingBuffer;
+		} else {
+			throw new RuntimeException("it is too late in the control flow to modify this parameter");
+		}
+	}
+
+	@StringGetter( NUMBER_OF_SCORING_THREADS )
+	public int getNumberOfScoringThreads() {
+		return this.numberOfScoringThreads;
+	}
+
+	@StringSetter( NUMBER_OF_SCORING_THREADS )
+	public void setNumberOfScoringThreads(int numberOfScoringThreads) {
+		if ( !this.locked ) {
+			this.numberOfScoringThreads = numberOfScoringThreads;
+		} else {
+			throw new RuntimeException("it is too late in the control flow to modify this parameter");
+		}
+	}
+
 	public void makeLocked() {
 		this.locked = true;
 	}
@@ -176,6 +176,20 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 	}
 	private NodeTransition nodeTransitionLogic = NodeTransition.emptyBufferAfterBufferRandomDistribution_dontBlockNode;
 	
+	// ---
+	private static final String NETWORK_PARTITIONING = "networkPartitioning";
+	public enum NetworkPartitioning { roundRobin, bisection, loadBalanced }
+	private NetworkPartitioning networkPartitioning = NetworkPartitioning.roundRobin;
+	/**
+	 * Name of the node and link attribute in the input network holding the simulation load that is balanced by
+	 * {@link NetworkPartitioning#loadBalanced} before the QSim has measured one. The measured load is not written
+	 * to the network.
+	 */
+	public static final String LOAD_ATTRIBUTE = "qsimLoad";
+	// ---
+	private static final String NETSIM_ENGINE_SYNCHRONIZATION = "netsimEngineSynchronization";
+	public enum NetsimEngineSynchronization { barrier, neighbours }
+	private NetsimEngineSynchronization netsimEngineSynchronization = NetsimEngineSynchronization.barrier;
 	// ---
 	
 	public QSimConfigGroup() {
@@ -254,6 +268,18 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		map.put(NUMBER_OF_THREADS, "Number of threads used for the QSim.  "
 				+ "Note that this setting is independent from the \"global\" threads setting.  "
 				+ "In contrast to earlier versions, the non-parallel special version is no longer there." ) ;
+		map.put(NETWORK_PARTITIONING, "How the nodes and their outgoing links are distributed to the " + NUMBER_OF_THREADS + " threads. "
+				+ NetworkPartitioning.roundRobin + ": in turn. "
+				+ NetworkPartitioning.bisection + ": by recursive bisection of the network, so that neighbouring nodes are handled by the same thread, "
+				+ "balancing the number of nodes and links. "
+				+ NetworkPartitioning.loadBalanced + ": like " + NetworkPartitioning.bisection + ", but balancing the load of the previous iteration, "
+				+ "which the QSim keeps in memory. Before a load is measured, the \"" + LOAD_ATTRIBUTE + "\" attribute of nodes and links in the input network "
+				+ "is used, if set, e.g. from link counts." );
+		map.put(NETSIM_ENGINE_SYNCHRONIZATION, "How the " + NUMBER_OF_THREADS + " threads of the network simulation synchronize within a time step. "
+				+ NetsimEngineSynchronization.barrier + ": all threads move their nodes, then all threads move their links. "
+				+ NetsimEngineSynchronization.neighbours + ": each thread moves its links as soon as the threads handling the to-nodes of these links "
+				+ "have moved their nodes. This saves waiting time with many threads, in particular with " + NETWORK_PARTITIONING + "="
+				+ NetworkPartitioning.bisection + "." );
 		map.put(REMOVE_STUCK_VEHICLES, REMOVE_STUCK_VEHICLES_STRING );
 		map.put(STUCK_TIME, STUCK_TIME_STRING );
 
@@ -455,6 +481,26 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		this.simEndtimeInterpretation = str;
 	}
 
+	@StringSetter(NETWORK_PARTITIONING)
+	public void setNetworkPartitioning(NetworkPartitioning networkPartitioning) {
+		this.networkPartitioning = networkPartitioning;
+	}
+
+	@StringGetter(NETWORK_PARTITIONING)
+	public NetworkPartitioning getNetworkPartitioning() {
+		return this.networkPartitioning;
+	}
+
+	@StringSetter(NETSIM_ENGINE_SYNCHRONIZATION)
+	public void setNetsimEngineSynchronization(NetsimEngineSynchronization netsimEngineSynchronization) {
+		this.netsimEngineSynchronization = netsimEngineSynchronization;
+	}
+
+	@StringGetter(NETSIM_ENGINE_SYNCHRONIZATION)
+	public NetsimEngineSynchronization getNetsimEngineSynchronization() {
+		return this.netsimEngineSynchronization;
+	}
+
 	@StringSetter(VEHICLE_BEHAVIOR)
 	public void setVehicleBehavior(VehicleBehavior value) {
 		this.vehicleBehavior = value;
@@ -44,6 +44,8 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 
 	public enum TravelTimeCalculatorType {TravelTimeCalculatorArray,TravelTimeCalculatorHashMap}
 
+	public enum VehicleStateStorage {mapBased, indexBased}
+
 	private static final String TRAVEL_TIME_CALCULATOR = "travelTimeCalculator";
 	private static final String TRAVEL_TIME_BIN_SIZE = "travelTimeBinSize";
 	private static final String TRAVEL_TIME_AGGREGATOR = "travelTimeAggregator";
@@ -57,6 +59,9 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 	private static final String FILTERMODES = "filterModes";
 	private static final String SEPARATEMODES = "separateModes";
 
+	private static final String VEHICLE_STATE_STORAGE = "vehicleStateStorage";
+	private static final String NUMBER_OF_SHARDS = "numberOfShards";
+
 	private TravelTimeCalculatorType travelTimeCalculator = TravelTimeCalculatorType.TravelTimeCalculatorArray;
 	private String travelTimeAggregator = "optimistic";
 	private String travelTimeGetter = "average";
@@ -70,6 +75,9 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 	private boolean filterModes = false;
 	private boolean separateModes = true;
 
+	private VehicleStateStorage vehicleStateStorage = VehicleStateStorage.mapBased;
+	private int numberOfShards = 1;
+
 	public TravelTimeCalculatorConfigGroup() {
 		super(GROUPNAME);
 		analyzedModes.add( TransportMode.car ) ;
@@ -91,6 +99,10 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 		map.put(FILTERMODES, "(only for backwards compatiblity; only used if " + SEPARATEMODES + "==false)  Only modes included in analyzedModes are included." ) ;
 		map.put(SEPARATEMODES, "(only for backwards compatibility) If false, link travel times are measured and aggregated over all vehicles using the link." ) ;
 		map.put( TRAVEL_TIME_CALCULATOR, "possible values: " + Arrays.stream( TravelTimeCalculatorType.values() ).map( type -> type.toString() + ' ' ).collect( Collectors.joining() ) );
+		map.put( VEHICLE_STATE_STORAGE, "How the link enter times of the vehicles and the link-to-link data are stored. 'indexBased' uses arrays indexed by the vehicle and link " +
+				"indices instead of maps, and is required for " + NUMBER_OF_SHARDS + " > 1. Possible values: " + Arrays.stream( VehicleStateStorage.values() ).map( type -> type.toString() + ' ' ).collect( Collectors.joining() ) );
+		map.put( NUMBER_OF_SHARDS, "(only used with " + VEHICLE_STATE_STORAGE + "=indexBased) Number of link index ranges the travel time collection is split into. Each shard is " +
+				"registered as a separate event handler, so that a parallel events manager can process them concurrently without any locking." );
 		return map;
 	}
 
@@ -213,5 +225,25 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 	public void setSeparateModes(boolean separateModes) {
 		this.separateModes = separateModes;
 	}
+	// ---
+	@StringGetter( VEHICLE_STATE_STORAGE )
+	public VehicleStateStorage getVehicleStateStorage() {
+		return this.vehicleStateStorage;
+	}
+
+	@StringSetter( VEHICLE_STATE_STORAGE )
+	public void setVehicleStateStorage( VehicleStateStorage vehicleStateStorage ) {
+		this.vehicleStateStorage = vehicleStateStorage;
+	}
+	// ---
+	@StringGetter( NUMBER_OF_SHARDS )
+	public int getNumberOfShards() {
+		return this.numberOfShards;
+	}
+
+	@StringSetter( NUMBER_OF_SHARDS )
+	public void setNumberOfShards( int numberOfShards ) {
+		this.numberOfShards = numberOfShards;
+	}
 
 }
@@ -0,0 +1,110 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventHandlerInvoker.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.handler.EventHandler;
+
+/**
+ * Calls one <code>handleEvent</code> method of an event handler interface.
+ *
+ * Invokers are generated with {@link LambdaMetafactory}, so calling them costs the same as a hand-written cast and
+ * interface call. If the handler interface is not accessible from this package (e.g. a non-public interface or one
+ * loaded by another class loader), the invoker falls back to reflection. Generating an invoker takes far longer than
+ * calling it, so invokers are shared by all events managers. They are stored with the handler interface's class (see
+ * {@link ClassValue}), so they do not keep the class loaders of earlier runs alive.
+ */
+@FunctionalInterface
+interface EventHandlerInvoker {
+
+	void invoke(EventHandler handler, Event event);
+
+	static EventHandlerInvoker create(final Method method) {
+		return Cache.INVOKERS.get(method.getDeclaringClass()).computeIfAbsent(method, EventHandlerInvoker::generate);
+	}
+
+	private static EventHandlerInvoker generate(final Method method) {
+		Class<?> handlerInterface = method.getDeclaringClass();
+		Class<?> eventClass = method.getParameterTypes()[0];
+		try {
+			if (isVisible(handlerInterface) && isVisible(eventClass)) {
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				MethodHandle target = lookup.unreflect(method);
+				CallSite site = LambdaMetafactory.metafactory(lookup, "invoke",
+						MethodType.methodType(EventHandlerInvoker.class),
+						MethodType.methodType(void.class, EventHandler.class, Event.class),
+						target,
+						MethodType.methodType(void.class, handlerInterface, eventClass));
+				return (EventHandlerInvoker) site.getTarget().invokeExact();
+			}
+		} catch (Throwable e) {
+			Logger.getLogger(EventHandlerInvoker.class).warn("could not generate invoker for " + method + ", using reflection: " + e);
+		}
+		return createReflective(method);
+	}
+
+	static EventHandlerInvoker createReflective(final Method method) {
+		return (handler, event) -> {
+			try {
+				method.invoke(handler, event);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			} catch (InvocationTargetException e) {
+				// rethrow what the handler threw, like a generated invoker does
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw new RuntimeException(e.getCause());
+			}
+		};
+	}
+
+	final class Cache {
+		private static final ClassValue<Map<Method, EventHandlerInvoker>> INVOKERS = new ClassValue<>() {
+			@Override
+			protected Map<Method, EventHandlerInvoker> computeValue(Class<?> handlerInterface) {
+				return new ConcurrentHashMap<>();
+			}
+		};
+	}
+
+	private static boolean isVisible(Class<?> klass) {
+		try {
+			return Class.forName(klass.getName(), false, EventHandlerInvoker.class.getClassLoader()) == klass;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+}
@@ -20,7 +20,6 @@
 
 package org.matsim.core.events;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -76,6 +75,9 @@ import org.matsim.core.events.handler.EventHandler;
  * <li>(optional) add an appropriate line in callHandlerFast() for speeding
  * up execution!</li>
  * </ol>
+ * Handler methods not covered by callHandlerFast() are called through invokers generated when the handler is
+ * added (see {@link EventHandlerInvoker}) instead of reflection. Each call synchronizes on the handler, unless the
+ * handler is a {@link ThreadConfinedEventHandler}.
  *
  * @author dstrippgen
  * @author mrieser
@@ -88,11 +90,11 @@ public final class EventsManagerImpl implements EventsManager {
 
 		protected Class<? extends Event> eventClass;
 		protected ArrayList<EventHandler> handlerList = new ArrayList<EventHandler>(5);
-		protected Method method;
+		protected EventHandlerInvoker invoker;
 
-		protected HandlerData(final Class<? extends Event> eventClass, final Method method) {
+		protected HandlerData(final Class<? extends Event> eventClass, final EventHandlerInvoker invoker) {
 			this.eventClass = eventClass;
-			this.method = method;
+			this.invoker = invoker;
 		}
 
 		protected void removeHandler(final EventHandler handler) {
@@ -103,13 +105,15 @@ public final class EventsManagerImpl implements EventsManager {
 	static private class HandlerInfo {
 		protected final Class<? extends Event> eventClass;
 		protected final EventHandler eventHandler;
-		protected final Method method;
+		protected final EventHandlerInvoker invoker;
+		protected final boolean threadConfined;
 
 		protected HandlerInfo(final Class<? extends Event> eventClass, final EventHandler eventHandler,
-				final Method method) {
+				final EventHandlerInvoker invoker) {
 			this.eventClass = eventClass;
 			this.eventHandler = eventHandler;
-			this.method = method;
+			this.invoker = invoker;
+			this.threadConfined = eventHandler instanceof ThreadConfinedEventHandler;
 		}
 	}
 
@@ -137,21 +141,29 @@ public final class EventsManagerImpl implements EventsManager {
 			log.info(" event # " + this.counter);
 		}
 		for (HandlerInfo info : getHandlersForClass( event.getClass() )) {
+			if (info.threadConfined) {
+				if (!callHandlerFast(info.eventClass, event, info.eventHandler)) {
+					invokeHandler(info, event);
+				}
+				continue;
+			}
 			synchronized(info.eventHandler) {
 				if (callHandlerFast(info.eventClass, event, info.eventHandler )) {
 					continue;
 				}
-				try {
-					info.method.invoke(info.eventHandler, event );
-				} catch (IllegalArgumentException | IllegalAccessException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
-				} catch (InvocationTargetException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e.getCause());
-				}
+				invokeHandler(info, event);
 			}
 		}
 	}
 
+	private static void invokeHandler(final HandlerInfo info, final Event event) {
+		try {
+			info.invoker.invoke(info.eventHandler, event);
+		} catch (RuntimeException e) {
+			throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
+		}
+	}
+
 
 	@Override
 	public void addHandler (final EventHandler handler) {
@@ -227,7 +239,7 @@ public final class EventsManagerImpl implements EventsManager {
 					log.info("    > " + eventClass.getName());
 					HandlerData dat = findHandler(eventClass);
 					if (dat == null) {
-						dat = new HandlerData(eventClass, method);
+						dat = new HandlerData(eventClass, EventHandlerInvoker.create(method));
 						this.handlerData.add(dat);
 					}
 					dat.handlerList.add(handler);
@@ -236,6 +248,11 @@ public final class EventsManagerImpl implements EventsManager {
 		}
 	}
 
+	@Override
+	public boolean hasHandlersFor(final Class<? extends Event> eventClass) {
+		return getHandlersForClass(eventClass).length > 0;
+	}
+
 	private HandlerInfo[] getHandlersForClass(final Class<? extends Event> eventClass) {
 		HandlerInfo[] cache = this.cacheHandlers.get(eventClass);
 		if (cache != null) {
@@ -250,7 +267,7 @@ public final class EventsManagerImpl implements EventsManager {
 			HandlerData dat = findHandler(eventKlass);
 			if (dat != null) {
 				for (EventHandler handler : dat.handlerList) {
-					info.add(new HandlerInfo(eventKlass, handler, dat.method));
+					info.add(new HandlerInfo(eventKlass, handler, dat.invoker));
 				}
 			}
 			klass = klass.getSuperclass();
@@ -0,0 +1,403 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.MatsimEventsReader.CustomEventMapper;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Reads events files written by {@link EventWriterBinary}.
+ *
+ * <p>The chunks of the file are decoded by several threads, while the events are created and passed to the
+ * {@link EventsManager} in the order of the file by the calling thread, so ids are created in the same order as
+ * when reading an xml file. Event types whose events would not reach any handler (see
+ * {@link EventsManager#hasHandlersFor(Class)}) are skipped while decoding, after the first event of the type.
+ * Handlers should thus not be added to the events manager while reading.</p>
+ */
+public final class EventsReaderBinary {
+
+	private final static Logger LOG = Logger.getLogger(EventsReaderBinary.class);
+
+	private final EventsManager events;
+	private final Map<String, CustomEventMapper> customEventMappers = new HashMap<>();
+	private int numberOfThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+	private final Set<String> skippedTypes = ConcurrentHashMap.newKeySet();
+	private final Map<String, Boolean> handledTypes = new HashMap<>();
+
+	public EventsReaderBinary(final EventsManager events) {
+		this.events = events;
+	}
+
+	public void addCustomEventMapper(String eventType, CustomEventMapper cem) {
+		this.customEventMappers.put(eventType, cem);
+	}
+
+	/**
+	 * Sets the number of threads decoding chunks of the file. With a single thread, everything is done by the
+	 * calling thread.
+	 */
+	public void setNumberOfThreads(int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("numberOfThreads must be at least 1, but is " + numberOfThreads);
+		}
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	void parse(final String filename) throws UncheckedIOException {
+		parse(IOUtils.resolveFileOrResource(filename));
+	}
+
+	void parse(URL url) throws UncheckedIOException {
+		LOG.info("starting to parse binary events from url " + url + " ...");
+		parse(IOUtils.getInputStream(url));
+	}
+
+	void parse(final InputStream stream) throws UncheckedIOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+			read(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void read(final DataInputStream in) throws IOException {
+		byte[] magic = new byte[EventWriterBinary.MAGIC.length];
+		in.readFully(magic);
+		if (!Arrays.equals(magic, EventWriterBinary.MAGIC)) {
+			throw new UncheckedIOException("not a binary events file.");
+		}
+		int version = (int) readVarint(in);
+		if (version != EventWriterBinary.VERSION) {
+			throw new UncheckedIOException("unsupported version of binary events file: " + version);
+		}
+
+		EventCapture capture = new EventCapture();
+		EventsReaderXMLv1 delegate = new EventsReaderXMLv1(capture);
+		this.customEventMappers.forEach(delegate::addCustomEventMapper);
+		Stack<String> context = new Stack<>();
+
+		ExecutorService executor = null;
+		if (this.numberOfThreads > 1) {
+			executor = Executors.newFixedThreadPool(this.numberOfThreads, r -> {
+				Thread thread = new Thread(r, "EventsReaderBinary");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		Deque<Future<DecodedChunk>> pending = new ArrayDeque<>();
+		String[] dictionary = new String[1024];
+		int dictionarySize = 0;
+		try {
+			int eventCount;
+			while ((eventCount = (int) readVarint(in)) != 0) {
+				int newEntries = (int) readVarint(in);
+				if (dictionarySize + newEntries > dictionary.length) {
+					// chunks still being decoded keep the previous array, which is not modified anymore
+					dictionary = Arrays.copyOf(dictionary, Math.max(2 * dictionary.length, dictionarySize + newEntries));
+				}
+				for (int i = 0; i < newEntries; i++) {
+					byte[] bytes = new byte[(int) readVarint(in)];
+					in.readFully(bytes);
+					dictionary[dictionarySize++] = new String(bytes, StandardCharsets.UTF_8);
+				}
+				byte[] payload = new byte[(int) readVarint(in)];
+				in.readFully(payload);
+
+				ChunkDecoder decoder = new ChunkDecoder(payload, eventCount, dictionary, this.skippedTypes);
+				if (executor == null) {
+					processChunk(decoder.call(), delegate, capture, context);
+				} else {
+					pending.add(executor.submit(decoder));
+					if (pending.size() >= 2 * this.numberOfThreads) {
+						processChunk(pending.poll().get(), delegate, capture, context);
+					}
+				}
+			}
+			while (!pending.isEmpty()) {
+				processChunk(pending.poll().get(), delegate, capture, context);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	private void processChunk(DecodedChunk chunk, EventsReaderXMLv1 delegate, EventCapture capture, Stack<String> context) {
+		for (int i = 0; i < chunk.types.length; i++) {
+			AttributesImpl atts = chunk.attributes[i];
+			String type = chunk.types[i];
+			if (atts == null || this.skippedTypes.contains(type)) {
+				continue;
+			}
+			delegate.startTag(EventsReaderXMLv1.EVENT, atts, context);
+			Event event = capture.event;
+			capture.event = null;
+			if (event == null) {
+				continue;
+			}
+			Boolean handled = this.handledTypes.get(type);
+			if (handled == null) {
+				handled = this.events.hasHandlersFor(event.getClass());
+				this.handledTypes.put(type, handled);
+				if (!handled) {
+					this.skippedTypes.add(type);
+				}
+			}
+			if (handled) {
+				this.events.processEvent(event);
+			}
+		}
+	}
+
+	private static long readVarint(final DataInputStream in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	private static final class DecodedChunk {
+		private final String[] types;
+		private final AttributesImpl[] attributes;
+
+		DecodedChunk(int eventCount) {
+			this.types = new String[eventCount];
+			this.attributes = new AttributesImpl[eventCount];
+		}
+	}
+
+	/**
+	 * Turns the columns of a chunk back into the attributes of its events, leaving out events of skipped types.
+	 */
+	private static final class ChunkDecoder implements Callable<DecodedChunk> {
+
+		private final byte[] payload;
+		private final int eventCount;
+		private final String[] dictionary;
+		private final Set<String> skippedTypes;
+
+		ChunkDecoder(byte[] payload, int eventCount, String[] dictionary, Set<String> skippedTypes) {
+			this.payload = payload;
+			this.eventCount = eventCount;
+			this.dictionary = dictionary;
+			this.skippedTypes = skippedTypes;
+		}
+
+		@Override
+		public DecodedChunk call() {
+			Cursor payloadCursor = new Cursor(this.payload, 0, this.payload.length);
+			Cursor types = payloadCursor.column();
+			Cursor times = payloadCursor.column();
+			Cursor attributes = payloadCursor.column();
+			Cursor persons = payloadCursor.column();
+			Cursor links = payloadCursor.column();
+			Cursor vehicles = payloadCursor.column();
+			Cursor numbers = payloadCursor.column();
+
+			DecodedChunk chunk = new DecodedChunk(this.eventCount);
+			long wholeTime = 0;
+			for (int i = 0; i < this.eventCount; i++) {
+				String type = this.dictionary[(int) types.readVarint()];
+				double time;
+				long timeCode = times.readVarint();
+				if (timeCode == EventWriterBinary.TIME_RAW) {
+					time = times.readDouble();
+				} else {
+					long zigZag = timeCode >>> 1;
+					wholeTime += (zigZag >>> 1) ^ -(zigZag & 1);
+					time = wholeTime;
+				}
+
+				boolean skip = this.skippedTypes.contains(type);
+				AttributesImpl atts = null;
+				if (!skip) {
+					atts = new AttributesImpl();
+					add(atts, Event.ATTRIBUTE_TIME, Double.toString(time));
+					add(atts, Event.ATTRIBUTE_TYPE, type);
+				}
+				int count = (int) attributes.readVarint();
+				for (int a = 0; a < count; a++) {
+					String key = this.dictionary[(int) attributes.readVarint()];
+					int tag = (int) attributes.readVarint();
+					String value;
+					switch (tag) {
+						case EventWriterBinary.VALUE_NULL:
+							value = null;
+							break;
+						case EventWriterBinary.VALUE_NUMBER:
+							double number = numbers.readDouble();
+							value = skip ? null : Double.toString(number);
+							break;
+						case EventWriterBinary.VALUE_PERSON:
+							value = this.dictionary[(int) persons.readVarint()];
+							break;
+						case EventWriterBinary.VALUE_LINK:
+							value = this.dictionary[(int) links.readVarint()];
+							break;
+						case EventWriterBinary.VALUE_VEHICLE:
+							value = this.dictionary[(int) vehicles.readVarint()];
+							break;
+						default:
+							value = this.dictionary[tag - EventWriterBinary.VALUE_STRING];
+					}
+					if (!skip) {
+						add(atts, key, value);
+					}
+				}
+				chunk.types[i] = type;
+				chunk.attributes[i] = atts;
+			}
+			return chunk;
+		}
+
+		private static void add(AttributesImpl atts, String key, String value) {
+			atts.addAttribute("", key, key, "CDATA", value);
+		}
+	}
+
+	private static final class Cursor {
+		private final byte[] data;
+		private int pos;
+		private final int end;
+
+		Cursor(byte[] data, int pos, int end) {
+			this.data = data;
+			this.pos = pos;
+			this.end = end;
+		}
+
+		/**
+		 * @return a cursor over the next length-prefixed column, and moves this cursor behind it.
+		 */
+		Cursor column() {
+			int length = (int) readVarint();
+			Cursor column = new Cursor(this.data, this.pos, this.pos + length);
+			this.pos += length;
+			return column;
+		}
+
+		long readVarint() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				if (this.pos >= this.end) {
+					throw new UncheckedIOException("corrupt binary events file.");
+				}
+				b = this.data[this.pos++];
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+
+		double readDouble() {
+			if (this.pos + 8 > this.end) {
+				throw new UncheckedIOException("corrupt binary events file.");
+			}
+			long bits = 0;
+			for (int i = 7; i >= 0; i--) {
+				bits = (bits << 8) | (this.data[this.pos + i] & 0xFF);
+			}
+			this.pos += 8;
+			return Double.longBitsToDouble(bits);
+		}
+	}
+
+	/**
+	 * Receives the events created by the xml reader, so they can be inspected before they are passed on.
+	 */
+	private static final class EventCapture implements EventsManager {
+		private Event event;
+
+		@Override
+		public void processEvent(Event event) {
+			this.event = event;
+		}
+
+		@Override
+		public void addHandler(EventHandler handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void removeHandler(EventHandler handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void resetHandlers(int iteration) {
+		}
+
+		@Override
+		public void initProcessing() {
+		}
+
+		@Override
+		public void afterSimStep(double time) {
+		}
+
+		@Override
+		public void finishProcessing() {
+		}
+	}
+}
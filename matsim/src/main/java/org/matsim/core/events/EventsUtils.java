@@ -58,6 +58,8 @@ public final class EventsUtils {
 			return events;
 		} else if (events instanceof ParallelEventsManager) {
 			return events;
+		} else if (events instanceof RingBufferEventsManager) {
+			return events;
 		}
 		else if (events instanceof SynchronizedEventsManagerImpl) {
 			return events;
@@ -0,0 +1,356 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferEventsManager.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
+import org.matsim.core.events.handler.EventHandler;
+
+/**
+ * An EventsManager that passes events to its handler threads through one preallocated ring buffer instead of
+ * blocking queues.
+ *
+ * Events may be processed by several threads at the same time. A producer claims a range of slots with a single
+ * atomic increment (one slot per {@link #processEvent(Event)}, a whole batch per {@link #processEvents(EventArray)}),
+ * writes the events and publishes each slot by storing its sequence number. Every handler group is served by one
+ * thread with its own cursor into the buffer, so no events are copied or queued per thread; the buffer is the only
+ * distribution point. Producers only wait if the slowest handler thread is a full buffer behind.
+ *
+ * As in {@link ParallelEventsManager}, the handlers are either distributed round-robin to a fixed number of threads,
+ * or each handler gets its own thread. Events are processed in the order of their slots, which is the order in which
+ * they were passed to this manager if there is only one producer.
+ */
+public final class RingBufferEventsManager implements EventsManager {
+
+	private final static Logger log = Logger.getLogger(RingBufferEventsManager.class);
+
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 100;
+	private static final long PARK_NANOS = 50_000;
+
+	private final boolean syncOnTimeSteps;
+	private final boolean oneThreadPerHandler;
+	private final int numOfThreads;
+	private final List<EventHandler> eventsHandlers = new ArrayList<>();
+
+	private final Event[] buffer;
+	// sequence number of the event stored in each slot, or -1 if none was published yet
+	private final AtomicLongArray published;
+	private final int mask;
+
+	// next sequence number to be claimed by a producer. Never reset, so that old entries in published cannot be
+	// mistaken for new ones in a later iteration.
+	private final AtomicLong claimed = new AtomicLong();
+	// lower bound of the slowest consumer cursor, cached to avoid reading all cursors for every claim
+	private volatile long cachedMinCursor = 0;
+
+	private final List<EventsManager> eventsManagers = new ArrayList<>();
+	private Consumer[] consumers = new Consumer[0];
+	private final AtomicReference<Throwable> exception = new AtomicReference<>();
+	private int iteration = 0;
+	private volatile boolean init = false;
+
+	@Inject
+	RingBufferEventsManager(ParallelEventHandlingConfigGroup config) {
+		this(config.getSynchronizeOnSimSteps() == null || config.getSynchronizeOnSimSteps(),
+				Boolean.TRUE.equals(config.getOneThreadPerHandler()),
+				config.getNumberOfThreads() != null ? config.getNumberOfThreads() : 1,
+				config.getEventsQueueSize());
+	}
+
+	/**
+	 * Creates an events manager that processes each handler in its own thread.
+	 */
+	public RingBufferEventsManager(final boolean syncOnTimeSteps, final int bufferSize) {
+		this(syncOnTimeSteps, true, -1, bufferSize);
+	}
+
+	/**
+	 * Creates an events manager that distributes the handlers to the given number of threads.
+	 */
+	public RingBufferEventsManager(final boolean syncOnTimeSteps, final int numOfThreads, final int bufferSize) {
+		this(syncOnTimeSteps, false, numOfThreads, bufferSize);
+	}
+
+	private RingBufferEventsManager(final boolean syncOnTimeSteps, final boolean oneThreadPerHandler, final int numOfThreads, final int bufferSize) {
+		if (!oneThreadPerHandler && numOfThreads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive, but is " + numOfThreads);
+		}
+		this.syncOnTimeSteps = syncOnTimeSteps;
+		this.oneThreadPerHandler = oneThreadPerHandler;
+		this.numOfThreads = numOfThreads;
+		int capacity = Integer.highestOneBit(Math.max(bufferSize, 2) - 1) << 1;
+		this.buffer = new Event[capacity];
+		this.published = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			this.published.set(i, -1);
+		}
+		this.mask = capacity - 1;
+	}
+
+	@Override
+	public void processEvent(final Event event) {
+		if (!init) throw new IllegalStateException(".initProcessing() has to be called before processing events!");
+
+		long sequence = this.claimed.getAndIncrement();
+		awaitCapacity(sequence);
+		int slot = (int) sequence & this.mask;
+		this.buffer[slot] = event;
+		this.published.lazySet(slot, sequence);
+	}
+
+	@Override
+	public void processEvents(final EventArray events) {
+		if (!init) throw new IllegalStateException(".initProcessing() has to be called before processing events!");
+
+		Event[] array = events.array();
+		int size = events.size();
+		for (int start = 0; start < size; start += this.buffer.length) {
+			int count = Math.min(size - start, this.buffer.length);
+			long first = this.claimed.getAndAdd(count);
+			awaitCapacity(first + count - 1);
+			for (int i = 0; i < count; i++) {
+				this.buffer[(int) (first + i) & this.mask] = array[start + i];
+			}
+			for (int i = 0; i < count; i++) {
+				long sequence = first + i;
+				this.published.lazySet((int) sequence & this.mask, sequence);
+			}
+		}
+	}
+
+	/** Waits until the slot of the given sequence is no longer needed by any consumer. */
+	private void awaitCapacity(final long sequence) {
+		long wrapPoint = sequence - this.buffer.length;
+		if (wrapPoint < this.cachedMinCursor) {
+			return;
+		}
+		long minCursor;
+		int idle = 0;
+		while (wrapPoint >= (minCursor = minCursor())) {
+			idle = idle(idle);
+		}
+		this.cachedMinCursor = minCursor;
+	}
+
+	private long minCursor() {
+		long min = Long.MAX_VALUE;
+		for (Consumer consumer : this.consumers) {
+			min = Math.min(min, consumer.cursor.get());
+		}
+		return min;
+	}
+
+	private static int idle(final int idle) {
+		if (idle < SPIN_TRIES) {
+			Thread.onSpinWait();
+		} else if (idle < SPIN_TRIES + YIELD_TRIES) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+		return idle + 1;
+	}
+
+	@Override
+	public void addHandler(final EventHandler handler) {
+		if (init)
+			throw new IllegalStateException("Handlers can not be added after .initProcessing() was called!");
+
+		// this will be used the next time we start an iteration
+		this.eventsHandlers.add(handler);
+	}
+
+	@Override
+	public void removeHandler(final EventHandler handler) {
+		// this will be used the next time we start an iteration
+		this.eventsHandlers.remove(handler);
+	}
+
+	@Override
+	public void resetHandlers(int iteration) {
+		for (EventsManager eventsManager : this.eventsManagers) {
+			eventsManager.resetHandlers(iteration);
+		}
+	}
+
+	@Override
+	public void initProcessing() {
+		this.eventsManagers.clear();
+		if (this.oneThreadPerHandler) {
+			for (EventHandler handler : this.eventsHandlers) {
+				this.eventsManagers.add(new SingleHandlerEventsManager(handler));
+			}
+		} else {
+			int numManagers = Math.min(this.numOfThreads, this.eventsHandlers.size());
+			for (int i = 0; i < numManagers; i++) {
+				this.eventsManagers.add(new EventsManagerImpl());
+			}
+			for (int i = 0; i < this.eventsHandlers.size(); i++) {
+				this.eventsManagers.get(i % numManagers).addHandler(this.eventsHandlers.get(i));
+			}
+		}
+
+		for (EventsManager eventsManager : this.eventsManagers) {
+			eventsManager.initProcessing();
+		}
+		resetHandlers(this.iteration);
+
+		long start = this.claimed.get();
+		this.cachedMinCursor = start;
+		this.consumers = new Consumer[this.eventsManagers.size()];
+		for (int i = 0; i < this.consumers.length; i++) {
+			EventsManager eventsManager = this.eventsManagers.get(i);
+			Consumer consumer = new Consumer(eventsManager, start);
+			consumer.setDaemon(true);
+			if (this.oneThreadPerHandler) {
+				consumer.setName("RingBufferEventsManager: " + ((SingleHandlerEventsManager) eventsManager).getEventHandlerClassName());
+			} else {
+				consumer.setName("RingBufferEventsManager" + i);
+			}
+			this.consumers[i] = consumer;
+		}
+		for (Consumer consumer : this.consumers) {
+			consumer.start();
+		}
+		this.init = true;
+	}
+
+	@Override
+	public void afterSimStep(double time) {
+		if (this.syncOnTimeSteps) {
+			flush();
+		}
+		rethrowException();
+	}
+
+	@Override
+	public synchronized void finishProcessing() {
+		flush();
+		this.init = false;
+		for (Consumer consumer : this.consumers) {
+			consumer.running = false;
+			LockSupport.unpark(consumer);
+		}
+		try {
+			for (Consumer consumer : this.consumers) {
+				consumer.join();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException("Exception while waiting on join...", e);
+		}
+		this.consumers = new Consumer[0];
+		// do not keep the last events of the iteration alive
+		Arrays.fill(this.buffer, null);
+
+		for (EventsManager eventsManager : this.eventsManagers) {
+			eventsManager.finishProcessing();
+		}
+		rethrowException();
+		this.iteration++;
+	}
+
+	/**
+	 * Waits until all events passed to this manager so far have been processed by all handlers.
+	 */
+	public void flush() {
+		long end = this.claimed.get();
+		for (Consumer consumer : this.consumers) {
+			int idle = 0;
+			while (consumer.cursor.get() < end) {
+				idle = idle(idle);
+			}
+		}
+	}
+
+	public boolean hadException() {
+		return this.exception.get() != null;
+	}
+
+	private void rethrowException() {
+		Throwable e = this.exception.get();
+		if (e != null) {
+			throw new RuntimeException("Exception while processing events. Cannot guarantee that all events have been fully processed.", e);
+		}
+	}
+
+	private class Consumer extends Thread {
+
+		private final EventsManager eventsManager;
+		// sequence number of the next event to process
+		private final AtomicLong cursor;
+		private volatile boolean running = true;
+
+		Consumer(EventsManager eventsManager, long start) {
+			this.eventsManager = eventsManager;
+			this.cursor = new AtomicLong(start);
+		}
+
+		@Override
+		public void run() {
+			Event[] buffer = RingBufferEventsManager.this.buffer;
+			AtomicLongArray published = RingBufferEventsManager.this.published;
+			int mask = RingBufferEventsManager.this.mask;
+			// release slots at least every quarter buffer, so producers do not wait for a whole batch
+			int maxBatch = Math.max(1, buffer.length / 4);
+			boolean failed = false;
+			long next = this.cursor.get();
+			int idle = 0;
+			while (true) {
+				int count = 0;
+				while (count < maxBatch && published.get((int) next & mask) == next) {
+					if (!failed) {
+						try {
+							this.eventsManager.processEvent(buffer[(int) next & mask]);
+						} catch (Throwable e) {
+							// keep consuming, so that producers and flush() do not wait forever
+							failed = true;
+							exception.compareAndSet(null, e);
+							log.error("Thread " + getName() + " died with exception while handling events.", e);
+						}
+					}
+					next++;
+					count++;
+				}
+				if (count > 0) {
+					this.cursor.set(next);
+					idle = 0;
+				} else if (this.running) {
+					idle = idle(idle);
+				} else {
+					return;
+				}
+			}
+		}
+	}
+}
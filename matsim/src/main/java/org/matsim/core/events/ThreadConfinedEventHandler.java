@@ -0,0 +1,32 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import org.matsim.core.events.handler.EventHandler;
+
+/**
+ * Marks an event handler that is only ever called by one thread at a time: it is registered with a single events
+ * manager, and its state is not accessed by other threads while events are processed.
+ *
+ * {@link EventsManagerImpl} normally synchronizes on the handler for every event it passes on. For handlers
+ * implementing this interface, it calls the handler without taking that lock.
+ */
+public interface ThreadConfinedEventHandler extends EventHandler {
+}
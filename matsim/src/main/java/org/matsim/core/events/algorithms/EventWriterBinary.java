@@ -0,0 +1,313 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes events into a compact binary file that can be read back much faster than xml.
+ *
+ * <p>The file starts with {@link #MAGIC} and {@link #VERSION}, followed by a sequence of chunks. A chunk holds a
+ * number of complete time steps, at least {@link #CHUNK_SIZE} events unless it is the last one. Every chunk starts
+ * with its number of events (the value 0 marks the end of the file) and the strings it adds to the dictionary
+ * shared by all chunks, followed by the length of its payload. The payload consists of the columns</p>
+ * <ol>
+ * <li>types: the dictionary index of the event type,</li>
+ * <li>times: the time, either as difference of whole seconds to the previous event or as raw double,</li>
+ * <li>attributes: per event the number of remaining attributes and, for every attribute, the dictionary index of the
+ * key and a value tag (see <code>VALUE_*</code>),</li>
+ * <li>persons, links, vehicles: the dictionary index of the <code>person</code>, <code>link</code> and
+ * <code>vehicle</code> attributes,</li>
+ * <li>numbers: values that are numbers, as raw doubles,</li>
+ * </ol>
+ * <p>each prefixed with its length in bytes. All integers are written as variable length integers. Since the columns
+ * of a chunk can be decoded independently of all other chunks once the dictionary is known, readers can decode
+ * several chunks in parallel. The attributes are reproduced with the same keys, values and order as returned by
+ * {@link Event#getAttributes()}, so the events read back are the same as the ones read from an xml file.</p>
+ *
+ * <p>The file is compressed according to its file ending, like other MATSim files.</p>
+ */
+public final class EventWriterBinary implements EventWriter, BasicEventHandler {
+
+	public static final byte[] MAGIC = {'M', 'E', 'V', 'B'};
+	public static final int VERSION = 1;
+	static final int CHUNK_SIZE = 16384;
+	private static final int MAX_CHUNK_SIZE = 16 * CHUNK_SIZE;
+
+	public static final int VALUE_NULL = 0;
+	public static final int VALUE_NUMBER = 1;
+	public static final int VALUE_PERSON = 2;
+	public static final int VALUE_LINK = 3;
+	public static final int VALUE_VEHICLE = 4;
+	/** Values from this tag on are the dictionary index of the value plus <code>VALUE_STRING</code>. */
+	public static final int VALUE_STRING = 5;
+
+	public static final int TIME_RAW = 1;
+
+	private final OutputStream out;
+	private final Map<String, Integer> dictionary = new HashMap<>();
+	private final List<String> newEntries = new ArrayList<>();
+
+	private final Column types = new Column();
+	private final Column times = new Column();
+	private final Column attributes = new Column();
+	private final Column persons = new Column();
+	private final Column links = new Column();
+	private final Column vehicles = new Column();
+	private final Column numbers = new Column();
+	private final Column header = new Column();
+
+	private int eventCount = 0;
+	private double lastTime = Double.NaN;
+	private long lastWholeTime = 0;
+
+	public EventWriterBinary(final File outfile) {
+		this(openFile(outfile));
+	}
+
+	public EventWriterBinary(final OutputStream stream) {
+		this.out = stream;
+		try {
+			this.out.write(MAGIC);
+			this.header.writeVarint(VERSION);
+			this.header.writeTo(this.out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static OutputStream openFile(final File outfile) {
+		try {
+			return IOUtils.getOutputStream(outfile.toURI().toURL(), false);
+		} catch (MalformedURLException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		double time = event.getTime();
+		if (this.eventCount >= MAX_CHUNK_SIZE || (this.eventCount >= CHUNK_SIZE && time != this.lastTime)) {
+			flushChunk();
+		}
+		this.lastTime = time;
+
+		Map<String, String> attrs = event.getAttributes();
+		this.types.writeVarint(index(event.getEventType()));
+		writeTime(time);
+
+		int count = attrs.size();
+		if (attrs.containsKey(Event.ATTRIBUTE_TIME)) {
+			count--;
+		}
+		if (attrs.containsKey(Event.ATTRIBUTE_TYPE)) {
+			count--;
+		}
+		this.attributes.writeVarint(count);
+		for (Map.Entry<String, String> e : attrs.entrySet()) {
+			String key = e.getKey();
+			if (key.equals(Event.ATTRIBUTE_TIME) || key.equals(Event.ATTRIBUTE_TYPE)) {
+				continue;
+			}
+			this.attributes.writeVarint(index(key));
+			writeValue(key, e.getValue());
+		}
+		this.eventCount++;
+	}
+
+	private void writeTime(final double time) {
+		long wholeTime = (long) time;
+		if (Double.compare(time, wholeTime) == 0 && Math.abs(wholeTime) < (1L << 52)) {
+			this.times.writeVarint(zigZag(wholeTime - this.lastWholeTime) << 1);
+			this.lastWholeTime = wholeTime;
+		} else {
+			this.times.writeVarint(TIME_RAW);
+			this.times.writeDouble(time);
+		}
+	}
+
+	private void writeValue(final String key, final String value) {
+		if (value == null) {
+			this.attributes.writeVarint(VALUE_NULL);
+		} else if (key.equals("person")) {
+			this.attributes.writeVarint(VALUE_PERSON);
+			this.persons.writeVarint(index(value));
+		} else if (key.equals("link")) {
+			this.attributes.writeVarint(VALUE_LINK);
+			this.links.writeVarint(index(value));
+		} else if (key.equals("vehicle")) {
+			this.attributes.writeVarint(VALUE_VEHICLE);
+			this.vehicles.writeVarint(index(value));
+		} else if (isNumber(value)) {
+			this.attributes.writeVarint(VALUE_NUMBER);
+			this.numbers.writeDouble(Double.parseDouble(value));
+		} else {
+			this.attributes.writeVarint(VALUE_STRING + (long) index(value));
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the value is exactly what {@link Double#toString(double)} produces for it, so it can
+	 * be stored as double without changing its text.
+	 */
+	private static boolean isNumber(final String value) {
+		int length = value.length();
+		if (length < 3 || length > 24) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if ((c < '0' || c > '9') && c != '.' && c != '-' && c != 'E') {
+				return false;
+			}
+		}
+		try {
+			return Double.toString(Double.parseDouble(value)).equals(value);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private int index(final String value) {
+		Integer index = this.dictionary.get(value);
+		if (index == null) {
+			index = this.dictionary.size();
+			this.dictionary.put(value, index);
+			this.newEntries.add(value);
+		}
+		return index;
+	}
+
+	private static long zigZag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private void flushChunk() {
+		if (this.eventCount == 0) {
+			return;
+		}
+		try {
+			this.header.writeVarint(this.eventCount);
+			this.header.writeVarint(this.newEntries.size());
+			for (String entry : this.newEntries) {
+				byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+				this.header.writeVarint(bytes.length);
+				this.header.writeBytes(bytes);
+			}
+			Column[] columns = {this.types, this.times, this.attributes, this.persons, this.links, this.vehicles, this.numbers};
+			long payloadLength = 0;
+			for (Column column : columns) {
+				payloadLength += Column.varintLength(column.size) + column.size;
+			}
+			this.header.writeVarint(payloadLength);
+			this.header.writeTo(this.out);
+			for (Column column : columns) {
+				this.header.writeVarint(column.size);
+				this.header.writeTo(this.out);
+				column.writeTo(this.out);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.newEntries.clear();
+		this.eventCount = 0;
+		this.lastWholeTime = 0; // chunks must be decodable independently
+	}
+
+	@Override
+	public void closeFile() {
+		flushChunk();
+		try {
+			this.header.writeVarint(0);
+			this.header.writeTo(this.out);
+			this.out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void reset(final int iter) {
+	}
+
+	private static final class Column {
+
+		private byte[] data = new byte[1024];
+		private int size = 0;
+
+		void writeVarint(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) {
+				this.data[this.size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			this.data[this.size++] = (byte) value;
+		}
+
+		void writeDouble(final double value) {
+			ensureCapacity(8);
+			long bits = Double.doubleToRawLongBits(value);
+			for (int i = 0; i < 8; i++) {
+				this.data[this.size++] = (byte) bits;
+				bits >>>= 8;
+			}
+		}
+
+		void writeBytes(final byte[] bytes) {
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, this.data, this.size, bytes.length);
+			this.size += bytes.length;
+		}
+
+		private void ensureCapacity(final int additional) {
+			if (this.size + additional > this.data.length) {
+				this.data = Arrays.copyOf(this.data, Math.max(this.data.length * 2, this.size + additional));
+			}
+		}
+
+		void writeTo(final OutputStream stream) throws IOException {
+			stream.write(this.data, 0, this.size);
+			this.size = 0;
+		}
+
+		static int varintLength(long value) {
+			int length = 1;
+			while ((value & ~0x7FL) != 0) {
+				length++;
+				value >>>= 7;
+			}
+			return length;
+		}
+	}
+}
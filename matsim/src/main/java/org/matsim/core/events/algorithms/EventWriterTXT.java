@@ -60,6 +60,9 @@ public class EventWriterTXT implements EventWriter, ActivityEndEventHandler, Act
 	 * additional events.
 	 */
 	
+	private static final String ACTSTART_DESCRIPTION = ActivityStartEvent.EVENT_TYPE + " ";
+	private static final String ACTEND_DESCRIPTION = ActivityEndEvent.EVENT_TYPE + " ";
+
 	private BufferedWriter out = null;
 	private double lastTime = Double.NaN;
 	private String timeString = null;
@@ -112,6 +115,15 @@ public class EventWriterTXT implements EventWriter, ActivityEndEventHandler, Act
 	}
 
 	private void writeLine(final double time, final Id<Person> agentId, final Id<Link> linkId, final int flag, final String description) {
+		writeLine(time, agentId, linkId, flag, description, "");
+	}
+
+	/**
+	 * The description is passed in two parts which are written one after the other, so that no string has to be
+	 * concatenated for each event.
+	 */
+	private void writeLine(final double time, final Id<Person> agentId, final Id<Link> linkId, final int flag, final String description,
+			final String descriptionSuffix) {
 		try {
 			this.out.write(getTimeString(time));
 			if (agentId != null) {
@@ -126,11 +138,17 @@ public class EventWriterTXT implements EventWriter, ActivityEndEventHandler, Act
 			this.out.write('\t');
 			this.out.write('0'); // from-node-id
 			this.out.write('\t');
-			this.out.write(Integer.toString(flag));
+			if (flag < 10) {
+				this.out.write('0' + flag);
+			} else {
+				this.out.write(Integer.toString(flag));
+			}
 			this.out.write('\t');
 			if (description != null) {
 				this.out.write(description);
 			}
+			// like in a string concatenation
+			this.out.write(descriptionSuffix == null ? "null" : descriptionSuffix);
 			this.out.write('\n');
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -155,12 +173,12 @@ public class EventWriterTXT implements EventWriter, ActivityEndEventHandler, Act
 
 	@Override
 	public void handleEvent(ActivityEndEvent event) {
-		writeLine(event.getTime(), event.getPersonId(), event.getLinkId(), Number.ActivityEnd.ordinal(), ActivityEndEvent.EVENT_TYPE + " " + event.getActType());
+		writeLine(event.getTime(), event.getPersonId(), event.getLinkId(), Number.ActivityEnd.ordinal(), ACTEND_DESCRIPTION, event.getActType());
 	}
 
 	@Override
 	public void handleEvent(ActivityStartEvent event) {
-		writeLine(event.getTime(), event.getPersonId(), event.getLinkId(), Number.ActivityStart.ordinal(), ActivityStartEvent.EVENT_TYPE + " " + event.getActType());
+		writeLine(event.getTime(), event.getPersonId(), event.getLinkId(), Number.ActivityStart.ordinal(), ACTSTART_DESCRIPTION, event.getActType());
 	}
 
 	@Override
@@ -183,7 +201,7 @@ public class EventWriterTXT implements EventWriter, ActivityEndEventHandler, Act
 
 	@Override
 	public void handleEvent(PersonMoneyEvent event) {
-		writeLine(event.getTime(), event.getPersonId(), null, Number.PersonMoney.ordinal(), "agentMoney" + "\t" + event.getAmount());
+		writeLine(event.getTime(), event.getPersonId(), null, Number.PersonMoney.ordinal(), "agentMoney\t", Double.toString(event.getAmount()));
 	}
 
 	@Override
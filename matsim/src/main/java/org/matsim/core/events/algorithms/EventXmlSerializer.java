@@ -0,0 +1,300 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.HasFacilityId;
+import org.matsim.api.core.v01.events.HasLinkId;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.api.internal.HasVehicleId;
+
+/**
+ * Serializes events into the <code>&lt;event ... /&gt;</code> lines of the events xml format.
+ * <p>
+ * In general, the attributes are taken from {@link Event#getAttributes()}. For the most frequent event types, the
+ * fields are appended directly instead, which avoids building a map of formatted strings for each event. These
+ * writers must produce exactly the same output as {@link Event#getAttributes()}, including the order of the
+ * attributes. They are registered for the exact event class, so subclasses which add attributes still use the generic
+ * path, and they fall back to it if an optional field is missing.
+ */
+final class EventXmlSerializer {
+
+	private interface TypedWriter<T extends Event> {
+		/**
+		 * @return <code>false</code> if the event could not be written and the generic path should be used instead.
+		 * Nothing must have been appended to the buffer in that case.
+		 */
+		boolean write(T event, StringBuilder out);
+	}
+
+	private static final Map<Class<? extends Event>, TypedWriter<? extends Event>> WRITERS = new IdentityHashMap<>();
+
+	static {
+		register(LinkEnterEvent.class, (event, out) -> {
+			if (event.getLinkId() == null) {
+				return false;
+			}
+			writeStart(event, out);
+			writeAttribute(out, HasLinkId.ATTRIBUTE_LINK, event.getLinkId().toString());
+			writeAttribute(out, LinkEnterEvent.ATTRIBUTE_VEHICLE, event.getVehicleId().toString());
+			writeEnd(out);
+			return true;
+		});
+		register(LinkLeaveEvent.class, (event, out) -> {
+			if (event.getLinkId() == null) {
+				return false;
+			}
+			writeStart(event, out);
+			writeAttribute(out, HasLinkId.ATTRIBUTE_LINK, event.getLinkId().toString());
+			writeAttribute(out, LinkLeaveEvent.ATTRIBUTE_VEHICLE, event.getVehicleId().toString());
+			writeEnd(out);
+			return true;
+		});
+		register(VehicleEntersTrafficEvent.class, (event, out) -> {
+			if (event.getPersonId() == null || event.getLinkId() == null || event.getVehicleId() == null) {
+				return false;
+			}
+			writeStart(event, out);
+			writeAttribute(out, HasPersonId.ATTRIBUTE_PERSON, event.getPersonId().toString());
+			writeAttribute(out, HasLinkId.ATTRIBUTE_LINK, event.getLinkId().toString());
+			writeAttribute(out, HasVehicleId.ATTRIBUTE_VEHICLE, event.getVehicleId().toString());
+			if (event.getNetworkMode() != null) {
+				writeAttribute(out, VehicleEntersTrafficEvent.ATTRIBUTE_NETWORKMODE, event.getNetworkMode());
+			}
+			writeAttribute(out, VehicleEntersTrafficEvent.ATTRIBUTE_POSITION, event.getRelativePositionOnLink());
+			writeEnd(out);
+			return true;
+		});
+		register(VehicleLeavesTrafficEvent.class, (event, out) -> {
+			if (event.getPersonId() == null || event.getLinkId() == null || event.getVehicleId() == null) {
+				return false;
+			}
+			writeStart(event, out);
+			writeAttribute(out, VehicleLeavesTrafficEvent.ATTRIBUTE_DRIVER, event.getPersonId().toString());
+			writeAttribute(out, VehicleLeavesTrafficEvent.ATTRIBUTE_LINK, event.getLinkId().toString());
+			writeAttribute(out, VehicleLeavesTrafficEvent.ATTRIBUTE_VEHICLE, event.getVehicleId().toString());
+			if (event.getNetworkMode() != null) {
+				writeAttribute(out, VehicleLeavesTrafficEvent.ATTRIBUTE_NETWORKMODE, event.getNetworkMode());
+			}
+			writeAttribute(out, VehicleLeavesTrafficEvent.ATTRIBUTE_POSITION, event.getRelativePositionOnLink());
+			writeEnd(out);
+			return true;
+		});
+		register(PersonDepartureEvent.class, (event, out) -> {
+			if (event.getPersonId() == null || event.getLinkId() == null) {
+				return false;
+			}
+			writeStart(event, out);
+			writeAttribute(out, PersonDepartureEvent.ATTRIBUTE_PERSON, event.getPersonId().toString());
+			writeAttribute(out, PersonDepartureEvent.ATTRIBUTE_LINK, event.getLinkId().toString());
+			if (event.getLegMode() != null) {
+				writeAttribute(out, PersonDepartureEvent.ATTRIBUTE_LEGMODE, event.getLegMode());
+			}
+			writeEnd(out);
+			return true;
+		});
+		register(PersonArrivalEvent.class, (event, out) -> {
+			if (event.getPersonId() == null || event.getLinkId() == null) {
+				return false;
+			}
+			writeStart(event, out);
+			writeAttribute(out, PersonArrivalEvent.ATTRIBUTE_PERSON, event.getPersonId().toString());
+			writeAttribute(out, PersonArrivalEvent.ATTRIBUTE_LINK, event.getLinkId().toString());
+			if (event.getLegMode() != null) {
+				writeAttribute(out, PersonArrivalEvent.ATTRIBUTE_LEGMODE, event.getLegMode());
+			}
+			writeEnd(out);
+			return true;
+		});
+		register(ActivityStartEvent.class, (event, out) -> {
+			if (event.getPersonId() == null) {
+				return false;
+			}
+			writeStart(event, out);
+			writeActivityAttributes(event.getPersonId().toString(), event.getFacilityId() == null ? null : event.getFacilityId().toString(),
+					event.getLinkId() == null ? null : event.getLinkId().toString(), event.getCoord(), out);
+			writeAttribute(out, ActivityStartEvent.ATTRIBUTE_ACTTYPE, event.getActType());
+			writeEnd(out);
+			return true;
+		});
+		register(ActivityEndEvent.class, (event, out) -> {
+			if (event.getPersonId() == null) {
+				return false;
+			}
+			writeStart(event, out);
+			writeActivityAttributes(event.getPersonId().toString(), event.getFacilityId() == null ? null : event.getFacilityId().toString(),
+					event.getLinkId() == null ? null : event.getLinkId().toString(), event.getCoord(), out);
+			writeAttribute(out, ActivityEndEvent.ATTRIBUTE_ACTTYPE, event.getActType());
+			writeEnd(out);
+			return true;
+		});
+		register(PersonEntersVehicleEvent.class, (event, out) -> {
+			if (event.getPersonId() == null) {
+				return false;
+			}
+			writeStart(event, out);
+			writeAttribute(out, PersonEntersVehicleEvent.ATTRIBUTE_PERSON, event.getPersonId().toString());
+			writeAttribute(out, PersonEntersVehicleEvent.ATTRIBUTE_VEHICLE, event.getVehicleId().toString());
+			writeEnd(out);
+			return true;
+		});
+		register(PersonLeavesVehicleEvent.class, (event, out) -> {
+			if (event.getPersonId() == null) {
+				return false;
+			}
+			writeStart(event, out);
+			writeAttribute(out, PersonLeavesVehicleEvent.ATTRIBUTE_PERSON, event.getPersonId().toString());
+			writeAttribute(out, PersonLeavesVehicleEvent.ATTRIBUTE_VEHICLE, event.getVehicleId().toString());
+			writeEnd(out);
+			return true;
+		});
+	}
+
+	private EventXmlSerializer() {
+		// static helper class
+	}
+
+	private static <T extends Event> void register(Class<T> eventClass, TypedWriter<T> writer) {
+		WRITERS.put(eventClass, writer);
+	}
+
+	/**
+	 * Appends the xml line of the given event, including the leading tab and the trailing line break.
+	 */
+	@SuppressWarnings("unchecked")
+	static void write(Event event, StringBuilder out) {
+		TypedWriter<Event> writer = (TypedWriter<Event>) WRITERS.get(event.getClass());
+		if (writer == null || !writer.write(event, out)) {
+			writeGeneric(event, out);
+		}
+	}
+
+	private static void writeGeneric(Event event, StringBuilder out) {
+		out.append("\t<event ");
+		for (Map.Entry<String, String> entry : event.getAttributes().entrySet()) {
+			writeAttribute(out, entry.getKey(), entry.getValue());
+		}
+		out.append(" />\n");
+	}
+
+	/**
+	 * Same order as in {@link Event#getAttributes()}: person, facility, link, coordinate.
+	 */
+	private static void writeActivityAttributes(String personId, String facilityId, String linkId, Coord coord, StringBuilder out) {
+		writeAttribute(out, HasPersonId.ATTRIBUTE_PERSON, personId);
+		if (facilityId != null) {
+			writeAttribute(out, HasFacilityId.ATTRIBUTE_FACILITY, facilityId);
+		}
+		if (linkId != null) {
+			writeAttribute(out, HasLinkId.ATTRIBUTE_LINK, linkId);
+		}
+		if (coord != null) {
+			writeAttribute(out, Event.ATTRIBUTE_X, coord.getX());
+			writeAttribute(out, Event.ATTRIBUTE_Y, coord.getY());
+		}
+	}
+
+	private static void writeStart(Event event, StringBuilder out) {
+		out.append("\t<event ");
+		writeAttribute(out, Event.ATTRIBUTE_TIME, event.getTime());
+		writeAttribute(out, Event.ATTRIBUTE_TYPE, event.getEventType());
+	}
+
+	private static void writeEnd(StringBuilder out) {
+		out.append(" />\n");
+	}
+
+	private static void writeAttribute(StringBuilder out, String name, String value) {
+		out.append(name);
+		out.append("=\"");
+		appendEncoded(out, value);
+		out.append("\" ");
+	}
+
+	private static void writeAttribute(StringBuilder out, String name, double value) {
+		out.append(name);
+		out.append("=\"");
+		appendDouble(out, value);
+		out.append("\" ");
+	}
+
+	/**
+	 * Appends the same characters as {@link Double#toString(double)}. Most times and positions in events files are
+	 * whole numbers, which are appended without going through the general floating point formatting.
+	 */
+	static void appendDouble(StringBuilder out, double value) {
+		if (value >= 1 && value < 1e7 && value == (long) value) {
+			// Double.toString() switches to the computerized scientific notation from 10^7 on
+			out.append((long) value).append(".0");
+		} else {
+			out.append(value);
+		}
+	}
+
+	/**
+	 * Same encoding as {@link org.matsim.core.utils.io.XmlUtils#encodeAttributeValue(String)}, but appended
+	 * directly to the buffer. <code>null</code> is written as "null", like it was by the writer before.
+	 */
+	static void appendEncoded(StringBuilder out, String value) {
+		if (value == null) {
+			out.append((String) null);
+			return;
+		}
+		int len = value.length();
+		int start = 0;
+		for (int pos = 0; pos < len; pos++) {
+			String replacement;
+			switch (value.charAt(pos)) {
+				case '<':
+					replacement = "&lt;";
+					break;
+				case '>':
+					replacement = "&gt;";
+					break;
+				case '"':
+					replacement = "&quot;";
+					break;
+				case '&':
+					replacement = "&amp;";
+					break;
+				default:
+					continue;
+			}
+			out.append(value, start, pos).append(replacement);
+			start = pos + 1;
+		}
+		out.append(value, start, len);
+	}
+
+}
@@ -0,0 +1,403 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.hermes;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.AgentWaitingForPtEvent;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * The events of one agent, in plan order. Instead of holding one {@link Event} object per event, the events are
+ * stored in primitive columns: the event type and the indices of the link and vehicle ids, plus a value whose meaning
+ * depends on the type. All events of an agent concern the same person (the agent itself or the driver of a transit
+ * vehicle), which is stored once. The event object is only created when the event is emitted (see
+ * {@link #materialize(int, double)}), so the events of the whole population no longer form a large, long-living
+ * object graph.
+ *
+ * Events with fields not covered by the columns (transit driver starts, stop arrivals and departures, activities
+ * with a z coordinate) are kept as objects.
+ */
+class EncodedEventArray {
+
+	// Event types.
+	private static final byte OBJECT = 0;
+	private static final byte ACTIVITY_START = 1;
+	private static final byte ACTIVITY_END = 2;
+	private static final byte PERSON_DEPARTURE = 3;
+	private static final byte PERSON_ARRIVAL = 4;
+	private static final byte PERSON_ENTERS_VEHICLE = 5;
+	private static final byte PERSON_LEAVES_VEHICLE = 6;
+	private static final byte VEHICLE_ENTERS_TRAFFIC = 7;
+	private static final byte VEHICLE_LEAVES_TRAFFIC = 8;
+	private static final byte LINK_ENTER = 9;
+	private static final byte LINK_LEAVE = 10;
+	private static final byte AGENT_WAITING_FOR_PT = 11;
+	private static final byte TELEPORTATION_ARRIVAL = 12;
+
+	private final Dictionary dictionary;
+
+	// Index of the person of all events; -1 until the first event with a person is added.
+	private int person = -1;
+
+	private byte[] types;
+	// Link id; access stop id for waiting events.
+	private int[] links;
+	// Vehicle id; facility id (or -1) for activities; egress stop id for waiting events; position of the distance in
+	// doubles for teleportation arrivals.
+	private int[] vehicles;
+	// Dictionary index of the mode; position in extras for activities; position in objects for object events.
+	private int[] values;
+	private int size;
+
+	// Activity fields: dictionary index of the type, position of the coordinate in doubles (or -1).
+	private int[] extras;
+	private int extrasSize;
+
+	private double[] doubles;
+	private int doublesSize;
+
+	private Event[] objects;
+	private int objectsSize;
+
+	EncodedEventArray(Dictionary dictionary) {
+		this(dictionary, 32);
+	}
+
+	EncodedEventArray(Dictionary dictionary, int capacity) {
+		this.dictionary = dictionary;
+		this.types = new byte[capacity];
+		this.links = new int[capacity];
+		this.vehicles = new int[capacity];
+		this.values = new int[capacity];
+		this.extras = new int[8];
+		this.doubles = new double[8];
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		if (objects != null) {
+			Arrays.fill(objects, 0, objectsSize, null);
+		}
+		person = -1;
+		size = 0;
+		extrasSize = 0;
+		doublesSize = 0;
+		objectsSize = 0;
+	}
+
+	/** Shrinks the columns to the number of events, once all events of the agent were added. */
+	void trimToSize() {
+		if (types.length > size) {
+			types = Arrays.copyOf(types, size);
+			links = Arrays.copyOf(links, size);
+			vehicles = Arrays.copyOf(vehicles, size);
+			values = Arrays.copyOf(values, size);
+		}
+	}
+
+	void addActivityStart(Id<Person> person, Id<Link> link, Id<ActivityFacility> facility, String type, Coord coord) {
+		if (coord != null && coord.hasZ()) {
+			add(new ActivityStartEvent(0, person, link, facility, type, coord));
+		} else {
+			addActivity(ACTIVITY_START, person, link, facility, type, coord);
+		}
+	}
+
+	void addActivityEnd(Id<Person> person, Id<Link> link, Id<ActivityFacility> facility, String type, Coord coord) {
+		if (coord != null && coord.hasZ()) {
+			add(new ActivityEndEvent(0, person, link, facility, type, coord));
+		} else {
+			addActivity(ACTIVITY_END, person, link, facility, type, coord);
+		}
+	}
+
+	private void addActivity(byte type, Id<Person> person, Id<Link> link, Id<ActivityFacility> facility, String actType, Coord coord) {
+		setPerson(person);
+		int coordIndex = -1;
+		if (coord != null) {
+			coordIndex = addDouble(coord.getX());
+			addDouble(coord.getY());
+		}
+		int extrasIndex = addExtra(dictionary.index(actType));
+		addExtra(coordIndex);
+		add(type, link.index(), facility == null ? -1 : facility.index(), extrasIndex);
+	}
+
+	void addPersonDeparture(Id<Person> person, Id<Link> link, String mode) {
+		setPerson(person);
+		add(PERSON_DEPARTURE, link.index(), -1, dictionary.index(mode));
+	}
+
+	void addPersonArrival(Id<Person> person, Id<Link> link, String mode) {
+		setPerson(person);
+		add(PERSON_ARRIVAL, link.index(), -1, dictionary.index(mode));
+	}
+
+	void addPersonEntersVehicle(Id<Person> person, Id<Vehicle> vehicle) {
+		setPerson(person);
+		add(PERSON_ENTERS_VEHICLE, -1, vehicle.index(), -1);
+	}
+
+	void addPersonLeavesVehicle(Id<Person> person, Id<Vehicle> vehicle) {
+		setPerson(person);
+		add(PERSON_LEAVES_VEHICLE, -1, vehicle.index(), -1);
+	}
+
+	void addVehicleEntersTraffic(Id<Person> driver, Id<Link> link, Id<Vehicle> vehicle, String mode) {
+		setPerson(driver);
+		add(VEHICLE_ENTERS_TRAFFIC, link.index(), vehicle.index(), dictionary.index(mode));
+	}
+
+	void addVehicleLeavesTraffic(Id<Person> driver, Id<Link> link, Id<Vehicle> vehicle, String mode) {
+		setPerson(driver);
+		add(VEHICLE_LEAVES_TRAFFIC, link.index(), vehicle.index(), dictionary.index(mode));
+	}
+
+	void addLinkEnter(Id<Vehicle> vehicle, Id<Link> link) {
+		add(LINK_ENTER, link.index(), vehicle.index(), -1);
+	}
+
+	void addLinkLeave(Id<Vehicle> vehicle, Id<Link> link) {
+		add(LINK_LEAVE, link.index(), vehicle.index(), -1);
+	}
+
+	void addAgentWaitingForPt(Id<Person> person, Id<TransitStopFacility> access, Id<TransitStopFacility> egress) {
+		setPerson(person);
+		add(AGENT_WAITING_FOR_PT, access.index(), egress.index(), -1);
+	}
+
+	void addTeleportationArrival(Id<Person> person, double distance, String mode) {
+		setPerson(person);
+		add(TELEPORTATION_ARRIVAL, -1, addDouble(distance), dictionary.index(mode));
+	}
+
+	/** Adds an event that cannot be encoded; it is returned as is (with the time set) when materialized. */
+	void add(Event event) {
+		if (objects == null) {
+			objects = new Event[8];
+		} else if (objectsSize == objects.length) {
+			objects = Arrays.copyOf(objects, objects.length * 2);
+		}
+		objects[objectsSize] = event;
+		add(OBJECT, -1, -1, objectsSize++);
+	}
+
+	private void setPerson(Id<Person> person) {
+		if (this.person == -1) {
+			this.person = person.index();
+		} else if (this.person != person.index()) {
+			throw new RuntimeException(String.format("events of persons %s and %s in the same agent",
+					dictionary.persons.get(this.person), person));
+		}
+	}
+
+	private void add(byte type, int link, int vehicle, int value) {
+		if (size == types.length) {
+			int capacity = Math.max(8, types.length + types.length / 2);
+			types = Arrays.copyOf(types, capacity);
+			links = Arrays.copyOf(links, capacity);
+			vehicles = Arrays.copyOf(vehicles, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		types[size] = type;
+		links[size] = link;
+		vehicles[size] = vehicle;
+		values[size] = value;
+		size++;
+	}
+
+	private int addExtra(int value) {
+		if (extrasSize == extras.length) {
+			extras = Arrays.copyOf(extras, extras.length * 2);
+		}
+		extras[extrasSize] = value;
+		return extrasSize++;
+	}
+
+	private int addDouble(double value) {
+		if (doublesSize == doubles.length) {
+			doubles = Arrays.copyOf(doubles, doubles.length * 2);
+		}
+		doubles[doublesSize] = value;
+		return doublesSize++;
+	}
+
+	/** Replaces the vehicle of a person entering or leaving a vehicle. */
+	void setVehicle(int index, Id<Vehicle> vehicle) {
+		switch (types[index]) {
+			case PERSON_ENTERS_VEHICLE:
+			case PERSON_LEAVES_VEHICLE:
+				vehicles[index] = vehicle.index();
+				return;
+			default:
+				throw new RuntimeException(String.format("vehicle id could not be set for event: %d", index));
+		}
+	}
+
+	/** Returns true if the event is an activity end event. */
+	boolean isActivityEnd(int index) {
+		return types[index] == ACTIVITY_END || (types[index] == OBJECT && objects[values[index]] instanceof ActivityEndEvent);
+	}
+
+	/** Creates the event object of the given event with the given time. Object events are returned as is. */
+	Event materialize(int index, double time) {
+		Dictionary d = dictionary;
+		switch (types[index]) {
+			case OBJECT:
+				Event event = objects[values[index]];
+				event.setTime(time);
+				return event;
+			case ACTIVITY_START:
+				return new ActivityStartEvent(time, d.persons.get(person), d.links.get(links[index]), facility(index),
+						d.string(extras[values[index]]), coord(index));
+			case ACTIVITY_END:
+				return new ActivityEndEvent(time, d.persons.get(person), d.links.get(links[index]), facility(index),
+						d.string(extras[values[index]]), coord(index));
+			case PERSON_DEPARTURE:
+				return new PersonDepartureEvent(time, d.persons.get(person), d.links.get(links[index]), d.string(values[index]));
+			case PERSON_ARRIVAL:
+				return new PersonArrivalEvent(time, d.persons.get(person), d.links.get(links[index]), d.string(values[index]));
+			case PERSON_ENTERS_VEHICLE:
+				return new PersonEntersVehicleEvent(time, d.persons.get(person), d.vehicles.get(vehicles[index]));
+			case PERSON_LEAVES_VEHICLE:
+				return new PersonLeavesVehicleEvent(time, d.persons.get(person), d.vehicles.get(vehicles[index]));
+			case VEHICLE_ENTERS_TRAFFIC:
+				return new VehicleEntersTrafficEvent(time, d.persons.get(person), d.links.get(links[index]),
+						d.vehicles.get(vehicles[index]), d.string(values[index]), 1);
+			case VEHICLE_LEAVES_TRAFFIC:
+				return new VehicleLeavesTrafficEvent(time, d.persons.get(person), d.links.get(links[index]),
+						d.vehicles.get(vehicles[index]), d.string(values[index]), 1);
+			case LINK_ENTER:
+				return new LinkEnterEvent(time, d.vehicles.get(vehicles[index]), d.links.get(links[index]));
+			case LINK_LEAVE:
+				return new LinkLeaveEvent(time, d.vehicles.get(vehicles[index]), d.links.get(links[index]));
+			case AGENT_WAITING_FOR_PT:
+				return new AgentWaitingForPtEvent(time, d.persons.get(person),
+						d.stops.get(links[index]), d.stops.get(vehicles[index]));
+			case TELEPORTATION_ARRIVAL:
+				return new TeleportationArrivalEvent(time, d.persons.get(person), doubles[vehicles[index]], d.string(values[index]));
+			default:
+				throw new RuntimeException("unknown event type " + types[index]);
+		}
+	}
+
+	private Id<ActivityFacility> facility(int index) {
+		return vehicles[index] < 0 ? null : dictionary.facilities.get(vehicles[index]);
+	}
+
+	private Coord coord(int index) {
+		int coordIndex = extras[values[index] + 1];
+		return coordIndex < 0 ? null : new Coord(doubles[coordIndex], doubles[coordIndex + 1]);
+	}
+
+	/**
+	 * Activity types and modes of all agents, so that events only need to store an index, and the ids referenced by
+	 * events. Plans are imported in parallel and events are materialized by several realms, so both are thread-safe.
+	 */
+	static final class Dictionary {
+		final Ids<Person> persons = new Ids<>(Person.class);
+		final Ids<Link> links = new Ids<>(Link.class);
+		final Ids<Vehicle> vehicles = new Ids<>(Vehicle.class);
+		final Ids<ActivityFacility> facilities = new Ids<>(ActivityFacility.class);
+		final Ids<TransitStopFacility> stops = new Ids<>(TransitStopFacility.class);
+
+		private final Map<String, Integer> indices = new ConcurrentHashMap<>();
+		// Written under the lock only; the volatile write publishes new entries to lock-free readers.
+		private volatile String[] strings = new String[16];
+		private int size;
+
+		int index(String string) {
+			if (string == null) {
+				return -1;
+			}
+			Integer index = indices.get(string);
+			return index != null ? index : add(string);
+		}
+
+		private synchronized int add(String string) {
+			Integer index = indices.get(string);
+			if (index != null) {
+				return index;
+			}
+			String[] copy = size == strings.length ? Arrays.copyOf(strings, strings.length * 2) : strings;
+			copy[size] = string;
+			strings = copy;
+			indices.put(string, size);
+			return size++;
+		}
+
+		String string(int index) {
+			return index < 0 ? null : strings[index];
+		}
+	}
+
+	/**
+	 * Array-backed lookup of ids by index, which avoids the map lookups of {@link Id#get(int, Class)} for every
+	 * materialized event. Ids are immutable, so they can be read without locking.
+	 */
+	static final class Ids<T> {
+		private final Class<T> type;
+		private volatile Id<T>[] ids;
+
+		@SuppressWarnings("unchecked")
+		Ids(Class<T> type) {
+			this.type = type;
+			this.ids = new Id[0];
+		}
+
+		Id<T> get(int index) {
+			Id<T>[] ids = this.ids;
+			Id<T> id = index < ids.length ? ids[index] : null;
+			return id != null ? id : resolve(index);
+		}
+
+		private synchronized Id<T> resolve(int index) {
+			if (index >= ids.length) {
+				ids = Arrays.copyOf(ids, Math.max(index + 1, Id.getNumberOfIds(type)));
+			}
+			Id<T> id = Id.get(index, type);
+			ids[index] = id;
+			return id;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.hermes;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventArray;
+import org.matsim.core.events.ParallelEventsManager;
+import org.matsim.core.events.RingBufferEventsManager;
+
+/**
+ * Hands the events of completed time windows over to the events manager while Hermes keeps simulating.
+ *
+ * The {@link ParallelEventsManager} and the {@link RingBufferEventsManager} already queue events and process them on
+ * their own threads, so windows are passed on directly. Any other events manager processes events on the calling thread; for those, windows are
+ * processed by a background thread instead. At most {@link #MAX_PENDING_WINDOWS} windows wait for that thread. If
+ * the handlers fall further behind, the simulation blocks, which bounds the memory held by pending events.
+ */
+class EventsStream {
+
+	static final int MAX_PENDING_WINDOWS = 4;
+
+	// Marks the end of the stream for the background thread.
+	private static final EventArray END = new EventArray(0);
+
+	private final EventsManager eventsManager;
+	// Simulated seconds per window; 0 if events are only handed over at the end.
+	private final int flushInterval;
+	private final BlockingQueue<EventArray> pending;
+	private Thread consumer;
+	private volatile Throwable error;
+
+	EventsStream(EventsManager eventsManager, int flushInterval) {
+		this.eventsManager = eventsManager;
+		this.flushInterval = flushInterval;
+		this.pending = eventsManager instanceof ParallelEventsManager || eventsManager instanceof RingBufferEventsManager ? null : new ArrayBlockingQueue<>(MAX_PENDING_WINDOWS);
+	}
+
+	/** Returns true if the window ending with the given time step is complete and should be published. */
+	boolean isEndOfWindow(int secs) {
+		return HermesConfigGroup.CONCURRENT_EVENT_PROCESSING && flushInterval > 0 && secs % flushInterval == 0;
+	}
+
+	/** Publishes events, which must be sorted by time and later than all events published before. */
+	void publish(EventArray events) throws InterruptedException {
+		if (events.size() == 0) {
+			return;
+		}
+		if (pending == null) {
+			eventsManager.processEvents(events);
+			return;
+		}
+		if (consumer == null) {
+			consumer = new Thread(this::consume, "Hermes-Events");
+			consumer.setDaemon(true);
+			consumer.start();
+		}
+		checkError();
+		pending.put(events);
+	}
+
+	/** Waits until all published events were handed over to the events manager. */
+	void finish() throws InterruptedException {
+		if (consumer != null) {
+			pending.put(END);
+			consumer.join();
+			consumer = null;
+		}
+		checkError();
+	}
+
+	private void consume() {
+		try {
+			EventArray events;
+			while ((events = pending.take()) != END) {
+				eventsManager.processEvents(events);
+			}
+		} catch (Throwable t) {
+			error = t;
+			// drain so that the simulation does not block on a full queue
+			pending.clear();
+		}
+	}
+
+	private void checkError() {
+		if (error != null) {
+			throw new RuntimeException("Exception while processing Hermes events", error);
+		}
+	}
+}
@@ -203,6 +203,44 @@ class HLink {
 		}
 	}
 
+	/**
+	 * Pushes an agent that was accepted by another realm against a snapshot of this link's state (see
+	 * {@link #accepts(float, int, int, float)}). The agent is always added; storage capacity might be exceeded by the
+	 * agents that entered from other realms within the same time step.
+	 */
+	public void pushIncoming(Agent agent, int timestep, float storageCapacityPCU) {
+		float effectiveStorageCapacity = Math.min(storageCapacityPCU, initialCapacity);
+		if (currentCapacity - effectiveStorageCapacity >= 0) {
+			queue.push(agent);
+		} else {
+			queue.forcePush(agent);
+		}
+		lastPush = timestep;
+		currentCapacity = currentCapacity - effectiveStorageCapacity;
+	}
+
+	/**
+	 * Same admission rule as {@link #push(Agent, int, float)}, but evaluated against a given capacity and last push
+	 * time instead of the current state of the link.
+	 */
+	public boolean accepts(float capacityLeft, int lastPushTimestep, int timestep, float storageCapacityPCU) {
+		float effectiveStorageCapacity = Math.min(storageCapacityPCU, initialCapacity);
+		return capacityLeft - effectiveStorageCapacity >= 0
+				|| (stuckTimePeriod != Integer.MAX_VALUE && (lastPushTimestep + stuckTimePeriod) < timestep);
+	}
+
+	public float effectiveStorageCapacity(float storageCapacityPCU) {
+		return Math.min(storageCapacityPCU, initialCapacity);
+	}
+
+	public float currentCapacity() {
+		return this.currentCapacity;
+	}
+
+	public int lastPush() {
+		return this.lastPush;
+	}
+
 	public void pop(float storageCapacityPCE) {
 		queue.pop();
 		currentCapacity += storageCapacityPCE;
@@ -30,7 +30,7 @@ import org.matsim.core.mobsim.framework.Mobsim;
 final class Hermes implements Mobsim {
 
 	final private static Logger log = Logger.getLogger(Hermes.class);
-	private Realm realm;
+	private Realms realms;
 	private Agent[] agents;
 	private ScenarioImporter si;
 	private final Scenario scenario;
@@ -44,12 +44,12 @@ final class Hermes implements Mobsim {
 	private void importScenario() throws Exception {
 		si = ScenarioImporter.instance(scenario, eventsManager);
 		si.generate();
-		this.realm = si.realm;
+		this.realms = si.realms;
 		this.agents = si.hermes_agents;
 	}
 
-	private void processEvents() {
-        eventsManager.processEvents(realm.getSortedEvents());
+	private void processEvents() throws InterruptedException {
+		realms.finishEvents();
 
 		for (Agent agent : agents) {
 			if (agent != null && !agent.finished() && !agent.isTransitVehicle()) {
@@ -72,7 +72,7 @@ final class Hermes implements Mobsim {
 			eventsManager.initProcessing();
 
 			time = System.currentTimeMillis();
-			realm.run();
+			realms.run();
 			log.info(String.format(
 					"Hermes took %d ms", System.currentTimeMillis() - time));
 
@@ -21,6 +21,7 @@ package org.matsim.core.mobsim.hermes;
 import java.util.Map;
 import java.util.Set;
 import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
 import org.matsim.api.core.v01.TransportMode;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ReflectiveConfigGroup;
@@ -59,6 +60,14 @@ public final class HermesConfigGroup extends ReflectiveConfigGroup {
     private static final String MAINMODESPARAMDESC = "[comma-separated list] Modes that are handled in the mobsim along links. By default: car";
     private Set<String> mainModes = Set.of(TransportMode.car);
 
+    private static final String THREADSPARAM = "numberOfThreads";
+    private static final String THREADSPARAMDESC = "Number of threads (and network partitions) used to simulate the network. Results are deterministic"
+            + " for a fixed number of threads. Scenarios with transit are always simulated on a single thread. Default: 1";
+
+    private static final String EVENTSFLUSHPARAM = "eventsFlushInterval";
+    private static final String EVENTSFLUSHPARAMDESC = "time in seconds. Events are handed over to the events manager whenever this much simulated time"
+            + " has passed, so that event handling overlaps with the simulation. Set to 0 to hand over all events after the simulation.";
+
     private static final String DETPTDESC = "treats PT as deterministic. PT vehicles will run with a steady speed. Should be used with separate network layers for PT and other network modes.";
     private boolean deterministicPt = false;
     public static final boolean DEBUG_REALMS = false;
@@ -74,6 +83,12 @@ public final class HermesConfigGroup extends ReflectiveConfigGroup {
     @Positive
     private int stuckTime = 10;
 
+    @Positive
+    private int numberOfThreads = 1;
+
+    @PositiveOrZero
+    private int eventsFlushInterval = 3600;
+
     public Set<String> getMainModes() {
         return mainModes;
     }
@@ -120,6 +135,26 @@ public final class HermesConfigGroup extends ReflectiveConfigGroup {
         this.stuckTime = stuckTime;
     }
 
+    @StringGetter(THREADSPARAM)
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    @StringSetter(THREADSPARAM)
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    @StringGetter(EVENTSFLUSHPARAM)
+    public int getEventsFlushInterval() {
+        return eventsFlushInterval;
+    }
+
+    @StringSetter(EVENTSFLUSHPARAM)
+    public void setEventsFlushInterval(int eventsFlushInterval) {
+        this.eventsFlushInterval = eventsFlushInterval;
+    }
+
     @StringSetter(FLOW_CAPACITY_FACTOR)
     public void setFlowCapacityFactor(double flowCapacityFactor) {
         this.flowCapacityFactor = flowCapacityFactor;
@@ -156,6 +191,8 @@ public final class HermesConfigGroup extends ReflectiveConfigGroup {
         comments.put(END_TIME, "Simulation End Time");
         comments.put(STUCKTIMEPARAM, STUCKTIMEPARAMDESC);
         comments.put(DETPT, DETPTDESC);
+        comments.put(THREADSPARAM, THREADSPARAMDESC);
+        comments.put(EVENTSFLUSHPARAM, EVENTSFLUSHPARAMDESC);
         return comments;
     }
 
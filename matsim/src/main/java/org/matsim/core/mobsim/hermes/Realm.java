@@ -21,15 +21,10 @@ package org.matsim.core.mobsim.hermes;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.IdMap;
-import org.matsim.api.core.v01.events.ActivityEndEvent;
 import org.matsim.api.core.v01.events.Event;
-import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
-import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
-import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
 import org.matsim.core.events.EventArray;
-import org.matsim.core.events.ParallelEventsManager;
 import org.matsim.core.utils.collections.IntArrayMap;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
@@ -37,6 +32,7 @@ import org.matsim.vehicles.Vehicle;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 class Realm {
 	private final ScenarioImporter si;
@@ -57,13 +53,26 @@ class Realm {
     private final int[] line_of_route;
     // queue of sorted events by time
     private EventArray sorted_events;
-    // MATSim event manager.
-    private final EventsManager eventsManager;
+    // Stream of completed event windows to the MATSim event manager.
+    private final EventsStream events;
     // Current timestamp
     private int secs;
+    // Partition of the network simulated by this realm and the realms it exchanges agents with. The latter is null
+    // if this is the only realm.
+    private final int partition;
+    private final Realms realms;
+    // Storage capacity this realm reserved on boundary links of other realms in the current time step. Only the
+    // entries listed in reservedBoundaryLinks are non-zero.
+    private final float[] reservedBoundaryCapacity;
+    private int[] reservedBoundaryLinks;
+    private int reservedBoundaryLinksSize;
     Logger log = Logger.getLogger(Realm.class);
 
-    public Realm(ScenarioImporter scenario, EventsManager eventsManager) throws Exception {
+    public Realm(ScenarioImporter scenario, EventsStream events) throws Exception {
+        this(scenario, events, 0, null);
+    }
+
+    Realm(ScenarioImporter scenario, EventsStream events, int partition, Realms realms) throws Exception {
     	this.si = scenario;
         this.links = scenario.hermes_links;
         // The plus one is necessary because we peek into the next slot on each tick.
@@ -73,12 +82,21 @@ class Realm {
         this.route_stops_by_route_no = scenario.route_stops_by_route_no;
         this.line_of_route = scenario.line_of_route;
         this.sorted_events = new EventArray();
-        this.eventsManager = eventsManager;
+        this.events = events;
+        this.partition = partition;
+        this.realms = realms;
+        if (realms != null) {
+            this.reservedBoundaryCapacity = new float[realms.boundaryLinks()];
+            this.reservedBoundaryLinks = new int[16];
+        } else {
+            this.reservedBoundaryCapacity = null;
+        }
 
 	// the last position is to store events that will not happen...
+	// queues are only allocated once something is delayed until that time step.
         for (int i = 0; i <= HermesConfigGroup.SIM_STEPS + 1; i++) {
-            delayedLinksByWakeupTime.add(new ArrayDeque<>());
-            delayedAgentsByWakeupTime.add(new ArrayDeque<>());
+            delayedLinksByWakeupTime.add(null);
+            delayedAgentsByWakeupTime.add(null);
         }
     }
 
@@ -90,13 +108,41 @@ class Realm {
 
     private void add_delayed_agent(Agent agent, int until) {
         if (HermesConfigGroup.DEBUG_REALMS) log(secs, String.format("agent %d delayed until %d", agent.id, until));
-        delayedAgentsByWakeupTime.get(Math.min(until, HermesConfigGroup.SIM_STEPS + 1)).add(agent);
+        addDelayed(delayedAgentsByWakeupTime, Math.min(until, HermesConfigGroup.SIM_STEPS + 1), agent);
     }
 
     private void add_delayed_link(HLink link, int until) {
         if (HermesConfigGroup.DEBUG_REALMS)
             log(secs, String.format("link %d delayed until %d size %d peek agent %d", link.id(), until, link.queue().size(), link.queue().peek().id));
-        delayedLinksByWakeupTime.get(Math.min(until, HermesConfigGroup.SIM_STEPS + 1)).add(link);
+        addDelayed(delayedLinksByWakeupTime, Math.min(until, HermesConfigGroup.SIM_STEPS + 1), link);
+    }
+
+    private static <T> void addDelayed(ArrayList<ArrayDeque<T>> delayed, int wakeupTime, T element) {
+        ArrayDeque<T> queue = delayed.get(wakeupTime);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            delayed.set(wakeupTime, queue);
+        }
+        queue.add(element);
+    }
+
+    /**
+     * Delays an agent that is about to sleep. If the agent will enter a link of another realm once it wakes up, it
+     * is handed over to that realm right away.
+     */
+    private void add_sleeping_agent(Agent agent, int until) {
+        if (realms != null && agent.plan.size() > agent.planIndex + 2) {
+            // planIndex + 1 is the sleep being processed, planIndex + 2 what the agent does after waking up.
+            long next = agent.plan.get(agent.planIndex + 2);
+            if (Agent.getPlanHeader(next) == Agent.LinkType) {
+                int owner = realms.partitionOf(Agent.getLinkPlanEntry(next));
+                if (owner != partition) {
+                    realms.outbox(partition, owner).addSleepingAgent(agent, until);
+                    return;
+                }
+            }
+        }
+        add_delayed_agent(agent, until);
     }
 
     private void advanceAgentandSetEventTime(Agent agent) {
@@ -128,6 +174,9 @@ class Realm {
         int traveltime = HermesConfigGroup.LINK_ADVANCE_DELAY + Math.max(1, next.length() / Math.min(velocity, next.velocity()));
         agent.linkFinishTime = secs + traveltime;
         float storageCapacityPCU = agent.getStorageCapacityPCUE();
+        if (realms != null && realms.partitionOf(linkid) != partition) {
+            return processAgentRemoteLink(agent, next, storageCapacityPCU, prev_finishtime);
+        }
         if (next.push(agent,secs,storageCapacityPCU)) {
             advanceAgentandSetEventTime(agent);
             // If the agent we just added is the head, add to delayed links
@@ -141,6 +190,38 @@ class Realm {
         }
     }
 
+    /**
+     * Hands an agent over to the realm owning the next link. The link's state is only known as of the end of the
+     * previous time step, so the decision is based on that state minus the storage capacity this realm already
+     * reserved on the link in this time step.
+     */
+    private boolean processAgentRemoteLink(Agent agent, HLink next, float storageCapacityPCU, int prev_finishtime) {
+        int owner = realms.partitionOf(next.id());
+        int boundary = realms.boundaryIndex(next.id());
+        if (boundary < 0) {
+            // The agent does not come from an adjacent link (e.g. it was not handed over before sleeping).
+            // Let the owner realm retry in the next time step.
+            agent.linkFinishTime = prev_finishtime;
+            realms.outbox(partition, owner).addSleepingAgent(agent, secs + 1);
+            return true;
+        }
+        float capacityLeft = realms.boundaryCapacity(boundary) - reservedBoundaryCapacity[boundary];
+        if (!next.accepts(capacityLeft, realms.boundaryLastPush(boundary), secs, storageCapacityPCU)) {
+            agent.linkFinishTime = prev_finishtime;
+            return false;
+        }
+        if (reservedBoundaryCapacity[boundary] == 0) {
+            if (reservedBoundaryLinksSize == reservedBoundaryLinks.length) {
+                reservedBoundaryLinks = Arrays.copyOf(reservedBoundaryLinks, reservedBoundaryLinks.length * 2);
+            }
+            reservedBoundaryLinks[reservedBoundaryLinksSize++] = boundary;
+        }
+        reservedBoundaryCapacity[boundary] += next.effectiveStorageCapacity(storageCapacityPCU);
+        advanceAgentandSetEventTime(agent);
+        realms.outbox(partition, owner).addLinkAgent(agent);
+        return true;
+    }
+
     protected boolean processAgentSleepFor(Agent agent, long planentry) {
         int sleep = Agent.getSleepPlanEntry(planentry);
         return processAgentSleepUntil(agent, secs + Math.max(1, sleep));
@@ -148,7 +229,7 @@ class Realm {
 
     protected boolean processAgentSleepUntil(Agent agent, long planentry) {
         int sleep = Agent.getSleepPlanEntry(planentry);
-        add_delayed_agent(agent, Math.max(sleep, secs + 1));
+        add_sleeping_agent(agent, Math.max(sleep, secs + 1));
         updateCapacities(agent);
         advanceAgentandSetEventTime(agent);
         return true;
@@ -316,94 +397,125 @@ class Realm {
     }
 
     public void run() throws Exception {
-    	int routed = 0;
-        Agent agent = null;
-        HLink link = null;
-
         while (secs != HermesConfigGroup.SIM_STEPS) {
             if (secs % 3600 == 0) {
                 log.info("Hermes running at " + Time.writeTime(secs));
             }
-            while ((agent = delayedAgentsByWakeupTime.get(secs).poll()) != null) {
+            step();
+            if (events.isEndOfWindow(secs) && sorted_events.size() > 0) {
+                events.publish(sorted_events);
+                sorted_events = new EventArray();
+            }
+            secs += 1;
+        }
+    }
+
+    /**
+     * Processes the agents and links of this realm that wake up in the current time step.
+     */
+    void step() {
+        int routed = 0;
+        Agent agent = null;
+        HLink link = null;
+
+        ArrayDeque<Agent> agents = delayedAgentsByWakeupTime.get(secs);
+        if (agents != null) {
+            while ((agent = agents.poll()) != null) {
                 if (HermesConfigGroup.DEBUG_REALMS) {
                     log(secs, String.format("Processing agent %d", agent.id));
                 }
                 routed += processAgentActivities(agent);
-
             }
-            delayedAgentsByWakeupTime.set(secs, null);
-            if (si.isDeterministicPt()) {
-                for (Event e : si.getDeterministicPtEvents().get(secs)) {
-                    sorted_events.add(e);
-                }
-                si.getDeterministicPtEvents().get(secs).clear();
+        }
+        delayedAgentsByWakeupTime.set(secs, null);
+        if (si.isDeterministicPt()) {
+            for (Event e : si.getDeterministicPtEvents().get(secs)) {
+                sorted_events.add(e);
             }
+            si.getDeterministicPtEvents().get(secs).clear();
+        }
 
-            while ((link = delayedLinksByWakeupTime.get(secs).poll()) != null) {
+        ArrayDeque<HLink> delayedLinks = delayedLinksByWakeupTime.get(secs);
+        if (delayedLinks != null) {
+            while ((link = delayedLinks.poll()) != null) {
                 if (HermesConfigGroup.DEBUG_REALMS) {
                     log(secs, String.format("Processing link %d", link.id()));
                 }
                 routed += processLinks(link);
             }
-            delayedLinksByWakeupTime.set(secs, null);
-            if (HermesConfigGroup.DEBUG_REALMS && routed > 0) {
-                log(secs, String.format("Processed %d agents", routed));
+        }
+        delayedLinksByWakeupTime.set(secs, null);
+        if (HermesConfigGroup.DEBUG_REALMS && routed > 0) {
+            log(secs, String.format("Processed %d agents", routed));
+        }
+    }
+
+    /**
+     * Takes over the agents other realms sent to this realm in the current time step, publishes the state of this
+     * realm's boundary links and moves on to the next time step. Only used if there is more than one realm.
+     */
+    void receive() {
+        for (int from = 0; from < realms.partitions(); from++) {
+            Realms.Outbox outbox = realms.outbox(from, partition);
+            for (int i = 0; i < outbox.linkAgentsSize(); i++) {
+                Agent agent = outbox.linkAgent(i);
+                HLink next = links[Agent.getLinkPlanEntry(agent.currPlan())];
+                next.pushIncoming(agent, secs, agent.getStorageCapacityPCUE());
+                // If the agent we just added is the head, add to delayed links
+                if (next.queue().peek() == agent) {
+                    add_delayed_link(next, Math.max(agent.linkFinishTime, secs + 1));
+                }
             }
-            if (HermesConfigGroup.CONCURRENT_EVENT_PROCESSING && secs % 3600 == 0 && sorted_events.size() > 0) {
-                eventsManager.processEvents(sorted_events);
-                sorted_events = new EventArray();
+            for (int i = 0; i < outbox.sleepingAgentsSize(); i++) {
+                add_delayed_agent(outbox.sleepingAgent(i), outbox.wakeupTime(i));
             }
-
-            routed = 0;
-            secs += 1;
+            outbox.clear();
+        }
+        for (int i = 0; i < reservedBoundaryLinksSize; i++) {
+            reservedBoundaryCapacity[reservedBoundaryLinks[i]] = 0;
         }
+        reservedBoundaryLinksSize = 0;
+        realms.publishBoundaryLinks(partition, links);
+        secs += 1;
     }
 
     public void setEventTime(Agent agent, int eventid, int time, boolean lastevent) {
         if (eventid != 0) {
-        	EventArray agentevents = agent.events();
-            Event event = agentevents.get(eventid);
+            EncodedEventArray agentevents = agent.events();
+            Event event = null;
 
             for (; agent.eventsIndex <= eventid; agent.eventsIndex++) {
-            	agentevents.get(agent.eventsIndex).setTime(time);
+                // This skips the actend that is not issued by QSim.
+                if (lastevent && agent.eventsIndex == eventid && agentevents.isActivityEnd(eventid)) {
+                    continue;
+                }
+                event = agentevents.materialize(agent.eventsIndex, time);
                 if (HermesConfigGroup.DEBUG_REALMS)
-                    log(secs, String.format("agent %d setEventTime (eventsIndex=%d) %s", agent.id, agent.eventsIndex, agentevents.get(agent.eventsIndex).toString()));
-                sorted_events.add(agentevents.get(agent.eventsIndex));
+                    log(secs, String.format("agent %d setEventTime (eventsIndex=%d) %s", agent.id, agent.eventsIndex, event.toString()));
+                sorted_events.add(event);
             }
 
             // Fix delay for PT events.
             if (event instanceof VehicleArrivesAtFacilityEvent) {
                 VehicleArrivesAtFacilityEvent vaafe = (VehicleArrivesAtFacilityEvent) event;
                 vaafe.setDelay(vaafe.getTime() - vaafe.getDelay());
-
             }
             else if (event instanceof VehicleDepartsAtFacilityEvent) {
-			    VehicleDepartsAtFacilityEvent vdafe = (VehicleDepartsAtFacilityEvent) event;
-			    vdafe.setDelay(vdafe.getTime() - vdafe.getDelay());
-		    }
-		    // This removes actend that is not issued by QSim.
-		    else if (lastevent && event instanceof ActivityEndEvent) {
-		        sorted_events.removeLast();
-		    }
+                VehicleDepartsAtFacilityEvent vdafe = (VehicleDepartsAtFacilityEvent) event;
+                vdafe.setDelay(vdafe.getTime() - vdafe.getDelay());
+            }
         }
     }
 
     public void setEventVehicle(Agent agent, int eventid, int vehicleid) {
         if (eventid != 0) {
-            Event event = agent.events().get(eventid);
-            Id<Vehicle> vid = Id.get(si.matsim_id(vehicleid,  true), Vehicle.class);
-            if (event instanceof PersonEntersVehicleEvent) {
-                ((PersonEntersVehicleEvent)event).setVehicleId(vid);
-            } else if (event instanceof PersonLeavesVehicleEvent) {
-                ((PersonLeavesVehicleEvent)event).setVehicleId(vid);
-            } else {
-                throw new RuntimeException(
-                    String.format("vehicle id could not be set for event: %d", eventid));
-            }
+            agent.events().setVehicle(eventid, Id.get(si.matsim_id(vehicleid,  true), Vehicle.class));
         }
     }
 
-    ArrayList<ArrayDeque<HLink>> delayedLinks() { return this.delayedLinksByWakeupTime; }
-    ArrayList<ArrayDeque<Agent>> delayedAgents() { return this.delayedAgentsByWakeupTime; }
+    void addDelayedAgent(Agent agent, int until) { add_delayed_agent(agent, until); }
+    void addDelayedLink(HLink link, int until) { add_delayed_link(link, until); }
+    HLink[] links() { return this.links; }
     EventArray getSortedEvents() { return this.sorted_events; }
+    void clearSortedEvents() { this.sorted_events = new EventArray(); }
 }
@@ -0,0 +1,145 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.hermes;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * Splits the network into spatially compact partitions, one per realm, using recursive coordinate bisection over
+ * the nodes (weighted by their number of out-links). A link belongs to the partition of its from-node, so agents
+ * only change realm when crossing a node whose in-link comes from another partition. Such links are called
+ * boundary links; their state is exchanged between realms once per time step.
+ *
+ * The partitioning only depends on the network and the number of partitions, which keeps runs deterministic for a
+ * fixed partition count.
+ */
+final class RealmPartitioning {
+
+	// Number of partitions (realms).
+	final int partitions;
+	// Partition of each link, indexed by link id; -1 for ids without a link.
+	final int[] linkPartitions;
+	// Position of each link in the boundary arrays, indexed by link id; -1 for links that are not boundary links.
+	final int[] boundaryIndex;
+	// Boundary link ids owned by each partition.
+	final int[][] boundaryLinksByPartition;
+	// Total number of boundary links.
+	final int boundaryLinks;
+
+	private RealmPartitioning(int partitions, int[] linkPartitions, int[] boundaryIndex, int[][] boundaryLinksByPartition, int boundaryLinks) {
+		this.partitions = partitions;
+		this.linkPartitions = linkPartitions;
+		this.boundaryIndex = boundaryIndex;
+		this.boundaryLinksByPartition = boundaryLinksByPartition;
+		this.boundaryLinks = boundaryLinks;
+	}
+
+	static RealmPartitioning create(Network network, int partitions) {
+		int[] nodePartitions = new int[Id.getNumberOfIds(Node.class)];
+		Node[] nodes = network.getNodes().values().toArray(new Node[0]);
+		// the input order of the nodes does not matter, sorting by index makes the result reproducible.
+		Arrays.sort(nodes, Comparator.comparingInt(n -> n.getId().index()));
+		bisect(nodes, 0, nodes.length, 0, partitions, nodePartitions);
+
+		int[] linkPartitions = new int[Id.getNumberOfIds(Link.class)];
+		Arrays.fill(linkPartitions, -1);
+		for (Link link : network.getLinks().values()) {
+			linkPartitions[link.getId().index()] = nodePartitions[link.getFromNode().getId().index()];
+		}
+
+		int[] boundaryIndex = new int[linkPartitions.length];
+		Arrays.fill(boundaryIndex, -1);
+		int[] boundaryCount = new int[partitions];
+		int boundaryLinks = 0;
+		Link[] links = network.getLinks().values().toArray(new Link[0]);
+		Arrays.sort(links, Comparator.comparingInt(l -> l.getId().index()));
+		for (Link link : links) {
+			int partition = linkPartitions[link.getId().index()];
+			for (Link inLink : link.getFromNode().getInLinks().values()) {
+				if (linkPartitions[inLink.getId().index()] != partition) {
+					boundaryIndex[link.getId().index()] = boundaryLinks++;
+					boundaryCount[partition]++;
+					break;
+				}
+			}
+		}
+
+		int[][] boundaryLinksByPartition = new int[partitions][];
+		for (int p = 0; p < partitions; p++) {
+			boundaryLinksByPartition[p] = new int[boundaryCount[p]];
+			boundaryCount[p] = 0;
+		}
+		for (Link link : links) {
+			int linkid = link.getId().index();
+			if (boundaryIndex[linkid] >= 0) {
+				int partition = linkPartitions[linkid];
+				boundaryLinksByPartition[partition][boundaryCount[partition]++] = linkid;
+			}
+		}
+		return new RealmPartitioning(partitions, linkPartitions, boundaryIndex, boundaryLinksByPartition, boundaryLinks);
+	}
+
+	private static void bisect(Node[] nodes, int from, int to, int firstPartition, int partitions, int[] nodePartitions) {
+		if (partitions == 1 || to - from <= 1) {
+			for (int i = from; i < to; i++) {
+				nodePartitions[nodes[i].getId().index()] = firstPartition;
+			}
+			return;
+		}
+
+		double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		long totalWeight = 0;
+		for (int i = from; i < to; i++) {
+			double x = nodes[i].getCoord().getX();
+			double y = nodes[i].getCoord().getY();
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+			totalWeight += weight(nodes[i]);
+		}
+
+		Comparator<Node> byCoord = (maxX - minX) >= (maxY - minY)
+				? Comparator.comparingDouble((Node n) -> n.getCoord().getX())
+				: Comparator.comparingDouble((Node n) -> n.getCoord().getY());
+		Arrays.sort(nodes, from, to, byCoord.thenComparingInt(n -> n.getId().index()));
+
+		int leftPartitions = partitions / 2;
+		long leftWeight = totalWeight * leftPartitions / partitions;
+		long weight = 0;
+		int split = from;
+		while (split < to - 1 && weight < leftWeight) {
+			weight += weight(nodes[split]);
+			split++;
+		}
+		bisect(nodes, from, split, firstPartition, leftPartitions, nodePartitions);
+		bisect(nodes, split, to, firstPartition + leftPartitions, partitions - leftPartitions, nodePartitions);
+	}
+
+	private static int weight(Node node) {
+		return Math.max(1, node.getOutLinks().size());
+	}
+}
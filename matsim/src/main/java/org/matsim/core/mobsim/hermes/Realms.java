@@ -0,0 +1,297 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.hermes;
+
+import java.util.Arrays;
+import java.util.concurrent.Phaser;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventArray;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * The realms of one Hermes run. With a single realm, everything is delegated to it and Hermes runs exactly as
+ * before. With more than one, each realm simulates one partition of the network (see {@link RealmPartitioning}) on
+ * its own thread. Every simulated second consists of two phases separated by a barrier:
+ * <ol>
+ *     <li>each realm processes its own agents and links. Agents entering a link of another realm are checked against
+ *     the state that link had at the end of the previous second (minus what this realm already sent to it) and put
+ *     in an outbox;</li>
+ *     <li>each realm drains the outboxes addressed to it, in realm order, and publishes the state of its boundary
+ *     links for the next second.</li>
+ * </ol>
+ * Each realm records its events in its own {@link EventArray}. They are merged by time, ties broken by realm index,
+ * which makes the result deterministic for a fixed number of realms.
+ */
+class Realms {
+
+	final private static Logger log = Logger.getLogger(Realms.class);
+
+	private final Realm[] realms;
+	private final RealmPartitioning partitioning;
+	private final EventsStream events;
+	// State of the boundary links at the end of the previous time step, indexed by boundary index.
+	private final float[] boundaryCapacity;
+	private final int[] boundaryLastPush;
+	// Agents sent from one realm to another in the current time step: outboxes[from][to].
+	private final Outbox[][] outboxes;
+	// Events already merged but not yet handed over to the events manager.
+	private EventArray sortedEvents;
+
+	Realms(ScenarioImporter si, EventsManager eventsManager, RealmPartitioning partitioning) throws Exception {
+		this.partitioning = partitioning;
+		this.events = new EventsStream(eventsManager, si.getEventsFlushInterval());
+		if (partitioning == null) {
+			this.realms = new Realm[] { new Realm(si, events) };
+			this.boundaryCapacity = null;
+			this.boundaryLastPush = null;
+			this.outboxes = null;
+		} else {
+			this.realms = new Realm[partitioning.partitions];
+			this.outboxes = new Outbox[partitioning.partitions][partitioning.partitions];
+			for (int i = 0; i < partitioning.partitions; i++) {
+				this.realms[i] = new Realm(si, events, i, this);
+				for (int j = 0; j < partitioning.partitions; j++) {
+					this.outboxes[i][j] = new Outbox();
+				}
+			}
+			this.boundaryCapacity = new float[partitioning.boundaryLinks];
+			this.boundaryLastPush = new int[partitioning.boundaryLinks];
+		}
+		this.sortedEvents = new EventArray();
+	}
+
+	/** Returns the realm responsible for the given link. */
+	Realm realmOfLink(int linkid) {
+		return partitioning == null ? realms[0] : realms[partitioning.linkPartitions[linkid]];
+	}
+
+	/** Returns the realm an agent should initially wait in, i.e. the realm of the first link of its plan. */
+	Realm realmOfAgent(Agent agent) {
+		if (partitioning != null && agent.plan().size() > 1) {
+			long next = agent.plan().get(1);
+			if (Agent.getPlanHeader(next) == Agent.LinkType) {
+				return realmOfLink(Agent.getLinkPlanEntry(next));
+			}
+		}
+		return realms[0];
+	}
+
+	int partitions() {
+		return realms.length;
+	}
+
+	int partitionOf(int linkid) {
+		return partitioning.linkPartitions[linkid];
+	}
+
+	int boundaryIndex(int linkid) {
+		return partitioning.boundaryIndex[linkid];
+	}
+
+	float boundaryCapacity(int boundaryIndex) {
+		return boundaryCapacity[boundaryIndex];
+	}
+
+	int boundaryLastPush(int boundaryIndex) {
+		return boundaryLastPush[boundaryIndex];
+	}
+
+	int boundaryLinks() {
+		return partitioning.boundaryLinks;
+	}
+
+	Outbox outbox(int from, int to) {
+		return outboxes[from][to];
+	}
+
+	/** Publishes the state of the boundary links owned by the given realm. */
+	void publishBoundaryLinks(int partition, HLink[] links) {
+		for (int linkid : partitioning.boundaryLinksByPartition[partition]) {
+			int index = partitioning.boundaryIndex[linkid];
+			boundaryCapacity[index] = links[linkid].currentCapacity();
+			boundaryLastPush[index] = links[linkid].lastPush();
+		}
+	}
+
+	public void run() throws Exception {
+		if (partitioning == null) {
+			realms[0].run();
+			return;
+		}
+
+		HLink[] links = realms[0].links();
+		for (int i = 0; i < realms.length; i++) {
+			publishBoundaryLinks(i, links);
+		}
+
+		// Two phases per time step. The last thread to arrive at the end of a time step flushes events, if needed.
+		Phaser phaser = new Phaser(realms.length) {
+			@Override
+			protected boolean onAdvance(int phase, int registeredParties) {
+				int secs = phase / 2;
+				if (phase % 2 == 1 && events.isEndOfWindow(secs)) {
+					mergeEvents();
+					try {
+						events.publish(sortedEvents);
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+					sortedEvents = new EventArray();
+				}
+				return super.onAdvance(phase, registeredParties);
+			}
+		};
+		Throwable[] errors = new Throwable[realms.length];
+		Thread[] threads = new Thread[realms.length];
+		for (int i = 0; i < realms.length; i++) {
+			final int partition = i;
+			final Realm realm = realms[i];
+			threads[i] = new Thread(() -> {
+				try {
+					for (int secs = 0; secs < HermesConfigGroup.SIM_STEPS; secs++) {
+						if (partition == 0 && secs % 3600 == 0) {
+							log.info("Hermes running at " + Time.writeTime(secs));
+						}
+						realm.step();
+						if (phaser.arriveAndAwaitAdvance() < 0) {
+							return;
+						}
+						realm.receive();
+						if (phaser.arriveAndAwaitAdvance() < 0) {
+							return;
+						}
+					}
+				} catch (Throwable t) {
+					errors[partition] = t;
+					phaser.forceTermination();
+				}
+			}, "Hermes-Realm-" + i);
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (Throwable error : errors) {
+			if (error != null) {
+				throw new RuntimeException("Hermes realm failed", error);
+			}
+		}
+		mergeEvents();
+	}
+
+	/**
+	 * Moves the events recorded by each realm so far into the merged event array. The events of each realm are
+	 * already sorted by time; events with the same time are ordered by realm index.
+	 */
+	private void mergeEvents() {
+		EventArray[] events = new EventArray[realms.length];
+		int[] cursors = new int[realms.length];
+		int total = 0;
+		for (int i = 0; i < realms.length; i++) {
+			events[i] = realms[i].getSortedEvents();
+			total += events[i].size();
+		}
+		int merged = 0;
+		while (merged < total) {
+			double time = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < realms.length; i++) {
+				if (cursors[i] < events[i].size()) {
+					time = Math.min(time, events[i].get(cursors[i]).getTime());
+				}
+			}
+			for (int i = 0; i < realms.length; i++) {
+				Event event;
+				while (cursors[i] < events[i].size() && (event = events[i].get(cursors[i])).getTime() == time) {
+					sortedEvents.add(event);
+					cursors[i]++;
+					merged++;
+				}
+			}
+		}
+		for (Realm realm : realms) {
+			realm.clearSortedEvents();
+		}
+	}
+
+	/**
+	 * Publishes the events not yet handed over to the events manager and waits until all events were processed.
+	 */
+	void finishEvents() throws InterruptedException {
+		events.publish(partitioning == null ? realms[0].getSortedEvents() : sortedEvents);
+		events.finish();
+	}
+
+	/**
+	 * Agents sent from one realm to another within one time step. Agents entering a link only need the agent, its
+	 * current plan entry is the link; agents going to sleep also carry their wakeup time.
+	 */
+	static final class Outbox {
+		private Agent[] linkAgents = new Agent[16];
+		private int linkAgentsSize;
+		private Agent[] sleepingAgents = new Agent[16];
+		private int[] wakeupTimes = new int[16];
+		private int sleepingAgentsSize;
+
+		void addLinkAgent(Agent agent) {
+			if (linkAgentsSize == linkAgents.length) {
+				linkAgents = Arrays.copyOf(linkAgents, linkAgents.length * 2);
+			}
+			linkAgents[linkAgentsSize++] = agent;
+		}
+
+		void addSleepingAgent(Agent agent, int until) {
+			if (sleepingAgentsSize == sleepingAgents.length) {
+				sleepingAgents = Arrays.copyOf(sleepingAgents, sleepingAgents.length * 2);
+				wakeupTimes = Arrays.copyOf(wakeupTimes, wakeupTimes.length * 2);
+			}
+			sleepingAgents[sleepingAgentsSize] = agent;
+			wakeupTimes[sleepingAgentsSize++] = until;
+		}
+
+		int linkAgentsSize() {
+			return linkAgentsSize;
+		}
+
+		Agent linkAgent(int index) {
+			return linkAgents[index];
+		}
+
+		int sleepingAgentsSize() {
+			return sleepingAgentsSize;
+		}
+
+		Agent sleepingAgent(int index) {
+			return sleepingAgents[index];
+		}
+
+		int wakeupTime(int index) {
+			return wakeupTimes[index];
+		}
+
+		void clear() {
+			Arrays.fill(linkAgents, 0, linkAgentsSize, null);
+			Arrays.fill(sleepingAgents, 0, sleepingAgentsSize, null);
+			linkAgentsSize = 0;
+			sleepingAgentsSize = 0;
+		}
+	}
+}
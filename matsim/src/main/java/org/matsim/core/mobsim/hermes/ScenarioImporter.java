@@ -24,18 +24,10 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.TransportMode;
-import org.matsim.api.core.v01.events.ActivityEndEvent;
-import org.matsim.api.core.v01.events.ActivityStartEvent;
 import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.LinkLeaveEvent;
-import org.matsim.api.core.v01.events.PersonArrivalEvent;
-import org.matsim.api.core.v01.events.PersonDepartureEvent;
-import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
-import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
-import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
-import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.Activity;
@@ -44,12 +36,9 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.api.core.v01.population.Route;
-import org.matsim.core.api.experimental.events.AgentWaitingForPtEvent;
 import org.matsim.core.api.experimental.events.EventsManager;
-import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
 import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
-import org.matsim.core.events.EventArray;
 import org.matsim.core.mobsim.hermes.Agent.PlanArray;
 import org.matsim.core.population.routes.GenericRouteImpl;
 import org.matsim.core.population.routes.NetworkRoute;
@@ -114,8 +103,12 @@ class ScenarioImporter {
 	// Note: in order to make MATSim Agent ids, some positions in the array might be null.
 	protected Agent[] hermes_agents;
 
-	protected Realm realm;
+	protected Realms realms;
+	// Partitioning of the network into realms; null if Hermes runs single threaded.
+	private final RealmPartitioning partitioning;
 	private final boolean deterministicPt;
+	// Simulated seconds after which events are handed over to the events manager; 0 to only do so at the end.
+	private final int eventsFlushInterval;
 	// Agents waiting in pt stations. Should be used as follows:
 	// agent_stops.get(curr station id).get(line id) -> queue of agents
 	protected IdMap<TransitStopFacility, IntArrayMap<ArrayDeque<Agent>>> agent_stops;
@@ -126,10 +119,13 @@ class ScenarioImporter {
 	protected final EventsManager eventsManager;
 	private final int numberOfThreads;
 	private final List<List<Event>> deterministicPtEvents;
+	// Activity types and modes referenced by the encoded agent events.
+	private final EncodedEventArray.Dictionary eventStrings = new EncodedEventArray.Dictionary();
 
 	private ScenarioImporter(Scenario scenario, EventsManager eventsManager) {
 		numberOfThreads = Math.min(scenario.getConfig().global().getNumberOfThreads(), Runtime.getRuntime().availableProcessors());
 		this.deterministicPt = scenario.getConfig().hermes().isDeterministicPt();
+		this.eventsFlushInterval = scenario.getConfig().hermes().getEventsFlushInterval();
 		if (deterministicPt) {
 			deterministicPtEvents = new ArrayList<>(scenario.getConfig().hermes().getEndTime());
 			for (int i = 0; i < scenario.getConfig().hermes().getEndTime(); i++) {
@@ -144,7 +140,23 @@ class ScenarioImporter {
 		generateLinks();
 		generatePT();
 		generateAgents();
+		this.partitioning = generatePartitioning();
+	}
 
+	private RealmPartitioning generatePartitioning() {
+		int threads = scenario.getConfig().hermes().getNumberOfThreads();
+		if (threads <= 1) {
+			return null;
+		}
+		if (route_stops_by_route_no.length > 0) {
+			log.warn("Hermes only supports multiple threads without transit. Running with a single thread.");
+			return null;
+		}
+		long time = System.currentTimeMillis();
+		RealmPartitioning partitioning = RealmPartitioning.create(scenario.getNetwork(), threads);
+		log.info(String.format("Hermes partitioned the network into %d realms (%d boundary links) in %d ms",
+				threads, partitioning.boundaryLinks, System.currentTimeMillis() - time));
+		return partitioning;
 	}
 
 	private void generateVehicleCategories() {
@@ -308,7 +320,7 @@ class ScenarioImporter {
 	}
 
 	private void generateRealms() throws Exception {
-		realm = new Realm(this, eventsManager);
+		realms = new Realms(this, eventsManager, partitioning);
 
 		// Put agents in their initial location (link or activity center)
 		for (Agent agent : hermes_agents) {
@@ -330,7 +342,7 @@ class ScenarioImporter {
 				case Agent.SleepForType:
 				case Agent.SleepUntilType:
 					int sleep = Agent.getSleepPlanEntry(planentry);
-					realm.delayedAgents().get(Math.min(sleep, scenario.getConfig().hermes().getEndTime() + 1)).add(agent);
+					realms.realmOfAgent(agent).addDelayedAgent(agent, Math.min(sleep, scenario.getConfig().hermes().getEndTime() + 1));
 					break;
 				default:
 					Logger.getLogger(getClass()).error(String.format("ERROR -> unknown plan element type %d", type));
@@ -341,7 +353,7 @@ class ScenarioImporter {
 			if (link != null) {
 				int nextwakeup = link.nexttime();
 				if (nextwakeup > 0) {
-					realm.delayedLinks().get(nextwakeup).add(link);
+					realms.realmOfLink(link.id()).addDelayedLink(link, nextwakeup);
 				}
 			}
 		}
@@ -350,7 +362,7 @@ class ScenarioImporter {
 	private void processPlanActivity(
 			Id<Person> id,
 			PlanArray flatplan,
-			EventArray events,
+			EncodedEventArray events,
 			Activity act) {
 		int time = 0;
 		int eventid = 0;
@@ -374,7 +386,7 @@ class ScenarioImporter {
 
 		// hack to avoid a actstart as first event (hermes does not have it).
 		if (flatplan.size() != 0) {
-			events.add(new ActivityStartEvent(0, id, linkid, facid, type, act.getCoord()));
+			events.addActivityStart(id, linkid, facid, type, act.getCoord());
 			eventid = events.size() - 1;
 		} else {
 			eventid = 0;
@@ -390,13 +402,13 @@ class ScenarioImporter {
 			// TODO - better way to handle this?
 			flatplan.add(Agent.prepareSleepForEntry(eventid, 0));
 		}
-		events.add(new ActivityEndEvent(0, id, linkid, facid, type, act.getCoord()));
+		events.addActivityEnd(id, linkid, facid, type, act.getCoord());
 	}
 
 	private void processPlanNetworkRoute(
 			Person person,
 			PlanArray flatplan,
-			EventArray events,
+			EncodedEventArray events,
 			Leg leg,
 			NetworkRoute netroute,
 			Agent agent) {
@@ -419,23 +431,23 @@ class ScenarioImporter {
 		if (agent.getStorageCapacityPCUE() == -1) {
 			agent.setStorageCapacityPCUE(getStorageCapacityPCE(pcuCategory));
 		}
-		events.add(new PersonEntersVehicleEvent(0, id, vid));
-		events.add(new VehicleEntersTrafficEvent(0, id, startLId, vid, leg.getMode(), 1));
+		events.addPersonEntersVehicle(id, vid);
+		events.addVehicleEntersTraffic(id, startLId, vid, leg.getMode());
 		if (netroute.getLinkIds().size() > 1 || !startLId.equals(endLId)) {
-			events.add(new LinkLeaveEvent(0, vid, startLId));
+			events.addLinkLeave(vid, startLId);
 		}
 		for (Id<org.matsim.api.core.v01.network.Link> linkid : netroute.getLinkIds()) {
 			int linkId = linkid.index();
-			events.add(new LinkEnterEvent(0, vid, linkid));
+			events.addLinkEnter(vid, linkid);
 			flatplan.add(Agent.prepareLinkEntry(events.size() - 1, linkId, velocity, pcuCategory));
-			events.add(new LinkLeaveEvent(0, vid, linkid));
+			events.addLinkLeave(vid, linkid);
 		}
 		if (netroute.getLinkIds().size() > 1 || !startLId.equals(endLId)) {
-			events.add(new LinkEnterEvent(0, vid, endLId));
+			events.addLinkEnter(vid, endLId);
 			flatplan.add(Agent.prepareLinkEntry(events.size() - 1, egressId, velocity, pcuCategory));
 		}
-		events.add(new VehicleLeavesTrafficEvent(0, id, endLId, vid, leg.getMode(), 1));
-		events.add(new PersonLeavesVehicleEvent(0, id, vid));
+		events.addVehicleLeavesTraffic(id, endLId, vid, leg.getMode());
+		events.addPersonLeavesVehicle(id, vid);
 	}
 
 	private void populateStops(int srcStopId, int lineId) {
@@ -446,7 +458,7 @@ class ScenarioImporter {
 	private void processPlanTransitRoute(
 			Id<Person> id,
 			PlanArray flatplan,
-			EventArray events,
+			EncodedEventArray events,
 			TransitPassengerRoute troute) {
 		Id<TransitStopFacility> access = troute.getAccessStopId();
 		Id<TransitStopFacility> egress = troute.getEgressStopId();
@@ -460,18 +472,18 @@ class ScenarioImporter {
 		// this will be replaced dynamically
 		Id<Vehicle> vid = Id.createVehicleId("tr_X");
 		// Add public transport access
-		events.add(new AgentWaitingForPtEvent(0, id, access, egress));
+		events.addAgentWaitingForPt(id, access, egress);
 		flatplan.add(Agent.prepareWaitEntry(events.size() - 1, routeNo, accessid));
-		events.add(new PersonEntersVehicleEvent(0, id, vid));
+		events.addPersonEntersVehicle(id, vid);
 		flatplan.add(Agent.prepareAccessEntry(events.size() - 1, routeNo, accessid));
-		events.add(new PersonLeavesVehicleEvent(0, id, vid));
+		events.addPersonLeavesVehicle(id, vid);
 		flatplan.add(Agent.prepareEgressEntry(events.size() - 1, routeNo, egressid));
 	}
 
 	private void processPlanElement(
 			Person person,
 			PlanArray flatplan,
-			EventArray events,
+			EncodedEventArray events,
 			PlanElement element,
 			Agent agent) {
 		var id = person.getId();
@@ -484,7 +496,7 @@ class ScenarioImporter {
 				return;
 			}
 
-			events.add(new PersonDepartureEvent(0, id, route.getStartLinkId(), leg.getMode()));
+			events.addPersonDeparture(id, route.getStartLinkId(), leg.getMode());
 			if (route instanceof NetworkRoute) {
 				if (scenario.getConfig().hermes().getMainModes().contains(leg.getMode())) {
 					processPlanNetworkRoute(person, flatplan, events, leg, (NetworkRoute) route, agent);
@@ -500,7 +512,7 @@ class ScenarioImporter {
 				throw new RuntimeException("Route type not supported by Hermes: " + route.getRouteType() + "\n Person:" + id + "\n Leg" + leg + "\n Leg" + route);
 			}
 
-			events.add(new PersonArrivalEvent(0, id, route.getEndLinkId(), leg.getMode()));
+			events.addPersonArrival(id, route.getEndLinkId(), leg.getMode());
 
 		} else if (element instanceof Activity) {
 			processPlanActivity(id, flatplan, events, (Activity) element);
@@ -509,20 +521,20 @@ class ScenarioImporter {
 		}
 	}
 
-	private void processTeleport(Id<Person> id, PlanArray flatplan, EventArray events, Leg element, Route route, String mode) {
+	private void processTeleport(Id<Person> id, PlanArray flatplan, EncodedEventArray events, Leg element, Route route, String mode) {
 		double routeTravelTime = route.getTravelTime().orElse(0.0);
 		double legTravelTime = element.getTravelTime().orElse(0.0);
 		int time = Math.max(0, (int) Math.round(Math.max(routeTravelTime, legTravelTime)) - 2);
 		//2 second is deducted as this is the maximum possible loss during interaction activities
 		flatplan.add(Agent.prepareSleepForEntry(events.size() - 1, time));
-		events.add(new TeleportationArrivalEvent(0, id, route.getDistance(), mode));
+		events.addTeleportationArrival(id, route.getDistance(), mode);
 	}
 
 	private void generateAgent(
 			int agent_id,
 			int capacity,
 			PlanArray flatplan,
-			EventArray events) {
+			EncodedEventArray events) {
 
 		if (events.size() >= HermesConfigGroup.MAX_EVENTS_AGENT) {
 			throw new RuntimeException("exceeded maximum number of agent events");
@@ -552,7 +564,7 @@ class ScenarioImporter {
 	private static class TransitRouteContext {
 		final Agent agent;
 		final PlanArray flatplan;
-		final EventArray flatevents;
+		final EncodedEventArray flatevents;
 		final TransitLine tl;
 		final TransitRoute tr;
 		final int routeNo;
@@ -741,7 +753,7 @@ class ScenarioImporter {
 
 		TransitRouteContext context = new TransitRouteContext(agent, tl, tr, routeNo, depart, this.scenario.getNetwork());
 		PlanArray flatplan = agent.plan;
-		EventArray flatevents = agent.events;
+		EncodedEventArray flatevents = agent.events;
 
 		VehicleType vt = v.getType();
 		NetworkRoute nr = tr.getRoute();
@@ -751,10 +763,10 @@ class ScenarioImporter {
 
 		// Prepare to leave
 		flatevents.add(new TransitDriverStartsEvent(0, driverid, v.getId(), tl.getId(), tr.getId(), depart.getId()));
-		flatevents.add(new PersonDepartureEvent(0, driverid, nr.getStartLinkId(), legmode));
-		flatevents.add(new PersonEntersVehicleEvent(0, driverid, v.getId()));
+		flatevents.addPersonDeparture(driverid, nr.getStartLinkId(), legmode);
+		flatevents.addPersonEntersVehicle(driverid, v.getId());
 
-		flatevents.add(new VehicleEntersTrafficEvent(context.time, driverid, nr.getStartLinkId(), v.getId(), legmode, 1));
+		flatevents.addVehicleEntersTraffic(driverid, nr.getStartLinkId(), v.getId(), legmode);
 
 		// Sleep until the time of departure
 		//  the very first flat plan entry does not handle events, so actually add two entries, so the events are correctly handled
@@ -772,14 +784,14 @@ class ScenarioImporter {
 		// last link
 		generateDeterministicVehicleOnLink(context, nr.getEndLinkId(), true, false);
 
-		flatevents.add(new VehicleLeavesTrafficEvent(0, driverid, nr.getEndLinkId(), v.getId(), legmode, 1));
-		flatevents.add(new PersonLeavesVehicleEvent(0, driverid, v.getId()));
-		flatevents.add(new PersonArrivalEvent(0, driverid, nr.getEndLinkId(), legmode));
+		flatevents.addVehicleLeavesTraffic(driverid, nr.getEndLinkId(), v.getId(), legmode);
+		flatevents.addPersonLeavesVehicle(driverid, v.getId());
+		flatevents.addPersonArrival(driverid, nr.getEndLinkId(), legmode);
 	}
 
 	private void generateNondeterministicVehicleOnLink(TransitRouteContext c, Id<Link> linkId, boolean generateLinkEnterEvent, boolean generateLinkLeaveEvent, int velocity, int pcuCategory) {
 		if (generateLinkEnterEvent) {
-			c.flatevents.add(new LinkEnterEvent(0, c.vehId, linkId));
+			c.flatevents.addLinkEnter(c.vehId, linkId);
 			c.flatplan.add(Agent.prepareLinkEntry(c.flatevents.size() - 1, linkId.index(), velocity, pcuCategory));
 		}
 
@@ -812,7 +824,7 @@ class ScenarioImporter {
 		}
 
 		if (generateLinkLeaveEvent) {
-			c.flatevents.add(new LinkLeaveEvent(0, c.vehId, linkId));
+			c.flatevents.addLinkLeave(c.vehId, linkId);
 		}
 	}
 
@@ -825,7 +837,7 @@ class ScenarioImporter {
 		int routeNo = this.route_numbers.get(tl.getId()).get(tr.getId());
 		TransitRouteContext context = new TransitRouteContext(agent, tl, tr, routeNo, depart, this.scenario.getNetwork());
 		PlanArray flatplan = agent.plan;
-		EventArray flatevents = agent.events;
+		EncodedEventArray flatevents = agent.events;
 		Vehicle v = this.scenario.getTransitVehicles().getVehicles().get(depart.getVehicleId());
 		VehicleType vt = v.getType();
 		NetworkRoute nr = tr.getRoute();
@@ -841,9 +853,9 @@ class ScenarioImporter {
 
 		// Prepare to leave
 		flatevents.add(new TransitDriverStartsEvent(0, driverid, v.getId(), tl.getId(), tr.getId(), depart.getId()));
-		flatevents.add(new PersonDepartureEvent(0, driverid, nr.getStartLinkId(), legmode));
-		flatevents.add(new PersonEntersVehicleEvent(0, driverid, v.getId()));
-		flatevents.add(new VehicleEntersTrafficEvent(0, driverid, nr.getStartLinkId(), v.getId(), legmode, 1));
+		flatevents.addPersonDeparture(driverid, nr.getStartLinkId(), legmode);
+		flatevents.addPersonEntersVehicle(driverid, v.getId());
+		flatevents.addVehicleEntersTraffic(driverid, nr.getStartLinkId(), v.getId(), legmode);
 
 		generateNondeterministicVehicleOnLink(context, nr.getStartLinkId(), false, true, velocity, pcuCategory);
 
@@ -853,9 +865,9 @@ class ScenarioImporter {
 
 		generateNondeterministicVehicleOnLink(context, nr.getEndLinkId(), true, false, velocity, pcuCategory);
 
-		flatevents.add(new VehicleLeavesTrafficEvent(0, driverid, nr.getEndLinkId(), v.getId(), legmode, 1));
-		flatevents.add(new PersonLeavesVehicleEvent(0, driverid, v.getId()));
-		flatevents.add(new PersonArrivalEvent(0, driverid, nr.getEndLinkId(), legmode));
+		flatevents.addVehicleLeavesTraffic(driverid, nr.getEndLinkId(), v.getId(), legmode);
+		flatevents.addPersonLeavesVehicle(driverid, v.getId());
+		flatevents.addPersonArrival(driverid, nr.getEndLinkId(), legmode);
 	}
 
 	private void generateTransitVehiclePlans() {
@@ -887,10 +899,11 @@ class ScenarioImporter {
 		population.getPersons().values().parallelStream().forEach((person) -> {
 			int hermes_id = hermes_id(person.getId().index(), false);
 			PlanArray plan = hermes_agents[hermes_id].plan();
-			EventArray events = hermes_agents[hermes_id].events();
+			EncodedEventArray events = hermes_agents[hermes_id].events();
 			for (PlanElement element : person.getSelectedPlan().getPlanElements()) {
 				processPlanElement(person, plan, events, element, hermes_agents[hermes_id]);
 			}
+			events.trimToSize();
 		});
 	}
 
@@ -905,7 +918,7 @@ class ScenarioImporter {
 		for (Person person : population.getPersons().values()) {
 			int hermes_id = hermes_id(person.getId().index(), false);
 			assert hermes_agents[hermes_id] == null;
-			generateAgent(hermes_id, 0, new PlanArray(), new EventArray());
+			generateAgent(hermes_id, 0, new PlanArray(), new EncodedEventArray(eventStrings));
 		}
 
 		// Generate vehicles
@@ -914,7 +927,7 @@ class ScenarioImporter {
 			int capacity = vc.getSeats() + vc.getStandingRoom();
 			int hermes_id = hermes_id(vehicle.getId().index(), true);
 			assert hermes_agents[hermes_id] == null;
-			generateAgent(hermes_id, capacity, new PlanArray(), new EventArray());
+			generateAgent(hermes_id, capacity, new PlanArray(), new EncodedEventArray(eventStrings));
 		}
 	}
 
@@ -951,6 +964,10 @@ class ScenarioImporter {
 		return deterministicPtEvents;
 	}
 
+	public int getEventsFlushInterval() {
+		return eventsFlushInterval;
+	}
+
 	public boolean isDeterministicPt() {
 		return deterministicPt;
 	}
@@ -0,0 +1,208 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.core.mobsim.framework.MobsimAgent;
+
+/**
+ * A priority queue of agents that are waiting for a point in time, e.g. the end of their activity. Agents with
+ * earlier times come first, for equal times the agent with the larger id comes first.
+ *
+ * <p>Every entry knows its position in the underlying binary heap, so an agent can be removed in O(log n), e.g.
+ * when its activity end is rescheduled by within-day replanning, instead of searching the whole queue. The heap is
+ * maintained exactly like {@link java.util.PriorityQueue} does, so {@link #entries()} lists the agents in the same
+ * order as iterating over such a queue would.</p>
+ *
+ * <p>All methods are synchronized, since agents may be added from several threads in the parallel qsim.</p>
+ */
+public final class AgentTimeQueue {
+
+	public static final class Entry {
+		private final MobsimAgent agent;
+		private final double time;
+		private int index = -1;
+
+		private Entry(MobsimAgent agent, double time) {
+			this.agent = agent;
+			this.time = time;
+		}
+
+		public MobsimAgent getAgent() {
+			return this.agent;
+		}
+
+		public double getTime() {
+			return this.time;
+		}
+	}
+
+	private Entry[] heap = new Entry[64];
+	private int size = 0;
+	private final Map<MobsimAgent, Entry> entries = new IdentityHashMap<>();
+
+	/**
+	 * @throws IllegalStateException if the agent is already contained in this queue.
+	 */
+	public synchronized void add(MobsimAgent agent, double time) {
+		Entry entry = new Entry(agent, time);
+		if (this.entries.putIfAbsent(agent, entry) != null) {
+			throw new IllegalStateException("agent " + agent.getId() + " is already contained in the queue.");
+		}
+		if (this.size == this.heap.length) {
+			this.heap = Arrays.copyOf(this.heap, this.size * 2);
+		}
+		siftUp(this.size++, entry);
+	}
+
+	public synchronized Entry peek() {
+		return this.heap[0];
+	}
+
+	/**
+	 * @return the first entry if its time is not after <code>time</code>, otherwise <code>null</code>.
+	 */
+	public synchronized Entry pollUntil(double time) {
+		Entry first = this.heap[0];
+		if (first == null || first.time > time) {
+			return null;
+		}
+		removeAt(0);
+		return first;
+	}
+
+	public synchronized Entry poll() {
+		Entry first = this.heap[0];
+		if (first != null) {
+			removeAt(0);
+		}
+		return first;
+	}
+
+	/**
+	 * @return the removed entry of the agent, or <code>null</code> if the agent is not contained in this queue.
+	 */
+	public synchronized Entry remove(MobsimAgent agent) {
+		Entry entry = this.entries.get(agent);
+		if (entry != null) {
+			removeAt(entry.index);
+		}
+		return entry;
+	}
+
+	public synchronized boolean contains(MobsimAgent agent) {
+		return this.entries.containsKey(agent);
+	}
+
+	public synchronized int size() {
+		return this.size;
+	}
+
+	public synchronized boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * @return a snapshot of all entries, in the order of the underlying heap.
+	 */
+	public synchronized List<Entry> entries() {
+		List<Entry> list = new ArrayList<>(this.size);
+		for (int i = 0; i < this.size; i++) {
+			list.add(this.heap[i]);
+		}
+		return list;
+	}
+
+	public synchronized void clear() {
+		for (int i = 0; i < this.size; i++) {
+			this.heap[i].index = -1;
+			this.heap[i] = null;
+		}
+		this.size = 0;
+		this.entries.clear();
+	}
+
+	private void removeAt(int i) {
+		Entry removed = this.heap[i];
+		this.entries.remove(removed.agent);
+		removed.index = -1;
+		int last = --this.size;
+		if (last == i) {
+			this.heap[i] = null;
+		} else {
+			Entry moved = this.heap[last];
+			this.heap[last] = null;
+			siftDown(i, moved);
+			if (this.heap[i] == moved) {
+				siftUp(i, moved);
+			}
+		}
+	}
+
+	private void siftUp(int k, Entry entry) {
+		while (k > 0) {
+			int parent = (k - 1) >>> 1;
+			Entry e = this.heap[parent];
+			if (compare(entry, e) >= 0) {
+				break;
+			}
+			place(k, e);
+			k = parent;
+		}
+		place(k, entry);
+	}
+
+	private void siftDown(int k, Entry entry) {
+		int half = this.size >>> 1;
+		while (k < half) {
+			int child = (k << 1) + 1;
+			Entry c = this.heap[child];
+			int right = child + 1;
+			if (right < this.size && compare(c, this.heap[right]) > 0) {
+				c = this.heap[child = right];
+			}
+			if (compare(entry, c) <= 0) {
+				break;
+			}
+			place(k, c);
+			k = child;
+		}
+		place(k, entry);
+	}
+
+	private void place(int k, Entry entry) {
+		this.heap[k] = entry;
+		entry.index = k;
+	}
+
+	private static int compare(Entry e0, Entry e1) {
+		int cmp = Double.compare(e0.time, e1.time);
+		if (cmp == 0) {
+			// same time: the agent with the larger id comes first
+			return e1.agent.getId().compareTo(e0.agent.getId());
+		}
+		return cmp;
+	}
+}
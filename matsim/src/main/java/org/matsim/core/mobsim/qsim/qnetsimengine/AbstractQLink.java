@@ -86,6 +86,9 @@ abstract class AbstractQLink implements QLinkI {
 	// joint implementation for Customizable
 	private final Map<String, Object> customAttributes = new HashMap<>();
 
+	// number of time steps in which the link was simulated, only counted for the load balanced network partitioning
+	/*package*/ int simulatedSteps = 0;
+
 //	private final Map<Id<Vehicle>, QVehicle> parkedVehicles = new LinkedHashMap<>(10);
 	private final Map<Id<Vehicle>, QVehicle> parkedVehicles = new ConcurrentHashMap<>(10);
 
@@ -20,21 +20,25 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.ToDoubleFunction;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.QSimConfigGroup.LinkDynamics;
+import org.matsim.core.config.groups.QSimConfigGroup.NetworkPartitioning;
 import org.matsim.core.config.groups.QSimConfigGroup.SnapshotStyle;
 import org.matsim.core.config.groups.QSimConfigGroup.VehicleBehavior;
 import org.matsim.core.gbl.Gbl;
@@ -47,6 +51,7 @@ import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
 import org.matsim.core.utils.misc.Time;
+import org.matsim.utils.objectattributes.attributable.Attributable;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
 
@@ -85,6 +90,7 @@ abstract class AbstractQNetsimEngine<A extends AbstractQNetsimEngineRunner> impl
 	private final VehicularDepartureHandler dpHandler;
 //	private final Set<QLinkI> linksToActivateInitially = new HashSet<>();
 	protected final int numOfThreads;
+	private final NetworkPartitioning networkPartitioning;
 	protected final QNetwork network;
 
 	private double infoTime = 0;
@@ -130,6 +136,7 @@ abstract class AbstractQNetsimEngine<A extends AbstractQNetsimEngineRunner> impl
 		network.initialize(this, sim.getAgentCounter(), sim.getSimTimer() );
 
 		this.numOfThreads = sim.getScenario().getConfig().qsim().getNumberOfThreads();
+		this.networkPartitioning = qSimConfigGroup.getNetworkPartitioning();
 	}
 	
 	static AbstractAgentSnapshotInfoBuilder createAgentSnapshotInfoBuilder(Scenario scenario, SnapshotLinkWidthCalculator linkWidthCalculator) {
@@ -186,6 +193,29 @@ abstract class AbstractQNetsimEngine<A extends AbstractQNetsimEngineRunner> impl
 
 		finishMultiThreading();
 
+		for (int i = 0; i < this.engines.size(); i++) {
+			AbstractQNetsimEngineRunner engine = this.engines.get(i);
+			log.info("QSimEngineRunner #" + i + " spent " + engine.nodeNanos / 1_000_000 + " ms on nodes and "
+					+ engine.linkNanos / 1_000_000 + " ms on links");
+		}
+
+		// keep the load for the partitioning of the next iteration, but do not write it into the network
+		if (this.networkPartitioning == NetworkPartitioning.loadBalanced) {
+			double[] nodeLoads = new double[Id.getNumberOfIds(Node.class)];
+			for (QNodeI node : network.getNetsimNodes().values()) {
+				if (node instanceof AbstractQNode) {
+					nodeLoads[node.getNode().getId().index()] = ((AbstractQNode) node).simulatedSteps;
+				}
+			}
+			double[] linkLoads = new double[Id.getNumberOfIds(Link.class)];
+			for (QLinkI link : network.getNetsimLinks().values()) {
+				if (link instanceof AbstractQLink) {
+					linkLoads[link.getLink().getId().index()] = ((AbstractQLink) link).simulatedSteps;
+				}
+			}
+			QNetworkLoad.getOrCreate(this.qsim.getScenario()).setLoads(nodeLoads, linkLoads);
+		}
+
 		/* Reset vehicles on ALL links. We cannot iterate only over the active links
 		 * (this.simLinksArray), because there may be links that have vehicles only
 		 * in the buffer (such links are *not* active, as the buffer gets emptied
@@ -384,18 +414,29 @@ abstract class AbstractQNetsimEngine<A extends AbstractQNetsimEngineRunner> impl
 	 * to the Thread that handles its InNode.
 	 */
 	private void assignNetElementActivators() {
+		List<QNodeI> qNodes = new ArrayList<>(network.getNetsimNodes().values());
+		List<Node> nodes = new ArrayList<>(qNodes.size());
+		for (QNodeI node : qNodes) {
+			nodes.add(node.getNode());
+		}
+		int[] partitions = createPartitioner().partition(nodes, getNodeWeights(nodes), this.engines.size());
 
 		// only for statistics
-		int nodes[] = new int[this.engines.size()];
-		int links[] = new int[this.engines.size()];
+		int nodeCounts[] = new int[this.engines.size()];
+		int linkCounts[] = new int[this.engines.size()];
+		int cutLinks = 0;
+		Map<Id<Node>, Integer> partitionOfNode = new HashMap<>();
+		for (int n = 0; n < qNodes.size(); n++) {
+			partitionOfNode.put(nodes.get(n).getId(), partitions[n]);
+		}
 
-		int roundRobin = 0;
-		for (QNodeI node : network.getNetsimNodes().values()) {
-			int i = roundRobin % this.engines.size();
+		for (int n = 0; n < qNodes.size(); n++) {
+			QNodeI node = qNodes.get(n);
+			int i = partitions[n];
 			if( node instanceof AbstractQNode){
 				((AbstractQNode) node).setNetElementActivationRegistry(this.engines.get(i));
 			}
-			nodes[i]++;
+			nodeCounts[i]++;
 
 			// set activator for out links
 			for (Link outLink : node.getNode().getOutLinks().values()) {
@@ -415,21 +456,86 @@ abstract class AbstractQNetsimEngine<A extends AbstractQNetsimEngineRunner> impl
 //					this.engines.get(i).registerLinkAsActive(qLink);
 //				}
 
-				links[i]++;
-
+				linkCounts[i]++;
+				Integer toPartition = partitionOfNode.get(outLink.getToNode().getId());
+				if (toPartition != null && toPartition != i) {
+					cutLinks++;
+					this.engines.get(i).downstreamRunners.add(this.engines.get(toPartition));
+				}
 			}
+		}
 
-			roundRobin++;
+		for (A engine : this.engines) {
+			engine.countSimulatedSteps = this.networkPartitioning == NetworkPartitioning.loadBalanced;
 		}
 
 		// print some statistics
 		for (int i = 0; i < this.engines.size(); i++) {
-			log.info("Assigned " + nodes[i] + " nodes and " + links[i] + " links to QSimEngineRunner #" + i);
+			log.info("Assigned " + nodeCounts[i] + " nodes and " + linkCounts[i] + " links to QSimEngineRunner #" + i);
 		}
+		log.info(cutLinks + " links connect nodes of different QSimEngineRunners (network partitioning: " + this.networkPartitioning + ")");
 
 //		this.linksToActivateInitially.clear();
 	}
 
+	private QNetworkPartitioner createPartitioner() {
+		switch (this.networkPartitioning) {
+			case roundRobin:
+				return QNetworkPartitioner.ROUND_ROBIN;
+			case bisection:
+			case loadBalanced:
+				return new RecursiveBisectionPartitioner();
+			default:
+				throw new RuntimeException("Unknown network partitioning: " + this.networkPartitioning);
+		}
+	}
+
+	/**
+	 * Uses the load measured in the previous iteration, or else the load given in the {@link QSimConfigGroup#LOAD_ATTRIBUTE}
+	 * attributes of the input network. Without any load, the effort for a node and its outgoing links is assumed to be
+	 * proportional to their number.
+	 */
+	private ToDoubleFunction<Node> getNodeWeights(List<Node> nodes) {
+		ToDoubleFunction<Node> structuralWeights = node -> 1 + node.getOutLinks().size();
+		if (this.networkPartitioning != NetworkPartitioning.loadBalanced) {
+			return structuralWeights;
+		}
+		QNetworkLoad measuredLoad = QNetworkLoad.get(this.qsim.getScenario());
+		if (measuredLoad != null) {
+			return node -> {
+				double weight = 1 + measuredLoad.getNodeLoad(node.getId());
+				for (Link link : node.getOutLinks().values()) {
+					weight += measuredLoad.getLinkLoad(link.getId());
+				}
+				return weight;
+			};
+		}
+		// no load measured yet, use the one given in the input network, if any
+		boolean hasLoad = false;
+		for (Node node : nodes) {
+			hasLoad |= node.getAttributes().getAttribute(QSimConfigGroup.LOAD_ATTRIBUTE) != null;
+			for (Link link : node.getOutLinks().values()) {
+				hasLoad |= link.getAttributes().getAttribute(QSimConfigGroup.LOAD_ATTRIBUTE) != null;
+			}
+		}
+		if (hasLoad) {
+			return node -> {
+				double weight = 1 + getLoad(node);
+				for (Link link : node.getOutLinks().values()) {
+					weight += getLoad(link);
+				}
+				return weight;
+			};
+		}
+		log.info("No load measured yet and network has no " + QSimConfigGroup.LOAD_ATTRIBUTE + " attributes, balancing the number of nodes and links instead.");
+		return structuralWeights;
+	}
+
+	private static double getLoad(Attributable attributable) {
+		Object load = attributable.getAttributes().getAttribute(QSimConfigGroup.LOAD_ATTRIBUTE);
+		return load instanceof Number ? ((Number) load).doubleValue() : 0;
+	}
+
 	private final void arrangeNextAgentState(MobsimAgent pp) {
 		internalInterface.arrangeNextAgentState(pp);
 	}
@@ -21,10 +21,12 @@
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.matsim.core.mobsim.qsim.QSim;
@@ -70,6 +72,20 @@ abstract class AbstractQNetsimEngineRunner extends NetElementActivationRegistry
 	private boolean lockNodes = false;
 	private boolean lockLinks = false;
 
+	/*
+	 * Time spent in moveNodes() and moveLinks(), to check how well the network is partitioned.
+	 */
+	/*package*/ long nodeNanos = 0;
+	/*package*/ long linkNanos = 0;
+
+	/*
+	 * Runners handling the to-nodes of links handled by this runner. Their nodes read the buffers of these links.
+	 */
+	/*package*/ final Set<AbstractQNetsimEngineRunner> downstreamRunners = new LinkedHashSet<>();
+
+	// whether to count how often each node and link is simulated, see QSimConfigGroup.NetworkPartitioning.loadBalanced
+	/*package*/ boolean countSimulatedSteps = false;
+
 	/*package*/ long[] runTimes;
 	private long startTime = 0;
 	{	
@@ -84,31 +100,37 @@ abstract class AbstractQNetsimEngineRunner extends NetElementActivationRegistry
 	public abstract void afterSim() ;
 
 	protected void moveNodes() {
+		long start = System.nanoTime();
 		boolean remainsActive;
 		this.lockNodes = true;
 		QNodeI node;
 		Iterator<QNodeI> simNodes = this.nodesQueue.iterator();
 		while (simNodes.hasNext()) {
 			node = simNodes.next();
+			if (this.countSimulatedSteps && node instanceof AbstractQNode) ((AbstractQNode) node).simulatedSteps++;
 			remainsActive = node.doSimStep(time);
 			if (!remainsActive) simNodes.remove();
 		}
 		this.lockNodes = false;
+		this.nodeNanos += System.nanoTime() - start;
 	}
 	
 	protected final void moveLinks() {
+		long start = System.nanoTime();
 		boolean remainsActive;
 		lockLinks = true;
 		QLinkI link;
 		ListIterator<QLinkI> simLinks = this.linksList.listIterator();
 		while (simLinks.hasNext()) {
 			link = simLinks.next();
+			if (this.countSimulatedSteps && link instanceof AbstractQLink) ((AbstractQLink) link).simulatedSteps++;
 
 			remainsActive = link.doSimStep();
 
 			if (!remainsActive) simLinks.remove();
 		}
 		lockLinks = false;
+		this.linkNanos += System.nanoTime() - start;
 	}
 
 	/*
@@ -51,6 +51,8 @@ abstract class AbstractQNode implements QNodeI {
 	
 	final Node node;
 
+	// number of time steps in which the node was simulated, only counted for the load balanced network partitioning
+	/*package*/ int simulatedSteps = 0;
 	
 	
 	AbstractQNode(final Node n){
@@ -28,7 +28,16 @@ public class QNetsimEngineModule extends AbstractQSimModule {
 	
 	@Override
 	protected void configureQSim() {
-		bind(QNetsimEngineI.class).to(QNetsimEngineWithThreadpool.class).asEagerSingleton();
+		switch (getConfig().qsim().getNetsimEngineSynchronization()) {
+			case barrier:
+				bind(QNetsimEngineI.class).to(QNetsimEngineWithThreadpool.class).asEagerSingleton();
+				break;
+			case neighbours:
+				bind(QNetsimEngineI.class).to(QNetsimEngineWithLocalClocks.class).asEagerSingleton();
+				break;
+			default:
+				throw new RuntimeException("Unknown netsim engine synchronization: " + getConfig().qsim().getNetsimEngineSynchronization());
+		}
 
 		bind(VehicularDepartureHandler.class).toProvider(QNetsimEngineDepartureHandlerProvider.class).asEagerSingleton();
 
@@ -0,0 +1,115 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetsimEngineRunnerWithLocalClock.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.matsim.core.gbl.Gbl;
+
+/**
+ * A runner of the {@link QNetsimEngineWithLocalClocks}, running in its own thread.
+ */
+final class QNetsimEngineRunnerWithLocalClock extends AbstractQNetsimEngineRunner implements Runnable {
+
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 100;
+	private static final long PARK_NANOS = 10_000;
+
+	private final QNetsimEngineWithLocalClocks engine;
+	private QNetsimEngineRunnerWithLocalClock[] downstream;
+
+	private volatile boolean simulationRunning = true;
+
+	/*
+	 * The runner-local clock: the last time step for which this runner has moved its nodes.
+	 */
+	private volatile long nodesStep = 0;
+
+	QNetsimEngineRunnerWithLocalClock(QNetsimEngineWithLocalClocks engine) {
+		this.engine = engine;
+	}
+
+	/*package*/ void initDownstreamRunners() {
+		this.downstream = this.downstreamRunners.toArray(new QNetsimEngineRunnerWithLocalClock[0]);
+	}
+
+	@Override
+	public void run() {
+		long linksStep = 0;
+		while (true) {
+			long step = linksStep + 1;
+			int idle = 0;
+			while (this.engine.getStep() < step) {
+				if (!this.simulationRunning) {
+					Gbl.printCurrentThreadCpuTime();
+					return;
+				}
+				// park until the engine starts the next time step
+				idle = idle(idle, 0);
+			}
+
+			try {
+				moveNodes();
+				this.nodesStep = step;
+
+				// the nodes of the downstream runners must have emptied the buffers of our links before we refill them
+				for (QNetsimEngineRunnerWithLocalClock runner : this.downstream) {
+					idle = 0;
+					while (runner.nodesStep < step) {
+						idle = idle(idle, PARK_NANOS);
+					}
+				}
+
+				moveLinks();
+			} catch (Throwable e) {
+				// let downstream runners waiting for this one proceed, the engine fails anyway
+				this.nodesStep = Long.MAX_VALUE;
+				this.engine.runnerFailed(e);
+				return;
+			}
+			linksStep = step;
+			this.engine.runnerFinished();
+		}
+	}
+
+	@Override
+	public void afterSim() {
+		this.simulationRunning = false;
+	}
+
+	/**
+	 * Spins, then yields, then parks the thread for the given time, or until it is unparked if the time is 0.
+	 *
+	 * @return the number of times the thread waited
+	 */
+	static int idle(int idle, long parkNanos) {
+		if (idle < SPIN_TRIES) {
+			Thread.onSpinWait();
+		} else if (idle < SPIN_TRIES + YIELD_TRIES) {
+			Thread.yield();
+		} else if (parkNanos > 0) {
+			LockSupport.parkNanos(parkNanos);
+		} else {
+			LockSupport.park();
+		}
+		return idle + 1;
+	}
+}
@@ -0,0 +1,144 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetsimEngineWithLocalClocks.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.inject.Inject;
+
+import org.matsim.core.mobsim.qsim.QSim;
+
+/**
+ * Coordinates the movement of vehicles on the links and the nodes, like {@link QNetsimEngineWithThreadpool}, but
+ * without a barrier between moving the nodes and moving the links.
+ *
+ * Each runner has its own thread and clock. It moves its nodes and then waits only for the runners whose nodes read
+ * the buffers of its links (see {@link AbstractQNetsimEngineRunner#downstreamRunners}) before moving its links. A
+ * runner that is slow on the nodes therefore only delays its upstream neighbours, and the link phase of one runner can
+ * overlap with the node phase of another. The engine still waits for all runners at the end of each time step,
+ * because the other mobsim engines run in between.
+ *
+ * Every node and link is moved in the same phase and with the same inputs as with the barrier, so vehicles move
+ * exactly as in {@link QNetsimEngineWithThreadpool}, and the events of each vehicle come in the same order. Only the
+ * interleaving of events of different runners within a time step differs, which is not deterministic in either
+ * engine.
+ *
+ * @see org.matsim.core.config.groups.QSimConfigGroup.NetsimEngineSynchronization
+ */
+final class QNetsimEngineWithLocalClocks extends AbstractQNetsimEngine<QNetsimEngineRunnerWithLocalClock> {
+
+	private final int numOfRunners;
+	private List<Thread> threads;
+
+	/*
+	 * The runners work on a time step as soon as this counter exceeds the last step they worked on.
+	 */
+	private volatile long step = 0;
+	private final AtomicInteger pendingRunners = new AtomicInteger();
+	private volatile Thread waitingThread;
+	private volatile Throwable exception;
+
+	public QNetsimEngineWithLocalClocks(final QSim sim) {
+		this(sim, null);
+	}
+
+	@Inject
+	public QNetsimEngineWithLocalClocks(final QSim sim, QNetworkFactory netsimNetworkFactory) {
+		super(sim, netsimNetworkFactory);
+		this.numOfRunners = this.numOfThreads;
+	}
+
+	@Override
+	protected List<QNetsimEngineRunnerWithLocalClock> initQSimEngineRunners() {
+		List<QNetsimEngineRunnerWithLocalClock> engines = new ArrayList<>();
+		for (int i = 0; i < numOfRunners; i++) {
+			engines.add(new QNetsimEngineRunnerWithLocalClock(this));
+		}
+		return engines;
+	}
+
+	@Override
+	protected void initMultiThreading() {
+		this.threads = new ArrayList<>();
+		int i = 0;
+		for (QNetsimEngineRunnerWithLocalClock engine : this.getQnetsimEngineRunner()) {
+			engine.initDownstreamRunners();
+			Thread thread = new Thread(engine, "QNetsimEngine_LocalClockThread_" + i++);
+			thread.setDaemon(true);
+			this.threads.add(thread);
+			thread.start();
+		}
+	}
+
+	@Override
+	protected void run(double time) {
+		for (AbstractQNetsimEngineRunner engine : this.getQnetsimEngineRunner()) {
+			engine.setTime(time);
+		}
+
+		this.waitingThread = Thread.currentThread();
+		this.pendingRunners.set(this.threads.size());
+		this.step++;
+		for (Thread thread : this.threads) {
+			LockSupport.unpark(thread);
+		}
+
+		int idle = 0;
+		while (this.pendingRunners.get() > 0 && this.exception == null) {
+			idle = QNetsimEngineRunnerWithLocalClock.idle(idle, 0);
+		}
+		if (this.exception != null) {
+			throw new RuntimeException(this.exception);
+		}
+	}
+
+	@Override
+	protected void finishMultiThreading() {
+		for (Thread thread : this.threads) {
+			LockSupport.unpark(thread);
+		}
+		try {
+			for (Thread thread : this.threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/*package*/ long getStep() {
+		return this.step;
+	}
+
+	/*package*/ void runnerFinished() {
+		if (this.pendingRunners.decrementAndGet() == 0) {
+			LockSupport.unpark(this.waitingThread);
+		}
+	}
+
+	/*package*/ void runnerFailed(Throwable e) {
+		this.exception = e;
+		LockSupport.unpark(this.waitingThread);
+	}
+}
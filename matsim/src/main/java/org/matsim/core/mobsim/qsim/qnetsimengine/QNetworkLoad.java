@@ -0,0 +1,77 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetworkLoad.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * The simulation load of nodes and links measured by the {@link AbstractQNetsimEngine} for
+ * {@link org.matsim.core.config.groups.QSimConfigGroup.NetworkPartitioning#loadBalanced}. It is kept as a scenario
+ * element, so the partitioning of the next iteration can use it without the load being written to the network.
+ */
+final class QNetworkLoad {
+
+	static final String ELEMENT_NAME = "qnetsimEngineLoad";
+
+	private double[] nodeLoads = new double[0];
+	private double[] linkLoads = new double[0];
+
+	private QNetworkLoad() {
+	}
+
+	/**
+	 * @return the load measured in an earlier mobsim, or <code>null</code> if none was measured yet
+	 */
+	static QNetworkLoad get(Scenario scenario) {
+		return (QNetworkLoad) scenario.getScenarioElement(ELEMENT_NAME);
+	}
+
+	static QNetworkLoad getOrCreate(Scenario scenario) {
+		QNetworkLoad load = get(scenario);
+		if (load == null) {
+			load = new QNetworkLoad();
+			scenario.addScenarioElement(ELEMENT_NAME, load);
+		}
+		return load;
+	}
+
+	/**
+	 * @param nodeLoads the load per node, indexed by {@link Id#index()}
+	 * @param linkLoads the load per link, indexed by {@link Id#index()}
+	 */
+	void setLoads(double[] nodeLoads, double[] linkLoads) {
+		this.nodeLoads = nodeLoads;
+		this.linkLoads = linkLoads;
+	}
+
+	double getNodeLoad(Id<Node> nodeId) {
+		int index = nodeId.index();
+		return index < this.nodeLoads.length ? this.nodeLoads[index] : 0;
+	}
+
+	double getLinkLoad(Id<Link> linkId) {
+		int index = linkId.index();
+		return index < this.linkLoads.length ? this.linkLoads[index] : 0;
+	}
+}
@@ -0,0 +1,54 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetworkPartitioner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * Assigns the nodes of the network, together with their outgoing links, to the runners of the
+ * {@link AbstractQNetsimEngine}.
+ *
+ * @see org.matsim.core.config.groups.QSimConfigGroup.NetworkPartitioning
+ */
+interface QNetworkPartitioner {
+
+	/**
+	 * @param nodes the nodes to partition
+	 * @param weights the simulation effort of a node and its outgoing links; partitions should have similar weights
+	 * @param numberOfPartitions the number of runners
+	 * @return the partition, from 0 to numberOfPartitions - 1, of each node in the list
+	 */
+	int[] partition(List<? extends Node> nodes, ToDoubleFunction<Node> weights, int numberOfPartitions);
+
+	/**
+	 * Assigns the nodes in turn, without looking at the network or the weights.
+	 */
+	QNetworkPartitioner ROUND_ROBIN = (nodes, weights, numberOfPartitions) -> {
+		int[] partitions = new int[nodes.size()];
+		for (int i = 0; i < partitions.length; i++) {
+			partitions[i] = i % numberOfPartitions;
+		}
+		return partitions;
+	};
+}
@@ -0,0 +1,497 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RecursiveBisectionPartitioner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * Partitions the network by recursive multilevel bisection, in the spirit of METIS: neighbouring nodes end up in the
+ * same partition, so few links connect nodes of different runners, while the partitions have similar weights.
+ *
+ * Each bisection first coarsens the graph by repeatedly merging pairs of neighbouring nodes along the most heavily
+ * connected edges, splits the coarsest graph by growing one part from a seed node, and then projects the split back
+ * to the original graph, moving boundary nodes to the other side where this reduces the number of cut links
+ * without violating the balance. The partitioning is deterministic.
+ */
+final class RecursiveBisectionPartitioner implements QNetworkPartitioner {
+
+	// graphs are coarsened until they have at most this many vertices
+	private static final int COARSEST_SIZE = 100;
+	// stop coarsening if a step merges less than this share of the vertices
+	private static final double MIN_COARSENING = 0.05;
+	// allowed deviation of a part from its target weight
+	private static final double IMBALANCE = 0.03;
+	private static final int REFINEMENT_PASSES = 8;
+	private static final int INITIAL_BISECTIONS = 4;
+
+	@Override
+	public int[] partition(List<? extends Node> nodes, ToDoubleFunction<Node> weights, int numberOfPartitions) {
+		int[] partitions = new int[nodes.size()];
+		if (numberOfPartitions > 1 && !nodes.isEmpty()) {
+			Graph graph = Graph.create(nodes, weights);
+			int[] ids = new int[graph.n];
+			Arrays.setAll(ids, i -> i);
+			partition(graph, ids, numberOfPartitions, 0, partitions, new Random(4711));
+		}
+		return partitions;
+	}
+
+	private static void partition(Graph graph, int[] ids, int numberOfPartitions, int firstPartition, int[] partitions, Random random) {
+		if (numberOfPartitions == 1 || graph.n == 0) {
+			for (int id : ids) {
+				partitions[id] = firstPartition;
+			}
+			return;
+		}
+		int first = numberOfPartitions / 2;
+		int[] where = bisect(graph, (double) first / numberOfPartitions, random);
+		for (int side = 0; side < 2; side++) {
+			int[] subIds = new int[graph.n];
+			Graph subGraph = graph.subGraph(where, side, ids, subIds);
+			subIds = Arrays.copyOf(subIds, subGraph.n);
+			if (side == 0) {
+				partition(subGraph, subIds, first, firstPartition, partitions, random);
+			} else {
+				partition(subGraph, subIds, numberOfPartitions - first, firstPartition + first, partitions, random);
+			}
+		}
+	}
+
+	/**
+	 * @return the side (0 or 1) of each vertex, side 0 having the given fraction of the total weight.
+	 */
+	static int[] bisect(Graph graph, double fraction, Random random) {
+		List<Graph> levels = new ArrayList<>();
+		List<int[]> maps = new ArrayList<>();
+		Graph coarsest = graph;
+		while (coarsest.n > COARSEST_SIZE) {
+			int[] map = new int[coarsest.n];
+			Graph coarse = coarsest.coarsen(map, random);
+			if (coarse.n > (1 - MIN_COARSENING) * coarsest.n) {
+				break;
+			}
+			levels.add(coarsest);
+			maps.add(map);
+			coarsest = coarse;
+		}
+
+		int[] where = initialBisection(coarsest, fraction, random);
+		for (int level = levels.size() - 1; level >= 0; level--) {
+			Graph fine = levels.get(level);
+			int[] map = maps.get(level);
+			int[] fineWhere = new int[fine.n];
+			for (int v = 0; v < fine.n; v++) {
+				fineWhere[v] = where[map[v]];
+			}
+			where = fineWhere;
+			fine.refine(where, fraction);
+		}
+		return where;
+	}
+
+	private static int[] initialBisection(Graph graph, double fraction, Random random) {
+		int[] best = null;
+		long bestCut = Long.MAX_VALUE;
+		for (int i = 0; i < INITIAL_BISECTIONS && i < graph.n; i++) {
+			int seed = i == 0 ? graph.peripheralVertex() : random.nextInt(graph.n);
+			int[] where = graph.grow(seed, fraction * graph.totalWeight);
+			graph.refine(where, fraction);
+			long cut = graph.cut(where);
+			if (cut < bestCut) {
+				best = where;
+				bestCut = cut;
+			}
+		}
+		return best == null ? new int[graph.n] : best;
+	}
+
+	/**
+	 * An undirected graph in compressed adjacency form. The edge weight is the number of links between two nodes.
+	 */
+	static final class Graph {
+		final int n;
+		final int[] xadj;
+		final int[] adjncy;
+		final int[] adjwgt;
+		final double[] vwgt;
+		final double totalWeight;
+		final double maxVertexWeight;
+
+		Graph(int n, int[] xadj, int[] adjncy, int[] adjwgt, double[] vwgt) {
+			this.n = n;
+			this.xadj = xadj;
+			this.adjncy = adjncy;
+			this.adjwgt = adjwgt;
+			this.vwgt = vwgt;
+			double total = 0;
+			double max = 0;
+			for (int v = 0; v < n; v++) {
+				total += vwgt[v];
+				max = Math.max(max, vwgt[v]);
+			}
+			this.totalWeight = total;
+			this.maxVertexWeight = max;
+		}
+
+		static Graph create(List<? extends Node> nodes, ToDoubleFunction<Node> weights) {
+			int n = nodes.size();
+			Map<Id<Node>, Integer> index = new HashMap<>();
+			for (int i = 0; i < n; i++) {
+				index.put(nodes.get(i).getId(), i);
+			}
+			double[] vwgt = new double[n];
+			int[] xadj = new int[n + 1];
+			EdgeList edges = new EdgeList();
+			int[] neighbours = new int[16];
+			for (int v = 0; v < n; v++) {
+				Node node = nodes.get(v);
+				vwgt[v] = weights.applyAsDouble(node);
+				int count = 0;
+				for (int direction = 0; direction < 2; direction++) {
+					for (Link link : (direction == 0 ? node.getOutLinks() : node.getInLinks()).values()) {
+						Integer u = index.get((direction == 0 ? link.getToNode() : link.getFromNode()).getId());
+						if (u != null && u != v) {
+							if (count == neighbours.length) {
+								neighbours = Arrays.copyOf(neighbours, 2 * count);
+							}
+							neighbours[count++] = u;
+						}
+					}
+				}
+				Arrays.sort(neighbours, 0, count);
+				for (int i = 0; i < count; i++) {
+					if (i > 0 && neighbours[i] == neighbours[i - 1]) {
+						edges.weights[edges.size - 1]++;
+					} else {
+						edges.add(neighbours[i], 1);
+					}
+				}
+				xadj[v + 1] = edges.size;
+			}
+			return new Graph(n, xadj, edges.trimmedVertices(), edges.trimmedWeights(), vwgt);
+		}
+
+		/**
+		 * Merges each vertex with at most one neighbour, preferring heavy edges.
+		 *
+		 * @param map filled with the coarse vertex of each vertex of this graph
+		 */
+		Graph coarsen(int[] map, Random random) {
+			int[] match = new int[n];
+			Arrays.fill(match, -1);
+			double maxWeight = Math.max(1.5 * this.totalWeight / COARSEST_SIZE, this.maxVertexWeight);
+			int cn = 0;
+			for (int v : permutation(n, random)) {
+				if (match[v] >= 0) {
+					continue;
+				}
+				int best = v;
+				int bestWeight = 0;
+				for (int e = xadj[v]; e < xadj[v + 1]; e++) {
+					int u = adjncy[e];
+					if (match[u] < 0 && adjwgt[e] > bestWeight && vwgt[v] + vwgt[u] <= maxWeight) {
+						best = u;
+						bestWeight = adjwgt[e];
+					}
+				}
+				match[v] = best;
+				match[best] = v;
+				map[v] = cn;
+				map[best] = cn;
+				cn++;
+			}
+
+			int[] representative = new int[cn];
+			for (int v = 0; v < n; v++) {
+				if (v <= match[v]) {
+					representative[map[v]] = v;
+				}
+			}
+			double[] cvwgt = new double[cn];
+			int[] cxadj = new int[cn + 1];
+			EdgeList edges = new EdgeList();
+			int[] position = new int[cn];
+			Arrays.fill(position, -1);
+			for (int c = 0; c < cn; c++) {
+				int start = edges.size;
+				int v = representative[c];
+				int u = match[v];
+				for (int x = v; ; x = u) {
+					cvwgt[c] += vwgt[x];
+					for (int e = xadj[x]; e < xadj[x + 1]; e++) {
+						int cu = map[adjncy[e]];
+						if (cu == c) {
+							continue;
+						}
+						if (position[cu] >= 0) {
+							edges.weights[position[cu]] += adjwgt[e];
+						} else {
+							position[cu] = edges.size;
+							edges.add(cu, adjwgt[e]);
+						}
+					}
+					if (x == u) {
+						break;
+					}
+				}
+				for (int i = start; i < edges.size; i++) {
+					position[edges.vertices[i]] = -1;
+				}
+				cxadj[c + 1] = edges.size;
+			}
+			return new Graph(cn, cxadj, edges.trimmedVertices(), edges.trimmedWeights(), cvwgt);
+		}
+
+		/** Returns a vertex that is far away from vertex 0, found by a breadth-first search. */
+		int peripheralVertex() {
+			int last = 0;
+			boolean[] visited = new boolean[n];
+			ArrayDeque<Integer> queue = new ArrayDeque<>();
+			queue.add(0);
+			visited[0] = true;
+			while (!queue.isEmpty()) {
+				last = queue.poll();
+				for (int e = xadj[last]; e < xadj[last + 1]; e++) {
+					int u = adjncy[e];
+					if (!visited[u]) {
+						visited[u] = true;
+						queue.add(u);
+					}
+				}
+			}
+			return last;
+		}
+
+		/** Grows side 0 breadth-first from the seed until it has the target weight. */
+		int[] grow(int seed, double targetWeight) {
+			int[] where = new int[n];
+			Arrays.fill(where, 1);
+			ArrayDeque<Integer> queue = new ArrayDeque<>();
+			double weight = 0;
+			int next = 0;
+			where[seed] = 0;
+			queue.add(seed);
+			while (weight < targetWeight) {
+				if (queue.isEmpty()) {
+					// disconnected graph, continue with another component
+					while (next < n && where[next] == 0) {
+						next++;
+					}
+					if (next == n) {
+						break;
+					}
+					where[next] = 0;
+					queue.add(next);
+				}
+				int v = queue.poll();
+				weight += vwgt[v];
+				for (int e = xadj[v]; e < xadj[v + 1]; e++) {
+					int u = adjncy[e];
+					if (where[u] == 1) {
+						where[u] = 0;
+						queue.add(u);
+					}
+				}
+			}
+			// vertices that were queued but not reached belong to side 1
+			for (int v : queue) {
+				where[v] = 1;
+			}
+			return where;
+		}
+
+		/** Moves vertices between the sides to restore the balance and to reduce the cut. */
+		void refine(int[] where, double fraction) {
+			double[] target = { fraction * this.totalWeight, (1 - fraction) * this.totalWeight };
+			double[] max = { target[0] * (1 + IMBALANCE) + this.maxVertexWeight, target[1] * (1 + IMBALANCE) + this.maxVertexWeight };
+			double[] weight = new double[2];
+			for (int v = 0; v < n; v++) {
+				weight[where[v]] += vwgt[v];
+			}
+			balance(where, weight, max);
+
+			for (int pass = 0; pass < REFINEMENT_PASSES; pass++) {
+				int moved = 0;
+				for (int v = 0; v < n; v++) {
+					int side = where[v];
+					int other = 1 - side;
+					int gain = gain(v, where);
+					if (gain < 0 || !hasNeighbourOn(v, other, where) || weight[other] + vwgt[v] > max[other]) {
+						continue;
+					}
+					// moves without gain are only made if they improve the balance
+					if (gain > 0 || weight[side] - target[side] > weight[other] + vwgt[v] - target[other]) {
+						where[v] = other;
+						weight[side] -= vwgt[v];
+						weight[other] += vwgt[v];
+						moved++;
+					}
+				}
+				if (moved == 0) {
+					break;
+				}
+			}
+		}
+
+		private void balance(int[] where, double[] weight, double[] max) {
+			for (int side = 0; side < 2; side++) {
+				if (weight[side] <= max[side]) {
+					continue;
+				}
+				int other = 1 - side;
+				List<int[]> candidates = new ArrayList<>();
+				for (int v = 0; v < n; v++) {
+					if (where[v] == side) {
+						candidates.add(new int[] { v, gain(v, where) });
+					}
+				}
+				candidates.sort((a, b) -> Integer.compare(b[1], a[1]));
+				for (int[] candidate : candidates) {
+					int v = candidate[0];
+					if (weight[side] <= max[side]) {
+						break;
+					}
+					if (weight[other] + vwgt[v] <= max[other]) {
+						where[v] = other;
+						weight[side] -= vwgt[v];
+						weight[other] += vwgt[v];
+					}
+				}
+			}
+		}
+
+		/** Returns by how much the cut shrinks if the vertex is moved to the other side. */
+		private int gain(int v, int[] where) {
+			int gain = 0;
+			for (int e = xadj[v]; e < xadj[v + 1]; e++) {
+				gain += where[adjncy[e]] == where[v] ? -adjwgt[e] : adjwgt[e];
+			}
+			return gain;
+		}
+
+		private boolean hasNeighbourOn(int v, int side, int[] where) {
+			for (int e = xadj[v]; e < xadj[v + 1]; e++) {
+				if (where[adjncy[e]] == side) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/** Returns the total weight of the edges between the two sides. */
+		long cut(int[] where) {
+			long cut = 0;
+			for (int v = 0; v < n; v++) {
+				for (int e = xadj[v]; e < xadj[v + 1]; e++) {
+					if (where[adjncy[e]] != where[v]) {
+						cut += adjwgt[e];
+					}
+				}
+			}
+			return cut / 2;
+		}
+
+		/**
+		 * Returns the graph induced by the vertices on the given side.
+		 *
+		 * @param subIds filled with the id of each vertex of the subgraph
+		 */
+		Graph subGraph(int[] where, int side, int[] ids, int[] subIds) {
+			int[] index = new int[n];
+			int m = 0;
+			for (int v = 0; v < n; v++) {
+				if (where[v] == side) {
+					subIds[m] = ids[v];
+					index[v] = m++;
+				} else {
+					index[v] = -1;
+				}
+			}
+			double[] subVwgt = new double[m];
+			int[] subXadj = new int[m + 1];
+			EdgeList edges = new EdgeList();
+			for (int v = 0; v < n; v++) {
+				int sv = index[v];
+				if (sv < 0) {
+					continue;
+				}
+				subVwgt[sv] = vwgt[v];
+				for (int e = xadj[v]; e < xadj[v + 1]; e++) {
+					int su = index[adjncy[e]];
+					if (su >= 0) {
+						edges.add(su, adjwgt[e]);
+					}
+				}
+				subXadj[sv + 1] = edges.size;
+			}
+			return new Graph(m, subXadj, edges.trimmedVertices(), edges.trimmedWeights(), subVwgt);
+		}
+
+		private static int[] permutation(int n, Random random) {
+			int[] permutation = new int[n];
+			for (int i = 0; i < n; i++) {
+				permutation[i] = i;
+			}
+			for (int i = n - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int tmp = permutation[i];
+				permutation[i] = permutation[j];
+				permutation[j] = tmp;
+			}
+			return permutation;
+		}
+	}
+
+	private static final class EdgeList {
+		int[] vertices = new int[64];
+		int[] weights = new int[64];
+		int size = 0;
+
+		void add(int vertex, int weight) {
+			if (size == vertices.length) {
+				vertices = Arrays.copyOf(vertices, 2 * size);
+				weights = Arrays.copyOf(weights, 2 * size);
+			}
+			vertices[size] = vertex;
+			weights[size] = weight;
+			size++;
+		}
+
+		int[] trimmedVertices() {
+			return Arrays.copyOf(vertices, size);
+		}
+
+		int[] trimmedWeights() {
+			return Arrays.copyOf(weights, size);
+		}
+	}
+}
@@ -0,0 +1,273 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationReaderMatsimV6.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2021 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parallel implementation of the PopulationReaderMatsimV6. The main thread only reads
+ * the file, collects the xml data of each person and creates empty person objects which
+ * are added to the population to ensure that their order is not changed. Note that this
+ * approach is not compatible with population streaming. When this feature is activated,
+ * the non-parallel reader is used.
+ *
+ * The parallel threads interpret the xml data for each person, i.e. they create the plans,
+ * activities, legs and routes, and convert the attributes.
+ */
+/* deliberately package */ class ParallelPopulationReaderMatsimV6 extends PopulationReaderMatsimV6 {
+
+	private static final Logger log = Logger.getLogger(ParallelPopulationReaderMatsimV6.class);
+
+	/* minimal number of tags handed over to a thread at once, reduces the synchronization overhead of the queue */
+	private static final int BATCH_SIZE = 1000;
+
+	private final boolean isPopulationStreaming;
+	private final int numThreads;
+	private final Scenario scenario;
+	private final Population population;
+	private final BlockingQueue<List<Tag>> queue;
+	private final Map<Class<?>, AttributeConverter<?>> attributeConverters = new HashMap<>();
+	private final AtomicReference<Throwable> exception = new AtomicReference<>();
+
+	private Thread[] threads = null;
+	private List<Tag> currentBatch = null;
+	private boolean isInPerson = false;
+
+	ParallelPopulationReaderMatsimV6(
+			final String inputCRS,
+			final String targetCRS,
+			final Scenario scenario) {
+		super(inputCRS, targetCRS, scenario);
+		this.scenario = scenario;
+		this.population = scenario.getPopulation();
+
+		if (scenario.getPopulation() instanceof StreamingPopulationReader.StreamingPopulation) {
+			log.warn("Population streaming is activated - cannot use " + ParallelPopulationReaderMatsimV6.class.getName() + "!");
+			this.isPopulationStreaming = true;
+			this.numThreads = 1;
+			this.queue = null;
+		} else {
+			this.isPopulationStreaming = false;
+			this.numThreads = Math.max(1, scenario.getConfig().global().getNumberOfThreads());
+			// bounded, so the main thread cannot read the whole file into memory if the threads are slower
+			this.queue = new ArrayBlockingQueue<>(4 * this.numThreads);
+		}
+	}
+
+	@Override
+	public void putAttributeConverter(final Class<?> clazz, AttributeConverter<?> converter) {
+		super.putAttributeConverter(clazz, converter);
+		this.attributeConverters.put(clazz, converter);
+	}
+
+	@Override
+	public void putAttributeConverters(final Map<Class<?>, AttributeConverter<?>> converters) {
+		super.putAttributeConverters(converters);
+		this.attributeConverters.putAll(converters);
+	}
+
+	/*
+	 * The threads are only started with the first person, so they use the coordinate transformation
+	 * that might have been set by the attributes of the population.
+	 */
+	private void initThreads() {
+		log.info("Start parallel population reading with " + this.numThreads + " threads...");
+		this.threads = new Thread[this.numThreads];
+		for (int i = 0; i < this.numThreads; i++) {
+			ParallelPopulationReaderMatsimV6Runner runner =
+					new ParallelPopulationReaderMatsimV6Runner(
+							this.scenario,
+							this.coordinateTransformation,
+							this.attributeConverters,
+							this.queue);
+
+			Thread thread = new Thread(runner);
+			thread.setDaemon(true);
+			thread.setName(ParallelPopulationReaderMatsimV6Runner.class.getSimpleName() + i);
+			// the main thread checks for exceptions while waiting for the queue or the threads, see putBatch() and endDocument()
+			thread.setUncaughtExceptionHandler((t, e) -> this.exception.compareAndSet(null, e));
+			this.threads[i] = thread;
+			thread.start();
+		}
+		this.currentBatch = new ArrayList<>();
+	}
+
+	@Override
+	public void startTag(String name, Attributes atts, Stack<String> context) {
+		// if population streaming is activated, use non-parallel reader
+		if (this.isPopulationStreaming) {
+			super.startTag(name, atts, context);
+			return;
+		}
+
+		if (PERSON.equals(name)) {
+			if (this.threads == null) {
+				initThreads();
+			}
+			// create the person here, so the order of the persons in the population is the same as in the file
+			Person person = PopulationUtils.getFactory().createPerson(Id.create(atts.getValue("id"), Person.class));
+			this.population.addPerson(person);
+			PersonTag personTag = new PersonTag();
+			personTag.person = person;
+			this.currentBatch.add(personTag);
+			this.isInPerson = true;
+		} else if (this.isInPerson) {
+			StartTag tag = new StartTag();
+			tag.name = name;
+			tag.atts = new AttributesImpl(atts); // We have to create copies of the attributes because the object is re-used by the parser!
+			this.currentBatch.add(tag);
+		} else {
+			super.startTag(name, atts, context);
+		}
+	}
+
+	@Override
+	public void endTag(String name, String content, Stack<String> context) {
+		// if population streaming is activated, use non-parallel reader
+		if (this.isPopulationStreaming) {
+			super.endTag(name, content, context);
+			return;
+		}
+
+		if (this.isInPerson) {
+			if (PERSON.equals(name)) {
+				this.isInPerson = false;
+				if (this.currentBatch.size() >= BATCH_SIZE) {
+					putBatch(this.currentBatch);
+					this.currentBatch = new ArrayList<>();
+				}
+			} else {
+				EndTag tag = new EndTag();
+				tag.name = name;
+				tag.content = content;
+				this.currentBatch.add(tag);
+			}
+		} else {
+			super.endTag(name, content, context);
+		}
+	}
+
+	@Override
+	public void endDocument() throws SAXException {
+		if (this.threads != null) {
+			if (!this.currentBatch.isEmpty()) {
+				putBatch(this.currentBatch);
+			}
+			this.currentBatch = null;
+
+			// signal the threads that they should end parsing
+			for (int i = 0; i < this.numThreads; i++) {
+				List<Tag> list = new ArrayList<>();
+				list.add(new EndProcessingTag());
+				putBatch(list);
+			}
+
+			// wait for the threads to finish. If one of them failed, the others might never get their end marker,
+			// so stop waiting then; rethrowException() interrupts them.
+			try {
+				for (Thread thread : this.threads) {
+					while (thread.isAlive() && this.exception.get() == null) {
+						thread.join(1000);
+					}
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			this.threads = null;
+			rethrowException();
+			log.info("Finished parallel population reading...");
+		}
+		super.endDocument();
+	}
+
+	private void putBatch(List<Tag> batch) {
+		try {
+			while (this.exception.get() == null) {
+				if (this.queue.offer(batch, 1, TimeUnit.SECONDS)) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		rethrowException();
+	}
+
+	private void rethrowException() {
+		Throwable e = this.exception.get();
+		if (e != null && this.threads != null) {
+			// stop the remaining threads, they would otherwise wait forever for more data
+			for (Thread thread : this.threads) {
+				thread.interrupt();
+			}
+		}
+		if (e instanceof RuntimeException) {
+			throw (RuntimeException) e;
+		}
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		if (e != null) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	abstract static class Tag {
+		String name;
+	}
+
+	static final class StartTag extends Tag {
+		Attributes atts;
+	}
+
+	static final class PersonTag extends Tag {
+		Person person;
+	}
+
+	static final class EndTag extends Tag {
+		String content;
+	}
+
+	/*
+	 * Marker Tag to inform the threads that no further data has to be parsed.
+	 */
+	static final class EndProcessingTag extends Tag {
+	}
+}
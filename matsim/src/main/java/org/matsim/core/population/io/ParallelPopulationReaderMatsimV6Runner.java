@@ -0,0 +1,96 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationReaderMatsimV6Runner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2021 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.BlockingQueue;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.population.io.ParallelPopulationReaderMatsimV6.EndProcessingTag;
+import org.matsim.core.population.io.ParallelPopulationReaderMatsimV6.EndTag;
+import org.matsim.core.population.io.ParallelPopulationReaderMatsimV6.PersonTag;
+import org.matsim.core.population.io.ParallelPopulationReaderMatsimV6.StartTag;
+import org.matsim.core.population.io.ParallelPopulationReaderMatsimV6.Tag;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.utils.objectattributes.AttributeConverter;
+
+/**
+ * Runnable used by ParallelPopulationReaderMatsimV6.
+ * Processes xml data taken from a BlockingQueue which is filled
+ * in the main class.
+ */
+/* deliberately package */ class ParallelPopulationReaderMatsimV6Runner extends PopulationReaderMatsimV6 implements Runnable {
+
+	private final static String POPULATION = "population";
+
+	private final BlockingQueue<List<Tag>> queue;
+	private final Stack<String> context = new Stack<>();
+
+	ParallelPopulationReaderMatsimV6Runner(
+			final Scenario scenario,
+			final CoordinateTransformation coordinateTransformation,
+			final Map<Class<?>, AttributeConverter<?>> attributeConverters,
+			final BlockingQueue<List<Tag>> queue) {
+		// no CRS here, the main reader already stored it in the population
+		super(null, null, scenario);
+		// use the same transformation as the main reader, it might have been changed by the population's attributes
+		this.coordinateTransformation = coordinateTransformation;
+		this.putAttributeConverters(attributeConverters);
+		this.queue = queue;
+		this.context.push(POPULATION);
+	}
+
+	@Override
+	public void run() {
+		/*
+		 * The thread will go on with the parsing until an EndProcessingTag is found,
+		 * which calls "return".
+		 */
+		while (true) {
+			try {
+				List<Tag> tags = queue.take();
+
+				for (Tag tag : tags) {
+					if (tag instanceof PersonTag) {
+						// the person has already been created and added to the population by the main thread,
+						// and there is no end tag for it, so reset the context here.
+						this.currperson = ((PersonTag) tag).person;
+						this.context.setSize(1);
+						this.context.push(PERSON);
+					} else if (tag instanceof StartTag) {
+						// the parser's context is not available anymore, so maintain our own one
+						this.startTag(tag.name, ((StartTag) tag).atts, this.context);
+						this.context.push(tag.name);
+					} else if (tag instanceof EndTag) {
+						this.context.pop();
+						this.endTag(tag.name, ((EndTag) tag).content, this.context);
+					} else if (tag instanceof EndProcessingTag) {
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
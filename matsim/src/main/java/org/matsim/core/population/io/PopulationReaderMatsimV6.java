@@ -66,7 +66,7 @@ import com.google.inject.Inject;
     private static final Logger log = Logger.getLogger(PopulationReaderMatsimV6.class);
 
 	private final static String POPULATION = "population";
-	private final static String PERSON = "person";
+	/*package*/ final static String PERSON = "person";
 	private final static String ATTRIBUTES = "attributes";
 	private final static String ATTRIBUTE = "attribute";
 	private final static String PLAN = "plan";
@@ -106,7 +106,7 @@ import com.google.inject.Inject;
 	private final Population plans;
 	private final String externalInputCRS;
 
-	private Person currperson = null;
+	/*package*/ Person currperson = null;
 	private Plan currplan = null;
 	private Activity curract = null;
 	private Leg currleg = null;
@@ -115,7 +115,7 @@ import com.google.inject.Inject;
 	private org.matsim.utils.objectattributes.attributable.Attributes currAttributes = null;
 
 	private final String targetCRS;
-	private CoordinateTransformation coordinateTransformation = new IdentityTransformation();
+	/*package*/ CoordinateTransformation coordinateTransformation = new IdentityTransformation();
 
 	private Activity prevAct = null;
 
@@ -19,6 +19,8 @@
 
 package org.matsim.core.replanning;
 
+import org.matsim.analysis.IterationStopWatch;
+
 /**
  * A partial, inside view of the Controler which is available during replanning.
  * @author michaz
@@ -31,4 +33,12 @@ public interface ReplanningContext {
 	 */
 	int getIteration();
 
+	/**
+	 * The stop watch of the current iteration, or <code>null</code> if replanning does not run as part of a
+	 * controler iteration.
+	 */
+	default IterationStopWatch getStopwatch() {
+		return null;
+	}
+
 }
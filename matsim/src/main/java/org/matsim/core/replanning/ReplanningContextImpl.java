@@ -22,6 +22,7 @@
 
 package org.matsim.core.replanning;
 
+import org.matsim.analysis.IterationStopWatch;
 import org.matsim.core.controler.ControlerListenerManager;
 import org.matsim.core.controler.events.IterationStartsEvent;
 import org.matsim.core.controler.listener.IterationStartsListener;
@@ -32,10 +33,13 @@ import javax.inject.Singleton;
 @Singleton
 class ReplanningContextImpl implements ReplanningContext, IterationStartsListener {
 
+    private final IterationStopWatch stopwatch;
     private int iteration;
+    private boolean iterationStarted = false;
 
     @Inject
-    ReplanningContextImpl(ControlerListenerManager controlerListenerManager) {
+    ReplanningContextImpl(ControlerListenerManager controlerListenerManager, IterationStopWatch stopwatch) {
+        this.stopwatch = stopwatch;
         controlerListenerManager.addControlerListener(this);
     }
 
@@ -44,8 +48,15 @@ class ReplanningContextImpl implements ReplanningContext, IterationStartsListene
         return iteration;
     }
 
+    @Override
+    public IterationStopWatch getStopwatch() {
+        // the stop watch only accepts operations once the controler has begun an iteration
+        return iterationStarted ? stopwatch : null;
+    }
+
     @Override
     public void notifyIterationStarts(IterationStartsEvent event) {
         this.iteration = event.getIteration();
+        this.iterationStarted = true;
     }
 }
@@ -21,16 +21,27 @@
 package org.matsim.core.replanning.modules;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationStopWatch;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.replanning.PlanStrategyModule;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.config.groups.GlobalConfigGroup.ReplanningScheduling;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
 import org.matsim.core.replanning.ReplanningContext;
 import org.matsim.core.utils.misc.Counter;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -50,6 +61,16 @@ import java.util.concurrent.atomic.AtomicReference;
  * "fast threads"), it helps building reproducible runs.  Additionally, as the threads are only
  * started after all to-be-handled plans are added, we can use unsynchronized data structures.
  * <p></p>
+ * With {@link ReplanningScheduling#workStealing}, the plans are instead handled in chunks by a
+ * {@link ForkJoinPool} that is shared by all modules with the same number of threads, so idle threads
+ * take over chunks from threads that are stuck with expensive plans. Each chunk borrows a plan algorithm
+ * instance that no other thread uses at the time, so there are still at most as many instances as threads.
+ * If {@link #isPlanAlgoInstanceReusable()} allows it, the instances are kept for the next iterations.
+ * As the plans are not always handled by the same instance, such runs are not reproducible.
+ * <p></p>
+ * After the threads have finished, the time spent and the number of plans handled per second are logged,
+ * and the time is recorded in the {@link IterationStopWatch} of the replanning context.
+ * <p></p>
  * Design comments/questions:<ul>
  * <li> As a consequence of the design, the instances that getPlanAlgoInstance() returns, need to be thread-safe.  kai, dec'12
  * For an example with discussions, see {@link tutorial.programming.multiThreadedPlanStrategy.RunWithMultithreadedModule}
@@ -58,13 +79,22 @@ import java.util.concurrent.atomic.AtomicReference;
  * @author mrieser
  */
 abstract public class AbstractMultithreadedModule implements PlanStrategyModule {
+	private static final AtomicInteger moduleCounter = new AtomicInteger(0);
+	private static final Map<Integer, ForkJoinPool> forkJoinPools = new ConcurrentHashMap<>();
+
 	private final int numOfThreads;
+	private final ReplanningScheduling scheduling;
+	private final int moduleId = moduleCounter.incrementAndGet();
 
 	private PlanAlgoThread[] algothreads = null;
 	private Thread[] threads = null;
 	private PlanAlgorithm directAlgo = null;
 	private String name = null;
 
+	private List<Plan> plans = null;
+	private final Queue<PlanAlgorithm> idleAlgos = new ConcurrentLinkedQueue<>();
+	private Counter counter = null;
+
 	private int count = 0;
 
 	private final AtomicReference<Throwable> hadException = new AtomicReference<>(null);
@@ -82,12 +112,28 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 	 */
 	abstract public PlanAlgorithm getPlanAlgoInstance();
 
+	/**
+	 * Plan algorithm instances handle the plans of only one thread at a time. With {@link ReplanningScheduling#workStealing},
+	 * they are dropped after each iteration unless this returns <code>true</code>, in which case they are kept for the
+	 * next iterations. Only return <code>true</code> if the instances do not depend on the state of the iteration in which
+	 * they were created. This excludes instances that contain routers, as some routers (e.g. the contraction hierarchies)
+	 * keep the travel times of the iteration in which they were created.
+	 */
+	protected boolean isPlanAlgoInstanceReusable() {
+		return false;
+	}
+
 	public AbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
-		this.numOfThreads = globalConfigGroup.getNumberOfThreads();
+		this(globalConfigGroup.getNumberOfThreads(), globalConfigGroup.getReplanningScheduling());
 	}
 
 	public AbstractMultithreadedModule(final int numOfThreads) {
+		this(numOfThreads, ReplanningScheduling.roundRobin);
+	}
+
+	public AbstractMultithreadedModule(final int numOfThreads, final ReplanningScheduling scheduling) {
 		this.numOfThreads = numOfThreads;
+		this.scheduling = scheduling;
 	}
 	
 	protected void beforePrepareReplanningHook(@SuppressWarnings("unused") ReplanningContext replanningContextTmp) {
@@ -105,6 +151,8 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		if (this.numOfThreads == 0) {
 			// it seems, no threads are desired :(
 			this.directAlgo = getPlanAlgoInstance();
+		} else if (this.scheduling == ReplanningScheduling.workStealing) {
+			initWorkStealing();
 		} else {
 			initThreads();
 		}
@@ -117,7 +165,10 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	@Override
 	public final void handlePlan(final Plan plan) {
-		if (this.directAlgo == null) {
+		if (this.plans != null) {
+			this.plans.add(plan);
+			this.count++;
+		} else if (this.directAlgo == null) {
 			this.algothreads[this.count % this.numOfThreads].addPlanToThread(plan);
 			this.count++;
 		} else {
@@ -138,22 +189,28 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		
 		if (this.directAlgo == null) {
 			// only try to start threads if we did not directly work on all the plans
-			log.info("[" + this.name + "] starting " + this.threads.length + " threads, handling " + this.count + " plans");
-
-			// start threads
-			for (Thread thread : this.threads) {
-				thread.start();
+			IterationStopWatch stopwatch = this.replanningContext == null ? null : this.replanningContext.getStopwatch();
+			String operation = "replanning " + this.name + " (module " + this.moduleId + ")";
+			if (stopwatch != null) {
+				stopwatch.beginOperation(operation);
 			}
+			long start = System.nanoTime();
 
-			// wait until each thread is finished
 			try {
-				for (Thread thread : this.threads) {
-					thread.join();
+				if (this.plans != null) {
+					runWorkStealing();
+				} else {
+					runThreads();
+				}
+			} finally {
+				if (stopwatch != null) {
+					stopwatch.endOperation(operation);
 				}
-			} catch (InterruptedException e) {
-				throw new RuntimeException(e);
 			}
-			log.info("[" + this.name + "] all " + this.threads.length + " threads finished.");
+
+			double seconds = (System.nanoTime() - start) / 1e9;
+			log.info("[" + this.name + "] handled " + this.count + " plans in " + String.format("%.2f", seconds) + " seconds ("
+					+ String.format("%.1f", seconds > 0 ? this.count / seconds : 0.0) + " plans/s).");
 			Throwable throwable = this.hadException.get();
 			if (throwable != null) {
 				throw new RuntimeException("Some threads crashed, thus not all plans may have been handled.", throwable);
@@ -162,12 +219,44 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		// reset
 		this.algothreads = null;
 		this.threads = null;
+		this.plans = null;
+		this.counter = null;
+		if (!isPlanAlgoInstanceReusable()) {
+			this.idleAlgos.clear();
+		}
 		this.replanningContext = null;
 		this.count = 0;
 		
 		this.afterFinishReplanningHook();
 	}
 
+	private void runThreads() {
+		log.info("[" + this.name + "] starting " + this.threads.length + " threads, handling " + this.count + " plans");
+
+		// start threads
+		for (Thread thread : this.threads) {
+			thread.start();
+		}
+
+		// wait until each thread is finished
+		try {
+			for (Thread thread : this.threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		log.info("[" + this.name + "] all " + this.threads.length + " threads finished.");
+	}
+
+	private void runWorkStealing() {
+		log.info("[" + this.name + "] handling " + this.count + " plans with work stealing on " + this.numOfThreads + " threads");
+		// small enough chunks so that a few expensive plans cannot keep a thread busy for long, large enough to keep the overhead low
+		int chunkSize = Math.max(1, Math.min(64, this.count / (this.numOfThreads * 16)));
+		getForkJoinPool(this.numOfThreads).invoke(new PlanChunk(0, this.count, chunkSize));
+		log.info("[" + this.name + "] all chunks finished.");
+	}
+
 	private void initThreads() {
 		if (this.threads != null) {
 			throw new RuntimeException("threads are already initialized");
@@ -193,6 +282,41 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		}
 	}
 
+	private void initWorkStealing() {
+		if (this.plans != null) {
+			throw new RuntimeException("work stealing is already initialized");
+		}
+
+		this.hadException.set(null);
+		this.plans = new ArrayList<>();
+		PlanAlgorithm algo = this.idleAlgos.peek();
+		if (algo == null) {
+			algo = getPlanAlgoInstance();
+			this.idleAlgos.add(algo);
+		}
+		this.name = algo.getClass().getSimpleName();
+		this.counter = new Counter("[" + this.name + "] handled plan # ");
+	}
+
+	private PlanAlgorithm borrowPlanAlgoInstance() {
+		PlanAlgorithm algo = this.idleAlgos.poll();
+		if (algo == null) {
+			// getPlanAlgoInstance() is usually only called from one thread, so do not rely on it being thread-safe
+			synchronized (this.idleAlgos) {
+				algo = getPlanAlgoInstance();
+			}
+		}
+		return algo;
+	}
+
+	private static ForkJoinPool getForkJoinPool(final int numOfThreads) {
+		return forkJoinPools.computeIfAbsent(numOfThreads, n -> new ForkJoinPool(n, pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("replanning." + n + "." + thread.getPoolIndex());
+			return thread;
+		}, null, false));
+	}
+
 	/* package (for a test) */ final int getNumOfThreads() {
 		return numOfThreads;
 	}
@@ -213,6 +337,41 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	}
 
+	private final class PlanChunk extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+		private final int chunkSize;
+
+		PlanChunk(final int from, final int to, final int chunkSize) {
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > this.chunkSize) {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new PlanChunk(this.from, middle, this.chunkSize), new PlanChunk(middle, this.to, this.chunkSize));
+				return;
+			}
+			// failures are only reported, so that all other chunks are finished before finishReplanning() returns
+			try {
+				PlanAlgorithm algo = borrowPlanAlgoInstance();
+				for (int i = this.from; i < this.to; i++) {
+					algo.run(AbstractMultithreadedModule.this.plans.get(i));
+					AbstractMultithreadedModule.this.counter.incCounter();
+				}
+				AbstractMultithreadedModule.this.idleAlgos.add(algo);
+			} catch (RuntimeException | Error e) {
+				log.error("Chunk in thread " + Thread.currentThread().getName() + " died with exception. Will stop after all chunks finished.", e);
+				AbstractMultithreadedModule.this.hadException.set(e);
+			}
+		}
+	}
+
 	private final static class PlanAlgoThread implements Runnable {
 
 		private final PlanAlgorithm planAlgo;
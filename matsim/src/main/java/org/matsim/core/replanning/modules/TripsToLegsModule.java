@@ -53,5 +53,10 @@ public class TripsToLegsModule extends AbstractMultithreadedModule {
 	public PlanAlgorithm getPlanAlgoInstance() {
 		return new TripsToLegsAlgorithm( TripStructureUtils.getRoutingModeIdentifier() );
 	}
+
+	@Override
+	protected boolean isPlanAlgoInstanceReusable() {
+		return true;
+	}
 }
 
@@ -26,8 +26,11 @@ import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.router.speedy.SpeedyALTFactory;
+import org.matsim.core.router.speedy.SpeedyCHFactory;
 import org.matsim.core.router.util.*;
 
+import javax.inject.Singleton;
+
 public class LeastCostPathCalculatorModule extends AbstractModule {
 
     @Override
@@ -47,6 +50,11 @@ public class LeastCostPathCalculatorModule extends AbstractModule {
             bind(LeastCostPathCalculatorFactory.class).to(FastAStarLandmarksFactory.class);
         } else if (config.controler().getRoutingAlgorithmType().equals(ControlerConfigGroup.RoutingAlgorithmType.SpeedyALT)) {
             bind(LeastCostPathCalculatorFactory.class).to(SpeedyALTFactory.class);
+        } else if (config.controler().getRoutingAlgorithmType().equals(ControlerConfigGroup.RoutingAlgorithmType.SpeedyCH)) {
+            // the factory must be notified at every iteration start to re-customize the hierarchy with the new travel times
+            bind(SpeedyCHFactory.class).in(Singleton.class);
+            bind(LeastCostPathCalculatorFactory.class).to(SpeedyCHFactory.class);
+            addControlerListenerBinding().to(SpeedyCHFactory.class);
         }
     }
 
@@ -0,0 +1,190 @@
+package org.matsim.core.router.speedy;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.misc.Counter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calculates the travel times, costs and distances from many origins to many destinations into a {@link TravelMatrix},
+ * e.g. for zonal skims or accessibility computations.
+ *
+ * For every origin and departure time, a {@link LeastCostPathTree} is calculated. Each tree stops as soon as all
+ * destinations are reached, which is much faster than calculating the full tree when the destinations are close
+ * to each other, like for a zonal system covering only a part of the network. The origins are distributed in small
+ * batches to the given number of threads, each one using its own {@link LeastCostPathTree}.
+ *
+ * The {@link TravelTime} and {@link TravelDisutility} are used by all threads concurrently, so they must be
+ * thread-safe if more than one thread is used. Routes are calculated without person and vehicle.
+ */
+public final class ManyToManyPathCalculator {
+
+	private final static Logger LOG = LogManager.getLogger(ManyToManyPathCalculator.class);
+
+	private static final int BATCH_SIZE = 8;
+
+	private final SpeedyGraph graph;
+	private final TravelTime tt;
+	private final TravelDisutility td;
+	private final int numberOfThreads;
+
+	public ManyToManyPathCalculator(SpeedyGraph graph, TravelTime tt, TravelDisutility td, int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("numberOfThreads must be at least 1, but is " + numberOfThreads);
+		}
+		this.graph = graph;
+		this.tt = tt;
+		this.td = td;
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * @param departureTimes the departure times for which the matrix is calculated, in ascending order. Each departure
+	 *                       time results in one time bin of the matrix.
+	 */
+	public TravelMatrix calculate(List<Node> origins, List<Node> destinations, double... departureTimes) {
+		if (departureTimes.length == 0) {
+			throw new IllegalArgumentException("At least one departure time is required.");
+		}
+		for (int i = 1; i < departureTimes.length; i++) {
+			if (departureTimes[i] <= departureTimes[i - 1]) {
+				throw new IllegalArgumentException("The departure times must be in ascending order.");
+			}
+		}
+		TravelMatrix matrix = new TravelMatrix(this.graph.nodeCount, origins, destinations, departureTimes);
+		int[] destinationNodes = new int[destinations.size()];
+		for (int i = 0; i < destinationNodes.length; i++) {
+			destinationNodes[i] = destinations.get(i).getId().index();
+		}
+
+		Counter counter = new Counter("many-to-many paths: origin ", " / " + origins.size());
+		AtomicInteger nextOrigin = new AtomicInteger(0);
+		int threads = Math.min(this.numberOfThreads, Math.max(1, origins.size() / BATCH_SIZE));
+		if (threads == 1) {
+			new Worker(origins, destinationNodes, matrix, nextOrigin, counter).run();
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(new Worker(origins, destinationNodes, matrix, nextOrigin, counter)));
+			}
+			executor.shutdown();
+			try {
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				executor.shutdownNow();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				executor.shutdownNow();
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		counter.printCounter();
+		LOG.info("calculated " + origins.size() + " x " + destinations.size() + " matrix for " + departureTimes.length + " departure times.");
+		return matrix;
+	}
+
+	private final class Worker implements Runnable {
+		private final List<Node> origins;
+		private final int[] destinationNodes;
+		private final TravelMatrix matrix;
+		private final AtomicInteger nextOrigin;
+		private final Counter counter;
+		private final LeastCostPathTree tree;
+		private final DestinationStopCriterion stopCriterion;
+
+		Worker(List<Node> origins, int[] destinationNodes, TravelMatrix matrix, AtomicInteger nextOrigin, Counter counter) {
+			this.origins = origins;
+			this.destinationNodes = destinationNodes;
+			this.matrix = matrix;
+			this.nextOrigin = nextOrigin;
+			this.counter = counter;
+			this.tree = new LeastCostPathTree(graph, tt, td);
+			this.stopCriterion = new DestinationStopCriterion(graph.nodeCount, destinationNodes);
+		}
+
+		@Override
+		public void run() {
+			int start;
+			while ((start = this.nextOrigin.getAndAdd(BATCH_SIZE)) < this.origins.size()) {
+				int end = Math.min(start + BATCH_SIZE, this.origins.size());
+				for (int origin = start; origin < end; origin++) {
+					calculateOrigin(origin);
+					this.counter.incCounter();
+				}
+			}
+		}
+
+		private void calculateOrigin(int origin) {
+			int startNode = this.origins.get(origin).getId().index();
+			for (int bin = 0; bin < this.matrix.getTimeBinCount(); bin++) {
+				double departureTime = this.matrix.getDepartureTime(bin);
+				this.stopCriterion.reset();
+				this.tree.calculate(startNode, departureTime, null, null, this.stopCriterion);
+				for (int destination = 0; destination < this.destinationNodes.length; destination++) {
+					int node = this.destinationNodes[destination];
+					double cost = this.tree.getCost(node);
+					if (Double.isFinite(cost)) {
+						double travelTime = this.tree.getTime(node).seconds() - departureTime;
+						this.matrix.set(bin, origin, destination, travelTime, cost, this.tree.getDistance(node));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops the tree once all destinations are settled, as their values cannot change anymore then.
+	 */
+	private static final class DestinationStopCriterion implements LeastCostPathTree.StopCriterion {
+		private final boolean[] isDestination;
+		private final boolean[] reached;
+		private final int[] destinationNodes;
+		private final int destinationCount;
+		private int remaining;
+
+		DestinationStopCriterion(int nodeCount, int[] destinationNodes) {
+			this.isDestination = new boolean[nodeCount];
+			this.reached = new boolean[nodeCount];
+			this.destinationNodes = destinationNodes;
+			for (int node : destinationNodes) {
+				this.isDestination[node] = true;
+			}
+			int count = 0;
+			for (boolean isDestination : this.isDestination) {
+				if (isDestination) {
+					count++;
+				}
+			}
+			this.destinationCount = count;
+		}
+
+		void reset() {
+			for (int node : this.destinationNodes) {
+				this.reached[node] = false;
+			}
+			this.remaining = this.destinationCount;
+		}
+
+		@Override
+		public boolean stop(int nodeIndex, double arrivalTime, double travelCost, double distance, double departureTime) {
+			if (this.isDestination[nodeIndex] && !this.reached[nodeIndex]) {
+				this.reached[nodeIndex] = true;
+				this.remaining--;
+			}
+			return this.remaining == 0;
+		}
+	}
+}
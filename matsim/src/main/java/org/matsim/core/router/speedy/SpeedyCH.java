@@ -0,0 +1,236 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A routing algorithm using a contraction hierarchy: a bidirectional Dijkstra search that only follows edges towards
+ * higher-ranked nodes, on the weights customized for the time bin of the departure time (see {@link SpeedyCHMetric}).
+ * The travel disutilities are thus only time-dependent per time bin, and the same for all persons. The returned path
+ * reports the travel time and travel disutility along its links as calculated by the given {@link TravelTime} and
+ * {@link TravelDisutility}, like the other routers do.
+ *
+ * This implementation is not thread-safe. In the case of multi-threading, every thread should use
+ * a separate instance. (But the used {@link SpeedyCHMetric} is thread-safe and can be shared by multiple
+ * instances).
+ */
+public class SpeedyCH implements LeastCostPathCalculator {
+
+	private final static Logger LOG = LogManager.getLogger(SpeedyCH.class);
+
+	private final SpeedyGraph graph;
+	private final SpeedyCHData chData;
+	final SpeedyCHMetric metric;
+	private final TravelTime tt;
+	private final TravelDisutility td;
+	private final Search forward;
+	private final Search backward;
+	private int currentIteration = Integer.MIN_VALUE;
+	private final int[] pathNodes;
+	private final int[] stack;
+
+	SpeedyCH(SpeedyCHMetric metric, TravelTime tt, TravelDisutility td) {
+		this.chData = metric.chData;
+		this.graph = this.chData.graph;
+		this.metric = metric;
+		this.tt = tt;
+		this.td = td;
+		this.forward = new Search(this.graph.nodeCount);
+		this.backward = new Search(this.graph.nodeCount);
+		this.pathNodes = new int[this.graph.nodeCount];
+		this.stack = new int[this.graph.nodeCount * 2];
+	}
+
+	@Override
+	public Path calcLeastCostPath(Node startNode, Node endNode, double startTime, Person person, Vehicle vehicle) {
+		this.currentIteration++;
+		if (this.currentIteration == Integer.MAX_VALUE) {
+			// reset iteration as we overflow
+			Arrays.fill(this.forward.iterationIds, this.currentIteration);
+			Arrays.fill(this.backward.iterationIds, this.currentIteration);
+			this.currentIteration = Integer.MIN_VALUE;
+		}
+		int startNodeIndex = startNode.getId().index();
+		int endNodeIndex = endNode.getId().index();
+
+		int bin = this.metric.getTimeBin(startTime);
+		double[] up = this.metric.getUpWeights(bin);
+		double[] down = this.metric.getDownWeights(bin);
+
+		this.forward.start(startNodeIndex, this.currentIteration);
+		this.backward.start(endNodeIndex, this.currentIteration);
+
+		double bestCost = Double.POSITIVE_INFINITY;
+		int meetingNode = -1;
+		while (true) {
+			double minForward = this.forward.minCost();
+			double minBackward = this.backward.minCost();
+			if (Math.min(minForward, minBackward) >= bestCost) {
+				break;
+			}
+			Search search = minForward <= minBackward ? this.forward : this.backward;
+			Search other = search == this.forward ? this.backward : this.forward;
+			int nodeIdx = search.pq.poll();
+			double cost = search.cost[nodeIdx];
+			if (other.iterationIds[nodeIdx] == this.currentIteration) {
+				double totalCost = cost + other.cost[nodeIdx];
+				if (totalCost < bestCost) {
+					bestCost = totalCost;
+					meetingNode = nodeIdx;
+				}
+			}
+			// the forward search uses the edges from lower to higher nodes, the backward search the other way round
+			double[] weights = search == this.forward ? up : down;
+			for (int edge = this.chData.getFirstEdge(nodeIdx), last = this.chData.getLastEdge(nodeIdx); edge < last; edge++) {
+				double newCost = cost + weights[edge];
+				if (newCost == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				search.relax(this.chData.getEdgeTarget(edge), newCost, nodeIdx);
+			}
+		}
+
+		if (meetingNode >= 0) {
+			return constructPath(startNodeIndex, meetingNode, bin, startTime, person, vehicle);
+		}
+		LOG.warn("No route was found from node " + startNode.getId() + " to node " + endNode.getId() + ". Some possible reasons:");
+		LOG.warn("  * Network is not connected.  Run NetworkCleaner().") ;
+		LOG.warn("  * Network for considered mode does not even exist.  Modes need to be entered for each link in network.xml.");
+		LOG.warn("  * Network for considered mode is not connected to starting or ending point of route.  Setting insertingAccessEgressWalk to true may help.");
+		LOG.warn("This will now return null, but it may fail later with a NullPointerException.");
+		return null;
+	}
+
+	private Path constructPath(int startNodeIndex, int meetingNode, int bin, double startTime, Person person, Vehicle vehicle) {
+		List<Link> links = new ArrayList<>();
+
+		// the forward search found the path from the start node to the meeting node in reverse order
+		int size = 0;
+		for (int node = meetingNode; node != startNodeIndex; node = this.forward.comingFrom[node]) {
+			this.pathNodes[size++] = node;
+		}
+		int from = startNodeIndex;
+		for (int i = size - 1; i >= 0; i--) {
+			int to = this.pathNodes[i];
+			unpack(from, to, bin, links);
+			from = to;
+		}
+		for (int node = meetingNode; this.backward.comingFrom[node] >= 0; node = this.backward.comingFrom[node]) {
+			unpack(node, this.backward.comingFrom[node], bin, links);
+		}
+
+		List<Node> nodes = new ArrayList<>(links.size() + 1);
+		nodes.add(this.graph.getNode(startNodeIndex));
+		double time = startTime;
+		double travelCost = 0;
+		for (Link link : links) {
+			nodes.add(link.getToNode());
+			travelCost += this.td.getLinkTravelDisutility(link, time, person, vehicle);
+			time += this.tt.getLinkTravelTime(link, time, person, vehicle);
+		}
+		return new Path(nodes, links, time - startTime, travelCost);
+	}
+
+	/**
+	 * Adds the links represented by the edge from <code>fromNode</code> to <code>toNode</code> in the order they are
+	 * traversed, replacing shortcuts by the two edges they consist of.
+	 */
+	private void unpack(int fromNode, int toNode, int bin, List<Link> links) {
+		int size = 0;
+		this.stack[size++] = fromNode;
+		this.stack[size++] = toNode;
+		while (size > 0) {
+			int to = this.stack[--size];
+			int from = this.stack[--size];
+			int via = this.metric.getVia(bin, from, to);
+			if (via >= 0) {
+				links.add(this.graph.getLink(via));
+			} else {
+				int middle = -1 - via;
+				// push the second part first, so the first part gets unpacked first
+				this.stack[size++] = middle;
+				this.stack[size++] = to;
+				this.stack[size++] = from;
+				this.stack[size++] = middle;
+			}
+		}
+	}
+
+	/**
+	 * The state of one direction of the bidirectional search.
+	 */
+	private static final class Search {
+		private final double[] cost;
+		private final int[] comingFrom;
+		private final int[] iterationIds;
+		private final DAryMinHeap pq;
+		private int currentIteration;
+
+		Search(int nodeCount) {
+			this.cost = new double[nodeCount];
+			this.comingFrom = new int[nodeCount];
+			this.iterationIds = new int[nodeCount];
+			this.pq = new DAryMinHeap(nodeCount, 4);
+			Arrays.fill(this.iterationIds, Integer.MIN_VALUE);
+		}
+
+		void start(int node, int iteration) {
+			this.currentIteration = iteration;
+			this.pq.clear();
+			this.cost[node] = 0;
+			this.comingFrom[node] = -1;
+			this.iterationIds[node] = iteration;
+			this.pq.insert(node, 0);
+		}
+
+		double minCost() {
+			return this.pq.isEmpty() ? Double.POSITIVE_INFINITY : this.cost[this.pq.peek()];
+		}
+
+		void relax(int node, double newCost, int fromNode) {
+			if (this.iterationIds[node] == this.currentIteration) {
+				if (newCost < this.cost[node]) {
+					this.cost[node] = newCost;
+					this.comingFrom[node] = fromNode;
+					this.pq.decreaseKey(node, newCost);
+				}
+			} else {
+				this.cost[node] = newCost;
+				this.comingFrom[node] = fromNode;
+				this.iterationIds[node] = this.currentIteration;
+				this.pq.insert(node, newCost);
+			}
+		}
+	}
+
+}
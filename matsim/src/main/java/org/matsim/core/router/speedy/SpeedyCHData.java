@@ -0,0 +1,302 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * The topology of a contraction hierarchy for a {@link SpeedyGraph}, see {@link SpeedyCH}.
+ *
+ * The nodes are contracted without witness searches, i.e. contracting a node always connects all of its remaining
+ * neighbours with each other. The resulting hierarchy thus does not depend on any link weights, and can be
+ * customized for any travel disutility by just evaluating the lower triangles of each edge (see
+ * {@link SpeedyCHMetric}). This is the idea of Customizable Contraction Hierarchies described in "Customizable
+ * Contraction Hierarchies" by Julian Dibbelt, Ben Strasser and Dorothea Wagner, 2016. Instead of a nested
+ * dissection order, the nodes are ordered greedily by the number of edges their contraction adds.
+ *
+ * The edges of the hierarchy are undirected and always stored at their lower-ranked node. Each edge has a weight
+ * for both directions, see {@link SpeedyCHMetric}.
+ *
+ * This class is thread-safe and can safely be used by multiple threads.
+ */
+class SpeedyCHData {
+
+	private final static Logger LOG = LogManager.getLogger(SpeedyCHData.class);
+
+	final SpeedyGraph graph;
+	final int edgeCount;
+	private final int[] rank; // per node index, -1 if not in use
+	private final int[] nodesByRank;
+	private final int[] edgeStart; // per node index: first upward edge; edges of node n are edgeStart[n] .. edgeStart[n+1]-1
+	private final int[] edgeTarget; // per edge: the higher-ranked node, sorted per node
+	private final int[] linkEdge; // per link: the edge the link belongs to, -1 for loops
+
+	SpeedyCHData(SpeedyGraph graph) {
+		this.graph = graph;
+		this.rank = new int[graph.nodeCount];
+		Arrays.fill(this.rank, -1);
+
+		LOG.info("contract nodes...");
+		int[][] upward = new int[graph.nodeCount][];
+		this.nodesByRank = contract(upward);
+
+		this.edgeStart = new int[graph.nodeCount + 1];
+		int edges = 0;
+		for (int node = 0; node < graph.nodeCount; node++) {
+			this.edgeStart[node] = edges;
+			if (upward[node] != null) {
+				edges += upward[node].length;
+			}
+		}
+		this.edgeStart[graph.nodeCount] = edges;
+		this.edgeCount = edges;
+		this.edgeTarget = new int[edges];
+		for (int node = 0; node < graph.nodeCount; node++) {
+			if (upward[node] != null) {
+				System.arraycopy(upward[node], 0, this.edgeTarget, this.edgeStart[node], upward[node].length);
+			}
+		}
+
+		this.linkEdge = new int[graph.linkCount];
+		Arrays.fill(this.linkEdge, -1);
+		for (int linkIdx = 0; linkIdx < graph.linkCount; linkIdx++) {
+			Link link = graph.getLink(linkIdx);
+			if (link != null) {
+				int fromNode = link.getFromNode().getId().index();
+				int toNode = link.getToNode().getId().index();
+				if (fromNode != toNode) {
+					this.linkEdge[linkIdx] = findEdge(fromNode, toNode);
+				}
+			}
+		}
+		LOG.info("contraction hierarchy has " + this.nodesByRank.length + " nodes and " + edges + " edges.");
+	}
+
+	/**
+	 * Contracts all nodes, always choosing the node whose contraction adds the fewest edges relative to the number of
+	 * edges it removes. The priorities of the neighbours are updated after each contraction, and the priority of a node
+	 * is checked again before contracting it, as edges added between other nodes may have made it more expensive in
+	 * the mean time.
+	 *
+	 * @return the node indices in the order they were contracted
+	 */
+	private int[] contract(int[][] upward) {
+		Contraction c = new Contraction(this.graph);
+		int nodeCount = this.graph.nodeCount;
+		int[] priority = new int[nodeCount];
+
+		PriorityQueue<Long> queue = new PriorityQueue<>(Math.max(1, c.usedNodes));
+		for (int node = 0; node < nodeCount; node++) {
+			if (c.adjacency[node] != null) {
+				priority[node] = c.calcPriority(node);
+				queue.add(key(priority[node], node));
+			}
+		}
+
+		int[] order = new int[c.usedNodes];
+		int contracted = 0;
+		while (!queue.isEmpty()) {
+			long key = queue.poll();
+			int node = (int) (key & 0xFFFFFFFFL);
+			if (this.rank[node] >= 0 || (int) (key >> 32) != priority[node]) {
+				continue; // already contracted or outdated entry
+			}
+			int newPriority = c.calcPriority(node);
+			if (newPriority > priority[node]) {
+				priority[node] = newPriority;
+				queue.add(key(newPriority, node));
+				continue;
+			}
+
+			int[] neighbours = c.contract(node);
+			upward[node] = neighbours;
+			this.rank[node] = contracted;
+			order[contracted] = node;
+			contracted++;
+
+			for (int a : neighbours) {
+				int p = c.calcPriority(a);
+				if (p != priority[a]) {
+					priority[a] = p;
+					queue.add(key(p, a));
+				}
+			}
+		}
+		return order;
+	}
+
+	private static long key(int priority, int node) {
+		return ((long) priority << 32) | node;
+	}
+
+	/**
+	 * The remaining graph while the nodes get contracted.
+	 */
+	private static final class Contraction {
+		private final int[][] adjacency;
+		private final int[] degree;
+		private final int[] marks;
+		private int mark = 0;
+		private int usedNodes = 0;
+
+		Contraction(SpeedyGraph graph) {
+			this.adjacency = new int[graph.nodeCount][];
+			this.degree = new int[graph.nodeCount];
+			this.marks = new int[graph.nodeCount];
+
+			for (int node = 0; node < graph.nodeCount; node++) {
+				if (graph.getNode(node) != null) {
+					this.adjacency[node] = new int[4];
+					this.usedNodes++;
+				}
+			}
+			for (int linkIdx = 0; linkIdx < graph.linkCount; linkIdx++) {
+				Link link = graph.getLink(linkIdx);
+				if (link == null) {
+					continue;
+				}
+				int a = link.getFromNode().getId().index();
+				int b = link.getToNode().getId().index();
+				if (a != b) {
+					markNeighbours(a);
+					if (this.marks[b] != this.mark) {
+						addEdge(a, b);
+					}
+				}
+			}
+		}
+
+		/**
+		 * @return the number of edges added by contracting the node minus the number of its edges.
+		 */
+		int calcPriority(int node) {
+			int[] neighbours = this.adjacency[node];
+			int n = this.degree[node];
+			int addedEdges = 0;
+			for (int i = 0; i < n; i++) {
+				markNeighbours(neighbours[i]);
+				for (int j = i + 1; j < n; j++) {
+					if (this.marks[neighbours[j]] != this.mark) {
+						addedEdges++;
+					}
+				}
+			}
+			return addedEdges - n;
+		}
+
+		/**
+		 * Removes the node from the graph, connecting all its neighbours with each other.
+		 *
+		 * @return the neighbours of the node, sorted by index
+		 */
+		int[] contract(int node) {
+			int[] neighbours = Arrays.copyOf(this.adjacency[node], this.degree[node]);
+			Arrays.sort(neighbours);
+			for (int i = 0; i < neighbours.length; i++) {
+				int a = neighbours[i];
+				removeNeighbour(a, node);
+				markNeighbours(a);
+				for (int j = i + 1; j < neighbours.length; j++) {
+					int b = neighbours[j];
+					if (this.marks[b] != this.mark) {
+						addEdge(a, b);
+					}
+				}
+			}
+			this.adjacency[node] = null;
+			this.degree[node] = 0;
+			return neighbours;
+		}
+
+		private void markNeighbours(int node) {
+			this.mark++;
+			int[] neighbours = this.adjacency[node];
+			for (int i = 0, n = this.degree[node]; i < n; i++) {
+				this.marks[neighbours[i]] = this.mark;
+			}
+		}
+
+		private void addEdge(int a, int b) {
+			addNeighbour(a, b);
+			addNeighbour(b, a);
+		}
+
+		private void addNeighbour(int node, int neighbour) {
+			if (this.degree[node] == this.adjacency[node].length) {
+				this.adjacency[node] = Arrays.copyOf(this.adjacency[node], this.degree[node] * 2);
+			}
+			this.adjacency[node][this.degree[node]++] = neighbour;
+		}
+
+		private void removeNeighbour(int node, int neighbour) {
+			int[] neighbours = this.adjacency[node];
+			for (int i = 0; i < this.degree[node]; i++) {
+				if (neighbours[i] == neighbour) {
+					neighbours[i] = neighbours[--this.degree[node]];
+					return;
+				}
+			}
+		}
+	}
+
+	int getRank(int node) {
+		return this.rank[node];
+	}
+
+	int[] getNodesByRank() {
+		return this.nodesByRank;
+	}
+
+	int getFirstEdge(int node) {
+		return this.edgeStart[node];
+	}
+
+	int getLastEdge(int node) {
+		return this.edgeStart[node + 1];
+	}
+
+	int getEdgeTarget(int edge) {
+		return this.edgeTarget[edge];
+	}
+
+	int getLinkEdge(int linkIdx) {
+		return this.linkEdge[linkIdx];
+	}
+
+	/**
+	 * @return the index of the edge between the two nodes, or -1 if there is no such edge.
+	 */
+	int findEdge(int node1, int node2) {
+		int low = node1;
+		int high = node2;
+		if (this.rank[node1] > this.rank[node2]) {
+			low = node2;
+			high = node1;
+		}
+		int index = Arrays.binarySearch(this.edgeTarget, this.edgeStart[low], this.edgeStart[low + 1], high);
+		return index < 0 ? -1 : index;
+	}
+
+}
@@ -0,0 +1,113 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates {@link SpeedyCH} instances.
+ *
+ * The contraction hierarchy of a network is only built once. Its weights are customized the first time a router for a
+ * network and travel disutility is requested, and are then re-used for all further routers of that network whose
+ * travel disutility results in the same link weights. This is typically the case for all routers of a routing mode,
+ * even though every routing module gets its own travel disutility instance. Collecting the link weights costs one
+ * travel disutility evaluation per link and time bin, far less than customizing the hierarchy. When used in a controler
+ * run, the weights are discarded at the start of every iteration, so they are customized again with the travel times
+ * of the last iteration when routing next.
+ *
+ * The weights are customized without a person, so person-specific disutilities (e.g. routing randomness) are not
+ * supported.
+ */
+public class SpeedyCHFactory implements LeastCostPathCalculatorFactory, IterationStartsListener {
+
+	private final double timeBinSize;
+	private final int timeBinCount;
+	private final Map<Network, SpeedyGraph> graphs = new ConcurrentHashMap<>();
+	private final Map<SpeedyGraph, SpeedyCHData> chData = new ConcurrentHashMap<>();
+	private final Map<MetricKey, SpeedyCHMetric> metrics = new ConcurrentHashMap<>();
+
+	/**
+	 * Customizes the weights for time bins of one hour, up to 30 hours.
+	 */
+	public SpeedyCHFactory() {
+		this(3600, 30 * 3600);
+	}
+
+	/**
+	 * @param timeBinSize the duration of a time bin, in seconds. Every time bin needs memory for 2 weights per edge of
+	 *                    the contraction hierarchy, so it should not be chosen too small for large networks.
+	 * @param maxTime     the end of the last time bin. Routes departing later use the weights of the last time bin.
+	 */
+	public SpeedyCHFactory(double timeBinSize, double maxTime) {
+		this.timeBinSize = timeBinSize;
+		this.timeBinCount = Math.max(1, (int) Math.ceil(maxTime / timeBinSize));
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(Network network, TravelDisutility travelCosts, TravelTime travelTimes) {
+		SpeedyGraph graph = this.graphs.computeIfAbsent(network, SpeedyGraph::new);
+		SpeedyCHData ch = this.chData.computeIfAbsent(graph, SpeedyCHData::new);
+		double[][] linkWeights = SpeedyCHMetric.collectLinkWeights(graph, travelCosts, this.timeBinSize, this.timeBinCount);
+		SpeedyCHMetric metric = this.metrics.computeIfAbsent(new MetricKey(graph, linkWeights),
+				key -> new SpeedyCHMetric(ch, linkWeights, this.timeBinSize));
+		return new SpeedyCH(metric, travelTimes, travelCosts);
+	}
+
+	@Override
+	public void notifyIterationStarts(IterationStartsEvent event) {
+		this.metrics.clear();
+	}
+
+	private static final class MetricKey {
+		private final SpeedyGraph graph;
+		private final double[][] linkWeights;
+		private final int hash;
+
+		MetricKey(SpeedyGraph graph, double[][] linkWeights) {
+			this.graph = graph;
+			this.linkWeights = linkWeights;
+			this.hash = 31 * System.identityHashCode(graph) + Arrays.deepHashCode(linkWeights);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof MetricKey)) {
+				return false;
+			}
+			MetricKey other = (MetricKey) o;
+			return this.graph == other.graph && this.hash == other.hash && Arrays.deepEquals(this.linkWeights, other.linkWeights);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+	}
+}
@@ -0,0 +1,208 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.router.util.TravelDisutility;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The weights of a {@link SpeedyCHData contraction hierarchy} for a given travel disutility, see {@link SpeedyCH}.
+ *
+ * The day is split into time bins, and the hierarchy is customized separately for each time bin, using the travel
+ * disutility of each link in the middle of the time bin. The travel disutility is evaluated without person and
+ * vehicle, so person-specific disutilities (like the routing randomness) are not supported.
+ *
+ * Every edge of the hierarchy has a weight for both directions: <code>up</code> from the lower-ranked node to the
+ * higher-ranked node, <code>down</code> for the other direction. For each weight, the link it represents or the node
+ * in the middle of the shortcut is stored, so routes can be unpacked again.
+ *
+ * The travel disutilities are collected by a single thread, as {@link TravelDisutility} implementations are
+ * typically not thread-safe, while the time bins are customized in parallel. Once created, this class is
+ * thread-safe and can safely be used by multiple threads.
+ */
+class SpeedyCHMetric {
+
+	private final static Logger LOG = LogManager.getLogger(SpeedyCHMetric.class);
+
+	final SpeedyCHData chData;
+	private final double timeBinSize;
+	private final int timeBinCount;
+	private final double[][] upWeights;
+	private final double[][] downWeights;
+	private final int[][] upVia; // >= 0: link index, < 0: -1 - index of the node in the middle of the shortcut
+	private final int[][] downVia;
+
+	SpeedyCHMetric(SpeedyCHData chData, TravelDisutility td, double timeBinSize, int timeBinCount) {
+		this(chData, collectLinkWeights(chData.graph, td, timeBinSize, timeBinCount), timeBinSize);
+	}
+
+	/**
+	 * @param linkWeights the travel disutility of every link (by link index) in every time bin, see
+	 *                    {@link #collectLinkWeights(SpeedyGraph, TravelDisutility, double, int)}.
+	 */
+	SpeedyCHMetric(SpeedyCHData chData, double[][] linkWeights, double timeBinSize) {
+		this.chData = chData;
+		this.timeBinSize = timeBinSize;
+		this.timeBinCount = linkWeights.length;
+		this.upWeights = new double[this.timeBinCount][];
+		this.downWeights = new double[this.timeBinCount][];
+		this.upVia = new int[this.timeBinCount][];
+		this.downVia = new int[this.timeBinCount][];
+
+		LOG.info("customize contraction hierarchy for " + this.timeBinCount + " time bins...");
+		SpeedyGraph graph = chData.graph;
+		for (int bin = 0; bin < this.timeBinCount; bin++) {
+			double[] weights = linkWeights[bin];
+			double[] up = new double[chData.edgeCount];
+			double[] down = new double[chData.edgeCount];
+			int[] upLinks = new int[chData.edgeCount];
+			int[] downLinks = new int[chData.edgeCount];
+			Arrays.fill(up, Double.POSITIVE_INFINITY);
+			Arrays.fill(down, Double.POSITIVE_INFINITY);
+			for (int linkIdx = 0; linkIdx < graph.linkCount; linkIdx++) {
+				int edge = chData.getLinkEdge(linkIdx);
+				if (edge < 0) {
+					continue;
+				}
+				Link link = graph.getLink(linkIdx);
+				double cost = weights[linkIdx];
+				int fromNode = link.getFromNode().getId().index();
+				int toNode = link.getToNode().getId().index();
+				if (chData.getRank(fromNode) < chData.getRank(toNode)) {
+					if (cost < up[edge]) {
+						up[edge] = cost;
+						upLinks[edge] = linkIdx;
+					}
+				} else if (cost < down[edge]) {
+					down[edge] = cost;
+					downLinks[edge] = linkIdx;
+				}
+			}
+			this.upWeights[bin] = up;
+			this.downWeights[bin] = down;
+			this.upVia[bin] = upLinks;
+			this.downVia[bin] = downLinks;
+		}
+
+		IntStream.range(0, this.timeBinCount).parallel().forEach(this::customize);
+		LOG.info("customization done.");
+	}
+
+	/**
+	 * Evaluates the travel disutility of every link of the graph in the middle of every time bin, without person and
+	 * vehicle. Links not contained in the graph get a weight of 0.
+	 *
+	 * @return the weights per time bin and link index
+	 */
+	static double[][] collectLinkWeights(SpeedyGraph graph, TravelDisutility td, double timeBinSize, int timeBinCount) {
+		double[][] linkWeights = new double[timeBinCount][graph.linkCount];
+		for (int bin = 0; bin < timeBinCount; bin++) {
+			double time = (bin + 0.5) * timeBinSize;
+			double[] weights = linkWeights[bin];
+			for (int linkIdx = 0; linkIdx < graph.linkCount; linkIdx++) {
+				Link link = graph.getLink(linkIdx);
+				if (link != null) {
+					weights[linkIdx] = td.getLinkTravelDisutility(link, time, null, null);
+				}
+			}
+		}
+		return linkWeights;
+	}
+
+	/**
+	 * Processes the nodes from the lowest to the highest rank. For every pair of upward neighbours a, b of a node,
+	 * the path a &rarr; node &rarr; b is a candidate for the edge a-b. As all edges of lower-ranked nodes are
+	 * final by then, this results in the correct weights for all edges.
+	 */
+	private void customize(int bin) {
+		double[] up = this.upWeights[bin];
+		double[] down = this.downWeights[bin];
+		int[] upLinks = this.upVia[bin];
+		int[] downLinks = this.downVia[bin];
+		SpeedyCHData ch = this.chData;
+		for (int node : ch.getNodesByRank()) {
+			int first = ch.getFirstEdge(node);
+			int last = ch.getLastEdge(node);
+			int via = -1 - node;
+			for (int i = first; i < last; i++) {
+				double toNode = down[i];
+				if (toNode == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				int a = ch.getEdgeTarget(i);
+				int rankA = ch.getRank(a);
+				for (int j = first; j < last; j++) {
+					if (i == j) {
+						continue;
+					}
+					double cost = toNode + up[j];
+					if (cost == Double.POSITIVE_INFINITY) {
+						continue;
+					}
+					int b = ch.getEdgeTarget(j);
+					int edge = ch.findEdge(a, b);
+					if (rankA < ch.getRank(b)) {
+						if (cost < up[edge]) {
+							up[edge] = cost;
+							upLinks[edge] = via;
+						}
+					} else if (cost < down[edge]) {
+						down[edge] = cost;
+						downLinks[edge] = via;
+					}
+				}
+			}
+		}
+	}
+
+	int getTimeBin(double time) {
+		int bin = (int) (time / this.timeBinSize);
+		if (bin < 0) {
+			return 0;
+		}
+		return Math.min(bin, this.timeBinCount - 1);
+	}
+
+	double[] getUpWeights(int bin) {
+		return this.upWeights[bin];
+	}
+
+	double[] getDownWeights(int bin) {
+		return this.downWeights[bin];
+	}
+
+	/**
+	 * @return the index of the link, if the cheapest connection from <code>fromNode</code> to <code>toNode</code> is
+	 * a single link, otherwise <code>-1 - node</code> where node is the index of the node in the middle of the shortcut.
+	 */
+	int getVia(int bin, int fromNode, int toNode) {
+		int edge = this.chData.findEdge(fromNode, toNode);
+		if (this.chData.getRank(fromNode) < this.chData.getRank(toNode)) {
+			return this.upVia[bin][edge];
+		}
+		return this.downVia[bin][edge];
+	}
+
+}
@@ -0,0 +1,126 @@
+package org.matsim.core.router.speedy;
+
+import org.matsim.api.core.v01.network.Node;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The travel times, costs and distances between a set of origin nodes and a set of destination nodes, for one or
+ * more departure times, as calculated by {@link ManyToManyPathCalculator}.
+ *
+ * The values are stored as floats in one flat array per type, which keeps the matrix compact even for many origins
+ * and destinations. Pairs without a connection have the value {@link Float#POSITIVE_INFINITY}.
+ *
+ * Once calculated, this class is thread-safe.
+ */
+public final class TravelMatrix {
+
+	private final int[] originIndices; // per node index: row of the node, -1 if not an origin
+	private final int[] destinationIndices; // per node index: column of the node, -1 if not a destination
+	private final int originCount;
+	private final int destinationCount;
+	private final double[] departureTimes;
+	private final float[] travelTimes;
+	private final float[] travelCosts;
+	private final float[] distances;
+
+	TravelMatrix(int nodeCount, List<Node> origins, List<Node> destinations, double[] departureTimes) {
+		this.originIndices = indices(nodeCount, origins);
+		this.destinationIndices = indices(nodeCount, destinations);
+		this.originCount = origins.size();
+		this.destinationCount = destinations.size();
+		this.departureTimes = departureTimes.clone();
+		long size = (long) departureTimes.length * this.originCount * this.destinationCount;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("The matrix would have " + size + " entries, which is too large.");
+		}
+		this.travelTimes = new float[(int) size];
+		this.travelCosts = new float[(int) size];
+		this.distances = new float[(int) size];
+		Arrays.fill(this.travelTimes, Float.POSITIVE_INFINITY);
+		Arrays.fill(this.travelCosts, Float.POSITIVE_INFINITY);
+		Arrays.fill(this.distances, Float.POSITIVE_INFINITY);
+	}
+
+	private static int[] indices(int nodeCount, List<Node> nodes) {
+		int[] indices = new int[nodeCount];
+		Arrays.fill(indices, -1);
+		for (int i = 0; i < nodes.size(); i++) {
+			int nodeIndex = nodes.get(i).getId().index();
+			if (indices[nodeIndex] >= 0) {
+				throw new IllegalArgumentException("Node " + nodes.get(i).getId() + " is contained more than once.");
+			}
+			indices[nodeIndex] = i;
+		}
+		return indices;
+	}
+
+	public int getTimeBinCount() {
+		return this.departureTimes.length;
+	}
+
+	public double getDepartureTime(int timeBin) {
+		return this.departureTimes[timeBin];
+	}
+
+	/**
+	 * @return the time bin with the latest departure time not after the given time, or the first time bin if all
+	 * departure times are later.
+	 */
+	public int getTimeBin(double time) {
+		int bin = Arrays.binarySearch(this.departureTimes, time);
+		if (bin >= 0) {
+			return bin;
+		}
+		return Math.max(0, -bin - 2);
+	}
+
+	public float getTravelTime(int timeBin, Node fromNode, Node toNode) {
+		return this.travelTimes[index(timeBin, fromNode, toNode)];
+	}
+
+	public float getTravelCost(int timeBin, Node fromNode, Node toNode) {
+		return this.travelCosts[index(timeBin, fromNode, toNode)];
+	}
+
+	public float getDistance(int timeBin, Node fromNode, Node toNode) {
+		return this.distances[index(timeBin, fromNode, toNode)];
+	}
+
+	public float getTravelTime(double departureTime, Node fromNode, Node toNode) {
+		return getTravelTime(getTimeBin(departureTime), fromNode, toNode);
+	}
+
+	public float getTravelCost(double departureTime, Node fromNode, Node toNode) {
+		return getTravelCost(getTimeBin(departureTime), fromNode, toNode);
+	}
+
+	public float getDistance(double departureTime, Node fromNode, Node toNode) {
+		return getDistance(getTimeBin(departureTime), fromNode, toNode);
+	}
+
+	void set(int timeBin, int origin, int destination, double travelTime, double travelCost, double distance) {
+		int index = (timeBin * this.originCount + origin) * this.destinationCount + destination;
+		this.travelTimes[index] = (float) travelTime;
+		this.travelCosts[index] = (float) travelCost;
+		this.distances[index] = (float) distance;
+	}
+
+	private int index(int timeBin, Node fromNode, Node toNode) {
+		int origin = lookup(this.originIndices, fromNode);
+		if (origin < 0) {
+			throw new IllegalArgumentException("Node " + fromNode.getId() + " is not an origin of this matrix.");
+		}
+		int destination = lookup(this.destinationIndices, toNode);
+		if (destination < 0) {
+			throw new IllegalArgumentException("Node " + toNode.getId() + " is not a destination of this matrix.");
+		}
+		return (timeBin * this.originCount + origin) * this.destinationCount + destination;
+	}
+
+	private static int lookup(int[] indices, Node node) {
+		int nodeIndex = node.getId().index();
+		return nodeIndex < indices.length ? indices[nodeIndex] : -1;
+	}
+}
@@ -27,11 +27,18 @@ import gnu.trove.list.array.TDoubleArrayList;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.IdMap;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
 import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
 import org.matsim.api.core.v01.events.PersonMoneyEvent;
 import org.matsim.api.core.v01.events.PersonScoreEvent;
 import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
 import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
 import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
 import org.matsim.api.core.v01.population.Activity;
@@ -40,9 +47,13 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.internal.HasPersonId;
 import org.matsim.core.controler.ControlerListenerManager;
+import org.matsim.core.controler.events.AfterMobsimEvent;
 import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
 import org.matsim.core.controler.listener.IterationStartsListener;
 import org.matsim.core.events.algorithms.Vehicle2DriverEventHandler;
 import org.matsim.core.events.handler.BasicEventHandler;
@@ -54,8 +65,12 @@ import org.matsim.vehicles.Vehicle;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.matsim.core.router.TripStructureUtils.Trip;
@@ -64,6 +79,12 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
  * This class helps EventsToScore by keeping ScoringFunctions for the entire Population - one per Person -, and dispatching Activities
  * and Legs to the ScoringFunctions. It also gives out the ScoringFunctions, so they can be given other events by EventsToScore.
  * It is not independently useful. Please do not make public.
+ * <p></p>
+ * With {@link org.matsim.core.config.groups.ParallelEventHandlingConfigGroup#getNumberOfScoringThreads()} &gt; 0, the persons are
+ * split into that many shards by the index of their id. Each shard has its own thread, {@link EventsToLegs} and
+ * {@link EventsToActivities}, and only ever touches the scoring functions of its own persons, so no lock is needed. The events are
+ * passed on to the shard of their person in batches; vehicle events are passed on to all shards that may need them for the legs
+ * of their persons. Each person thus sees its events, legs and activities in the same order as in the serial case.
  * 
  * @author michaz
  *
@@ -92,9 +113,29 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	
 	private Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
 
-	@Inject
+	private static final int SHARD_BATCH_SIZE = 256;
+	private static final int SHARD_QUEUE_CAPACITY = 64;
+	private static final List<Event> STOP = new ArrayList<>();
+
+	private final Shard[] shards;
+	// shards in which a person entered or drives the vehicle. Only accessed by the thread handling the events.
+	private final IdMap<Vehicle, BitSet> vehicleShards = new IdMap<>(Vehicle.class);
+	private volatile boolean shardsRunning = false;
+
 	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
 						 Population population, ScoringFunctionFactory scoringFunctionFactory) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory, null, 0);
+	}
+
+	@Inject
+	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+						 Scenario scenario, ScoringFunctionFactory scoringFunctionFactory) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, scenario.getPopulation(), scoringFunctionFactory,
+				scenario, scenario.getConfig().parallelEventHandling().getNumberOfScoringThreads());
+	}
+
+	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+						 Population population, ScoringFunctionFactory scoringFunctionFactory, Scenario scenario, int numberOfShards) {
 		controlerListenerManager.addControlerListener(new IterationStartsListener() {
 			@Override
 			public void notifyIterationStarts(IterationStartsEvent event) {
@@ -104,8 +145,26 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 		this.population = population;
 		this.scoringFunctionFactory = scoringFunctionFactory;
 		eventsManager.addHandler(this);
-		eventsToActivities.addActivityHandler(this);
-		eventsToLegs.addLegHandler(this);
+		if (numberOfShards > 0) {
+			// the shards build legs and activities themselves, so do not listen to the shared instances
+			this.shards = new Shard[numberOfShards];
+			for (int i = 0; i < numberOfShards; i++) {
+				this.shards[i] = new Shard(i, scenario);
+			}
+			controlerListenerManager.addControlerListener(new AfterMobsimListener() {
+				@Override
+				public void notifyAfterMobsim(AfterMobsimEvent event) {
+					stopShards();
+					for (Shard shard : ScoringFunctionsForPopulation.this.shards) {
+						shard.eventsToActivities.finish();
+					}
+				}
+			});
+		} else {
+			this.shards = null;
+			eventsToActivities.addActivityHandler(this);
+			eventsToLegs.addLegHandler(this);
+		}
 	}
 
 	private void init() {
@@ -115,62 +174,88 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 			this.partialScores.put(person.getId(), new TDoubleArrayList());
 			this.tripRecords.put(person.getId(), PopulationUtils.createPlan());
 		}
+		if (this.shards != null) {
+			stopShards();
+			this.vehicleShards.clear();
+			for (Shard shard : this.shards) {
+				shard.reset();
+				shard.start();
+			}
+			this.shardsRunning = true;
+		}
 	}
 
 	@Override
-	synchronized public void handleEvent(Event o) {
-		// this is for the stuff that is directly based on events.
-		// note that this passes on _all_ person events, even those which are aggregated into legs and activities.
-		// for the time being, not all PersonEvents may "implement HasPersonId".
-		// link enter/leave events are NOT passed on, for performance reasons.
-		// kai/dominik, dec'12
-		if (o instanceof HasPersonId) {
-			ScoringFunction scoringFunction = getScoringFunctionForAgent(((HasPersonId) o).getPersonId());
-			if (scoringFunction != null) {
-				if (o instanceof PersonStuckEvent) {
-					scoringFunction.agentStuck(o.getTime());
-				} else if (o instanceof PersonMoneyEvent) {
-					scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
-					// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
-					// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
-				} else if (o instanceof PersonScoreEvent) {
-					scoringFunction.addScore(((PersonScoreEvent) o).getAmount());
-				}
-//				else {
-					scoringFunction.handleEvent(o);
-					// passing this on in any case, see comment above.  kai, mar'17
-//				}
+	public void handleEvent(Event o) {
+		if (this.shards != null) {
+			dispatchToShards(o);
+			return;
+		}
+		synchronized (this) {
+			// this is for the stuff that is directly based on events.
+			// note that this passes on _all_ person events, even those which are aggregated into legs and activities.
+			// for the time being, not all PersonEvents may "implement HasPersonId".
+			// link enter/leave events are NOT passed on, for performance reasons.
+			// kai/dominik, dec'12
+			if (o instanceof HasPersonId) {
+				handlePersonEvent(o, ((HasPersonId) o).getPersonId());
+			}
+
+			// Establish and end connection between driver and vehicle
+			if (o instanceof VehicleEntersTrafficEvent) {
+				this.vehicles2Drivers.handleEvent((VehicleEntersTrafficEvent) o);
+			}
+			if (o instanceof VehicleLeavesTrafficEvent) {
+				this.vehicles2Drivers.handleEvent((VehicleLeavesTrafficEvent) o);
+			}
+			// Pass LinkEnterEvent to person scoring, required e.g. for bicycle where link attributes are observed in scoring
+			/*
+			 * (This shouldn't really be more expensive than passing the link events to the router: here, we have a map lookup
+			 * for agentId, there we have a map lookup for linkId. Should be somewhat similar in terms of average
+			 * computational complexity. In BetaTravelTest, 194sec w/ "false", 193sec w/ "true". However, the experienced
+			 * plans service in fact does the same thing, so we should be able to get away without having to do this twice.
+			 * kai, mar'17)
+			 */
+			if ( o instanceof LinkEnterEvent ) {
+				Id<Vehicle> vehicleId = ((LinkEnterEvent)o).getVehicleId();
+				handleDriverEvent(o, this.vehicles2Drivers.getDriverOfVehicle(vehicleId));
 			}
 		}
+	}
 
-		// Establish and end connection between driver and vehicle
-		if (o instanceof VehicleEntersTrafficEvent) {
-			this.vehicles2Drivers.handleEvent((VehicleEntersTrafficEvent) o);
-		}
-		if (o instanceof VehicleLeavesTrafficEvent) {
-			this.vehicles2Drivers.handleEvent((VehicleLeavesTrafficEvent) o);
-		}
-		// Pass LinkEnterEvent to person scoring, required e.g. for bicycle where link attributes are observed in scoring
-		/*
-		 * (This shouldn't really be more expensive than passing the link events to the router: here, we have a map lookup
-		 * for agentId, there we have a map lookup for linkId. Should be somewhat similar in terms of average
-		 * computational complexity. In BetaTravelTest, 194sec w/ "false", 193sec w/ "true". However, the experienced
-		 * plans service in fact does the same thing, so we should be able to get away without having to do this twice.
-		 * kai, mar'17)
-		 */
-		if ( o instanceof LinkEnterEvent ) {
-			Id<Vehicle> vehicleId = ((LinkEnterEvent)o).getVehicleId();
-			Id<Person> driverId = this.vehicles2Drivers.getDriverOfVehicle(vehicleId);
-			ScoringFunction scoringFunction = getScoringFunctionForAgent( driverId );
-			// (this will NOT do the scoring function lookup twice since LinkEnterEvent is not an instance of HasPersonId.  kai, mar'17)
-			if (scoringFunction != null) {
-				scoringFunction.handleEvent(o);
+	private void handlePersonEvent(Event o, Id<Person> personId) {
+		ScoringFunction scoringFunction = getScoringFunctionForAgent(personId);
+		if (scoringFunction != null) {
+			if (o instanceof PersonStuckEvent) {
+				scoringFunction.agentStuck(o.getTime());
+			} else if (o instanceof PersonMoneyEvent) {
+				scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
+				// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
+				// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
+			} else if (o instanceof PersonScoreEvent) {
+				scoringFunction.addScore(((PersonScoreEvent) o).getAmount());
 			}
+//			else {
+				scoringFunction.handleEvent(o);
+				// passing this on in any case, see comment above.  kai, mar'17
+//			}
+		}
+	}
+
+	private void handleDriverEvent(Event o, Id<Person> driverId) {
+		ScoringFunction scoringFunction = getScoringFunctionForAgent( driverId );
+		// (this will NOT do the scoring function lookup twice since LinkEnterEvent is not an instance of HasPersonId.  kai, mar'17)
+		if (scoringFunction != null) {
+			scoringFunction.handleEvent(o);
 		}
 	}
 
 	@Override
 	synchronized public void handleLeg(PersonExperiencedLeg o) {
+		scoreLeg(o);
+	}
+
+	private void scoreLeg(PersonExperiencedLeg o) {
 		Id<Person> agentId = o.getAgentId();
 		Leg leg = o.getLeg();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -187,6 +272,10 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 
 	@Override
 	synchronized public void handleActivity(PersonExperiencedActivity o) {
+		scoreActivity(o);
+	}
+
+	private void scoreActivity(PersonExperiencedActivity o) {
 		Id<Person> agentId = o.getAgentId();
 		Activity activity = o.getActivity();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -243,6 +332,9 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	}
 
 	public void finishScoringFunctions() {
+		if (this.shards != null) {
+			stopShards();
+		}
 		// Rethrow an exception in a scoring function (user code) if there was one.
 		Throwable throwable = this.exception.get();
 		if (throwable != null) {
@@ -281,4 +373,213 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 
 	}
 
+	private int getShardIndex(Id<Person> personId) {
+		return personId.index() % this.shards.length;
+	}
+
+	private void dispatchToShards(Event o) {
+		if (o instanceof VehicleEntersTrafficEvent) {
+			// the driver's shard needs all link enter events of the vehicle, and every shard needs to know the driver
+			VehicleEntersTrafficEvent event = (VehicleEntersTrafficEvent) o;
+			markVehicleShard(event.getVehicleId(), getShardIndex(event.getPersonId()));
+			dispatchToAllShards(o);
+		} else if (o instanceof VehicleLeavesTrafficEvent || o instanceof TransitDriverStartsEvent || o instanceof VehicleArrivesAtFacilityEvent) {
+			// passengers may board later, and their legs need the current position and line of the vehicle
+			dispatchToAllShards(o);
+		} else if (o instanceof LinkEnterEvent) {
+			BitSet vehicleShardIndices = this.vehicleShards.get(((LinkEnterEvent) o).getVehicleId());
+			if (vehicleShardIndices != null) {
+				for (int i = vehicleShardIndices.nextSetBit(0); i >= 0; i = vehicleShardIndices.nextSetBit(i + 1)) {
+					dispatchToShard(this.shards[i], o);
+				}
+			}
+		} else if (o instanceof HasPersonId) {
+			int shardIndex = getShardIndex(((HasPersonId) o).getPersonId());
+			if (o instanceof PersonEntersVehicleEvent) {
+				markVehicleShard(((PersonEntersVehicleEvent) o).getVehicleId(), shardIndex);
+			}
+			dispatchToShard(this.shards[shardIndex], o);
+		}
+		// all other events are neither scored nor needed for legs or activities
+	}
+
+	private void markVehicleShard(Id<Vehicle> vehicleId, int shardIndex) {
+		BitSet vehicleShardIndices = this.vehicleShards.get(vehicleId);
+		if (vehicleShardIndices == null) {
+			vehicleShardIndices = new BitSet(this.shards.length);
+			this.vehicleShards.put(vehicleId, vehicleShardIndices);
+		}
+		vehicleShardIndices.set(shardIndex);
+	}
+
+	private void dispatchToAllShards(Event o) {
+		for (Shard shard : this.shards) {
+			dispatchToShard(shard, o);
+		}
+	}
+
+	private void dispatchToShard(Shard shard, Event o) {
+		if (!this.shardsRunning) {
+			// e.g. events thrown after the mobsim
+			shard.handleEvent(o);
+			return;
+		}
+		shard.batch.add(o);
+		if (shard.batch.size() >= SHARD_BATCH_SIZE) {
+			shard.submitBatch();
+		}
+	}
+
+	private void stopShards() {
+		if (!this.shardsRunning) {
+			return;
+		}
+		for (Shard shard : this.shards) {
+			shard.submitBatch();
+			shard.put(STOP);
+		}
+		for (Shard shard : this.shards) {
+			shard.join();
+		}
+		this.shardsRunning = false;
+	}
+
+	private final class Shard implements Runnable, EventsToLegs.LegHandler, EventsToActivities.ActivityHandler {
+
+		private final int index;
+		private final EventsToLegs eventsToLegs;
+		private final EventsToActivities eventsToActivities = new EventsToActivities();
+		private final Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
+		private final BlockingQueue<List<Event>> queue = new ArrayBlockingQueue<>(SHARD_QUEUE_CAPACITY);
+		private List<Event> batch = new ArrayList<>(SHARD_BATCH_SIZE);
+		private Thread thread = null;
+
+		Shard(int index, Scenario scenario) {
+			this.index = index;
+			this.eventsToLegs = new EventsToLegs(scenario);
+			this.eventsToLegs.setTransitSchedule(scenario.getTransitSchedule());
+			this.eventsToLegs.addLegHandler(this);
+			this.eventsToActivities.addActivityHandler(this);
+		}
+
+		void reset() {
+			this.eventsToLegs.reset(0);
+			this.eventsToActivities.reset(0);
+			this.vehicles2Drivers.reset(0);
+			this.queue.clear();
+			this.batch.clear();
+		}
+
+		void start() {
+			this.thread = new Thread(this, "ScoringShard." + this.index);
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		void submitBatch() {
+			if (!this.batch.isEmpty()) {
+				put(this.batch);
+				this.batch = new ArrayList<>(SHARD_BATCH_SIZE);
+			}
+		}
+
+		void put(List<Event> events) {
+			try {
+				this.queue.put(events);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		void join() {
+			try {
+				this.thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			this.thread = null;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					List<Event> events = this.queue.take();
+					if (events == STOP) {
+						return;
+					}
+					// after an exception, only drain the queue so that the events handling does not block
+					if (ScoringFunctionsForPopulation.this.exception.get() == null) {
+						try {
+							for (Event event : events) {
+								handleEvent(event);
+							}
+						} catch (RuntimeException | Error e) {
+							log.error("Scoring shard " + this.index + " died with exception.", e);
+							ScoringFunctionsForPopulation.this.exception.compareAndSet(null, e);
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				ScoringFunctionsForPopulation.this.exception.compareAndSet(null, e);
+			}
+		}
+
+		private boolean isOwnPerson(Id<Person> personId) {
+			return personId != null && getShardIndex(personId) == this.index;
+		}
+
+		void handleEvent(Event o) {
+			// first the scoring of the events, as in the serial case ...
+			if (o instanceof HasPersonId && isOwnPerson(((HasPersonId) o).getPersonId())) {
+				handlePersonEvent(o, ((HasPersonId) o).getPersonId());
+			}
+			if (o instanceof VehicleEntersTrafficEvent) {
+				this.vehicles2Drivers.handleEvent((VehicleEntersTrafficEvent) o);
+			} else if (o instanceof VehicleLeavesTrafficEvent) {
+				this.vehicles2Drivers.handleEvent((VehicleLeavesTrafficEvent) o);
+			} else if (o instanceof LinkEnterEvent) {
+				Id<Person> driverId = this.vehicles2Drivers.getDriverOfVehicle(((LinkEnterEvent) o).getVehicleId());
+				if (isOwnPerson(driverId)) {
+					handleDriverEvent(o, driverId);
+				}
+			}
+
+			// ... then building the legs and activities, which calls back into handleLeg and handleActivity
+			if (o instanceof ActivityEndEvent) {
+				this.eventsToActivities.handleEvent((ActivityEndEvent) o);
+			} else if (o instanceof ActivityStartEvent) {
+				this.eventsToActivities.handleEvent((ActivityStartEvent) o);
+			} else if (o instanceof PersonDepartureEvent) {
+				this.eventsToLegs.handleEvent((PersonDepartureEvent) o);
+			} else if (o instanceof PersonArrivalEvent) {
+				this.eventsToLegs.handleEvent((PersonArrivalEvent) o);
+			} else if (o instanceof LinkEnterEvent) {
+				this.eventsToLegs.handleEvent((LinkEnterEvent) o);
+			} else if (o instanceof TeleportationArrivalEvent) {
+				this.eventsToLegs.handleEvent((TeleportationArrivalEvent) o);
+			} else if (o instanceof TransitDriverStartsEvent) {
+				this.eventsToLegs.handleEvent((TransitDriverStartsEvent) o);
+			} else if (o instanceof PersonEntersVehicleEvent) {
+				this.eventsToLegs.handleEvent((PersonEntersVehicleEvent) o);
+			} else if (o instanceof VehicleArrivesAtFacilityEvent) {
+				this.eventsToLegs.handleEvent((VehicleArrivesAtFacilityEvent) o);
+			} else if (o instanceof VehicleEntersTrafficEvent) {
+				this.eventsToLegs.handleEvent((VehicleEntersTrafficEvent) o);
+			} else if (o instanceof VehicleLeavesTrafficEvent) {
+				this.eventsToLegs.handleEvent((VehicleLeavesTrafficEvent) o);
+			}
+		}
+
+		@Override
+		public void handleLeg(PersonExperiencedLeg leg) {
+			scoreLeg(leg);
+		}
+
+		@Override
+		public void handleActivity(PersonExperiencedActivity activity) {
+			scoreActivity(activity);
+		}
+	}
+
 }
@@ -0,0 +1,85 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IndexedDataContainerProvider.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2021 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Stores the {@link TravelTimeData} in an array indexed by {@link Id#index()} of the link ids.
+ * As each link has its own slot in the array, data for different links can be created concurrently.
+ * Links created after this provider use a concurrent map as fallback.
+ */
+class IndexedDataContainerProvider implements DataContainerProvider {
+
+	private final TravelTimeData[] linkData;
+	private final Map<Id<Link>, TravelTimeData> additionalLinkData = new ConcurrentHashMap<>();
+	private final TravelTimeDataFactory ttDataFactory;
+
+	IndexedDataContainerProvider(int linkIdCount, TravelTimeDataFactory ttDataFactory) {
+		this.linkData = new TravelTimeData[linkIdCount];
+		this.ttDataFactory = ttDataFactory;
+	}
+
+	@Override
+	public TravelTimeData getTravelTimeData(Id<Link> linkId, boolean createIfMissing) {
+		int index = linkId.index();
+		if (index >= this.linkData.length) {
+			if (createIfMissing) {
+				return this.additionalLinkData.computeIfAbsent(linkId, this.ttDataFactory::createTravelTimeData);
+			}
+			return this.additionalLinkData.get(linkId);
+		}
+		TravelTimeData data = this.linkData[index];
+		if (data == null && createIfMissing) {
+			data = this.ttDataFactory.createTravelTimeData(linkId);
+			this.linkData[index] = data;
+		}
+		return data;
+	}
+
+	@Override
+	public TravelTimeData getTravelTimeData(Link link, boolean createIfMissing) {
+		return this.getTravelTimeData(link.getId(), createIfMissing);
+	}
+
+	/**
+	 * Passes the data of all links with an index in <code>[fromLinkIndex, toLinkIndex)</code> to the consumer.
+	 */
+	void forEach(int fromLinkIndex, int toLinkIndex, Consumer<TravelTimeData> consumer) {
+		for (int i = fromLinkIndex, n = Math.min(toLinkIndex, this.linkData.length); i < n; i++) {
+			TravelTimeData data = this.linkData[i];
+			if (data != null) {
+				consumer.accept(data);
+			}
+		}
+		this.additionalLinkData.forEach((linkId, data) -> {
+			int index = linkId.index();
+			if (index >= fromLinkIndex && index < toLinkIndex) {
+				consumer.accept(data);
+			}
+		});
+	}
+}
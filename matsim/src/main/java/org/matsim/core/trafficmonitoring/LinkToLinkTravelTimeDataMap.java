@@ -0,0 +1,135 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkToLinkTravelTimeDataMap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2021 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Stores the {@link TravelTimeData} per turn (from-link, to-link) in an open-addressing hash map.
+ * The key is the packed pair of link indices, so no key object has to be created for a lookup.
+ * <br>
+ * Only one thread may add data at a time, but other threads (e.g. routers) may read concurrently.
+ * The arrays are published as one {@link Table} through a volatile field, so a reader never combines
+ * the keys, values and mask of different sizes. Within a table, the key of a slot is written before
+ * its value, and the value is read with volatile semantics before the key, so a reader that finds a
+ * value also sees its key. A concurrent reader might miss a turn that is just being added.
+ */
+final class LinkToLinkTravelTimeDataMap {
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private volatile Table table;
+	private int size = 0;
+
+	LinkToLinkTravelTimeDataMap(int expectedSize) {
+		int capacity = 16;
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+		this.table = new Table(capacity);
+	}
+
+	static long key(int fromLinkIndex, int toLinkIndex) {
+		return ((long) fromLinkIndex << 32) | (toLinkIndex & 0xffffffffL);
+	}
+
+	TravelTimeData get(long key) {
+		Table table = this.table;
+		int pos = hash(key) & table.mask;
+		while (true) {
+			TravelTimeData value = table.values.get(pos);
+			if (value == null) {
+				return null;
+			}
+			if (table.keys[pos] == key) {
+				return value;
+			}
+			pos = (pos + 1) & table.mask;
+		}
+	}
+
+	void put(long key, TravelTimeData value) {
+		Table table = this.table;
+		int pos = hash(key) & table.mask;
+		while (table.values.get(pos) != null) {
+			if (table.keys[pos] == key) {
+				table.values.set(pos, value);
+				return;
+			}
+			pos = (pos + 1) & table.mask;
+		}
+		table.keys[pos] = key;
+		table.values.set(pos, value);
+		this.size++;
+		if (this.size > table.keys.length * LOAD_FACTOR) {
+			grow(table);
+		}
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	void forEach(Consumer<TravelTimeData> consumer) {
+		Table table = this.table;
+		for (int i = 0; i < table.keys.length; i++) {
+			TravelTimeData value = table.values.get(i);
+			if (value != null) {
+				consumer.accept(value);
+			}
+		}
+	}
+
+	private void grow(Table oldTable) {
+		Table newTable = new Table(oldTable.keys.length << 1);
+		for (int i = 0; i < oldTable.keys.length; i++) {
+			TravelTimeData value = oldTable.values.get(i);
+			if (value != null) {
+				int pos = hash(oldTable.keys[i]) & newTable.mask;
+				while (newTable.values.get(pos) != null) {
+					pos = (pos + 1) & newTable.mask;
+				}
+				newTable.keys[pos] = oldTable.keys[i];
+				newTable.values.set(pos, value);
+			}
+		}
+		// the old table is not modified anymore, so readers still using it see a consistent state
+		this.table = newTable;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static final class Table {
+		final long[] keys;
+		final AtomicReferenceArray<TravelTimeData> values;
+		final int mask;
+
+		Table(int capacity) {
+			this.keys = new long[capacity];
+			this.values = new AtomicReferenceArray<>(capacity);
+			this.mask = capacity - 1;
+		}
+	}
+}
@@ -41,6 +41,7 @@ import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.VehicleStateStorage;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.router.util.LinkToLinkTravelTime;
 import org.matsim.core.router.util.TravelTime;
@@ -49,6 +50,8 @@ import org.matsim.core.utils.collections.Tuple;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleType;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -65,6 +68,12 @@ import java.util.concurrent.ConcurrentHashMap;
  * use {@link TravelTimeDataHashMap},}
  * as that one does not use any memory to time bins where no traffic occurred. By default,
  * {@link TravelTimeDataArray} is used.
+ * <br>
+ * With {@link VehicleStateStorage#indexBased}, the link enter times of the vehicles are stored in arrays indexed
+ * by {@link Id#index()} instead of a map of events, and the link-to-link data is keyed by the packed link indices.
+ * The links are additionally split into index ranges ("shards"). Each shard only writes the travel time data
+ * of its own links, so the shards can be registered as separate event handlers (see {@link #addEventHandlersTo(EventsManager)})
+ * and be run concurrently by a parallel events manager without any locking.
  *
  * @author dgrether
  * @author mrieser
@@ -90,6 +99,10 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 	private final Map<Id<Vehicle>, LinkEnterEvent> linkEnterEvents;
 
+	private final IndexedDataContainerProvider indexedLinkData;
+	private final Shard[] shards;
+	private final int linksPerShard;
+
 	private final Set<Id<Vehicle>> vehiclesToIgnore;
 	private final Set<String> analyzedModes;
 
@@ -146,8 +159,9 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 	TravelTimeCalculator(TravelTimeCalculatorConfigGroup ttconfigGroup, EventsManager eventsManager, Network network) {
 		// this injected constructor is not used when getSeparateModes is true
 		this(network, ttconfigGroup.getTraveltimeBinSize(), ttconfigGroup.getMaxTime(), ttconfigGroup.isCalculateLinkTravelTimes(),
-			  ttconfigGroup.isCalculateLinkToLinkTravelTimes(), ttconfigGroup.isFilterModes(), CollectionUtils.stringToSet(ttconfigGroup.getAnalyzedModesAsString() ) );
-		eventsManager.addHandler(this);
+			  ttconfigGroup.isCalculateLinkToLinkTravelTimes(), ttconfigGroup.isFilterModes(), CollectionUtils.stringToSet(ttconfigGroup.getAnalyzedModesAsString() ),
+			  ttconfigGroup.getVehicleStateStorage(), ttconfigGroup.getNumberOfShards() );
+		this.addEventHandlersTo(eventsManager);
 		configure(this, ttconfigGroup, network);
 	}
 
@@ -161,7 +175,7 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 	@Deprecated // user builder instead.  kai, feb'19
 	public TravelTimeCalculator(final Network network, final int timeslice, final int maxTime, TravelTimeCalculatorConfigGroup ttconfigGroup) {
 		this(network, timeslice, maxTime, ttconfigGroup.isCalculateLinkTravelTimes(), ttconfigGroup.isCalculateLinkToLinkTravelTimes(), ttconfigGroup.isFilterModes(),
-			  CollectionUtils.stringToSet(ttconfigGroup.getAnalyzedModesAsString() ) );
+			  CollectionUtils.stringToSet(ttconfigGroup.getAnalyzedModesAsString() ), ttconfigGroup.getVehicleStateStorage(), ttconfigGroup.getNumberOfShards() );
 	}
 
 	public final static class Builder {
@@ -174,6 +188,8 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		private boolean calculateLinkToLinkTravelTimes = false ;
 		private boolean filterModes = false ;
 		private Set<String> analyzedModes = null ;
+		private VehicleStateStorage vehicleStateStorage = VehicleStateStorage.mapBased ;
+		private int numberOfShards = 1 ;
 		private TravelTimeCalculatorConfigGroup ttcConfig;
 		private boolean toBeConfigured = false ;
 
@@ -205,6 +221,14 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 			this.analyzedModes = analyzedModes;
 		}
 
+		public void setVehicleStateStorage( VehicleStateStorage vehicleStateStorage ){
+			this.vehicleStateStorage = vehicleStateStorage;
+		}
+
+		public void setNumberOfShards( int numberOfShards ){
+			this.numberOfShards = numberOfShards;
+		}
+
 		public void configure ( TravelTimeCalculatorConfigGroup ttcConfig ) {
 			// yyyyyy this is a fix to get the outward API sorted out somewhat better.  kai, feb'19
 			// yyyyyy presumably would like to replace this with setters for {@link TravelTimeDataFactory} and {@link TravelTimeGetter}.  But it ain't that easy because
@@ -216,7 +240,7 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 		public TravelTimeCalculator build() {
 			TravelTimeCalculator abc = new TravelTimeCalculator( network, timeslice, maxTime, calculateLinkTravelTimes, calculateLinkToLinkTravelTimes, filterModes,
-				  analyzedModes );
+				  analyzedModes, vehicleStateStorage, numberOfShards );
 			if( toBeConfigured ){
 				TravelTimeCalculator.configure( abc, this.ttcConfig, this.network );
 			}
@@ -226,7 +250,8 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 	}
 
 	private TravelTimeCalculator(final Network network, final int timeslice, final int maxTime,
-				   boolean calculateLinkTravelTimes, boolean calculateLinkToLinkTravelTimes, boolean filterModes, Set<String> analyzedModes) {
+				   boolean calculateLinkTravelTimes, boolean calculateLinkToLinkTravelTimes, boolean filterModes, Set<String> analyzedModes,
+				   VehicleStateStorage vehicleStateStorage, int numberOfShards) {
 		this.calculateLinkTravelTimes = calculateLinkTravelTimes;
 		this.calculateLinkToLinkTravelTimes = calculateLinkToLinkTravelTimes;
 		this.filterAnalyzedModes = filterModes;
@@ -236,7 +261,9 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		this.aggregator = new TimeSlotComputation(this.numSlots, this.timeSlice);
 		this.travelTimeGetter = new AveragingTravelTimeGetter( this.aggregator ) ;
 		this.ttDataFactory = new TravelTimeDataArrayFactory(network, this.numSlots);
-		if (this.calculateLinkTravelTimes){
+		boolean isIndexBased = vehicleStateStorage == VehicleStateStorage.indexBased;
+		// with the index-based vehicle state storage, the shards store the data in their own, index-based data structures
+		if (this.calculateLinkTravelTimes && !isIndexBased){
 			this.linkData = new IdMap<>(Link.class);
 
 			/*
@@ -252,11 +279,31 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 			//		this.dataContainerProvider = new MapBasedDataContainerProvider(linkData, ttDataFactory);
 			this.dataContainerProvider = new ArrayBasedDataContainerProvider(linkData, ttDataFactory, network);
 		} else this.dataContainerProvider = null;
-		if (this.calculateLinkToLinkTravelTimes){
+		if (this.calculateLinkToLinkTravelTimes && !isIndexBased){
 			// assume that every link has 2 outgoing links as default
 			this.linkToLinkData = new ConcurrentHashMap<>((int) (network.getLinks().size() * 1.4 * 2));
 		}
-		this.linkEnterEvents = new ConcurrentHashMap<>();
+
+		if (isIndexBased) {
+			int linkIdCount = Id.getNumberOfIds(Link.class);
+			int shardCount = Math.max(1, numberOfShards);
+			this.linksPerShard = Math.max(1, (linkIdCount + shardCount - 1) / shardCount);
+			// use the factory currently set, it might be replaced when the calculator gets configured
+			this.indexedLinkData = this.calculateLinkTravelTimes ? new IndexedDataContainerProvider(linkIdCount, linkId -> this.ttDataFactory.createTravelTimeData(linkId)) : null;
+			this.shards = new Shard[shardCount];
+			for (int i = 0; i < shardCount; i++) {
+				this.shards[i] = new Shard(i, this.calculateLinkToLinkTravelTimes ? 3 * network.getLinks().size() / shardCount : 0);
+			}
+			this.linkEnterEvents = null;
+		} else {
+			if (numberOfShards > 1) {
+				log.warn("numberOfShards > 1 is only supported with the index-based vehicle state storage and is ignored.");
+			}
+			this.linksPerShard = 0;
+			this.indexedLinkData = null;
+			this.shards = null;
+			this.linkEnterEvents = new ConcurrentHashMap<>();
+		}
 
 		// if we just look at one mode, we need to ignore all vehicles with a different mode. However, the info re the mode is only in
 		// the vehicleEntersTraffic event.  So we need to memorize the ignored vehicles from there ...
@@ -265,8 +312,33 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		this.reset(0);
 	}
 
+	/**
+	 * Adds this calculator to the events manager. With the index-based vehicle state storage, each shard is added as
+	 * a separate event handler instead, so that a parallel events manager can distribute them to different threads.
+	 * Do not additionally add the calculator itself, as the events would then be counted twice.
+	 */
+	public void addEventHandlersTo(EventsManager eventsManager) {
+		if (this.shards == null) {
+			eventsManager.addHandler(this);
+		} else {
+			for (Shard shard : this.shards) {
+				eventsManager.addHandler(shard);
+			}
+		}
+	}
+
+	private int getShardIndex(int linkIndex) {
+		return Math.min(linkIndex / this.linksPerShard, this.shards.length - 1);
+	}
+
 	@Override
 	public void handleEvent(final LinkEnterEvent e) {
+		if (this.shards != null) {
+			for (Shard shard : this.shards) {
+				shard.handleEvent(e);
+			}
+			return;
+		}
 		/* if only some modes are analyzed, we check whether the vehicles
 		 * performs a trip with one of those modes. if not, we skip the event. */
 		if (filterAnalyzedModes && vehiclesToIgnore.contains(e.getVehicleId())) return;
@@ -285,6 +357,10 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 	@Override
 	public void handleEvent(final LinkLeaveEvent e) {
+		if (this.shards != null) {
+			this.shards[getShardIndex(e.getLinkId().index())].handleEvent(e);
+			return;
+		}
 		if (this.calculateLinkTravelTimes) {
 			LinkEnterEvent oldEvent = this.linkEnterEvents.get(e.getVehicleId());
 			if (oldEvent != null) {
@@ -300,6 +376,12 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 	@Override
 	public void handleEvent(VehicleEntersTrafficEvent event) {
+		if (this.shards != null) {
+			for (Shard shard : this.shards) {
+				shard.handleEvent(event);
+			}
+			return;
+		}
 		/* if filtering transport modes is enabled and the vehicles
 		 * starts a leg on a non analyzed transport mode, add the vehicle
 		 * to the filtered vehicles set. */
@@ -310,6 +392,12 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 	@Override
 	public void handleEvent(final VehicleLeavesTrafficEvent event) {
+		if (this.shards != null) {
+			for (Shard shard : this.shards) {
+				shard.handleEvent(event);
+			}
+			return;
+		}
 		/* remove EnterEvents from list when a vehicle arrives.
 		 * otherwise, the activity duration would counted as travel time, when the
 		 * vehicle departs again and leaves the link! */
@@ -321,6 +409,12 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 	@Override
 	public void handleEvent(VehicleArrivesAtFacilityEvent event) {
+		if (this.shards != null) {
+			for (Shard shard : this.shards) {
+				shard.handleEvent(event);
+			}
+			return;
+		}
 		/* remove EnterEvents from list when a bus stops on a link.
 		 * otherwise, the stop time would counted as travel time, when the
 		 * bus departs again and leaves the link! */
@@ -329,6 +423,12 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 	@Override
 	public void handleEvent(VehicleAbortsEvent event) {
+		if (this.shards != null) {
+			for (Shard shard : this.shards) {
+				shard.handleEvent(event);
+			}
+			return;
+		}
 		LinkEnterEvent e = this.linkEnterEvents.remove(event.getVehicleId());
 		if (e != null) {
 			TravelTimeData data = this.dataContainerProvider.getTravelTimeData(e.getLinkId(), true);
@@ -350,6 +450,155 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		if (filterAnalyzedModes) this.vehiclesToIgnore.remove(event.getVehicleId());
 	}
 
+	/**
+	 * Handles the events for the links in the index range <code>[shardIndex * linksPerShard, (shardIndex + 1) * linksPerShard)</code>
+	 * (the last shard takes all remaining links). Each shard keeps its own copy of the vehicle states, and only writes
+	 * to the travel time data of its own links, resp. of the turns starting on its own links. Thus, different shards
+	 * never write to the same data and can handle the events concurrently.
+	 */
+	private final class Shard implements LinkEnterEventHandler, LinkLeaveEventHandler, VehicleEntersTrafficEventHandler,
+			VehicleLeavesTrafficEventHandler, VehicleArrivesAtFacilityEventHandler, VehicleAbortsEventHandler {
+
+		private final int shardIndex;
+		private double[] enterTimes;
+		private int[] enterLinks;
+		private final BitSet vehiclesToIgnore = new BitSet();
+		private final LinkToLinkTravelTimeDataMap linkToLinkData;
+
+		Shard(int shardIndex, int expectedLinkToLinkCount) {
+			this.shardIndex = shardIndex;
+			int vehicleIdCount = Math.max(16, Id.getNumberOfIds(Vehicle.class));
+			this.enterTimes = new double[vehicleIdCount];
+			this.enterLinks = new int[vehicleIdCount];
+			Arrays.fill(this.enterLinks, -1);
+			this.linkToLinkData = new LinkToLinkTravelTimeDataMap(expectedLinkToLinkCount);
+		}
+
+		private boolean isResponsible(int linkIndex) {
+			return getShardIndex(linkIndex) == this.shardIndex;
+		}
+
+		private void ensureCapacity(int vehicleIndex) {
+			if (vehicleIndex >= this.enterLinks.length) {
+				int oldLength = this.enterLinks.length;
+				int newLength = Math.max(vehicleIndex + 1, oldLength + (oldLength >> 1));
+				this.enterTimes = Arrays.copyOf(this.enterTimes, newLength);
+				this.enterLinks = Arrays.copyOf(this.enterLinks, newLength);
+				Arrays.fill(this.enterLinks, oldLength, newLength, -1);
+			}
+		}
+
+		private void clearVehicle(int vehicleIndex) {
+			if (vehicleIndex < this.enterLinks.length) {
+				this.enterLinks[vehicleIndex] = -1;
+			}
+		}
+
+		@Override
+		public void handleEvent(LinkEnterEvent e) {
+			int vehicleIndex = e.getVehicleId().index();
+			if (filterAnalyzedModes && this.vehiclesToIgnore.get(vehicleIndex)) return;
+			ensureCapacity(vehicleIndex);
+
+			int fromLinkIndex = this.enterLinks[vehicleIndex];
+			if (fromLinkIndex >= 0) {
+				if (calculateLinkToLinkTravelTimes) {
+					long key = LinkToLinkTravelTimeDataMap.key(fromLinkIndex, e.getLinkId().index());
+					TravelTimeData data = this.linkToLinkData.get(key);
+					if (data == null) {
+						data = ttDataFactory.createTravelTimeData(Id.get(fromLinkIndex, Link.class));
+						this.linkToLinkData.put(key, data);
+					}
+					double enterTime = this.enterTimes[vehicleIndex];
+					final int timeSlot = aggregator.getTimeSlotIndex(enterTime);
+					data.addTravelTime(timeSlot, e.getTime() - enterTime);
+					data.setNeedsConsolidation( true );
+				}
+				this.enterLinks[vehicleIndex] = -1;
+			}
+
+			int linkIndex = e.getLinkId().index();
+			if (isResponsible(linkIndex)) {
+				this.enterLinks[vehicleIndex] = linkIndex;
+				this.enterTimes[vehicleIndex] = e.getTime();
+			}
+		}
+
+		@Override
+		public void handleEvent(LinkLeaveEvent e) {
+			if (calculateLinkTravelTimes) {
+				int vehicleIndex = e.getVehicleId().index();
+				int linkIndex = e.getLinkId().index();
+				if (vehicleIndex < this.enterLinks.length && this.enterLinks[vehicleIndex] == linkIndex) {
+					TravelTimeData data = indexedLinkData.getTravelTimeData(e.getLinkId(), true);
+					double enterTime = this.enterTimes[vehicleIndex];
+
+					final int timeSlot = aggregator.getTimeSlotIndex(enterTime );
+					data.addTravelTime(timeSlot, e.getTime() - enterTime );
+					data.setNeedsConsolidation( true );
+				}
+			}
+		}
+
+		@Override
+		public void handleEvent(VehicleEntersTrafficEvent event) {
+			if (filterAnalyzedModes && !analyzedModes.contains(event.getNetworkMode())) {
+				this.vehiclesToIgnore.set(event.getVehicleId().index());
+			}
+		}
+
+		@Override
+		public void handleEvent(VehicleLeavesTrafficEvent event) {
+			int vehicleIndex = event.getVehicleId().index();
+			clearVehicle(vehicleIndex);
+			if (filterAnalyzedModes) this.vehiclesToIgnore.clear(vehicleIndex);
+		}
+
+		@Override
+		public void handleEvent(VehicleArrivesAtFacilityEvent event) {
+			clearVehicle(event.getVehicleId().index());
+		}
+
+		@Override
+		public void handleEvent(VehicleAbortsEvent event) {
+			int vehicleIndex = event.getVehicleId().index();
+			if (vehicleIndex < this.enterLinks.length && this.enterLinks[vehicleIndex] >= 0) {
+				if (calculateLinkTravelTimes) {
+					TravelTimeData data = indexedLinkData.getTravelTimeData(Id.get(this.enterLinks[vehicleIndex], Link.class), true);
+					data.setNeedsConsolidation( true );
+				}
+				if (calculateLinkToLinkTravelTimes
+						&& event.getTime() < qsimConfig.getEndTime().seconds()
+				){
+					log.error(ERROR_STUCK_AND_LINKTOLINK);
+					throw new IllegalStateException(ERROR_STUCK_AND_LINKTOLINK);
+				}
+				this.enterLinks[vehicleIndex] = -1;
+			}
+			if (filterAnalyzedModes) this.vehiclesToIgnore.clear(vehicleIndex);
+		}
+
+		@Override
+		public void reset(int iteration) {
+			// the calculator itself is not registered as event handler in this mode, so each shard resets its own data
+			Arrays.fill(this.enterLinks, -1);
+			this.vehiclesToIgnore.clear();
+			this.linkToLinkData.forEach(data -> {
+				data.resetTravelTimes();
+				data.setNeedsConsolidation( false );
+			});
+			if (indexedLinkData != null) {
+				int fromLinkIndex = this.shardIndex * linksPerShard;
+				// the last shard is also responsible for all links with a higher index
+				int toLinkIndex = this.shardIndex == shards.length - 1 ? Integer.MAX_VALUE : fromLinkIndex + linksPerShard;
+				indexedLinkData.forEach(fromLinkIndex, toLinkIndex, data -> {
+					data.resetTravelTimes();
+					data.setNeedsConsolidation( false );
+				});
+			}
+		}
+	}
+
 	private TravelTimeData getLinkToLinkTravelTimeData( Tuple<Id<Link>, Id<Link>> fromLinkToLink ) {
 		TravelTimeData data = this.linkToLinkData.get(fromLinkToLink);
 		if ( null == data ) {
@@ -368,7 +617,7 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 	private double getLinkTravelTime(final Link link, final double time) {
 		if (this.calculateLinkTravelTimes) {
 
-			TravelTimeData data = this.dataContainerProvider.getTravelTimeData(link, true);
+			TravelTimeData data = this.indexedLinkData != null ? this.indexedLinkData.getTravelTimeData(link, true) : this.dataContainerProvider.getTravelTimeData(link, true);
 			if ( data.isNeedingConsolidation() ) {
 				consolidateData(data);
 			}
@@ -411,7 +660,16 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 			throw new IllegalStateException("No link to link travel time is available " +
 									    "if calculation is switched off by config option!");
 		}
-		TravelTimeData data = this.getLinkToLinkTravelTimeData(new Tuple<>(fromLinkId, toLinkId) );
+		TravelTimeData data;
+		if (this.shards != null) {
+			data = this.shards[getShardIndex(fromLinkId.index())].linkToLinkData.get(LinkToLinkTravelTimeDataMap.key(fromLinkId.index(), toLinkId.index()));
+			if (data == null) {
+				// do not add it to the map, the shards are the only ones writing to it. Without observations, this just returns the free speed travel time.
+				data = this.ttDataFactory.createTravelTimeData(fromLinkId);
+			}
+		} else {
+			data = this.getLinkToLinkTravelTimeData(new Tuple<>(fromLinkId, toLinkId) );
+		}
 		if ( data.isNeedingConsolidation() ) {
 			consolidateData(data);
 		}
@@ -420,6 +678,12 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 	@Override
 	public void reset(int iteration) {
+		if (this.shards != null) {
+			for (Shard shard : this.shards) {
+				shard.reset(iteration);
+			}
+			return;
+		}
 		if (this.calculateLinkTravelTimes) {
 			for (TravelTimeData data : this.linkData.values()){
 				data.resetTravelTimes();
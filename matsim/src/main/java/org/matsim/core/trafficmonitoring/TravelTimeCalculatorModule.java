@@ -125,9 +125,11 @@ public class TravelTimeCalculatorModule extends AbstractModule {
 			builder.setCalculateLinkToLinkTravelTimes( config.isCalculateLinkToLinkTravelTimes() );
 			builder.setFilterModes( true ); // no point asking the config since we are in "separateModes" anyways.
 			builder.setAnalyzedModes( CollectionUtils.stringToSet( mode ) );
+			builder.setVehicleStateStorage( config.getVehicleStateStorage() );
+			builder.setNumberOfShards( config.getNumberOfShards() );
 			builder.configure( config );
 			TravelTimeCalculator calculator = builder.build();
-			eventsManager.addHandler( calculator );
+			calculator.addEventHandlersTo( eventsManager );
 			return calculator ;
 		}
 	}
@@ -29,11 +29,19 @@ import org.xml.sax.helpers.DefaultHandler;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
 import java.util.Stack;
 import java.util.zip.GZIPInputStream;
 
@@ -43,6 +51,10 @@ import java.util.zip.GZIPInputStream;
  * to implement a custom parser.<br>
  * The parser implements a custom <code>EntityResolver</code> to look for DTDs in the MATSim world.
  * <p></p>
+ * Two backends are available to parse the xml, see {@link ParserBackend}. The default is SAX. The faster StAX backend
+ * can be chosen with {@link #setParserBackend(ParserBackend)} or for all parsers with the system property
+ * <code>matsim.xmlParserBackend=stax</code>.
+ * <p></p>
  * Notes:<ul>
  * <li> If implementing classes want to override the final methods, the will have to resort to delegation.   
  * </ul>
@@ -53,7 +65,23 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 
 	private static final Logger log = Logger.getLogger(MatsimXmlParser.class);
 
-	private final Stack<StringBuffer> buffers = new Stack<>();
+	public static final String PARSER_BACKEND_PROPERTY = "matsim.xmlParserBackend";
+
+	/**
+	 * The implementation used to read the xml. Both call {@link #startTag} and {@link #endTag} the same way.
+	 */
+	public enum ParserBackend {
+		/** JAXP's SAX parser, supports validation against DTDs and XML Schemas. */
+		sax,
+		/**
+		 * JAXP's StAX stream reader. Does not validate, but is considerably faster. The DTD is still read to
+		 * determine the doctype of the file and for default attribute values.
+		 */
+		stax }
+
+	/* one buffer per depth, re-used for all elements on that level. Unsynchronized, in contrast to a Stack of StringBuffers. */
+	private final ArrayList<StringBuilder> buffers = new ArrayList<>();
+	private int depth = 0;
 	private final Stack<String> theContext = new Stack<>();
 
 	private boolean isValidating = true;
@@ -65,6 +93,8 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 	
 	private boolean preferLocalDtds = false;
 
+	private ParserBackend parserBackend = ParserBackend.sax;
+
 	private String doctype = null;
 	/**
 	 * As the mechanism implemented in InputSource is not really working for error handling
@@ -80,6 +110,10 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		if (localDtd != null) {
 			this.preferLocalDtds = Boolean.parseBoolean(localDtd);
 		}
+		String backend = System.getProperty(PARSER_BACKEND_PROPERTY);
+		if (backend != null) {
+			this.parserBackend = ParserBackend.valueOf(backend);
+		}
 	}
 
 	/**
@@ -112,6 +146,14 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		this.isValidating = validateXml;
 	}
 
+	/**
+	 * Sets the implementation used to parse the xml. Note that {@link ParserBackend#stax} does not validate,
+	 * independent of {@link #setValidating(boolean)}.
+	 */
+	public final void setParserBackend(final ParserBackend parserBackend) {
+		this.parserBackend = parserBackend;
+	}
+
 	/**
 	 * Specifies that the parser produced by this code will provide support for XML namespaces.
 	 * By default the value of this is set to <code>false</code>.
@@ -176,6 +218,12 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 	}
 
 	public final void parse(final InputSource input) throws UncheckedIOException {
+		this.depth = 0;
+		this.theContext.clear();
+		if (this.parserBackend == ParserBackend.stax) {
+			parseWithStax(input);
+			return;
+		}
 		try {
 			SAXParserFactory factory = SAXParserFactory.newInstance();
 			factory.setValidating(this.isValidating);
@@ -201,6 +249,132 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		}
 	}
 
+	private void parseWithStax(final InputSource input) throws UncheckedIOException {
+		if (this.isValidating) {
+			log.info("The StAX backend does not validate the xml.");
+		}
+		XMLInputFactory factory = XMLInputFactory.newFactory();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, this.isNamespaceAware);
+		factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false); // prevent XEE attack, see parse() above
+		factory.setXMLResolver((publicId, systemId, baseUri, namespace) -> {
+			try {
+				return openEntity(resolveEntity(publicId, systemId));
+			} catch (IOException e) {
+				throw new XMLStreamException("Could not open " + systemId, e);
+			}
+		});
+
+		AutoCloseable source = null;
+		XMLStreamReader reader = null;
+		try {
+			if (input.getCharacterStream() != null) {
+				Reader characterStream = input.getCharacterStream();
+				source = characterStream;
+				reader = factory.createXMLStreamReader(characterStream);
+			} else {
+				InputStream stream = input.getByteStream() != null ? input.getByteStream() : openEntity(input);
+				source = stream;
+				reader = factory.createXMLStreamReader(input.getSystemId(), stream);
+			}
+
+			StaxAttributes atts = new StaxAttributes();
+			atts.setReader(reader);
+			this.startDocument();
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+					case XMLStreamConstants.START_ELEMENT: {
+						String tag = getStaxElementName(reader);
+						if (this.doctype == null && this.depth == 0) {
+							setDoctypeFromSchemaLocation(atts);
+						}
+						startBuffer();
+						this.startTag(tag, atts, this.theContext);
+						this.theContext.push(tag);
+						break;
+					}
+					case XMLStreamConstants.END_ELEMENT: {
+						String tag = getStaxElementName(reader);
+						this.theContext.pop();
+						this.endTag(tag, endBuffer(), this.theContext);
+						break;
+					}
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+						// call characters() like SAX does, some parsers override it.
+						this.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+						break;
+					default:
+						// SPACE (ignorable whitespace), comments, processing instructions, DTD: nothing to do.
+						// The doctype is set by resolveEntity() when the DTD is loaded.
+				}
+			}
+			this.endDocument();
+		} catch (XMLStreamException e) {
+			System.err.println("XML-FATAL: " + this.theSource + ": " + e.getMessage());
+			throw new UncheckedIOException(e);
+		} catch (SAXException | IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			try {
+				if (reader != null) {
+					reader.close();
+				}
+				if (source != null) {
+					source.close();
+				}
+			} catch (Exception e) {
+				log.warn("Could not close the xml source " + this.theSource, e);
+			}
+		}
+	}
+
+	private static String getStaxElementName(XMLStreamReader reader) {
+		// same as for SAX in startElement(): local name if a namespace is used, otherwise the qualified name
+		String uri = reader.getNamespaceURI();
+		if (uri == null || uri.isEmpty()) {
+			String prefix = reader.getPrefix();
+			return (prefix == null || prefix.isEmpty()) ? reader.getLocalName() : prefix + ':' + reader.getLocalName();
+		}
+		return reader.getLocalName();
+	}
+
+	/*
+	 * The validating SAX parser resolves the XML Schema of the root element, which sets the doctype
+	 * for files without DTD. As the StAX backend does not load any schemas, look the schema up directly.
+	 */
+	private void setDoctypeFromSchemaLocation(Attributes atts) {
+		String schemaLocation = atts.getValue("http://www.w3.org/2001/XMLSchema-instance", "schemaLocation");
+		if (schemaLocation == null) {
+			schemaLocation = atts.getValue("http://www.w3.org/2001/XMLSchema-instance", "noNamespaceSchemaLocation");
+		}
+		if (schemaLocation != null) {
+			// pairs of namespace and location, the location of the first pair is the one resolved first
+			String[] parts = schemaLocation.trim().split("\\s+");
+			String location = parts.length > 1 ? parts[1] : parts[0];
+			int index = location.replace('\\', '/').lastIndexOf('/');
+			setDoctype(location.substring(index + 1));
+		}
+	}
+
+	private static InputStream openEntity(InputSource source) throws IOException {
+		if (source == null) {
+			// the DTD could not be found, continue without it like SAX does
+			return new ByteArrayInputStream(new byte[0]);
+		}
+		if (source.getByteStream() != null) {
+			return source.getByteStream();
+		}
+		String systemId = source.getSystemId();
+		File file = new File(systemId);
+		if (file.exists()) {
+			return new FileInputStream(file);
+		}
+		return new URL(systemId).openStream();
+	}
+
 	// the following may be useful.  But it is nowhere used, so I am not sure if we fully understand its longterm maintenance implications, 
 	// so I rather comment it out. If it is needed somewhere, just comment it back in (and probably (**) above) 
 	// and leave a comment.  kai, jul'16
@@ -332,10 +506,29 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 	public void characters(final char[] ch, final int start, final int length) throws SAXException {
 		// has to be non-final since otherwise the events parser does not work.  Probably ok (this here is just a default implementation). kai, jul'16
 		
-		StringBuffer buffer = this.buffers.peek();
-		if (buffer != null) {
-			buffer.append(ch, start, length);
+		if (this.depth > 0) {
+			this.buffers.get(this.depth - 1).append(ch, start, length);
+		}
+	}
+
+	private void startBuffer() {
+		if (this.depth == this.buffers.size()) {
+			this.buffers.add(new StringBuilder());
+		} else {
+			this.buffers.get(this.depth).setLength(0);
+		}
+		this.depth++;
+	}
+
+	private String endBuffer() {
+		this.depth--;
+		StringBuilder buffer = this.buffers.get(this.depth);
+		String content = buffer.length() == 0 ? "" : buffer.toString();
+		if (buffer.capacity() > 65536) {
+			// do not keep huge buffers (e.g. long route descriptions) for the rest of the file
+			this.buffers.set(this.depth, new StringBuilder());
 		}
+		return content;
 	}
 
 	@Override
@@ -343,7 +536,7 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		// I have not good intuition if making this one non-final might be ok.  kai, jul'16
 
 		String tag = (uri.length() == 0) ? qName : localName;
-		this.buffers.push(new StringBuffer());
+		startBuffer();
 		this.startTag(tag, atts, this.theContext);
 		this.theContext.push(tag);
 	}
@@ -354,8 +547,7 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		
 		String tag = (uri.length() == 0) ? qName : localName;
 		this.theContext.pop();
-		StringBuffer buffer = this.buffers.pop();
-		this.endTag(tag, buffer.toString(), this.theContext);
+		this.endTag(tag, endBuffer(), this.theContext);
 	}
 
 	/* implement ErrorHandler */
@@ -0,0 +1,128 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * StaxAttributes.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2021 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import org.xml.sax.Attributes;
+
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Provides the attributes of the current start element of a {@link XMLStreamReader} as SAX {@link Attributes},
+ * so the same <code>startTag</code> implementations can be used with the StAX backend of {@link MatsimXmlParser}.
+ *
+ * No data is copied, all calls go directly to the stream reader. Like with SAX, the attributes are only valid
+ * during the call to <code>startTag</code>, and must be copied if they are needed later.
+ * The attribute names returned by the JDK's stream reader are interned, so lookups by name with the
+ * usual String constants mostly succeed with the identity check.
+ */
+final class StaxAttributes implements Attributes {
+
+	private static final String CDATA = "CDATA";
+
+	private XMLStreamReader reader;
+
+	void setReader(XMLStreamReader reader) {
+		this.reader = reader;
+	}
+
+	@Override
+	public int getLength() {
+		return this.reader.getAttributeCount();
+	}
+
+	@Override
+	public String getURI(int index) {
+		String uri = this.reader.getAttributeNamespace(index);
+		return uri == null ? "" : uri;
+	}
+
+	@Override
+	public String getLocalName(int index) {
+		return this.reader.getAttributeLocalName(index);
+	}
+
+	@Override
+	public String getQName(int index) {
+		String prefix = this.reader.getAttributePrefix(index);
+		String localName = this.reader.getAttributeLocalName(index);
+		return (prefix == null || prefix.isEmpty()) ? localName : prefix + ':' + localName;
+	}
+
+	@Override
+	public String getType(int index) {
+		return CDATA;
+	}
+
+	@Override
+	public String getValue(int index) {
+		return this.reader.getAttributeValue(index);
+	}
+
+	@Override
+	public int getIndex(String uri, String localName) {
+		for (int i = 0, n = this.reader.getAttributeCount(); i < n; i++) {
+			String name = this.reader.getAttributeLocalName(i);
+			if ((name == localName || name.equals(localName)) && getURI(i).equals(uri)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int getIndex(String qName) {
+		for (int i = 0, n = this.reader.getAttributeCount(); i < n; i++) {
+			String prefix = this.reader.getAttributePrefix(i);
+			String name = this.reader.getAttributeLocalName(i);
+			if (prefix == null || prefix.isEmpty()) {
+				if (name == qName || name.equals(qName)) {
+					return i;
+				}
+			} else if (qName.length() == prefix.length() + 1 + name.length()
+					&& qName.startsWith(prefix) && qName.charAt(prefix.length()) == ':' && qName.endsWith(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String getType(String uri, String localName) {
+		return getIndex(uri, localName) < 0 ? null : CDATA;
+	}
+
+	@Override
+	public String getType(String qName) {
+		return getIndex(qName) < 0 ? null : CDATA;
+	}
+
+	@Override
+	public String getValue(String uri, String localName) {
+		int index = getIndex(uri, localName);
+		return index < 0 ? null : this.reader.getAttributeValue(index);
+	}
+
+	@Override
+	public String getValue(String qName) {
+		int index = getIndex(qName);
+		return index < 0 ? null : this.reader.getAttributeValue(index);
+	}
+}
@@ -5,15 +5,22 @@
 package ch.sbb.matsim.routing.pt.raptor;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.io.File;
 
 /**
  * @author mrieser / SBB
  */
 public class SwissRailRaptorDataTest {
 
+    @Rule
+    public MatsimTestUtils utils = new MatsimTestUtils();
+
     @Test
     public void testTransfersFromSchedule() {
         Fixture f = new Fixture();
@@ -82,4 +89,46 @@ public class SwissRailRaptorDataTest {
         Assert.assertEquals("number of transfers should have stayed the same.", data2.transfers.length, data4.transfers.length);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testDataCache() {
+        Fixture f = new Fixture();
+        f.init();
+
+        RaptorStaticConfig raptorConfig = RaptorUtils.createStaticConfig(f.config);
+        raptorConfig.setDataCacheDirectory(this.utils.getOutputDirectory() + "raptorCache");
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.schedule, null, raptorConfig, f.network, null);
+
+        String cacheKey = SwissRailRaptorDataCache.calcCacheKey(f.schedule, f.network, raptorConfig);
+        File cacheFile = SwissRailRaptorDataCache.getCacheFile(raptorConfig.getDataCacheDirectory(), cacheKey);
+        Assert.assertTrue("cache file was not written.", cacheFile.exists());
+
+        RaptorStaticConfig uncachedConfig = RaptorUtils.createStaticConfig(f.config);
+        Assert.assertEquals("the cache directory must not influence the cache key.", cacheKey, SwissRailRaptorDataCache.calcCacheKey(f.schedule, f.network, uncachedConfig));
+
+        // the second time, the transfers are read from the cache
+        SwissRailRaptorData cachedData = SwissRailRaptorData.create(f.schedule, null, raptorConfig, f.network, null);
+        Assert.assertEquals(data.transfers.length, cachedData.transfers.length);
+        for (int i = 0; i < data.transfers.length; i++) {
+            Assert.assertEquals(data.transfers[i].fromRouteStop, cachedData.transfers[i].fromRouteStop);
+            Assert.assertEquals(data.transfers[i].toRouteStop, cachedData.transfers[i].toRouteStop);
+            Assert.assertEquals(data.transfers[i].transferTime, cachedData.transfers[i].transferTime);
+            Assert.assertEquals(data.transfers[i].transferDistance, cachedData.transfers[i].transferDistance);
+        }
+        for (int i = 0; i < data.routeStops.length; i++) {
+            Assert.assertEquals(data.routeStops[i].indexFirstTransfer, cachedData.routeStops[i].indexFirstTransfer);
+            Assert.assertEquals(data.routeStops[i].countTransfers, cachedData.routeStops[i].countTransfers);
+        }
+
+        // changing the schedule must lead to a rebuild
+        Id<TransitStopFacility> stopId9 = Id.create(9, TransitStopFacility.class);
+        Id<TransitStopFacility> stopId19 = Id.create(19, TransitStopFacility.class);
+        f.schedule.getMinimalTransferTimes().set(stopId19, stopId9, 345);
+        Assert.assertNotEquals(cacheKey, SwissRailRaptorDataCache.calcCacheKey(f.schedule, f.network, raptorConfig));
+        SwissRailRaptorData changedData = SwissRailRaptorData.create(f.schedule, null, raptorConfig, f.network, null);
+        Assert.assertEquals("the transfers should have been rebuilt.", data.transfers.length + 1, changedData.transfers.length);
+
+        // a cache file not matching the key is ignored
+        Assert.assertNull(SwissRailRaptorDataCache.readTransfers(cacheFile, "abc", data.routeStops.length));
+    }
+
+}
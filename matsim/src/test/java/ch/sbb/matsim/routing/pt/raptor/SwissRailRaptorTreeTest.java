@@ -13,6 +13,7 @@ import org.matsim.core.utils.misc.Time;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -385,6 +386,80 @@ public class SwissRailRaptorTreeTest {
         Assert.assertNull(stage5.line); // egress_walk
     }
 
+    @Test
+    public void testProfile_matchesSingleTrees() {
+        Fixture f = new Fixture();
+        f.init();
+
+        RaptorStaticConfig config = RaptorUtils.createStaticConfig(f.config);
+        config.setOptimization(RaptorStaticConfig.RaptorOptimization.OneToAllRouting);
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.scenario.getTransitSchedule(), null, config, f.scenario.getNetwork(), null);
+        SwissRailRaptor raptor = new SwissRailRaptor.Builder(data, f.scenario.getConfig()).build();
+
+        RaptorParameters raptorParams = RaptorUtils.createParameters(f.config);
+
+        TransitStopFacility fromStop = f.schedule.getFacilities().get(Id.create(23, TransitStopFacility.class));
+        RaptorProfile profile = raptor.calcProfilesFromStops(Collections.singletonList(fromStop), 7*3600 + 30*60, 7*3600 + 40*60, 120, raptorParams, null, 1)[0];
+
+        Assert.assertEquals(6, profile.getDepartureTimeCount());
+        Assert.assertEquals(7*3600 + 40*60, profile.getDepartureTime(5));
+
+        for (int slot = 0; slot < profile.getDepartureTimeCount(); slot++) {
+            double depTime = profile.getDepartureTime(slot);
+            Map<Id<TransitStopFacility>, TravelInfo> map = raptor.calcTree(fromStop, depTime, raptorParams, null);
+            int reachedCount = 0;
+            for (int stopIndex = 0; stopIndex < profile.getStopCount(); stopIndex++) {
+                TransitStopFacility stop = profile.getStop(stopIndex);
+                Assert.assertEquals(stopIndex, profile.getStopIndex(stop));
+                TravelInfo info = map.get(stop.getId());
+                Assert.assertEquals("reachability differs for stop " + stop.getId() + " at " + Time.writeTime(depTime), info != null, profile.isReached(slot, stopIndex));
+                if (info != null) {
+                    reachedCount++;
+                    Assert.assertEquals("wrong arrival time at stop " + stop.getId() + " at " + Time.writeTime(depTime), info.ptArrivalTime, profile.getArrivalTime(slot, stopIndex), 0.0);
+                    Assert.assertEquals("wrong departure time at stop " + stop.getId() + " at " + Time.writeTime(depTime), info.ptDepartureTime, profile.getPtDepartureTime(slot, stopIndex), 0.0);
+                    Assert.assertEquals("wrong number of transfers at stop " + stop.getId() + " at " + Time.writeTime(depTime), info.transferCount, profile.getTransferCount(slot, stopIndex));
+                }
+            }
+            Assert.assertEquals(map.size(), reachedCount);
+        }
+
+        // the start stop can be reached without any costs
+        int startIndex = profile.getStopIndex(fromStop);
+        Assert.assertEquals(0, profile.getTravelCost(5, startIndex), 1e-7);
+        Assert.assertEquals(7*3600 + 40*60, profile.getArrivalTime(5, startIndex));
+    }
+
+    @Test
+    public void testProfiles_parallel() {
+        Fixture f = new Fixture();
+        f.init();
+
+        RaptorStaticConfig config = RaptorUtils.createStaticConfig(f.config);
+        config.setOptimization(RaptorStaticConfig.RaptorOptimization.OneToAllRouting);
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.scenario.getTransitSchedule(), null, config, f.scenario.getNetwork(), null);
+        SwissRailRaptor raptor = new SwissRailRaptor.Builder(data, f.scenario.getConfig()).build();
+
+        RaptorParameters raptorParams = RaptorUtils.createParameters(f.config);
+
+        List<TransitStopFacility> fromStops = new ArrayList<>();
+        for (int id : new int[] {0, 4, 12, 18, 19, 23}) {
+            fromStops.add(f.schedule.getFacilities().get(Id.create(id, TransitStopFacility.class)));
+        }
+        RaptorProfile[] serial = raptor.calcProfilesFromStops(fromStops, 7*3600, 8*3600, 300, raptorParams, null, 1);
+        RaptorProfile[] parallel = raptor.calcProfilesFromStops(fromStops, 7*3600, 8*3600, 300, raptorParams, null, 3);
+
+        Assert.assertEquals(fromStops.size(), parallel.length);
+        for (int i = 0; i < fromStops.size(); i++) {
+            for (int slot = 0; slot < serial[i].getDepartureTimeCount(); slot++) {
+                for (int stopIndex = 0; stopIndex < serial[i].getStopCount(); stopIndex++) {
+                    Assert.assertEquals(serial[i].getArrivalTime(slot, stopIndex), parallel[i].getArrivalTime(slot, stopIndex));
+                    Assert.assertEquals(serial[i].getTravelCost(slot, stopIndex), parallel[i].getTravelCost(slot, stopIndex), 0.0);
+                    Assert.assertEquals(serial[i].getTransferCount(slot, stopIndex), parallel[i].getTransferCount(slot, stopIndex));
+                }
+            }
+        }
+    }
+
     private void assertTravelInfo(Map<Id<TransitStopFacility>, TravelInfo> map, int stopId, String expectedDepartureStop, int expectedTransfers, String expectedDepartureTime, String expectedArrivalTime) {
         TravelInfo info = map.get(Id.create(stopId, TransitStopFacility.class));
         Assert.assertNotNull("Stop " + stopId + " is not reachable.", info);
@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.matsim.api.core.v01.TransportMode;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.ControlerConfigGroup.RoutingAlgorithmType;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup.ActivityParams;
 import org.matsim.pt.PtConstants;
 import org.matsim.testcases.utils.LogCounter;
@@ -227,4 +228,24 @@ public class ConfigConsistencyCheckerImplTest {
 		}
 
 	}
+
+	@Test
+	public void testCheckRoutingAlgorithm_SpeedyCHWithRandomness() {
+		Config config = ConfigUtils.createConfig();
+		config.controler().setRoutingAlgorithmType(RoutingAlgorithmType.SpeedyCH);
+		config.plansCalcRoute().setRoutingRandomness(0.);
+		ConfigConsistencyCheckerImpl.checkRoutingAlgorithm(config);
+
+		config.plansCalcRoute().setRoutingRandomness(3.);
+		try {
+			ConfigConsistencyCheckerImpl.checkRoutingAlgorithm(config);
+			Assert.fail("expected exception, routing randomness is not supported by SpeedyCH.");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		config.controler().setRoutingAlgorithmType(RoutingAlgorithmType.SpeedyALT);
+		ConfigConsistencyCheckerImpl.checkRoutingAlgorithm(config);
+	}
+
 }
@@ -19,6 +19,8 @@
 
 package org.matsim.core.events;
 
+import java.lang.reflect.Method;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
@@ -68,6 +70,32 @@ public class EventsManagerImplTest {
 		}
 	}
 
+	@Test
+	public void testProcessEvent_ThreadConfinedEventHandler() {
+		EventsManager manager = EventsUtils.createEventsManager();
+		CountingMyEventHandler handler = new CountingMyEventHandler();
+		ThreadConfinedCountingMyEventHandler confinedHandler = new ThreadConfinedCountingMyEventHandler();
+		manager.addHandler(handler);
+		manager.addHandler(confinedHandler);
+		manager.initProcessing();
+		manager.processEvent(new MyEvent(123.45));
+		manager.processEvent(new MyEvent(234.56));
+		manager.finishProcessing();
+		Assert.assertEquals("EventHandler was not called.", 2, handler.counter);
+		Assert.assertEquals("ThreadConfinedEventHandler was not called.", 2, confinedHandler.counter);
+	}
+
+	@Test
+	public void testEventHandlerInvoker_sharedPerMethod() throws NoSuchMethodException {
+		Method method = MyEventHandler.class.getMethod("handleEvent", MyEvent.class);
+		EventHandlerInvoker invoker = EventHandlerInvoker.create(method);
+		Assert.assertSame(invoker, EventHandlerInvoker.create(method));
+
+		CountingMyEventHandler handler = new CountingMyEventHandler();
+		invoker.invoke(handler, new MyEvent(123.45));
+		Assert.assertEquals("EventHandler was not called.", 1, handler.counter);
+	}
+
 	/*package*/ static class MyEvent extends Event {
 		public MyEvent(final double time) {
 			super(time);
@@ -94,6 +122,9 @@ public class EventsManagerImplTest {
 		}
 	}
 
+	/*package*/ static class ThreadConfinedCountingMyEventHandler extends CountingMyEventHandler implements ThreadConfinedEventHandler {
+	}
+
 	/*package*/ static class CrashingMyEventHandler implements MyEventHandler {
 		/*package*/ int counter = 0;
 		@Override
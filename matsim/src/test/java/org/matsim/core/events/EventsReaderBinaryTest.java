@@ -0,0 +1,147 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class EventsReaderBinaryTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSameEventsAsXml() {
+		List<Event> expected = readEquilEvents();
+		String filename = this.utils.getOutputDirectory() + "events.bin.gz";
+		EventWriterBinary writer = new EventWriterBinary(new File(filename));
+		expected.forEach(writer::handleEvent);
+		writer.closeFile();
+
+		List<Event> actual = new ArrayList<>();
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler((BasicEventHandler) actual::add);
+		new MatsimEventsReader(events).readFile(filename);
+		assertSameEvents(expected, actual);
+
+		for (int threads : new int[] {1, 3}) {
+			actual.clear();
+			EventsReaderBinary reader = new EventsReaderBinary(events);
+			reader.setNumberOfThreads(threads);
+			reader.parse(filename);
+			assertSameEvents(expected, actual);
+		}
+	}
+
+	@Test
+	public void testSpecialValues() {
+		List<Event> expected = new ArrayList<>();
+		expected.add(new LinkLeaveEvent(-0.0, Id.create("vehicle>1", Vehicle.class), Id.create("linkÄ", Link.class)));
+		expected.add(new LinkEnterEvent(3.25, Id.create("1", Vehicle.class), Id.create("1.0", Link.class)));
+		GenericEvent generic = new GenericEvent("custom", 1e20);
+		generic.getAttributes().put("number", "1.5");
+		generic.getAttributes().put("negativeZero", "-0.0");
+		generic.getAttributes().put("notCanonical", "1e5");
+		generic.getAttributes().put("text", "some text");
+		generic.getAttributes().put("empty", "");
+		expected.add(generic);
+		expected.add(new LinkEnterEvent(Double.NaN, Id.create("2", Vehicle.class), Id.create("2", Link.class)));
+		expected.add(new LinkEnterEvent(0.0, Id.create("2", Vehicle.class), Id.create("2", Link.class)));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EventWriterBinary writer = new EventWriterBinary(out);
+		expected.forEach(writer::handleEvent);
+		writer.closeFile();
+
+		List<Event> actual = new ArrayList<>();
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler((BasicEventHandler) actual::add);
+		new MatsimEventsReader(events).readStream(new ByteArrayInputStream(out.toByteArray()), ControlerConfigGroup.EventsFileFormat.bin);
+		assertSameEvents(expected, actual);
+	}
+
+	@Test
+	public void testSkipsEventsWithoutHandler() {
+		List<Event> recorded = readEquilEvents();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EventWriterBinary writer = new EventWriterBinary(out);
+		recorded.forEach(writer::handleEvent);
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		Assert.assertFalse(events.hasHandlersFor(LinkEnterEvent.class));
+		List<LinkEnterEvent> linkEnterEvents = new ArrayList<>();
+		events.addHandler((LinkEnterEventHandler) linkEnterEvents::add);
+		Assert.assertTrue(events.hasHandlersFor(LinkEnterEvent.class));
+		Assert.assertFalse(events.hasHandlersFor(LinkLeaveEvent.class));
+
+		EventsReaderBinary reader = new EventsReaderBinary(events);
+		reader.setNumberOfThreads(2);
+		reader.parse(new ByteArrayInputStream(out.toByteArray()));
+
+		List<Event> expected = new ArrayList<>();
+		for (Event event : recorded) {
+			if (event instanceof LinkEnterEvent) {
+				expected.add(event);
+			}
+		}
+		Assert.assertFalse(expected.isEmpty());
+		assertSameEvents(expected, new ArrayList<>(linkEnterEvents));
+	}
+
+	private static List<Event> readEquilEvents() {
+		URL url = IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("equil"), "output_events.xml.gz");
+		List<Event> events = new ArrayList<>();
+		EventsManager manager = EventsUtils.createEventsManager();
+		manager.addHandler((BasicEventHandler) events::add);
+		new MatsimEventsReader(manager).readURL(url);
+		return events;
+	}
+
+	private static void assertSameEvents(List<Event> expected, List<Event> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).getClass(), actual.get(i).getClass());
+			Assert.assertEquals(expected.get(i).getAttributes(), actual.get(i).getAttributes());
+		}
+	}
+}
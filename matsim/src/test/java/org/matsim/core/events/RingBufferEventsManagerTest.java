@@ -0,0 +1,159 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferEventsManagerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+
+public class RingBufferEventsManagerTest {
+
+	@Test
+	public void processesEventsInOrder() {
+		// the buffer is much smaller than the number of events, so it wraps around many times
+		EventsManager m = new RingBufferEventsManager(false, 2, 16);
+		RecordingHandler handler1 = new RecordingHandler();
+		RecordingHandler handler2 = new RecordingHandler();
+		RecordingHandler handler3 = new RecordingHandler();
+		m.addHandler(handler1);
+		m.addHandler(handler2);
+		m.addHandler(handler3);
+
+		for (int iteration = 0; iteration < 2; iteration++) {
+			m.initProcessing();
+			int time = 0;
+			for (int block = 0; block < 20; block++) {
+				if (block % 2 == 0) {
+					for (int i = 0; i < 40; i++) {
+						m.processEvent(new EventsManagerImplTest.MyEvent(time++));
+					}
+				} else {
+					// batches larger than the buffer are split
+					EventArray batch = new EventArray();
+					for (int i = 0; i < 40; i++) {
+						batch.add(new EventsManagerImplTest.MyEvent(time++));
+					}
+					m.processEvents(batch);
+				}
+			}
+			m.finishProcessing();
+
+			for (RecordingHandler handler : new RecordingHandler[] { handler1, handler2, handler3 }) {
+				assertEquals(iteration, handler.iteration);
+				assertEquals(800, handler.times.size());
+				for (int i = 0; i < handler.times.size(); i++) {
+					assertEquals(i, handler.times.get(i), 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void syncOnTimeSteps() {
+		EventsManager m = new RingBufferEventsManager(true, 64);
+		EventsManagerImplTest.CountingMyEventHandler handler = new EventsManagerImplTest.CountingMyEventHandler();
+		m.addHandler(handler);
+		m.initProcessing();
+		for (int time = 0; time < 10; time++) {
+			for (int i = 0; i < 100; i++) {
+				m.processEvent(new EventsManagerImplTest.MyEvent(time));
+			}
+			m.afterSimStep(time);
+			assertEquals(100 * (time + 1), handler.counter);
+		}
+		m.finishProcessing();
+	}
+
+	@Test
+	public void multipleProducers() throws InterruptedException {
+		EventsManager m = new RingBufferEventsManager(true, 1, 32);
+		EventsManagerImplTest.CountingMyEventHandler handler = new EventsManagerImplTest.CountingMyEventHandler();
+		m.addHandler(handler);
+		m.initProcessing();
+		List<Thread> producers = new ArrayList<>();
+		for (int p = 0; p < 4; p++) {
+			Thread producer = new Thread(() -> {
+				for (int i = 0; i < 10000; i++) {
+					m.processEvent(new EventsManagerImplTest.MyEvent(i));
+				}
+			});
+			producers.add(producer);
+			producer.start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		m.afterSimStep(0);
+		assertEquals(40000, handler.counter);
+		m.finishProcessing();
+	}
+
+	@Test
+	public void exceptionInHandler() {
+		EventsManager m = new RingBufferEventsManager(false, 8);
+		EventsManagerImplTest.CrashingMyEventHandler handler = new EventsManagerImplTest.CrashingMyEventHandler();
+		m.addHandler(handler);
+		m.initProcessing();
+		// more events than fit into the buffer must not block
+		for (int i = 0; i < 100; i++) {
+			m.processEvent(new EventsManagerImplTest.MyEvent(i));
+		}
+		assertThrows(RuntimeException.class, m::finishProcessing);
+		assertEquals(1, handler.counter);
+	}
+
+	@Test
+	public void forgetInit() {
+		EventsManager m = new RingBufferEventsManager(false, 8);
+		assertThrows(IllegalStateException.class, () -> m.processEvent(new EventsManagerImplTest.MyEvent(5)));
+	}
+
+	@Test
+	public void createdFromConfig() {
+		Config config = ConfigUtils.createConfig();
+		config.parallelEventHandling().setUseRingBuffer(true);
+		config.parallelEventHandling().setNumberOfThreads(2);
+		assertEquals(RingBufferEventsManager.class, EventsUtils.createEventsManager(config).getClass());
+	}
+
+	private static class RecordingHandler implements EventsManagerImplTest.MyEventHandler {
+		private final List<Double> times = new ArrayList<>();
+		private int iteration = -1;
+
+		@Override
+		public void reset(int iteration) {
+			this.iteration = iteration;
+			this.times.clear();
+		}
+
+		@Override
+		public void handleEvent(EventsManagerImplTest.MyEvent event) {
+			this.times.add(event.getTime());
+		}
+	}
+}
@@ -20,17 +20,34 @@
 package org.matsim.core.events.algorithms;
 
 import java.io.File;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.io.XmlUtils;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.facilities.ActivityFacility;
 import org.matsim.testcases.MatsimTestUtils;
 import org.matsim.testcases.utils.EventsCollector;
 import org.matsim.vehicles.Vehicle;
@@ -96,4 +113,72 @@ public class EventWriterXMLTest {
 		events.finishProcessing();
 		Assert.assertEquals("there must be 1 event.", 1, collector.getEvents().size());
 	}
+
+	/**
+	 * The frequent event types are written without {@link Event#getAttributes()}, the result must be the same.
+	 */
+	@Test
+	public void testSameOutputAsAttributes() {
+		Id<Person> person = Id.createPersonId("p&1");
+		Id<Link> link = Id.createLinkId("l<1>");
+		Id<Vehicle> vehicle = Id.createVehicleId("v\"1");
+		Id<ActivityFacility> facility = Id.create("f1", ActivityFacility.class);
+		LinkEnterEvent subclassEvent = new LinkEnterEvent(1.0, vehicle, link) {
+			@Override
+			public Map<String, String> getAttributes() {
+				Map<String, String> attributes = super.getAttributes();
+				attributes.put("extra", "value");
+				return attributes;
+			}
+		};
+
+		List<Event> events = List.of(
+				new LinkEnterEvent(0.0, vehicle, link),
+				new LinkEnterEvent(-0.0, vehicle, link),
+				new LinkEnterEvent(1.0, vehicle, link),
+				new LinkEnterEvent(7 * 3600.0, vehicle, link),
+				new LinkEnterEvent(9999999.0, vehicle, link),
+				new LinkEnterEvent(1.0e7, vehicle, link),
+				new LinkEnterEvent(123.25, vehicle, link),
+				new LinkEnterEvent(0.001, vehicle, link),
+				new LinkLeaveEvent(42.0, vehicle, link),
+				new VehicleEntersTrafficEvent(5.0, person, link, vehicle, "car", 1.0),
+				new VehicleEntersTrafficEvent(5.0, person, link, vehicle, null, 0.5),
+				new VehicleEntersTrafficEvent(5.0, null, link, vehicle, "car", 1.0),
+				new VehicleLeavesTrafficEvent(5.0, person, link, vehicle, "car", 1.0),
+				new VehicleLeavesTrafficEvent(5.0, person, link, null, "car", 1.0),
+				new PersonDepartureEvent(6.0, person, link, "walk"),
+				new PersonDepartureEvent(6.0, person, null, null),
+				new PersonArrivalEvent(6.0, person, link, "pt"),
+				new PersonArrivalEvent(6.0, person, link, null),
+				new ActivityStartEvent(8.0, person, link, facility, "home", new Coord(1.0, -2.5)),
+				new ActivityStartEvent(8.0, person, null, null, "w<o>rk", null),
+				new ActivityEndEvent(9.0, person, link, null, "home", new Coord(1.0e8, 0.0)),
+				new ActivityEndEvent(9.0, person, null, facility, null, null),
+				new PersonEntersVehicleEvent(10.0, person, vehicle),
+				new PersonLeavesVehicleEvent(11.0, person, vehicle),
+				new PersonMoneyEvent(12.0, person, -1.5, "toll", "someone"),
+				subclassEvent);
+
+		for (Event event : events) {
+			StringBuilder actual = new StringBuilder();
+			EventXmlSerializer.write(event, actual);
+			Assert.assertEquals(writeWithAttributes(event), actual.toString());
+		}
+	}
+
+	/**
+	 * This is how events were written before the frequent event types got their own serialization.
+	 */
+	private static String writeWithAttributes(Event event) {
+		StringBuilder out = new StringBuilder("\t<event ");
+		for (Map.Entry<String, String> entry : event.getAttributes().entrySet()) {
+			out.append(entry.getKey());
+			out.append("=\"");
+			out.append(entry.getValue() == null ? null : XmlUtils.encodeAttributeValue(entry.getValue()));
+			out.append("\" ");
+		}
+		out.append(" />\n");
+		return out.toString();
+	}
 }
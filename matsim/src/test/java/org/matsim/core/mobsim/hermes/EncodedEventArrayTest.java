@@ -0,0 +1,111 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.hermes;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.AgentWaitingForPtEvent;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.Vehicle;
+
+public class EncodedEventArrayTest {
+
+	private final Id<Person> person = Id.createPersonId("p1");
+	private final Id<Link> link = Id.createLinkId("l1");
+	private final Id<Vehicle> vehicle = Id.createVehicleId("v1");
+
+	@Test
+	public void testMaterializedEventsEqualObjects() {
+		Id<ActivityFacility> facility = Id.create("f1", ActivityFacility.class);
+		Id<TransitStopFacility> access = Id.create("s1", TransitStopFacility.class);
+		Id<TransitStopFacility> egress = Id.create("s2", TransitStopFacility.class);
+		Coord coord = new Coord(1.5, -2.5);
+
+		EncodedEventArray events = new EncodedEventArray(new EncodedEventArray.Dictionary(), 2);
+		events.addActivityEnd(person, link, facility, "home", coord);
+		events.addPersonDeparture(person, link, "car");
+		events.addPersonEntersVehicle(person, vehicle);
+		events.addVehicleEntersTraffic(person, link, vehicle, "car");
+		events.addLinkLeave(vehicle, link);
+		events.addLinkEnter(vehicle, link);
+		events.addVehicleLeavesTraffic(person, link, vehicle, "car");
+		events.addPersonLeavesVehicle(person, vehicle);
+		events.addPersonArrival(person, link, "car");
+		events.addAgentWaitingForPt(person, access, egress);
+		events.addTeleportationArrival(person, 123.4, "walk");
+		events.addActivityStart(person, link, null, "work", null);
+
+		Event[] expected = {
+				new ActivityEndEvent(10, person, link, facility, "home", coord),
+				new PersonDepartureEvent(10, person, link, "car"),
+				new PersonEntersVehicleEvent(10, person, vehicle),
+				new VehicleEntersTrafficEvent(10, person, link, vehicle, "car", 1),
+				new LinkLeaveEvent(10, vehicle, link),
+				new LinkEnterEvent(10, vehicle, link),
+				new VehicleLeavesTrafficEvent(10, person, link, vehicle, "car", 1),
+				new PersonLeavesVehicleEvent(10, person, vehicle),
+				new PersonArrivalEvent(10, person, link, "car"),
+				new AgentWaitingForPtEvent(10, person, access, egress),
+				new TeleportationArrivalEvent(10, person, 123.4, "walk"),
+				new ActivityStartEvent(10, person, link, null, "work", null)
+		};
+		Assert.assertEquals(expected.length, events.size());
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertEquals(expected[i].getAttributes(), events.materialize(i, 10).getAttributes());
+		}
+		Assert.assertTrue(events.isActivityEnd(0));
+		Assert.assertFalse(events.isActivityEnd(11));
+	}
+
+	@Test
+	public void testObjectEventsAndVehicleUpdates() {
+		EncodedEventArray events = new EncodedEventArray(new EncodedEventArray.Dictionary());
+		VehicleArrivesAtFacilityEvent arrival = new VehicleArrivesAtFacilityEvent(0, vehicle, Id.create("s1", TransitStopFacility.class), 5);
+		events.add(arrival);
+		events.addPersonEntersVehicle(person, Id.createVehicleId("tr_X"));
+
+		Assert.assertSame(arrival, events.materialize(0, 20));
+		Assert.assertEquals(20, arrival.getTime(), 0);
+
+		events.setVehicle(1, vehicle);
+		Assert.assertEquals(vehicle, ((PersonEntersVehicleEvent) events.materialize(1, 20)).getVehicleId());
+
+		events.clear();
+		Assert.assertEquals(0, events.size());
+	}
+}
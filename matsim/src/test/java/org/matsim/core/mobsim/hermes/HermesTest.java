@@ -944,6 +944,47 @@ public class HermesTest {
 		// besides this, the important thing is that no (Runtime)Exception is thrown during this test
 	}
 
+	/**
+	 * Events handed over in windows, processed on a background thread, must be the same as the events handed over
+	 * after the simulation.
+	 */
+	@Test
+	public void testEventsFlushInterval() {
+		List<String> atEnd = runTwoAgentsWithEventsFlushInterval(0);
+		List<String> streamed = runTwoAgentsWithEventsFlushInterval(900);
+		Assert.assertFalse(atEnd.isEmpty());
+		Assert.assertEquals(atEnd, streamed);
+	}
+
+	private static List<String> runTwoAgentsWithEventsFlushInterval(int eventsFlushInterval) {
+		Fixture f = new Fixture();
+		f.config.hermes().setEventsFlushInterval(eventsFlushInterval);
+		for (int i = 0; i < 2; i++) {
+			Person person = PopulationUtils.getFactory().createPerson(Id.create(i, Person.class));
+			Plan plan = PersonUtils.createAndAddPlan(person, true);
+			Activity a1 = PopulationUtils.createAndAddActivityFromLinkId(plan, "h", f.link1.getId());
+			a1.setEndTime((6+i)*3600);
+			Leg leg = PopulationUtils.createAndAddLeg( plan, TransportMode.car );
+			TripStructureUtils.setRoutingMode( leg, TransportMode.car );
+			NetworkRoute route = f.scenario.getPopulation().getFactory().getRouteFactories().createRoute(NetworkRoute.class, f.link1.getId(), f.link3.getId());
+			route.setLinkIds(f.link1.getId(), f.linkIds2, f.link3.getId());
+			leg.setRoute(route);
+			PopulationUtils.createAndAddActivityFromLinkId(plan, "w", f.link3.getId());
+			f.plans.addPerson(person);
+		}
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		createHermes(f, events).run();
+
+		List<String> result = new ArrayList<>();
+		for (Event event : collector.getEvents()) {
+			result.add(event.toString());
+		}
+		return result;
+	}
+
 	/*package*/ final static class FirstLastEventCollector implements BasicEventHandler {
 		public Event firstEvent = null;
 		public Event lastEvent = null;
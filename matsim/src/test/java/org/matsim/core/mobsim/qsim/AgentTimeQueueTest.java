@@ -0,0 +1,124 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+
+public class AgentTimeQueueTest {
+
+	@Test
+	public void testSameOrderAsPriorityQueue() {
+		List<MobsimAgent> agents = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			MobsimAgent agent = mock(MobsimAgent.class);
+			when(agent.getId()).thenReturn(Id.createPersonId(i));
+			agents.add(agent);
+		}
+
+		PriorityQueue<Object[]> expected = new PriorityQueue<>((o0, o1) -> {
+			int cmp = Double.compare((double) o0[1], (double) o1[1]);
+			return cmp != 0 ? cmp : ((MobsimAgent) o1[0]).getId().compareTo(((MobsimAgent) o0[0]).getId());
+		});
+		List<Object[]> expectedEntries = new ArrayList<>();
+		AgentTimeQueue queue = new AgentTimeQueue();
+
+		Random random = new Random(4711);
+		for (int step = 0; step < 20000; step++) {
+			MobsimAgent agent = agents.get(random.nextInt(agents.size()));
+			int operation = random.nextInt(3);
+			if (operation == 0 && !queue.contains(agent)) {
+				double time = random.nextInt(50);
+				Object[] entry = {agent, time};
+				expected.add(entry);
+				expectedEntries.add(entry);
+				queue.add(agent, time);
+			} else if (operation == 1) {
+				Object[] entry = expectedEntries.stream().filter(e -> e[0] == agent).findFirst().orElse(null);
+				AgentTimeQueue.Entry removed = queue.remove(agent);
+				if (entry == null) {
+					Assert.assertNull(removed);
+				} else {
+					expected.remove(entry);
+					expectedEntries.remove(entry);
+					Assert.assertSame(agent, removed.getAgent());
+					Assert.assertEquals((double) entry[1], removed.getTime(), 0.0);
+				}
+			} else if (operation == 2) {
+				Object[] entry = expected.poll();
+				AgentTimeQueue.Entry polled = queue.poll();
+				if (entry == null) {
+					Assert.assertNull(polled);
+				} else {
+					expectedEntries.remove(entry);
+					Assert.assertSame(entry[0], polled.getAgent());
+				}
+			}
+
+			List<AgentTimeQueue.Entry> actual = queue.entries();
+			Object[] heap = expected.toArray();
+			Assert.assertEquals(heap.length, actual.size());
+			for (int i = 0; i < heap.length; i++) {
+				Assert.assertSame(((Object[]) heap[i])[0], actual.get(i).getAgent());
+			}
+		}
+	}
+
+	@Test
+	public void testPollUntil() {
+		AgentTimeQueue queue = new AgentTimeQueue();
+		MobsimAgent agent1 = mock(MobsimAgent.class);
+		when(agent1.getId()).thenReturn(Id.createPersonId("1"));
+		MobsimAgent agent2 = mock(MobsimAgent.class);
+		when(agent2.getId()).thenReturn(Id.createPersonId("2"));
+
+		queue.add(agent1, 10.0);
+		queue.add(agent2, 20.0);
+		Assert.assertNull(queue.pollUntil(9.0));
+		Assert.assertSame(agent1, queue.pollUntil(10.0).getAgent());
+		Assert.assertNull(queue.pollUntil(19.0));
+		Assert.assertEquals(1, queue.size());
+		Assert.assertFalse(queue.contains(agent1));
+
+		queue.add(agent1, 20.0);
+		Assert.assertSame(agent2, queue.pollUntil(30.0).getAgent());
+		Assert.assertSame(agent1, queue.pollUntil(30.0).getAgent());
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAgentCanOnlyBeAddedOnce() {
+		AgentTimeQueue queue = new AgentTimeQueue();
+		MobsimAgent agent = mock(MobsimAgent.class);
+		when(agent.getId()).thenReturn(Id.createPersonId("1"));
+		queue.add(agent, 10.0);
+		queue.add(agent, 20.0);
+	}
+}
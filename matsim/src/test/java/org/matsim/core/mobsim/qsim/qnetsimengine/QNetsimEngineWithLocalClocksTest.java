@@ -0,0 +1,156 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+public class QNetsimEngineWithLocalClocksTest {
+
+	private static final int GRID_SIZE = 8;
+
+	@Test
+	public void testSameEventsAsWithBarrier() {
+		Map<String, List<String>> expected = runScenario(QSimConfigGroup.NetsimEngineSynchronization.barrier, QSimConfigGroup.NetworkPartitioning.roundRobin);
+		assertTrue(expected.size() > 200);
+
+		for (QSimConfigGroup.NetworkPartitioning partitioning : QSimConfigGroup.NetworkPartitioning.values()) {
+			Map<String, List<String>> actual = runScenario(QSimConfigGroup.NetsimEngineSynchronization.neighbours, partitioning);
+			assertEquals(expected.keySet(), actual.keySet());
+			for (String key : expected.keySet()) {
+				assertEquals("different events for " + key + " with " + partitioning + " partitioning", expected.get(key), actual.get(key));
+			}
+		}
+	}
+
+	/**
+	 * @return the events of each person and vehicle
+	 */
+	private static Map<String, List<String>> runScenario(QSimConfigGroup.NetsimEngineSynchronization synchronization,
+			QSimConfigGroup.NetworkPartitioning partitioning) {
+		// the nodes get their random number generators in the order in which they are created
+		MatsimRandom.reset();
+
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setNumberOfThreads(3);
+		config.qsim().setNetsimEngineSynchronization(synchronization);
+		config.qsim().setNetworkPartitioning(partitioning);
+		config.qsim().setEndTime(6 * 3600);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		createGrid(scenario.getNetwork());
+
+		// many agents on a network with little capacity, so that there is congestion and spill back across runners
+		List<Node> nodes = new ArrayList<>(scenario.getNetwork().getNodes().values());
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		Random random = new Random(4711);
+		for (int i = 0; i < 300; i++) {
+			Person person = factory.createPerson(Id.createPersonId(i));
+			Plan plan = factory.createPlan();
+			Activity home = factory.createActivityFromLinkId("h", randomLink(nodes, random));
+			home.setEndTime(random.nextInt(1800));
+			plan.addActivity(home);
+			plan.addLeg(factory.createLeg(TransportMode.car));
+			plan.addActivity(factory.createActivityFromLinkId("w", randomLink(nodes, random)));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+
+		Map<String, List<String>> events = new TreeMap<>();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		eventsManager.addHandler((BasicEventHandler) event -> {
+			synchronized (events) {
+				events.computeIfAbsent(getKey(event), key -> new ArrayList<>()).add(event.toString());
+			}
+		});
+
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		new QSimBuilder(config).useDefaults().build(scenario, eventsManager).run();
+		return events;
+	}
+
+	private static String getKey(Event event) {
+		Map<String, String> attributes = event.getAttributes();
+		if (attributes.containsKey("vehicle")) {
+			return "vehicle " + attributes.get("vehicle");
+		}
+		return "person " + attributes.get("person");
+	}
+
+	private static Id<Link> randomLink(List<Node> nodes, Random random) {
+		Node node = nodes.get(random.nextInt(nodes.size()));
+		List<Link> links = new ArrayList<>(node.getOutLinks().values());
+		return links.get(random.nextInt(links.size())).getId();
+	}
+
+	private static void createGrid(Network network) {
+		Node[][] nodes = new Node[GRID_SIZE][GRID_SIZE];
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(100 * x, 100 * y));
+			}
+		}
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				if (x + 1 < GRID_SIZE) {
+					addLinks(network, nodes[x][y], nodes[x + 1][y]);
+				}
+				if (y + 1 < GRID_SIZE) {
+					addLinks(network, nodes[x][y], nodes[x][y + 1]);
+				}
+			}
+		}
+	}
+
+	private static void addLinks(Network network, Node a, Node b) {
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, 100, 10, 300, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, 100, 10, 300, 1);
+	}
+}
@@ -0,0 +1,192 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+public class QNetworkPartitionerTest {
+
+	private static final ToDoubleFunction<Node> UNIT_WEIGHTS = node -> 1;
+
+	@Test
+	public void testBisectionOfGrid() {
+		Network network = createGrid(20);
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+
+		for (int numberOfPartitions : new int[] { 2, 3, 4, 7 }) {
+			int[] partitions = new RecursiveBisectionPartitioner().partition(nodes, UNIT_WEIGHTS, numberOfPartitions);
+			int[] sizes = new int[numberOfPartitions];
+			for (int partition : partitions) {
+				sizes[partition]++;
+			}
+			for (int size : sizes) {
+				assertEquals("unbalanced partition for " + numberOfPartitions + " partitions",
+						(double) nodes.size() / numberOfPartitions, size, 0.05 * nodes.size() / numberOfPartitions + 2);
+			}
+			int cut = countCutLinks(nodes, partitions);
+			int roundRobinCut = countCutLinks(nodes, QNetworkPartitioner.ROUND_ROBIN.partition(nodes, UNIT_WEIGHTS, numberOfPartitions));
+			assertTrue("too many cut links for " + numberOfPartitions + " partitions: " + cut, cut < roundRobinCut / 5);
+		}
+	}
+
+	@Test
+	public void testBisectionWithWeights() {
+		Network network = createGrid(20);
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		// the nodes in the first two columns are as heavy as all others together
+		ToDoubleFunction<Node> weights = node -> node.getCoord().getX() < 2 ? 9 : 1;
+
+		int[] partitions = new RecursiveBisectionPartitioner().partition(nodes, weights, 2);
+		double[] partitionWeights = new double[2];
+		for (int i = 0; i < nodes.size(); i++) {
+			partitionWeights[partitions[i]] += weights.applyAsDouble(nodes.get(i));
+		}
+		assertEquals(partitionWeights[0], partitionWeights[1], 0.07 * partitionWeights[0]);
+	}
+
+	@Test
+	public void testDisconnectedNetwork() {
+		Network network = createGrid(10);
+		for (int i = 0; i < 50; i++) {
+			NetworkUtils.createAndAddNode(network, Id.createNodeId("isolated_" + i), new Coord(-1, i));
+		}
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		int[] partitions = new RecursiveBisectionPartitioner().partition(nodes, UNIT_WEIGHTS, 3);
+		int[] sizes = new int[3];
+		for (int partition : partitions) {
+			sizes[partition]++;
+		}
+		for (int size : sizes) {
+			assertEquals(50, size, 4);
+		}
+	}
+
+	@Test
+	public void testLoadIsStoredForNextIteration() {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setNumberOfThreads(2);
+		config.qsim().setNetworkPartitioning(QSimConfigGroup.NetworkPartitioning.loadBalanced);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Network network = scenario.getNetwork();
+		createGrid(network, 5);
+
+		// one agent driving along the bottom row of the grid
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		Person person = factory.createPerson(Id.createPersonId(1));
+		Plan plan = factory.createPlan();
+		Activity home = factory.createActivityFromLinkId("h", Id.createLinkId("0_0-1_0"));
+		home.setEndTime(0);
+		plan.addActivity(home);
+		Leg leg = factory.createLeg(TransportMode.car);
+		List<Id<Link>> route = List.of(Id.createLinkId("1_0-2_0"), Id.createLinkId("2_0-3_0"));
+		leg.setRoute(RouteUtils.createLinkNetworkRouteImpl(Id.createLinkId("0_0-1_0"), route, Id.createLinkId("3_0-4_0")));
+		plan.addLeg(leg);
+		plan.addActivity(factory.createActivityFromLinkId("w", Id.createLinkId("3_0-4_0")));
+		person.addPlan(plan);
+		scenario.getPopulation().addPerson(person);
+
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		new QSimBuilder(config).useDefaults().build(scenario, EventsUtils.createEventsManager()).run();
+
+		QNetworkLoad networkLoad = QNetworkLoad.get(scenario);
+		assertNotNull(networkLoad);
+		for (Link link : network.getLinks().values()) {
+			assertNull("load must not be written to the network", link.getAttributes().getAttribute(QSimConfigGroup.LOAD_ATTRIBUTE));
+			double load = networkLoad.getLinkLoad(link.getId());
+			if (route.contains(link.getId())) {
+				assertTrue(load > 0);
+			} else if (link.getFromNode().getCoord().getY() > 0) {
+				assertEquals(0, load, 0);
+			}
+		}
+	}
+
+	private static int countCutLinks(List<Node> nodes, int[] partitions) {
+		int cut = 0;
+		for (int i = 0; i < nodes.size(); i++) {
+			for (Link link : nodes.get(i).getOutLinks().values()) {
+				if (partitions[nodes.indexOf(link.getToNode())] != partitions[i]) {
+					cut++;
+				}
+			}
+		}
+		return cut;
+	}
+
+	private static Network createGrid(int size) {
+		Network network = NetworkUtils.createNetwork();
+		createGrid(network, size);
+		return network;
+	}
+
+	private static void createGrid(Network network, int size) {
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(x, y));
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					addLinks(network, nodes[x][y], nodes[x + 1][y]);
+				}
+				if (y + 1 < size) {
+					addLinks(network, nodes[x][y], nodes[x][y + 1]);
+				}
+			}
+		}
+	}
+
+	private static void addLinks(Network network, Node a, Node b) {
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, 100, 10, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, 100, 10, 1000, 1);
+	}
+}
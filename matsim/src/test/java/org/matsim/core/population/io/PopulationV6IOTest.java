@@ -42,6 +42,8 @@ import org.matsim.testcases.MatsimTestUtils;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 
 /**
  * @author thibautd
@@ -321,4 +323,88 @@ public class PopulationV6IOTest {
 
 		Assert.assertEquals(route.getRouteDescription(), ((Leg) scenario.getPopulation().getPersons().get(person1.getId()).getSelectedPlan().getPlanElements().get(1)).getRoute().getRouteDescription());
 	}
+
+	@Test
+	public void testParallelReader_keepsOrderAndContent() {
+		Population population = PopulationUtils.createPopulation(ConfigUtils.createConfig());
+		PopulationFactory pf = population.getFactory();
+
+		for (int i = 0; i < 2500; i++) {
+			Person person = pf.createPerson(Id.create("p" + (2500 - i), Person.class));
+			person.getAttributes().putAttribute("index", i);
+			Plan plan = pf.createPlan();
+			Activity act1 = pf.createActivityFromCoord("home", new Coord(i, 0));
+			act1.setEndTime(8*3600 + i);
+			Leg leg = pf.createLeg("special");
+			GenericRouteImpl route = new GenericRouteImpl(Id.create("a" + i, Link.class), Id.create("b" + i, Link.class));
+			route.setRouteDescription("route " + i);
+			leg.setRoute(route);
+			leg.getAttributes().putAttribute("leg", "leg " + i);
+			Activity act2 = pf.createActivityFromCoord("work", new Coord(1000, i));
+			plan.addActivity(act1);
+			plan.addLeg(leg);
+			plan.addActivity(act2);
+			person.addPlan(plan);
+			population.addPerson(person);
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new PopulationWriter(population).write(out);
+
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		scenario.getConfig().global().setNumberOfThreads(4);
+		new PopulationReader(scenario).parse(new ByteArrayInputStream(out.toByteArray()));
+
+		Assert.assertEquals(population.getPersons().size(), scenario.getPopulation().getPersons().size());
+		Iterator<? extends Person> expectedIter = population.getPersons().values().iterator();
+		for (Person readPerson : scenario.getPopulation().getPersons().values()) {
+			Person expected = expectedIter.next();
+			Assert.assertEquals("persons are not in the same order", expected.getId(), readPerson.getId());
+			Assert.assertEquals(expected.getAttributes().getAttribute("index"), readPerson.getAttributes().getAttribute("index"));
+			Plan expectedPlan = expected.getSelectedPlan();
+			Plan readPlan = readPerson.getSelectedPlan();
+			Assert.assertEquals(3, readPlan.getPlanElements().size());
+			Assert.assertEquals(((Activity) expectedPlan.getPlanElements().get(0)).getCoord(), ((Activity) readPlan.getPlanElements().get(0)).getCoord());
+			Assert.assertEquals(((Activity) expectedPlan.getPlanElements().get(0)).getEndTime(), ((Activity) readPlan.getPlanElements().get(0)).getEndTime());
+			Leg expectedLeg = (Leg) expectedPlan.getPlanElements().get(1);
+			Leg readLeg = (Leg) readPlan.getPlanElements().get(1);
+			Assert.assertEquals(expectedLeg.getRoute().getRouteDescription(), readLeg.getRoute().getRouteDescription());
+			Assert.assertEquals(expectedLeg.getRoute().getStartLinkId(), readLeg.getRoute().getStartLinkId());
+			Assert.assertEquals(expectedLeg.getAttributes().getAttribute("leg"), readLeg.getAttributes().getAttribute("leg"));
+		}
+	}
+
+	/**
+	 * Small files are handed to the threads as a single batch at the end of the document. An error in that batch
+	 * must not leave the other threads waiting for their end marker.
+	 */
+	@Test(timeout = 60000)
+	public void testParallelReader_invalidPersonThrows() {
+		String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+				+ "<!DOCTYPE population SYSTEM \"http://www.matsim.org/files/dtd/population_v6.dtd\">\n"
+				+ "<population>\n"
+				+ "  <person id=\"1\">\n"
+				+ "    <plan selected=\"yes\">\n"
+				+ "      <activity type=\"home\" x=\"0.0\" y=\"0.0\" />\n"
+				+ "    </plan>\n"
+				+ "  </person>\n"
+				+ "  <person id=\"2\">\n"
+				+ "    <plan selected=\"maybe\">\n"
+				+ "      <activity type=\"home\" x=\"0.0\" y=\"0.0\" />\n"
+				+ "    </plan>\n"
+				+ "  </person>\n"
+				+ "</population>\n";
+
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		scenario.getConfig().global().setNumberOfThreads(2);
+		PopulationReader reader = new PopulationReader(scenario);
+		// the dtd would reject the file before the threads see it
+		reader.setValidating(false);
+		try {
+			reader.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+			Assert.fail("expected exception for an invalid value of 'selected'.");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
 }
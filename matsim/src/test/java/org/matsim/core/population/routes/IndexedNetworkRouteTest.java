@@ -0,0 +1,98 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.routes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+public class IndexedNetworkRouteTest extends AbstractNetworkRouteTest {
+
+	@Override
+	public NetworkRoute getNetworkRouteInstance(final Id<Link> fromLinkId, final Id<Link> toLinkId, final Network network) {
+		return new IndexedNetworkRouteImpl(fromLinkId, toLinkId);
+	}
+
+	@Test
+	public void testClone() {
+		Id<Link> id1 = Id.create(1, Link.class);
+		Id<Link> id2 = Id.create(2, Link.class);
+		Id<Link> id3 = Id.create(3, Link.class);
+		Id<Link> id4 = Id.create(4, Link.class);
+		Id<Link> id5 = Id.create(5, Link.class);
+		NetworkRoute route1 = new IndexedNetworkRouteImpl(id1, id2);
+		List<Id<Link>> srcRoute = new ArrayList<>();
+		srcRoute.add(id3);
+		srcRoute.add(id4);
+		route1.setLinkIds(id1, srcRoute, id2);
+		Assert.assertEquals(2, route1.getLinkIds().size());
+
+		NetworkRoute route2 = (NetworkRoute) route1.clone();
+
+		srcRoute.add(id5);
+		route1.setLinkIds(id1, srcRoute, id2);
+
+		Assert.assertEquals(3, route1.getLinkIds().size());
+		Assert.assertEquals(2, route2.getLinkIds().size());
+		Assert.assertEquals(id4, route2.getLinkIds().get(1));
+	}
+
+	@Test
+	public void testRouteDescription() {
+		Id<Link> id1 = Id.create(1, Link.class);
+		Id<Link> id3 = Id.create(3, Link.class);
+		Id<Link> id4 = Id.create(4, Link.class);
+		NetworkRoute route = new IndexedNetworkRouteImpl(null, null);
+		route.setRouteDescription("1 3 4 1");
+
+		Assert.assertEquals(id1, route.getStartLinkId());
+		Assert.assertEquals(List.of(id3, id4), route.getLinkIds());
+		Assert.assertEquals(id1, route.getEndLinkId());
+		Assert.assertEquals("1 3 4 1", route.getRouteDescription());
+	}
+
+	@Test
+	public void testGetLinkIds_viewOfCurrentLinks() {
+		Id<Link> id1 = Id.create(1, Link.class);
+		Id<Link> id2 = Id.create(2, Link.class);
+		Id<Link> id3 = Id.create(3, Link.class);
+		Id<Link> id4 = Id.create(4, Link.class);
+		NetworkRoute route = new IndexedNetworkRouteImpl(id1, List.of(id3), id2);
+
+		List<Id<Link>> linkIds = route.getLinkIds();
+		Assert.assertEquals(List.of(id3), linkIds);
+
+		route.setLinkIds(id1, List.of(id3, id4), id2);
+		Assert.assertEquals(List.of(id3, id4), route.getLinkIds());
+		Assert.assertEquals("the old list must not change", List.of(id3), linkIds);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testGetLinkIds_unmodifiable() {
+		NetworkRoute route = new IndexedNetworkRouteImpl(Id.create(1, Link.class), Id.create(2, Link.class));
+		route.getLinkIds().add(Id.create(3, Link.class));
+	}
+
+}
@@ -20,12 +20,20 @@
 
 package org.matsim.core.replanning.modules;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.config.groups.GlobalConfigGroup.ReplanningScheduling;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
 
 /**
@@ -60,6 +68,54 @@ public class AbstractMultithreadedModuleTest {
 
 	}
 
+	@Test
+	public void testCrashingThread_workStealing() {
+		try {
+			DummyCrashingModule testee = new DummyCrashingModule(2, ReplanningScheduling.workStealing);
+			testee.prepareReplanning(null);
+			testee.handlePlan(null);
+			testee.handlePlan(null);
+			testee.handlePlan(null);
+			testee.finishReplanning();
+			Assert.fail("expected exception, got none.");
+		} catch (Exception e) {
+			log.info("Catched expected exception.", e);
+		}
+	}
+
+	@Test
+	public void testWorkStealing_handlesEachPlanOnce() {
+		List<Plan> plans = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			plans.add(PopulationUtils.createPlan());
+		}
+		CountingModule testee = new CountingModule(4, false);
+		for (int iteration = 0; iteration < 2; iteration++) {
+			testee.prepareReplanning(null);
+			for (Plan plan : plans) {
+				testee.handlePlan(plan);
+			}
+			testee.finishReplanning();
+			for (Plan plan : plans) {
+				Assert.assertEquals(iteration + 1, (int) plan.getScore());
+			}
+		}
+		Assert.assertTrue("expected at most one instance per thread and iteration", testee.instances.size() <= 2 * 4);
+	}
+
+	@Test
+	public void testWorkStealing_reusesPlanAlgoInstances() {
+		CountingModule testee = new CountingModule(4, true);
+		for (int iteration = 0; iteration < 3; iteration++) {
+			testee.prepareReplanning(null);
+			for (int i = 0; i < 1000; i++) {
+				testee.handlePlan(PopulationUtils.createPlan());
+			}
+			testee.finishReplanning();
+		}
+		Assert.assertTrue("expected at most one instance per thread", testee.instances.size() <= 4);
+	}
+
 	private static class DummyAbstractMultithreadedModule extends AbstractMultithreadedModule {
 		public DummyAbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
 			super(globalConfigGroup);
@@ -74,12 +130,42 @@ public class AbstractMultithreadedModuleTest {
 		public DummyCrashingModule(final int nOfThreads) {
 			super(nOfThreads);
 		}
+		public DummyCrashingModule(final int nOfThreads, final ReplanningScheduling scheduling) {
+			super(nOfThreads, scheduling);
+		}
 		@Override
 		public PlanAlgorithm getPlanAlgoInstance() {
 			return new CrashingPlanAlgo();
 		}
 	}
 
+	private static class CountingModule extends AbstractMultithreadedModule {
+		private final boolean reusable;
+		/*package*/ final Set<PlanAlgorithm> instances = ConcurrentHashMap.newKeySet();
+		public CountingModule(final int nOfThreads, final boolean reusable) {
+			super(nOfThreads, ReplanningScheduling.workStealing);
+			this.reusable = reusable;
+		}
+		@Override
+		public PlanAlgorithm getPlanAlgoInstance() {
+			PlanAlgorithm algo = new PlanAlgorithm() {
+				private final AtomicBoolean inUse = new AtomicBoolean(false);
+				@Override
+				public void run(Plan plan) {
+					Assert.assertTrue("instance is used by two threads at once", this.inUse.compareAndSet(false, true));
+					plan.setScore(plan.getScore() == null ? 1.0 : plan.getScore() + 1.0);
+					this.inUse.set(false);
+				}
+			};
+			this.instances.add(algo);
+			return algo;
+		}
+		@Override
+		protected boolean isPlanAlgoInstanceReusable() {
+			return this.reusable;
+		}
+	}
+
 	private static class CrashingPlanAlgo implements PlanAlgorithm {
 		@Override
 		public void run(Plan plan) {
@@ -0,0 +1,139 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.replanning.modules;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.GlobalConfigGroup.ReplanningScheduling;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.NetworkRoutingModule;
+import org.matsim.core.router.TripRouter;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.speedy.SpeedyCHFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+
+public class ReRouteTest {
+
+	/**
+	 * The contraction hierarchies keep the weights they were created with, so ReRoute must create new routers in every
+	 * iteration to use the travel times of the last iteration, also when the plan algorithm instances could be re-used
+	 * with the work-stealing scheduling.
+	 */
+	@Test
+	public void testReRoute_usesCurrentTravelTimesInEveryIteration() {
+		Config config = ConfigUtils.createConfig();
+		config.global().setNumberOfThreads(2);
+		config.global().setReplanningScheduling(ReplanningScheduling.workStealing);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		/*
+		 *             (2)
+		 *           /     \
+		 *   (0)--(1)       (4)--(5)
+		 *           \     /
+		 *             (3)
+		 */
+		Network network = scenario.getNetwork();
+		Node n0 = createNode(network, 0, 0, 0);
+		Node n1 = createNode(network, 1, 1000, 0);
+		Node n2 = createNode(network, 2, 2000, 1000);
+		Node n3 = createNode(network, 3, 2000, -1000);
+		Node n4 = createNode(network, 4, 3000, 0);
+		Node n5 = createNode(network, 5, 4000, 0);
+		createLink(network, "start", n0, n1);
+		createLink(network, "north1", n1, n2);
+		createLink(network, "north2", n2, n4);
+		createLink(network, "south1", n1, n3);
+		createLink(network, "south2", n3, n4);
+		createLink(network, "end", n4, n5);
+
+		Map<Id<Link>, Double> travelTimes = new HashMap<>();
+		TravelTime travelTime = (link, time, person, vehicle) -> travelTimes.getOrDefault(link.getId(), 100.0);
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		SpeedyCHFactory factory = new SpeedyCHFactory();
+
+		ReRoute reRoute = new ReRoute(scenario, () -> new TripRouter.Builder(config)
+				.setRoutingModule(TransportMode.car, new NetworkRoutingModule(TransportMode.car, scenario.getPopulation().getFactory(),
+						network, factory.createPathCalculator(network, travelDisutility, travelTime)))
+				.build());
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		Person person = pf.createPerson(Id.create("1", Person.class));
+		Plan plan = pf.createPlan();
+		person.addPlan(plan);
+		Activity home = pf.createActivityFromLinkId("h", Id.create("start", Link.class));
+		home.setEndTime(8 * 3600);
+		plan.addActivity(home);
+		Leg leg = pf.createLeg(TransportMode.car);
+		TripStructureUtils.setRoutingMode(leg, TransportMode.car);
+		plan.addLeg(leg);
+		plan.addActivity(pf.createActivityFromLinkId("w", Id.create("end", Link.class)));
+
+		// iteration 1: the northern route is congested
+		travelTimes.put(Id.create("north1", Link.class), 500.0);
+		reRoute.prepareReplanning(null);
+		reRoute.handlePlan(plan);
+		reRoute.finishReplanning();
+		Assert.assertEquals(Id.create("south1", Link.class), ((NetworkRoute) ((Leg) plan.getPlanElements().get(1)).getRoute()).getLinkIds().get(0));
+
+		// iteration 2: the southern route is congested
+		travelTimes.clear();
+		travelTimes.put(Id.create("south1", Link.class), 500.0);
+		factory.notifyIterationStarts(null);
+		reRoute.prepareReplanning(null);
+		reRoute.handlePlan(plan);
+		reRoute.finishReplanning();
+		Assert.assertEquals(Id.create("north1", Link.class), ((NetworkRoute) ((Leg) plan.getPlanElements().get(1)).getRoute()).getLinkIds().get(0));
+	}
+
+	private static Node createNode(Network network, int id, double x, double y) {
+		Node node = network.getFactory().createNode(Id.create(id, Node.class), new Coord(x, y));
+		network.addNode(node);
+		return node;
+	}
+
+	private static void createLink(Network network, String id, Node fromNode, Node toNode) {
+		Link link = network.getFactory().createLink(Id.create(id, Link.class), fromNode, toNode);
+		link.setLength(1000);
+		link.setFreespeed(10);
+		link.setCapacity(1000);
+		network.addLink(link);
+	}
+}
@@ -0,0 +1,120 @@
+package org.matsim.core.router.speedy;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ManyToManyPathCalculatorTest {
+
+	/**
+	 * Travel times are doubled after 8:00, so the matrix must differ between the two departure times.
+	 */
+	private static final TravelTime TRAVEL_TIME = (link, time, person, vehicle) -> link.getLength() / link.getFreespeed() * (time >= 8 * 3600 ? 2 : 1);
+
+	private static final TravelDisutility TRAVEL_DISUTILITY = new TravelDisutility() {
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			return TRAVEL_TIME.getLinkTravelTime(link, time, person, vehicle) + link.getLength() / 100;
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return link.getLength() / link.getFreespeed() + link.getLength() / 100;
+		}
+	};
+
+	@Test
+	public void testCalculate_sameAsLeastCostPathTree() {
+		Network network = createGridNetwork(10);
+		SpeedyGraph graph = new SpeedyGraph(network);
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		List<Node> origins = nodes.subList(0, 30);
+		List<Node> destinations = nodes.subList(20, 45);
+
+		TravelMatrix matrix = new ManyToManyPathCalculator(graph, TRAVEL_TIME, TRAVEL_DISUTILITY, 2).calculate(origins, destinations, 7 * 3600, 9 * 3600);
+
+		Assert.assertEquals(2, matrix.getTimeBinCount());
+		LeastCostPathTree tree = new LeastCostPathTree(graph, TRAVEL_TIME, TRAVEL_DISUTILITY);
+		for (int bin = 0; bin < 2; bin++) {
+			double departureTime = matrix.getDepartureTime(bin);
+			for (Node origin : origins) {
+				tree.calculate(origin.getId().index(), departureTime, null, null);
+				for (Node destination : destinations) {
+					int node = destination.getId().index();
+					Assert.assertEquals(tree.getTime(node).seconds() - departureTime, matrix.getTravelTime(bin, origin, destination), 1e-3);
+					Assert.assertEquals(tree.getCost(node), matrix.getTravelCost(bin, origin, destination), 1e-3);
+					Assert.assertEquals(tree.getDistance(node), matrix.getDistance(bin, origin, destination), 1e-3);
+				}
+			}
+		}
+		Node from = origins.get(0);
+		Node to = destinations.get(destinations.size() - 1);
+		Assert.assertEquals(2 * matrix.getTravelTime(0, from, to), matrix.getTravelTime(1, from, to), 1e-3);
+		Assert.assertEquals(matrix.getTravelTime(1, from, to), matrix.getTravelTime(10 * 3600.0, from, to), 0.0);
+		Assert.assertEquals(matrix.getTravelTime(0, from, to), matrix.getTravelTime(8 * 3600.0, from, to), 0.0);
+	}
+
+	@Test
+	public void testCalculate_unreachable() {
+		Network network = createGridNetwork(3);
+		Node isolated = NetworkUtils.createAndAddNode(network, Id.create("isolated", Node.class), new Coord(-1000, -1000));
+		Node origin = network.getNodes().get(Id.create("0_0", Node.class));
+		SpeedyGraph graph = new SpeedyGraph(network);
+
+		TravelMatrix matrix = new ManyToManyPathCalculator(graph, TRAVEL_TIME, TRAVEL_DISUTILITY, 1).calculate(List.of(origin), List.of(origin, isolated), 0);
+
+		Assert.assertEquals(0, matrix.getTravelTime(0, origin, origin), 0.0);
+		Assert.assertEquals(Float.POSITIVE_INFINITY, matrix.getTravelTime(0, origin, isolated), 0.0);
+		Assert.assertEquals(Float.POSITIVE_INFINITY, matrix.getTravelCost(0, origin, isolated), 0.0);
+		Assert.assertEquals(Float.POSITIVE_INFINITY, matrix.getDistance(0, origin, isolated), 0.0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testGetTravelTime_notAnOrigin() {
+		Network network = createGridNetwork(3);
+		Node node00 = network.getNodes().get(Id.create("0_0", Node.class));
+		Node node11 = network.getNodes().get(Id.create("1_1", Node.class));
+		SpeedyGraph graph = new SpeedyGraph(network);
+
+		TravelMatrix matrix = new ManyToManyPathCalculator(graph, TRAVEL_TIME, TRAVEL_DISUTILITY, 1).calculate(List.of(node00), List.of(node11), 0);
+		matrix.getTravelTime(0, node11, node11);
+	}
+
+	private static Network createGridNetwork(int size) {
+		Random random = new Random(42);
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.create(x + "_" + y, Node.class), new Coord(x * 100, y * 100));
+			}
+		}
+		int linkId = 0;
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), nodes[x][y], nodes[x + 1][y], 50 + random.nextInt(200), 10, 1000, 1);
+					NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), nodes[x + 1][y], nodes[x][y], 50 + random.nextInt(200), 10, 1000, 1);
+				}
+				if (y + 1 < size) {
+					NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), nodes[x][y], nodes[x][y + 1], 50 + random.nextInt(200), 10, 1000, 1);
+					NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), nodes[x][y + 1], nodes[x][y], 50 + random.nextInt(200), 10, 1000, 1);
+				}
+			}
+		}
+		return network;
+	}
+}
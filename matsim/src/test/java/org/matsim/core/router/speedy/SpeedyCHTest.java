@@ -0,0 +1,164 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.AbstractLeastCostPathCalculatorTest;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class SpeedyCHTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(final Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		SpeedyGraph g = new SpeedyGraph(network);
+		SpeedyCHMetric metric = new SpeedyCHMetric(new SpeedyCHData(g), travelTimeCostCalculator, 3600, 30);
+		return new SpeedyCH(metric, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	/**
+	 * Compares the routes with the ones from {@link SpeedyDijkstra} on a grid network with random link lengths and
+	 * some one-way links, so that shortcuts with different costs per direction are needed.
+	 */
+	public void testCalcLeastCostPath_sameCostsAsDijkstra() {
+		Random random = new Random(20221018);
+		Network network = NetworkUtils.createNetwork();
+		int size = 20;
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.create(x + "_" + y, Node.class), new Coord(x * 100, y * 100));
+			}
+		}
+		int linkId = 0;
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					linkId = addLinks(network, nodes[x][y], nodes[x + 1][y], random, linkId);
+				}
+				if (y + 1 < size) {
+					linkId = addLinks(network, nodes[x][y], nodes[x][y + 1], random, linkId);
+				}
+			}
+		}
+
+		FreespeedTravelTimeAndDisutility tc = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		SpeedyGraph graph = new SpeedyGraph(network);
+		SpeedyCHMetric metric = new SpeedyCHMetric(new SpeedyCHData(graph), tc, 3600, 30);
+		LeastCostPathCalculator ch = new SpeedyCH(metric, tc, tc);
+		LeastCostPathCalculator dijkstra = new SpeedyDijkstra(graph, tc, tc);
+
+		List<Node> allNodes = new ArrayList<>(network.getNodes().values());
+		for (int i = 0; i < 500; i++) {
+			Node from = allNodes.get(random.nextInt(allNodes.size()));
+			Node to = allNodes.get(random.nextInt(allNodes.size()));
+			Path expected = dijkstra.calcLeastCostPath(from, to, 8 * 3600, null, null);
+			Path actual = ch.calcLeastCostPath(from, to, 8 * 3600, null, null);
+			if (expected == null) {
+				assertNull(actual);
+				continue;
+			}
+			assertEquals("wrong cost from " + from.getId() + " to " + to.getId(), expected.travelCost, actual.travelCost, 1e-6);
+			assertEquals(expected.travelTime, actual.travelTime, 1e-6);
+			assertEquals(from, actual.nodes.get(0));
+			assertEquals(to, actual.nodes.get(actual.nodes.size() - 1));
+			for (int l = 0; l < actual.links.size(); l++) {
+				Link link = actual.links.get(l);
+				assertEquals(actual.nodes.get(l), link.getFromNode());
+				assertEquals(actual.nodes.get(l + 1), link.getToNode());
+			}
+		}
+	}
+
+	/**
+	 * Two travel disutilities of the same type, but with different parameters, must not share their weights, while
+	 * separate instances resulting in the same weights (like one per routing module) must.
+	 */
+	public void testFactory_weightsSharedPerLinkWeights() {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.create("a", Node.class), new Coord(0, 0));
+		Node north = NetworkUtils.createAndAddNode(network, Id.create("north", Node.class), new Coord(500, 500));
+		Node south = NetworkUtils.createAndAddNode(network, Id.create("south", Node.class), new Coord(500, -500));
+		Node b = NetworkUtils.createAndAddNode(network, Id.create("b", Node.class), new Coord(1000, 0));
+		Link north1 = NetworkUtils.createAndAddLink(network, Id.create("north1", Link.class), a, north, 700, 10, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.create("north2", Link.class), north, b, 700, 10, 1000, 1);
+		Link south1 = NetworkUtils.createAndAddLink(network, Id.create("south1", Link.class), a, south, 700, 10, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.create("south2", Link.class), south, b, 700, 10, 1000, 1);
+
+		FreespeedTravelTimeAndDisutility tt = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		SpeedyCHFactory factory = new SpeedyCHFactory();
+
+		LeastCostPathCalculator avoidNorth = factory.createPathCalculator(network, new PenalizedLinkDisutility(north1.getId()), tt);
+		LeastCostPathCalculator avoidSouth = factory.createPathCalculator(network, new PenalizedLinkDisutility(south1.getId()), tt);
+
+		assertEquals(south1, avoidNorth.calcLeastCostPath(a, b, 8 * 3600, null, null).links.get(0));
+		assertEquals(north1, avoidSouth.calcLeastCostPath(a, b, 8 * 3600, null, null).links.get(0));
+
+		LeastCostPathCalculator avoidNorthAgain = factory.createPathCalculator(network, new PenalizedLinkDisutility(north1.getId()), tt);
+		assertSame(((SpeedyCH) avoidNorth).metric, ((SpeedyCH) avoidNorthAgain).metric);
+		assertNotSame(((SpeedyCH) avoidNorth).metric, ((SpeedyCH) avoidSouth).metric);
+	}
+
+	private static class PenalizedLinkDisutility implements TravelDisutility {
+		private final Id<Link> penalizedLinkId;
+
+		PenalizedLinkDisutility(Id<Link> penalizedLinkId) {
+			this.penalizedLinkId = penalizedLinkId;
+		}
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			return getLinkMinimumTravelDisutility(link);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return link.getId().equals(this.penalizedLinkId) ? 10 * link.getLength() : link.getLength();
+		}
+	}
+
+	private static int addLinks(Network network, Node a, Node b, Random random, int linkId) {
+		int id = linkId;
+		int direction = random.nextInt(4); // 0: a to b only, 1: b to a only, otherwise both directions
+		if (direction != 1) {
+			NetworkUtils.createAndAddLink(network, Id.create(id++, Link.class), a, b, 50 + random.nextInt(200), 10, 1000, 1);
+		}
+		if (direction != 0) {
+			NetworkUtils.createAndAddLink(network, Id.create(id++, Link.class), b, a, 50 + random.nextInt(200), 10, 1000, 1);
+		}
+		return id;
+	}
+
+}
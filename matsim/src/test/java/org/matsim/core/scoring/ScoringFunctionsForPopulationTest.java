@@ -21,15 +21,31 @@
 
  package org.matsim.core.scoring;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.events.PersonMoneyEvent;
 import org.matsim.api.core.v01.events.PersonScoreEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
@@ -39,9 +55,11 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.controler.ControlerListenerManagerImpl;
 import org.matsim.core.events.EventsUtils;
+import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.router.TripStructureUtils;
 import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.vehicles.Vehicle;
 
 /**
  * @author mrieser / Simunto GmbH
@@ -126,6 +144,130 @@ public class ScoringFunctionsForPopulationTest {
 		Assert.assertEquals(1.234+2.345, rsf.separateScoreSum, 1e-7);
 	}
 
+	@Test
+	public void testShardsScoreLikeSerial() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		Node[] nodes = new Node[4];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(i * 100, 0));
+		}
+		for (int i = 1; i < nodes.length; i++) {
+			NetworkUtils.createAndAddLink(network, Id.createLinkId(i), nodes[i - 1], nodes[i], 100, 10, 1000, 1);
+		}
+		Population population = scenario.getPopulation();
+		int nOfDrivers = 20;
+		for (int i = 0; i < 2 * nOfDrivers; i++) {
+			population.addPerson(population.getFactory().createPerson(Id.createPersonId(i)));
+		}
+
+		// every driver takes a passenger, who is usually handled by another shard
+		List<Event> events = new ArrayList<>();
+		for (int i = 0; i < nOfDrivers; i++) {
+			double t = 6 * 3600 + 10 * i;
+			Id<Person> driver = Id.createPersonId(i);
+			Id<Person> passenger = Id.createPersonId(nOfDrivers + i);
+			Id<Vehicle> vehicle = Id.createVehicleId(i);
+			for (Id<Person> person : List.of(driver, passenger)) {
+				events.add(new ActivityEndEvent(t, person, Id.createLinkId(1), null, "home"));
+				events.add(new PersonDepartureEvent(t, person, Id.createLinkId(1), person == driver ? TransportMode.car : TransportMode.ride));
+				events.add(new PersonEntersVehicleEvent(t, person, vehicle));
+			}
+			events.add(new VehicleEntersTrafficEvent(t, driver, Id.createLinkId(1), vehicle, TransportMode.car, 1.0));
+			events.add(new LinkEnterEvent(t + 10, vehicle, Id.createLinkId(2)));
+			events.add(new LinkEnterEvent(t + 20, vehicle, Id.createLinkId(3)));
+			events.add(new VehicleLeavesTrafficEvent(t + 30, driver, Id.createLinkId(3), vehicle, TransportMode.car, 1.0));
+			for (Id<Person> person : List.of(passenger, driver)) {
+				events.add(new PersonLeavesVehicleEvent(t + 30, person, vehicle));
+				events.add(new PersonArrivalEvent(t + 30, person, Id.createLinkId(3), person == driver ? TransportMode.car : TransportMode.ride));
+				events.add(new ActivityStartEvent(t + 30, person, Id.createLinkId(3), null, "work", null));
+			}
+			events.add(new PersonMoneyEvent(t + 40, driver, -1.5, "toll", "operator"));
+		}
+		events.sort(Comparator.comparingDouble(Event::getTime));
+
+		List<String> serial = scoreEvents(scenario, events, 0);
+		List<String> sharded = scoreEvents(scenario, events, 3);
+		Assert.assertEquals(serial, sharded);
+	}
+
+	private static List<String> scoreEvents(Scenario scenario, List<Event> events, int numberOfShards) {
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		EventsToActivities eventsToActivities = new EventsToActivities(controlerListenerManager);
+		EventsToLegs eventsToLegs = new EventsToLegs(scenario);
+		ScoringFunctionsForPopulation sf = new ScoringFunctionsForPopulation(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs,
+				scenario.getPopulation(), agentId -> new LoggingScoringFunction(), scenario, numberOfShards);
+		eventsManager.addHandler(new EventsToLegsAndActivities(eventsToLegs, eventsToActivities));
+
+		controlerListenerManager.fireControlerIterationStartsEvent(0, false);
+		eventsManager.initProcessing();
+		for (Event event : events) {
+			eventsManager.processEvent(event);
+		}
+		eventsManager.finishProcessing();
+		controlerListenerManager.fireControlerAfterMobsimEvent(0, false);
+		sf.finishScoringFunctions();
+
+		List<String> log = new ArrayList<>();
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			LoggingScoringFunction scoringFunction = (LoggingScoringFunction) sf.getScoringFunctionForAgent(person.getId());
+			log.add(person.getId() + ": " + scoringFunction.log);
+		}
+		return log;
+	}
+
+	private static class LoggingScoringFunction implements ScoringFunction {
+
+		final StringBuilder log = new StringBuilder();
+
+		@Override
+		public void handleActivity(Activity activity) {
+			this.log.append("act ").append(activity.getType()).append(' ').append(activity.getStartTime()).append(' ').append(activity.getEndTime()).append("; ");
+		}
+
+		@Override
+		public void handleLeg(Leg leg) {
+			this.log.append("leg ").append(leg.getMode()).append(' ').append(leg.getRoute().getRouteDescription())
+					.append(' ').append(leg.getRoute().getDistance()).append("; ");
+		}
+
+		@Override
+		public void handleTrip(TripStructureUtils.Trip trip) {
+			this.log.append("trip ").append(trip.getTripElements().size()).append("; ");
+		}
+
+		@Override
+		public void agentStuck(double time) {
+			this.log.append("stuck ").append(time).append("; ");
+		}
+
+		@Override
+		public void addMoney(double amount) {
+			this.log.append("money ").append(amount).append("; ");
+		}
+
+		@Override
+		public void addScore(double amount) {
+			this.log.append("score ").append(amount).append("; ");
+		}
+
+		@Override
+		public void finish() {
+			this.log.append("finish");
+		}
+
+		@Override
+		public double getScore() {
+			return 0;
+		}
+
+		@Override
+		public void handleEvent(Event event) {
+			this.log.append(event.getEventType()).append(' ').append(event.getTime()).append("; ");
+		}
+	}
+
 	private static class RecordingScoringFunction implements ScoringFunction {
 
 		int tripCounter = 0;
@@ -48,6 +48,7 @@ import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.ParallelEventsManager;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.io.MatsimNetworkReader;
 import org.matsim.core.scenario.MutableScenario;
@@ -576,4 +577,118 @@ public class TravelTimeCalculatorTest extends MatsimTestCase {
 		Assert.assertEquals("Filtering analyzed transport modes is enabled, but no modes set. Therefore, use default (=car)", 100.0, 
 				ttc.getLinkTravelTimes().getLinkTravelTime(link2, 200, null, null), 1e-8);
 	}
+
+	/**
+	 * Checks that the index-based vehicle state storage with multiple shards calculates the same
+	 * travel times as the default map-based storage, for link travel times and link-to-link travel times.
+	 */
+	public void testGetLinkTravelTime_IndexBasedShards_ParallelEventsTwoIterations() {
+		Network network = NetworkUtils.createNetwork();
+
+		Node n1 = network.getFactory().createNode(Id.create(1, Node.class), new Coord(0, 0));
+		Node n2 = network.getFactory().createNode(Id.create(2, Node.class), new Coord(1000, 0));
+		Node n3 = network.getFactory().createNode(Id.create(3, Node.class), new Coord(2000, 0));
+		Node n4 = network.getFactory().createNode(Id.create(4, Node.class), new Coord(3000, 0));
+		network.addNode(n1);
+		network.addNode(n2);
+		network.addNode(n3);
+		network.addNode(n4);
+		// 3 shards of equal size, with one of the links at the start of each shard, so every link is handled by a
+		// different shard. The link ids are created fresh, as earlier tests in the same JVM have created other ids.
+		int shardSize = Id.getNumberOfIds(Link.class) + 1;
+		Id<Link> linkId1 = Id.create("shards1_" + shardSize, Link.class);
+		createLinkIdsUpTo(shardSize);
+		Id<Link> linkId2 = Id.create("shards2_" + shardSize, Link.class);
+		createLinkIdsUpTo(2 * shardSize);
+		Id<Link> linkId3 = Id.create("shards3_" + shardSize, Link.class);
+		createLinkIdsUpTo(3 * shardSize);
+		Assert.assertEquals(shardSize, linkId2.index());
+		Assert.assertEquals(2 * shardSize, linkId3.index());
+
+		Link link1 = network.getFactory().createLink(linkId1, n1, n2);
+		Link link2 = network.getFactory().createLink(linkId2, n2, n3);
+		Link link3 = network.getFactory().createLink(linkId3, n3, n4);
+		network.addLink(link1);
+		network.addLink(link2);
+		network.addLink(link3);
+
+		TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+		config.setTraveltimeBinSize(900);
+		config.setAnalyzedModesAsString(TransportMode.car );
+		config.setFilterModes(true);
+		config.setCalculateLinkToLinkTravelTimes(true);
+
+		TravelTimeCalculator mapBased = new TravelTimeCalculator(network, config);
+		config.setVehicleStateStorage(TravelTimeCalculatorConfigGroup.VehicleStateStorage.indexBased);
+		config.setNumberOfShards(3);
+		TravelTimeCalculator indexBased = new TravelTimeCalculator(network, config);
+
+		EventsManager events = new ParallelEventsManager(false);
+		mapBased.addEventHandlersTo(events);
+		indexBased.addEventHandlersTo(events);
+
+		Id<Person> agId1 = Id.create(1510, Person.class);
+		Id<Person> agId2 = Id.create(1511, Person.class);
+		Id<Person> agId3 = Id.create(1512, Person.class);
+		Id<Vehicle> vehId1 = Id.create(1980, Vehicle.class);
+		Id<Vehicle> vehId2 = Id.create(1981, Vehicle.class);
+		Id<Vehicle> vehId3 = Id.create(1982, Vehicle.class);
+
+		// iteration 0
+		events.initProcessing();
+		events.processEvent(new VehicleEntersTrafficEvent(90, agId1, link1.getId(), vehId1, TransportMode.car, 1.0));
+		events.processEvent(new VehicleEntersTrafficEvent(95, agId3, link1.getId(), vehId3, TransportMode.car, 1.0));
+		events.processEvent(new VehicleEntersTrafficEvent(100, agId2, link1.getId(), vehId2, TransportMode.walk, 1.0));
+		events.processEvent(new LinkLeaveEvent(100, vehId1, link1.getId()));
+		events.processEvent(new LinkEnterEvent(100, vehId1, link2.getId()));
+		events.processEvent(new LinkLeaveEvent(105, vehId3, link1.getId()));
+		events.processEvent(new LinkEnterEvent(105, vehId3, link2.getId()));
+		events.processEvent(new LinkLeaveEvent(110, vehId2, link1.getId()));
+		events.processEvent(new LinkEnterEvent(110, vehId2, link2.getId()));
+		events.processEvent(new LinkLeaveEvent(200, vehId1, link2.getId()));
+		events.processEvent(new LinkEnterEvent(200, vehId1, link3.getId()));
+		events.processEvent(new LinkLeaveEvent(255, vehId3, link2.getId()));
+		events.processEvent(new LinkEnterEvent(255, vehId3, link3.getId()));
+		events.processEvent(new LinkLeaveEvent(410, vehId2, link2.getId()));
+		events.processEvent(new LinkLeaveEvent(320, vehId1, link3.getId()));
+		events.processEvent(new LinkLeaveEvent(395, vehId3, link3.getId()));
+		events.finishProcessing();
+
+		for (Link link : new Link[] {link2, link3}) {
+			Assert.assertEquals(mapBased.getLinkTravelTimes().getLinkTravelTime(link, 200, null, null),
+					indexBased.getLinkTravelTimes().getLinkTravelTime(link, 200, null, null), 1e-8);
+		}
+		Assert.assertEquals("walk agent should be ignored", 125.0, indexBased.getLinkTravelTimes().getLinkTravelTime(link2, 200, null, null), 1e-8);
+		Assert.assertEquals(mapBased.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link2, link3, 200, null, null),
+				indexBased.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link2, link3, 200, null, null), 1e-8);
+		Assert.assertEquals(125.0, indexBased.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link2, link3, 200, null, null), 1e-8);
+		Assert.assertEquals("no observations, expect free speed travel time", link3.getLength() / link3.getFreespeed(),
+				indexBased.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link3, link1, 200, null, null), 1e-8);
+
+		// iteration 1, initProcessing() resets the handlers, so only the travel times of this iteration must be used
+		events.initProcessing();
+		events.processEvent(new VehicleEntersTrafficEvent(90, agId1, link1.getId(), vehId1, TransportMode.car, 1.0));
+		events.processEvent(new LinkLeaveEvent(100, vehId1, link1.getId()));
+		events.processEvent(new LinkEnterEvent(100, vehId1, link2.getId()));
+		events.processEvent(new LinkLeaveEvent(150, vehId1, link2.getId()));
+		events.processEvent(new LinkEnterEvent(150, vehId1, link3.getId()));
+		events.processEvent(new LinkLeaveEvent(250, vehId1, link3.getId()));
+		events.finishProcessing();
+
+		for (Link link : new Link[] {link2, link3}) {
+			Assert.assertEquals(mapBased.getLinkTravelTimes().getLinkTravelTime(link, 200, null, null),
+					indexBased.getLinkTravelTimes().getLinkTravelTime(link, 200, null, null), 1e-8);
+		}
+		Assert.assertEquals(50.0, indexBased.getLinkTravelTimes().getLinkTravelTime(link2, 200, null, null), 1e-8);
+		Assert.assertEquals(100.0, indexBased.getLinkTravelTimes().getLinkTravelTime(link3, 200, null, null), 1e-8);
+		Assert.assertEquals(mapBased.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link2, link3, 200, null, null),
+				indexBased.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link2, link3, 200, null, null), 1e-8);
+		Assert.assertEquals(50.0, indexBased.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link2, link3, 200, null, null), 1e-8);
+	}
+
+	private static void createLinkIdsUpTo(int numberOfIds) {
+		for (int i = 0; Id.getNumberOfIds(Link.class) < numberOfIds; i++) {
+			Id.create("shardsPadding_" + numberOfIds + "_" + i, Link.class);
+		}
+	}
 }
@@ -215,5 +215,106 @@ public class MatsimXmlParserTest {
 		Assert.assertEquals(" -  - ", log.get(2));
 	}
 
+	@Test
+	public void testStax_ParsingReservedEntities() {
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+				"<dummy someAttribute=\"value&quot;&amp;&lt;&gt;value\">content&quot;&amp;&lt;&gt;content</dummy>";
+
+		TestParser parser = new TestParser();
+		parser.setValidating(false);
+		parser.setParserBackend(MatsimXmlParser.ParserBackend.stax);
+
+		parser.parse(new ByteArrayInputStream(str.getBytes()));
+		Assert.assertEquals("dummy", parser.lastStartTag);
+		Assert.assertEquals("dummy", parser.lastEndTag);
+		Assert.assertEquals("content\"&<>content", parser.lastContent);
+	}
+
+	@Test
+	public void testStax_sameCallbacksAsSax() {
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+				"<root xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:a=\"1\" b=\"2\">\n" +
+				"<x c=\"3\">before<y>inner</y>after</x>\n" +
+				"<z><![CDATA[<cdata>]]></z>\n" +
+				"</root>";
+
+		List<String> saxLog = new ArrayList<>();
+		LoggingParser sax = new LoggingParser(saxLog);
+		sax.setValidating(false);
+		sax.parse(new ByteArrayInputStream(str.getBytes()));
+
+		List<String> staxLog = new ArrayList<>();
+		LoggingParser stax = new LoggingParser(staxLog);
+		stax.setParserBackend(MatsimXmlParser.ParserBackend.stax);
+		stax.parse(new ByteArrayInputStream(str.getBytes()));
+
+		Assert.assertEquals(saxLog, staxLog);
+		Assert.assertTrue(staxLog.contains("end y inner 2"));
+		Assert.assertTrue(staxLog.contains("end x beforeafter 1"));
+		Assert.assertTrue(staxLog.contains("end z <cdata> 1"));
+	}
+
+	private static class LoggingParser extends MatsimXmlParser {
+		private final List<String> log;
+
+		LoggingParser(List<String> log) {
+			this.log = log;
+		}
+
+		@Override
+		public void startTag(String name, Attributes atts, Stack<String> context) {
+			StringBuilder str = new StringBuilder("start " + name + " " + context.size());
+			for (int i = 0; i < atts.getLength(); i++) {
+				str.append(' ').append(atts.getQName(i)).append('|').append(atts.getLocalName(i)).append('|').append(atts.getURI(i)).append('=').append(atts.getValue(i));
+				Assert.assertEquals(atts.getValue(i), atts.getValue(atts.getQName(i)));
+				Assert.assertEquals(atts.getValue(i), atts.getValue(atts.getURI(i), atts.getLocalName(i)));
+			}
+			this.log.add(str.toString());
+		}
+
+		@Override
+		public void endTag(String name, String content, Stack<String> context) {
+			this.log.add("end " + name + " " + content.trim() + " " + context.size());
+		}
+	}
+
+	@Test
+	public void testStax_preventXEEattack() throws IOException {
+		String secretValue = "S3CR3T";
+
+		File secretsFile = this.tempFolder.newFile("file-with-secrets.txt");
+		try (OutputStream out = new FileOutputStream(secretsFile)) {
+			out.write(secretValue.getBytes(StandardCharsets.UTF_8));
+		}
+
+		String xml = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+				"<!DOCTYPE a SYSTEM \"network_v1.dtd\" [\n" +
+				"<!ENTITY B_VALUE  \"b2\">\n" +
+				"<!ENTITY SECRET_VALUE SYSTEM \"file://" + secretsFile.getAbsolutePath() + "\">\n" +
+				"]>\n" +
+				"<a>\n" +
+				"<b>b1</b>\n" +
+				"<b> - &B_VALUE; - </b>\n" +
+				"<b> - &SECRET_VALUE; - </b>\n" +
+				"</a>";
+
+		List<String> log = new ArrayList<>();
+		MatsimXmlParser parser = new MatsimXmlParser() {
+			@Override
+			public void startTag(String name, Attributes atts, Stack<String> context) {
+			}
+			@Override
+			public void endTag(String name, String content, Stack<String> context) {
+				log.add(content);
+			}
+		};
+		parser.setParserBackend(MatsimXmlParser.ParserBackend.stax);
+		parser.parse(new ByteArrayInputStream(xml.getBytes()));
+
+		Assert.assertEquals("network_v1.dtd", parser.getDoctype());
+		Assert.assertEquals("b1", log.get(0));
+		Assert.assertEquals(" - b2 - ", log.get(1));
+		Assert.assertEquals(" -  - ", log.get(2));
+	}
 
 }